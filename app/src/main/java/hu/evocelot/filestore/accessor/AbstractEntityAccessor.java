@@ -12,8 +12,11 @@ import org.apache.logging.log4j.Logger;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
 
 import hu.evocelot.filestore.model.AbstractIdentifiedAuditEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 
 /**
  * Base class for all entity accessors that provide common functionality
@@ -32,6 +35,9 @@ public abstract class AbstractEntityAccessor<T extends AbstractIdentifiedAuditEn
 
     private static final Logger LOG = LogManager.getLogger(AbstractEntityAccessor.class);
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
     /**
      * Provides the JpaRepository that will be used for managing entities.
      * <p>
@@ -65,6 +71,30 @@ public abstract class AbstractEntityAccessor<T extends AbstractIdentifiedAuditEn
         return savedEntity;
     }
 
+    /**
+     * Inserts a new entity. Manages the audit fields the same way as
+     * {@link #save(AbstractIdentifiedAuditEntity)}.
+     * <p>
+     * Unlike {@link #save(AbstractIdentifiedAuditEntity)}, an entity with an
+     * assigned ID is persisted without selecting it first, so the entity is
+     * written with a single INSERT statement.
+     * </p>
+     * 
+     * @param entity the new entity to insert
+     * @return the inserted entity
+     */
+    @Transactional
+    public T insert(T entity) {
+        entity.setVersion(entity.getVersion().add(BigInteger.valueOf(1)));
+        entity.setModDate(OffsetDateTime.now());
+        entity.setModUser("unknown"); // TODO: Get current user.
+        entityManager.persist(entity);
+
+        LOG.debug(MessageFormat.format("Inserted {0} entity with id {1}.", entity.getClass(), entity.getId()));
+
+        return entity;
+    }
+
     /**
      * Saves all the given entities in a single batch operation.
      * 
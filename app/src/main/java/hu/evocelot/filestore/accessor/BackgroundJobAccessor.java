@@ -0,0 +1,141 @@
+package hu.evocelot.filestore.accessor;
+
+import java.math.BigInteger;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import hu.evocelot.filestore.job.JobStatus;
+import hu.evocelot.filestore.job.JobType;
+import hu.evocelot.filestore.model.BackgroundJob;
+import hu.evocelot.filestore.repository.BackgroundJobRepository;
+
+/**
+ * Background job accessor for managing the {@link BackgroundJob}.
+ * <p>
+ * Every state change of a job increments its version and is only applied if
+ * the version is the expected one. The version therefore works as a lease: an
+ * instance that has lost its job to another instance, or whose job has been
+ * cancelled, finds out at its next progress update.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+@Service
+public class BackgroundJobAccessor extends AbstractEntityAccessor<BackgroundJob> {
+
+    public BackgroundJobAccessor(BackgroundJobRepository backgroundJobRepository) {
+        this.backgroundJobRepository = backgroundJobRepository;
+    }
+
+    private BackgroundJobRepository backgroundJobRepository;
+
+    @Override
+    protected JpaRepository getRepository() {
+        return backgroundJobRepository;
+    }
+
+    /**
+     * Returns whether a job of the given type is queued or running.
+     *
+     * @param type the type of the job.
+     * @return {@code true} if a job of the type is not finished yet.
+     */
+    public boolean isActive(JobType type) {
+        return backgroundJobRepository.existsByTypeAndStatusIn(type, JobStatus.ACTIVE);
+    }
+
+    /**
+     * Returns the last successfully finished job of the given type.
+     *
+     * @param type the type of the job.
+     * @return the job submitted last among the succeeded ones, or an empty
+     *         {@link Optional} if no job of the type has succeeded yet.
+     */
+    public Optional<BackgroundJob> findLastSucceeded(JobType type) {
+        return backgroundJobRepository.findFirstByTypeAndStatusOrderByInsDateDesc(type, JobStatus.SUCCEEDED);
+    }
+
+    /**
+     * Returns the unfinished jobs whose instance has not reported its progress
+     * since the given time.
+     *
+     * @param heartbeatBefore the time of the oldest accepted heartbeat.
+     * @return the jobs to be resumed.
+     */
+    public List<BackgroundJob> findStaleJobs(OffsetDateTime heartbeatBefore) {
+        return backgroundJobRepository.findByStatusInAndHeartbeatDateBefore(JobStatus.ACTIVE, heartbeatBefore);
+    }
+
+    /**
+     * Marks the job as running by the calling instance.
+     *
+     * @param id      the id of the job.
+     * @param version the version of the job read by the calling instance.
+     * @return {@code true} if the job has been claimed, {@code false} if it has
+     *         been claimed, cancelled or finished by someone else meanwhile.
+     */
+    @Transactional
+    public boolean claim(String id, BigInteger version) {
+        return backgroundJobRepository.claim(id, version, JobStatus.RUNNING, JobStatus.ACTIVE,
+                OffsetDateTime.now()) > 0;
+    }
+
+    /**
+     * Persists the checkpoint and the counters of a running job.
+     *
+     * @param id         the id of the job.
+     * @param version    the current version of the job.
+     * @param checkpoint the key of the last processed item.
+     * @param processed  the number of the processed items.
+     * @param updated    the number of the changed items.
+     * @param skipped    the number of the skipped items.
+     * @param failed     the number of the failed items.
+     * @return {@code true} if the progress has been persisted, {@code false} if
+     *         the job is no longer owned by the calling instance.
+     */
+    @Transactional
+    public boolean updateProgress(String id, BigInteger version, String checkpoint, long processed, long updated,
+            long skipped, long failed) {
+        return backgroundJobRepository.updateProgress(id, version, JobStatus.RUNNING, checkpoint, processed,
+                updated, skipped, failed, OffsetDateTime.now()) > 0;
+    }
+
+    /**
+     * Finishes a running job.
+     *
+     * @param id           the id of the job.
+     * @param version      the current version of the job.
+     * @param status       the final state of the job.
+     * @param errorMessage the reason of the failure, or {@code null}.
+     * @param processed    the number of the processed items.
+     * @param updated      the number of the changed items.
+     * @param skipped      the number of the skipped items.
+     * @param failed       the number of the failed items.
+     * @return {@code true} if the job has been finished, {@code false} if the
+     *         job is no longer owned by the calling instance.
+     */
+    @Transactional
+    public boolean finish(String id, BigInteger version, JobStatus status, String errorMessage, long processed,
+            long updated, long skipped, long failed) {
+        return backgroundJobRepository.finish(id, version, JobStatus.RUNNING, status, errorMessage, processed,
+                updated, skipped, failed, OffsetDateTime.now()) > 0;
+    }
+
+    /**
+     * Cancels a queued or running job. The instance running the job stops at
+     * its next progress update.
+     *
+     * @param id the id of the job.
+     * @return {@code true} if the job has been cancelled, {@code false} if it
+     *         has already finished.
+     */
+    @Transactional
+    public boolean cancel(String id) {
+        return backgroundJobRepository.cancel(id, JobStatus.CANCELLED, JobStatus.ACTIVE, OffsetDateTime.now()) > 0;
+    }
+}
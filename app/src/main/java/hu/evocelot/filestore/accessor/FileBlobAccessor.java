@@ -0,0 +1,52 @@
+package hu.evocelot.filestore.accessor;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import hu.evocelot.filestore.model.FileBlob;
+import hu.evocelot.filestore.repository.FileBlobRepository;
+
+/**
+ * File blob accessor for managing the {@link FileBlob}.
+ * 
+ * @author mark.danisovszky
+ */
+@Service
+public class FileBlobAccessor extends AbstractEntityAccessor<FileBlob> {
+
+    public FileBlobAccessor(FileBlobRepository fileBlobRepository) {
+        this.fileBlobRepository = fileBlobRepository;
+    }
+
+    private FileBlobRepository fileBlobRepository;
+
+    @Override
+    protected JpaRepository getRepository() {
+        return fileBlobRepository;
+    }
+
+    /**
+     * Adds a reference to an existing blob.
+     * 
+     * @param contentDigest the content digest of the blob.
+     * @return {@code true} if the blob exists and the reference was added.
+     */
+    @Transactional
+    public boolean addReference(String contentDigest) {
+        return fileBlobRepository.incrementReferenceCount(contentDigest) > 0;
+    }
+
+    /**
+     * Finds the blob by its content digest and locks its row until the end of
+     * the current transaction.
+     * 
+     * @param contentDigest the content digest of the blob.
+     * @return the blob, or an empty {@link Optional} if it does not exist.
+     */
+    public Optional<FileBlob> findByContentDigestForUpdate(String contentDigest) {
+        return fileBlobRepository.findByContentDigestForUpdate(contentDigest);
+    }
+}
@@ -1,27 +1,183 @@
 package hu.evocelot.filestore.accessor;
 
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import hu.evocelot.filestore.helper.FileMetadataCache;
 import hu.evocelot.filestore.model.FileEntity;
 import hu.evocelot.filestore.repository.FileRepository;
 
 /**
  * File entity accessor for managing the {@link FileEntity}.
+ * <p>
+ * The files are read through the {@link FileMetadataCache}, and every change
+ * of a file evicts it from the cache of every instance.
+ * </p>
  * 
  * @author mark.danisovszky
  */
 @Service
 public class FileEntityAccessor extends AbstractEntityAccessor<FileEntity> {
 
-    public FileEntityAccessor(FileRepository fileRepository) {
+    private static final String UPDATE_SIZES = "UPDATE FILE SET size = ?, stored_size = ? WHERE ID = ?";
+    private static final String INCREMENT_DOWNLOAD_COUNT =
+            "UPDATE FILE SET download_count = download_count + ? WHERE ID = ?";
+    private static final String DELETE_FILE = "DELETE FROM FILE WHERE ID = ?";
+
+    public FileEntityAccessor(FileRepository fileRepository, JdbcTemplate jdbcTemplate,
+            FileMetadataCache fileMetadataCache) {
         this.fileRepository = fileRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.fileMetadataCache = fileMetadataCache;
     }
 
     private FileRepository fileRepository;
+    private JdbcTemplate jdbcTemplate;
+    private FileMetadataCache fileMetadataCache;
 
     @Override
     protected JpaRepository getRepository() {
         return fileRepository;
     }
+
+    @Override
+    public Optional<FileEntity> findById(String id) {
+        return fileMetadataCache.get(id, super::findById);
+    }
+
+    /**
+     * Finds the files by their ids. The files missing from the metadata cache
+     * are read with a single query.
+     *
+     * @param ids the distinct ids of the files.
+     * @return the existing files, in no particular order.
+     */
+    public List<FileEntity> findAllById(Collection<String> ids) {
+        return fileMetadataCache.getAll(ids, fileRepository::findAllById);
+    }
+
+    @Override
+    public FileEntity save(FileEntity entity) {
+        FileEntity savedEntity = super.save(entity);
+        fileMetadataCache.invalidate(List.of(savedEntity.getId()));
+        return savedEntity;
+    }
+
+    @Override
+    public List<FileEntity> saveAll(Collection<FileEntity> entities) {
+        List<FileEntity> savedEntities = super.saveAll(entities);
+        fileMetadataCache.invalidate(savedEntities.stream().map(FileEntity::getId).toList());
+        return savedEntities;
+    }
+
+    @Override
+    public void deleteById(String id) {
+        super.deleteById(id);
+        fileMetadataCache.invalidate(List.of(id));
+    }
+
+    @Override
+    public void delete(FileEntity entity) {
+        super.delete(entity);
+        fileMetadataCache.invalidate(List.of(entity.getId()));
+    }
+
+    /**
+     * Deletes the file if it still exists.
+     * <p>
+     * Unlike {@link #delete(FileEntity)}, the caller learns whether it has
+     * removed the file, so only one of the concurrent requests deleting the same
+     * file releases its content. The statement bypasses the entity manager, so
+     * the file is evicted from the metadata cache explicitly.
+     * </p>
+     *
+     * @param id the id of the file.
+     * @return {@code true} if the file has been deleted by this call.
+     */
+    public boolean deleteIfExists(String id) {
+        int count = jdbcTemplate.update(DELETE_FILE, id);
+        fileMetadataCache.invalidate(List.of(id));
+        return count > 0;
+    }
+
+    /**
+     * Updates the size and the stored size of the files with a single JDBC
+     * batch.
+     * <p>
+     * Only the two columns are written, so the version and the audit columns of
+     * the files are not changed and concurrent saves of the files do not fail.
+     * The statements bypass the entity manager, so the files are evicted from
+     * the metadata cache explicitly.
+     * </p>
+     *
+     * @param files the files with their new sizes.
+     */
+    public void updateSizes(List<FileEntity> files) {
+        jdbcTemplate.batchUpdate(UPDATE_SIZES, files, files.size(), (statement, file) -> {
+            statement.setObject(1, file.getSize());
+            statement.setObject(2, file.getStoredSize());
+            statement.setString(3, file.getId());
+        });
+        fileMetadataCache.invalidate(files.stream().map(FileEntity::getId).toList());
+    }
+
+    /**
+     * Deletes the files with a single JDBC batch.
+     * <p>
+     * The batch runs in one transaction, so either every file is deleted or none
+     * of them. The statements bypass the entity manager, so the files are
+     * evicted from the metadata cache explicitly, once the transaction has
+     * committed.
+     * </p>
+     *
+     * @param ids the ids of the files.
+     * @return the ids of the deleted files. A file deleted concurrently by
+     *         another request is not returned.
+     */
+    @Transactional
+    public List<String> deleteAllById(List<String> ids) {
+        int[][] counts = jdbcTemplate.batchUpdate(DELETE_FILE, ids, ids.size(),
+                (statement, id) -> statement.setString(1, id));
+        fileMetadataCache.invalidate(ids);
+
+        // Drivers rewriting the batch report SUCCESS_NO_INFO instead of the count.
+        List<String> deletedIds = new ArrayList<>(ids.size());
+        int index = 0;
+        for (int[] batchCounts : counts) {
+            for (int count : batchCounts) {
+                if (count != 0) {
+                    deletedIds.add(ids.get(index));
+                }
+                index++;
+            }
+        }
+        return deletedIds;
+    }
+
+    /**
+     * Increments the download counters of the files with a single JDBC batch.
+     * <p>
+     * Only the counter is written, so the version and the modification date of
+     * the files, which are used as cache validators, are not changed. The files
+     * are not evicted from the metadata cache either, the cached counters are
+     * refreshed when the entries expire.
+     * </p>
+     *
+     * @param downloadCounts the number of the new downloads by the file id.
+     */
+    public void incrementDownloadCounts(Map<String, Long> downloadCounts) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(downloadCounts.entrySet());
+        jdbcTemplate.batchUpdate(INCREMENT_DOWNLOAD_COUNT, entries, entries.size(), (statement, entry) -> {
+            statement.setLong(1, entry.getValue());
+            statement.setString(2, entry.getKey());
+        });
+    }
 }
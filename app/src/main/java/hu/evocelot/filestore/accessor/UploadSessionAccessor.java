@@ -0,0 +1,142 @@
+package hu.evocelot.filestore.accessor;
+
+import java.time.OffsetDateTime;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import hu.evocelot.filestore.model.UploadSession;
+import hu.evocelot.filestore.repository.UploadSessionRepository;
+
+/**
+ * Upload session accessor for managing the {@link UploadSession}.
+ * 
+ * @author mark.danisovszky
+ */
+@Service
+public class UploadSessionAccessor extends AbstractEntityAccessor<UploadSession> {
+
+    public UploadSessionAccessor(UploadSessionRepository uploadSessionRepository) {
+        this.uploadSessionRepository = uploadSessionRepository;
+    }
+
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Override
+    protected JpaRepository getRepository() {
+        return uploadSessionRepository;
+    }
+
+    /**
+     * Marks a chunk of the upload session as received.
+     * <p>
+     * The session row is locked for the duration of the update, so concurrent
+     * chunk uploads (even on different nodes) do not overwrite each other's
+     * progress.
+     * </p>
+     * 
+     * @param id          the id of the upload session.
+     * @param chunkNumber the number of the received chunk.
+     * @return the received chunks after the update, or an empty {@link Optional}
+     *         if the session does not exist.
+     */
+    @Transactional
+    public Optional<BitSet> markChunkReceived(String id, int chunkNumber) {
+        Optional<UploadSession> optionalSession = uploadSessionRepository.findByIdForUpdate(id);
+        if (optionalSession.isEmpty()) {
+            return Optional.empty();
+        }
+
+        UploadSession session = optionalSession.get();
+        BitSet receivedChunks = getReceivedChunks(session);
+        receivedChunks.set(chunkNumber);
+        session.setReceivedChunks(receivedChunks.toByteArray());
+        session.setModDate(OffsetDateTime.now());
+        save(session);
+
+        return Optional.of(receivedChunks);
+    }
+
+    /**
+     * Deletes the upload session if it still exists.
+     * <p>
+     * Unlike {@link #deleteById(String)}, the caller learns whether it has
+     * removed the session, so only one of the concurrent requests finishing the
+     * session releases its reserved storage.
+     * </p>
+     * 
+     * @param id the id of the upload session.
+     * @return {@code true} if the session has been deleted by this call.
+     */
+    @Transactional
+    public boolean deleteIfExists(String id) {
+        return uploadSessionRepository.deleteSessionById(id) > 0;
+    }
+
+    /**
+     * Deletes the upload session if it has not been modified since it was read.
+     * <p>
+     * A session whose completion has been claimed, or which has received a
+     * chunk in the meantime, is kept.
+     * </p>
+     * 
+     * @param session the upload session as it was read.
+     * @return {@code true} if the session has been deleted by this call.
+     */
+    @Transactional
+    public boolean deleteIfUnchanged(UploadSession session) {
+        return uploadSessionRepository.deleteSessionByIdAndVersion(session.getId(), session.getVersion()) > 0;
+    }
+
+    /**
+     * Claims the completion of the upload session for the file with the given
+     * ID. Only one of the concurrent requests completing the session succeeds.
+     * 
+     * @param id     the id of the upload session.
+     * @param fileId the ID of the file created by the completion.
+     * @return {@code true} if the completion has been claimed by this call.
+     */
+    @Transactional
+    public boolean claimCompletion(String id, String fileId) {
+        return uploadSessionRepository.claimCompletion(id, fileId, OffsetDateTime.now()) > 0;
+    }
+
+    /**
+     * Releases the claim of a failed completion, so the completion can be
+     * retried.
+     * 
+     * @param id     the id of the upload session.
+     * @param fileId the ID of the file the completion was claimed for.
+     */
+    @Transactional
+    public void releaseCompletion(String id, String fileId) {
+        uploadSessionRepository.releaseCompletion(id, fileId, OffsetDateTime.now());
+    }
+
+    /**
+     * Returns the upload sessions that have not been modified since the given
+     * time, oldest first.
+     * 
+     * @param threshold the time of the last accepted modification.
+     * @param limit     the maximum number of returned sessions.
+     * @return the list of the expired upload sessions.
+     */
+    public List<UploadSession> findExpired(OffsetDateTime threshold, int limit) {
+        return uploadSessionRepository.findByModDateBeforeOrderByModDateAsc(threshold, PageRequest.of(0, limit));
+    }
+
+    /**
+     * Returns the received chunks of the upload session.
+     * 
+     * @param session the upload session.
+     * @return the bit set of the received chunk numbers.
+     */
+    public BitSet getReceivedChunks(UploadSession session) {
+        return session.getReceivedChunks() != null ? BitSet.valueOf(session.getReceivedChunks()) : new BitSet();
+    }
+}
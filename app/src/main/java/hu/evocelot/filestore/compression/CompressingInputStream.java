@@ -0,0 +1,102 @@
+package hu.evocelot.filestore.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Input stream reading the compressed form of another input stream.
+ * <p>
+ * The storage backends consume the content of a file as an input stream, while
+ * the compressors are output streams. This stream pulls the source one buffer
+ * at a time through the compressor, so only the compressed output of a single
+ * buffer is held in memory.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+public class CompressingInputStream extends InputStream {
+
+    public CompressingInputStream(InputStream source, CompressionCodec compression, int bufferSize)
+            throws IOException {
+        this.source = source;
+        this.buffer = new byte[bufferSize];
+        this.compressor = compression.compress(pending);
+    }
+
+    private final InputStream source;
+    private final byte[] buffer;
+    private final PendingOutputStream pending = new PendingOutputStream();
+    private final OutputStream compressor;
+
+    private int position;
+    private boolean finished;
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        while (position == pending.size()) {
+            if (finished) {
+                return -1;
+            }
+
+            pending.reset();
+            position = 0;
+
+            int bytesRead = source.read(buffer);
+            if (bytesRead == -1) {
+                // Flushes the end of the compressed frame.
+                compressor.close();
+                finished = true;
+            } else {
+                compressor.write(buffer, 0, bytesRead);
+            }
+        }
+
+        int count = Math.min(len, pending.size() - position);
+        System.arraycopy(pending.getBuffer(), position, b, off, count);
+        position += count;
+
+        return count;
+    }
+
+    /**
+     * Closes the source and, if the stream has not been read to its end, the
+     * compressor, so the native context of the codec is released without waiting
+     * for the garbage collector.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!finished) {
+                finished = true;
+                compressor.close();
+            }
+        } finally {
+            // The end of the frame written by the close is discarded.
+            pending.reset();
+            position = 0;
+            source.close();
+        }
+    }
+
+    /**
+     * Exposes the internal buffer, so the compressed bytes are not copied twice.
+     */
+    private static final class PendingOutputStream extends ByteArrayOutputStream {
+
+        private byte[] getBuffer() {
+            return buf;
+        }
+    }
+}
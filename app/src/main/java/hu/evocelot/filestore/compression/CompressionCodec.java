@@ -0,0 +1,121 @@
+package hu.evocelot.filestore.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+/**
+ * The compression applied to the stored content of a file.
+ *
+ * @author mark.danisovszky
+ */
+public enum CompressionCodec {
+
+    /**
+     * The content is stored as it was uploaded.
+     */
+    NONE(null) {
+        @Override
+        public OutputStream compress(OutputStream outputStream) {
+            return outputStream;
+        }
+
+        @Override
+        public InputStream decompress(InputStream inputStream) {
+            return inputStream;
+        }
+    },
+
+    /**
+     * Zstandard frame format. It is a registered HTTP content coding, so the
+     * stored content can be sent as it is to clients accepting it.
+     */
+    ZSTD("zstd") {
+        @Override
+        public OutputStream compress(OutputStream outputStream) throws IOException {
+            return new ZstdOutputStream(outputStream, ZSTD_LEVEL);
+        }
+
+        @Override
+        public InputStream decompress(InputStream inputStream) throws IOException {
+            return new ZstdInputStream(inputStream);
+        }
+    },
+
+    /**
+     * LZ4 frame format. It compresses less than Zstandard, but costs less CPU.
+     */
+    LZ4(null) {
+        @Override
+        public OutputStream compress(OutputStream outputStream) throws IOException {
+            return new LZ4FrameOutputStream(outputStream);
+        }
+
+        @Override
+        public InputStream decompress(InputStream inputStream) throws IOException {
+            return new LZ4FrameInputStream(inputStream);
+        }
+    };
+
+    private static final int ZSTD_LEVEL = 3;
+
+    private final String contentEncoding;
+
+    CompressionCodec(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * Returns the HTTP content coding of the compressed content.
+     *
+     * @return the {@code Content-Encoding} value, or {@code null} if the format
+     *         has no registered content coding.
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * Wraps the output stream, so the bytes written to the returned stream are
+     * compressed into it. Closing the returned stream finishes the compressed
+     * frame.
+     *
+     * @param outputStream the stream receiving the compressed content.
+     * @return the stream accepting the uncompressed content.
+     * @throws IOException if the compressor cannot be created.
+     */
+    public abstract OutputStream compress(OutputStream outputStream) throws IOException;
+
+    /**
+     * Wraps the input stream, so the returned stream reads the decompressed
+     * content.
+     *
+     * @param inputStream the stream of the compressed content.
+     * @return the stream of the decompressed content.
+     * @throws IOException if the decompressor cannot be created.
+     */
+    public abstract InputStream decompress(InputStream inputStream) throws IOException;
+
+    /**
+     * Returns the codec with the given case insensitive name.
+     *
+     * @param name the name of the codec, e.g. {@code zstd}.
+     * @return the codec, or {@link #NONE} if the name is blank.
+     * @throws IllegalArgumentException if there is no codec with the name.
+     */
+    public static CompressionCodec fromName(String name) {
+        if (StringUtils.isBlank(name)) {
+            return NONE;
+        }
+
+        return valueOf(name.trim().toUpperCase());
+    }
+}
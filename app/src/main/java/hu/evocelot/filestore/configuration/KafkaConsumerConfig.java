@@ -0,0 +1,72 @@
+package hu.evocelot.filestore.configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+
+import hu.evocelot.filestore.properties.KafkaProperties;
+
+/**
+ * Configuration class responsible for creating the Kafka consumer beans used
+ * by the listeners of the module.
+ * <p>
+ * The listeners of the module broadcast local state changes (e.g. the eviction
+ * of the metadata cache), so every instance has to receive every message.
+ * Each instance therefore joins its own consumer group, starts from the latest
+ * offset and does not commit its offsets.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+@Configuration
+@ConditionalOnProperty(name = "kafka.enabled", havingValue = "true", matchIfMissing = false)
+public class KafkaConsumerConfig {
+
+    public KafkaConsumerConfig(KafkaProperties kafkaProperties) {
+        this.kafkaProperties = kafkaProperties;
+    }
+
+    private KafkaProperties kafkaProperties;
+
+    /**
+     * Creates a {@link ConsumerFactory} bean joining a consumer group of its
+     * own.
+     *
+     * @return a configured {@link ConsumerFactory} instance.
+     */
+    @Bean
+    public ConsumerFactory<String, String> consumerFactory() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaProperties.getUrl());
+        configProps.put(ConsumerConfig.GROUP_ID_CONFIG, kafkaProperties.getGroupId() + "-" + UUID.randomUUID());
+        configProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        configProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        configProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        configProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+
+        return new DefaultKafkaConsumerFactory<>(configProps);
+    }
+
+    /**
+     * Creates the container factory of the {@code @KafkaListener} methods.
+     *
+     * @return a configured {@link ConcurrentKafkaListenerContainerFactory}
+     *         instance.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        return factory;
+    }
+}
@@ -0,0 +1,15 @@
+package hu.evocelot.filestore.configuration;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables the periodic maintenance tasks of the application, such as the
+ * cleanup of the staging directory.
+ *
+ * @author mark.danisovszky
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
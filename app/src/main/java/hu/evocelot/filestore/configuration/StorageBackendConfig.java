@@ -0,0 +1,65 @@
+package hu.evocelot.filestore.configuration;
+
+import java.net.URI;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import hu.evocelot.filestore.properties.S3Properties;
+import hu.evocelot.filestore.storage.LocalStorageBackend;
+import hu.evocelot.filestore.storage.S3StorageBackend;
+import hu.evocelot.filestore.storage.StorageBackend;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+
+/**
+ * Configuration class for selecting the {@link StorageBackend} with the
+ * {@code filestore.storage-backend} property.
+ *
+ * @author mark.danisovszky
+ */
+@Configuration
+public class StorageBackendConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "filestore.storage-backend", havingValue = "local", matchIfMissing = true)
+    StorageBackend localStorageBackend(FileStoreProperties fileStoreProperties) {
+        return new LocalStorageBackend(fileStoreProperties);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(name = "filestore.storage-backend", havingValue = "s3")
+    StorageBackend s3StorageBackend(S3Client s3Client, S3Properties s3Properties,
+            FileStoreProperties fileStoreProperties) {
+        return new S3StorageBackend(s3Client, s3Properties, fileStoreProperties);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "filestore.storage-backend", havingValue = "s3")
+    S3Client s3Client(S3Properties s3Properties) {
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(s3Properties.getRegion()))
+                .forcePathStyle(s3Properties.isPathStyleAccess());
+
+        if (StringUtils.isNotBlank(s3Properties.getEndpoint())) {
+            // Custom endpoint of an S3-compatible store, e.g. MinIO.
+            builder.endpointOverride(URI.create(s3Properties.getEndpoint()));
+        }
+
+        if (StringUtils.isNotBlank(s3Properties.getAccessKey())) {
+            builder.credentialsProvider(StaticCredentialsProvider
+                    .create(AwsBasicCredentials.create(s3Properties.getAccessKey(), s3Properties.getSecretKey())));
+        } else {
+            builder.credentialsProvider(DefaultCredentialsProvider.create());
+        }
+
+        return builder.build();
+    }
+}
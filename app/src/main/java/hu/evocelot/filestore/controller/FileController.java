@@ -1,8 +1,11 @@
 package hu.evocelot.filestore.controller;
 
+import java.util.List;
+
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -16,22 +19,34 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import hu.evocelot.filestore.dto.ChunkedUploadRequestDto;
+import hu.evocelot.filestore.dto.ChunkedUploadStatusDto;
+import hu.evocelot.filestore.dto.DownloadUrlDto;
+import hu.evocelot.filestore.dto.FileDeleteResultDto;
+import hu.evocelot.filestore.dto.FileDetailsBatchDto;
 import hu.evocelot.filestore.dto.FileEntityWithIdDto;
+import hu.evocelot.filestore.dto.FileIdsRequestDto;
 import hu.evocelot.filestore.dto.FileStorageLimitRequestDto;
 import hu.evocelot.filestore.dto.FileStorageUsageDto;
 import hu.evocelot.filestore.dto.FileUploadRequestDto;
+import hu.evocelot.filestore.dto.JobDto;
 import hu.evocelot.filestore.dto.PasswordDto;
+import hu.evocelot.filestore.dto.StorageLayoutMigrationStatusDto;
+import hu.evocelot.filestore.job.JobType;
+import hu.evocelot.filestore.service.ChunkedUploadService;
 import hu.evocelot.filestore.service.DeleteFileService;
 import hu.evocelot.filestore.service.DownloadFileService;
 import hu.evocelot.filestore.service.GetFileDetailsService;
 import hu.evocelot.filestore.service.GetFileStorageUsageService;
+import hu.evocelot.filestore.service.JobService;
 import hu.evocelot.filestore.service.ListFileDetailsService;
-import hu.evocelot.filestore.service.RecalculateFileSizesService;
-import hu.evocelot.filestore.service.RecalculateUsedStorageService;
 import hu.evocelot.filestore.service.SetFileStorageLimitService;
+import hu.evocelot.filestore.service.StorageLayoutMigrationService;
+import hu.evocelot.filestore.service.StreamingUploadFileService;
 import hu.evocelot.filestore.service.UploadFileService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import jakarta.servlet.http.HttpServletRequest;
 
 /**
  * REST controller responsible for managing file-related operations.
@@ -46,19 +61,22 @@ public class FileController {
 
 	public FileController(UploadFileService uploadFileService, GetFileDetailsService getFileDetailsService,
 			DownloadFileService downloadFileService, DeleteFileService deleteFileService,
-			ListFileDetailsService listFileDetailsService, RecalculateFileSizesService recalculateFileSizesService,
+			ListFileDetailsService listFileDetailsService, JobService jobService,
 			GetFileStorageUsageService getFileStorageUsageService,
 			SetFileStorageLimitService setFileStorageLimitService,
-			RecalculateUsedStorageService recalculateUsedStorageService) {
+			StreamingUploadFileService streamingUploadFileService, ChunkedUploadService chunkedUploadService,
+			StorageLayoutMigrationService storageLayoutMigrationService) {
 		this.uploadFileService = uploadFileService;
 		this.getFileDetailsService = getFileDetailsService;
 		this.downloadFileService = downloadFileService;
 		this.deleteFileService = deleteFileService;
 		this.listFileDetailsService = listFileDetailsService;
-		this.recalculateFileSizesService = recalculateFileSizesService;
+		this.jobService = jobService;
 		this.getFileStorageUsageService = getFileStorageUsageService;
 		this.setFileStorageLimitService = setFileStorageLimitService;
-		this.recalculateUsedStorageService = recalculateUsedStorageService;
+		this.streamingUploadFileService = streamingUploadFileService;
+		this.chunkedUploadService = chunkedUploadService;
+		this.storageLayoutMigrationService = storageLayoutMigrationService;
 	}
 
 	private final UploadFileService uploadFileService;
@@ -66,10 +84,12 @@ public class FileController {
 	private final DownloadFileService downloadFileService;
 	private final DeleteFileService deleteFileService;
 	private final ListFileDetailsService listFileDetailsService;
-	private final RecalculateFileSizesService recalculateFileSizesService;
+	private final JobService jobService;
 	private final GetFileStorageUsageService getFileStorageUsageService;
 	private final SetFileStorageLimitService setFileStorageLimitService;
-	private final RecalculateUsedStorageService recalculateUsedStorageService;
+	private final StreamingUploadFileService streamingUploadFileService;
+	private final ChunkedUploadService chunkedUploadService;
+	private final StorageLayoutMigrationService storageLayoutMigrationService;
 
 	/**
 	 * Handles file upload requests.
@@ -91,6 +111,119 @@ public class FileController {
 		return uploadFileService.uploadFile(fileUploadRequestDto);
 	}
 
+	/**
+	 * Handles streamed file upload requests.
+	 * <p>
+	 * This endpoint accepts the same multipart form-data fields as
+	 * {@code /upload}, but parses the body incrementally and writes the file
+	 * straight to the store without a temporary copy. The metadata fields must
+	 * precede the file part, and the size of the file is not limited by the
+	 * multipart configuration.
+	 * </p>
+	 * 
+	 * @param request the multipart HTTP request.
+	 * @return {@link ResponseEntity} containing the uploaded file's metadata in the
+	 *         body.
+	 * @throws Exception If an error occurs during file upload.
+	 */
+	@PostMapping(path = "/upload/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+	@Operation(summary = FileControllerInformation.UPLOAD_FILE_STREAM_SUMMARY, description = FileControllerInformation.UPLOAD_FILE_STREAM_DESCRIPTION)
+	public ResponseEntity<FileEntityWithIdDto> uploadFileStream(HttpServletRequest request) throws Exception {
+		return streamingUploadFileService.uploadFile(request);
+	}
+
+	/**
+	 * Initiates a resumable chunked upload.
+	 * <p>
+	 * The storage limit is reserved for the whole file and an upload session is
+	 * created. The chunks can then be uploaded in any order and retried
+	 * independently.
+	 * </p>
+	 * 
+	 * @param chunkedUploadRequestDto DTO containing the file metadata and the chunk
+	 *                                layout.
+	 * @return {@link ResponseEntity} containing the status of the upload session.
+	 * @throws Exception If an error occurs while initiating the upload.
+	 */
+	@PostMapping(path = "/upload/chunked", consumes = MediaType.APPLICATION_JSON_VALUE)
+	@Operation(summary = FileControllerInformation.INITIATE_CHUNKED_UPLOAD_SUMMARY, description = FileControllerInformation.INITIATE_CHUNKED_UPLOAD_DESCRIPTION)
+	public ResponseEntity<ChunkedUploadStatusDto> initiateChunkedUpload(
+			@RequestBody ChunkedUploadRequestDto chunkedUploadRequestDto) throws Exception {
+		return chunkedUploadService.initiateUpload(chunkedUploadRequestDto);
+	}
+
+	/**
+	 * Uploads a chunk of a chunked upload.
+	 * <p>
+	 * The raw request body is written at the offset of the chunk. Every chunk must
+	 * have the exact chunk size, except the last one.
+	 * </p>
+	 * 
+	 * @param uploadId    The id of the upload session.
+	 * @param chunkNumber The zero-based number of the chunk.
+	 * @param request     The HTTP request containing the chunk.
+	 * @return {@link ResponseEntity} containing the status of the upload session.
+	 * @throws Exception If an error occurs while storing the chunk.
+	 */
+	@PutMapping(path = "/upload/chunked", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+	@Operation(summary = FileControllerInformation.UPLOAD_CHUNK_SUMMARY, description = FileControllerInformation.UPLOAD_CHUNK_DESCRIPTION)
+	public ResponseEntity<ChunkedUploadStatusDto> uploadChunk(
+			@Parameter(description = FileControllerInformation.UPLOAD_ID_PARAM_DESCRIPTION, required = true) @RequestParam String uploadId,
+			@Parameter(description = FileControllerInformation.CHUNK_NUMBER_PARAM_DESCRIPTION, required = true) @RequestParam int chunkNumber,
+			HttpServletRequest request) throws Exception {
+		return chunkedUploadService.uploadChunk(uploadId, chunkNumber, request.getInputStream());
+	}
+
+	/**
+	 * Retrieves the status of a chunked upload.
+	 * 
+	 * @param uploadId The id of the upload session.
+	 * @return {@link ResponseEntity} containing the received byte ranges and the
+	 *         missing chunks.
+	 * @throws Exception If the upload session does not exist.
+	 */
+	@GetMapping("/upload/chunked")
+	@Operation(summary = FileControllerInformation.GET_CHUNKED_UPLOAD_STATUS_SUMMARY, description = FileControllerInformation.GET_CHUNKED_UPLOAD_STATUS_DESCRIPTION)
+	public ResponseEntity<ChunkedUploadStatusDto> getChunkedUploadStatus(
+			@Parameter(description = FileControllerInformation.UPLOAD_ID_PARAM_DESCRIPTION, required = true) @RequestParam String uploadId)
+			throws Exception {
+		return chunkedUploadService.getStatus(uploadId);
+	}
+
+	/**
+	 * Completes a chunked upload.
+	 * <p>
+	 * The file becomes available only after all chunks have been received.
+	 * </p>
+	 * 
+	 * @param uploadId The id of the upload session.
+	 * @return {@link ResponseEntity} containing the uploaded file's metadata in the
+	 *         body.
+	 * @throws Exception If chunks are missing or the file cannot be stored.
+	 */
+	@PostMapping("/upload/chunked/complete")
+	@Operation(summary = FileControllerInformation.COMPLETE_CHUNKED_UPLOAD_SUMMARY, description = FileControllerInformation.COMPLETE_CHUNKED_UPLOAD_DESCRIPTION)
+	public ResponseEntity<FileEntityWithIdDto> completeChunkedUpload(
+			@Parameter(description = FileControllerInformation.UPLOAD_ID_PARAM_DESCRIPTION, required = true) @RequestParam String uploadId)
+			throws Exception {
+		return chunkedUploadService.completeUpload(uploadId);
+	}
+
+	/**
+	 * Aborts a chunked upload and deletes the received chunks.
+	 * 
+	 * @param uploadId The id of the upload session.
+	 * @return {@link ResponseEntity} with HTTP 204 (No Content) status.
+	 * @throws Exception If the upload session does not exist.
+	 */
+	@DeleteMapping("/upload/chunked")
+	@Operation(summary = FileControllerInformation.ABORT_CHUNKED_UPLOAD_SUMMARY, description = FileControllerInformation.ABORT_CHUNKED_UPLOAD_DESCRIPTION)
+	public ResponseEntity<Void> abortChunkedUpload(
+			@Parameter(description = FileControllerInformation.UPLOAD_ID_PARAM_DESCRIPTION, required = true) @RequestParam String uploadId)
+			throws Exception {
+		return chunkedUploadService.abortUpload(uploadId);
+	}
+
 	/**
 	 * Retrieves metadata details of a file.
 	 * <p>
@@ -110,6 +243,25 @@ public class FileController {
 		return getFileDetailsService.getFileDetails(fileId);
 	}
 
+	/**
+	 * Retrieves metadata details of a batch of files.
+	 * <p>
+	 * This endpoint allows clients to fetch the details of several files with a
+	 * single request and a single database query.
+	 * </p>
+	 * 
+	 * @param fileIdsRequestDto The ids of the files.
+	 * @return {@link ResponseEntity} containing the metadata of the existing files
+	 *         and the missing ids.
+	 * @throws Exception If the request has no file id or too many.
+	 */
+	@PostMapping("/batch-get")
+	@Operation(summary = FileControllerInformation.GET_FILE_DETAILS_BATCH_SUMMARY, description = FileControllerInformation.GET_FILE_DETAILS_BATCH_DESCRIPTION)
+	public ResponseEntity<FileDetailsBatchDto> getFileDetailsBatch(@RequestBody FileIdsRequestDto fileIdsRequestDto)
+			throws Exception {
+		return getFileDetailsService.getFileDetails(fileIdsRequestDto);
+	}
+
 	/**
 	 * Retrieves a paginated list of file metadata associated with a given object.
 	 * <p>
@@ -143,7 +295,7 @@ public class FileController {
 	 * This endpoint allows clients to download a file by sending the file id.
 	 * 
 	 * @param fileId    - the id of the file.
-	 * @param checkHash - if true, we will check the MD5 hash of the file content.
+	 * @param checkHash - if true, we will check the hash of the file content.
 	 * @return {@link ResponseEntity} containing the downloadable file stream.
 	 * @throws Exception when error occurs.
 	 */
@@ -152,9 +304,10 @@ public class FileController {
 	public ResponseEntity<StreamingResponseBody> downloadFile(
 			@Parameter(description = FileControllerInformation.FILE_ID_PARAM_DESCRIPTION, required = true) @RequestParam String fileId,
 			@Parameter(description = FileControllerInformation.CHECK_HASH_PARAM_DESCRIPTION, required = true) @RequestParam boolean checkHash,
-			@Parameter(description = "...", required = false) @RequestParam(defaultValue = "false") boolean preview)
+			@Parameter(description = "...", required = false) @RequestParam(defaultValue = "false") boolean preview,
+			HttpServletRequest request)
 			throws Exception {
-		return downloadFileService.downloadFile(fileId, checkHash, null, preview);
+		return downloadFileService.downloadFile(fileId, checkHash, null, preview, request);
 	}
 
 	/**
@@ -163,7 +316,7 @@ public class FileController {
 	 * This endpoint allows clients to download a file by sending the file id.
 	 * 
 	 * @param fileId    - the id of the file.
-	 * @param checkHash - if true, we will check the MD5 hash of the file content.
+	 * @param checkHash - if true, we will check the hash of the file content.
 	 * @return {@link ResponseEntity} containing the downloadable file stream.
 	 * @throws Exception when error occurs.
 	 */
@@ -172,10 +325,46 @@ public class FileController {
 	public ResponseEntity<StreamingResponseBody> downloadProtectedFile(
 			@Parameter(description = FileControllerInformation.FILE_ID_PARAM_DESCRIPTION, required = true) @RequestParam String fileId,
 			@Parameter(description = FileControllerInformation.CHECK_HASH_PARAM_DESCRIPTION, required = true) @RequestParam boolean checkHash,
+			PasswordDto passwordDto, HttpServletRequest request)
+
+			throws Exception {
+		return downloadFileService.downloadFile(fileId, checkHash, passwordDto, false, request);
+	}
+
+	/**
+	 * Creates a pre-signed download URL of a file.
+	 * <p>
+	 * The URL can be downloaded without the password until it expires, and is
+	 * served without reading the database.
+	 * 
+	 * @param fileId      - the id of the file.
+	 * @param passwordDto - the password of the file, if it is protected.
+	 * @return {@link ResponseEntity} containing the URL and its expiry.
+	 * @throws Exception when error occurs.
+	 */
+	@PostMapping("/download-url")
+	@Operation(summary = FileControllerInformation.CREATE_DOWNLOAD_URL_SUMMARY, description = FileControllerInformation.CREATE_DOWNLOAD_URL_DESCRIPTION)
+	public ResponseEntity<DownloadUrlDto> createDownloadUrl(
+			@Parameter(description = FileControllerInformation.FILE_ID_PARAM_DESCRIPTION, required = true) @RequestParam String fileId,
 			PasswordDto passwordDto)
+			throws Exception {
+		return downloadFileService.createDownloadUrl(fileId, passwordDto);
+	}
 
+	/**
+	 * Handles pre-signed file download requests.
+	 * 
+	 * @param token - the signed token of the URL.
+	 * @return {@link ResponseEntity} containing the downloadable file stream.
+	 * @throws Exception when the token is invalid or expired, or error occurs.
+	 */
+	@GetMapping("/download/signed")
+	@Operation(summary = FileControllerInformation.DOWNLOAD_SIGNED_FILE_SUMMARY, description = FileControllerInformation.DOWNLOAD_SIGNED_FILE_DESCRIPTION)
+	public ResponseEntity<StreamingResponseBody> downloadSignedFile(
+			@Parameter(description = FileControllerInformation.DOWNLOAD_TOKEN_PARAM_DESCRIPTION, required = true) @RequestParam String token,
+			HttpServletRequest request)
 			throws Exception {
-		return downloadFileService.downloadFile(fileId, checkHash, passwordDto, false);
+		return downloadFileService.downloadSignedFile(token, request);
 	}
 
 	/**
@@ -200,12 +389,29 @@ public class FileController {
 	}
 
 	/**
-	 * Recalculates the size of all stored files and updates the database.
+	 * Deletes a batch of files and their metadata.
 	 * <p>
-	 * This endpoint iterates through all file metadata entries in a paginated
-	 * manner, reads the corresponding files from the storage, and recalculates
-	 * their sizes in bytes. The recalculated size is then persisted in the
-	 * database.
+	 * Ids without a file do not fail the request, the response contains the
+	 * result of every id.
+	 * </p>
+	 * 
+	 * @param fileIdsRequestDto The ids of the files.
+	 * @return {@link ResponseEntity} containing the result of every id.
+	 * @throws Exception If the request has no file id or too many.
+	 */
+	@PostMapping("/batch-delete")
+	@Operation(summary = FileControllerInformation.DELETE_FILES_BATCH_SUMMARY, description = FileControllerInformation.DELETE_FILES_BATCH_DESCRIPTION)
+	public ResponseEntity<List<FileDeleteResultDto>> deleteFiles(@RequestBody FileIdsRequestDto fileIdsRequestDto)
+			throws Exception {
+		return deleteFileService.deleteFiles(fileIdsRequestDto);
+	}
+
+	/**
+	 * Submits a background job recalculating the size of all stored files.
+	 * <p>
+	 * The file metadata is walked in id order, the sizes of the corresponding
+	 * files are read from the storage in parallel, and only the changed sizes are
+	 * persisted in the database with batched updates.
 	 * </p>
 	 *
 	 * <h3>Use cases:</h3>
@@ -214,24 +420,87 @@ public class FileController {
 	 * <li>Repair inconsistent or missing file size values.</li>
 	 * </ul>
 	 *
-	 * @return {@link ResponseEntity} with HTTP 200 status when the process is
-	 *         started/completed.
-	 * @throws Exception if an unexpected error occurs during processing.
+	 * @return {@link ResponseEntity} with HTTP 202 status containing the submitted
+	 *         job.
+	 * @throws Exception if a recalculation is already running.
 	 */
 	@PostMapping("/recalculate-all-file-sizes")
 	@Operation(summary = FileControllerInformation.RECALCULATE_ALL_FILE_SIZES_SUMMARY, description = FileControllerInformation.RECALCULATE_ALL_FILE_SIZES_DESCRIPTION)
-	public ResponseEntity<Void> recalculateAllFileSizes() throws Exception {
-		recalculateFileSizesService.recalculateAll();
-		return ResponseEntity.ok().build();
+	public ResponseEntity<JobDto> recalculateAllFileSizes() throws Exception {
+		return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobService.submit(JobType.FILE_SIZE_RECALCULATION));
 	}
 
+	/**
+	 * Submits a background job recalculating the used storage of all storage
+	 * limits from the file sizes in the database.
+	 *
+	 * @return {@link ResponseEntity} with HTTP 202 status containing the submitted
+	 *         job.
+	 * @throws Exception if a recalculation is already running.
+	 */
 	@PostMapping("/recalculate-all-used-storage")
 	@Operation(summary = FileControllerInformation.RECALCULATE_ALL_USED_STORAGE_SUMMARY, description = FileControllerInformation.RECALCULATE_ALL_USED_STORAGE_DESCRIPTION)
-	public ResponseEntity<Void> recalculateAllUsedStorage() throws Exception {
+	public ResponseEntity<JobDto> recalculateAllUsedStorage() throws Exception {
+		return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobService.submit(JobType.USED_STORAGE_RECALCULATION));
+	}
 
-		recalculateUsedStorageService.recalculateAll();
+	/**
+	 * Retrieves the state and the progress of a background job.
+	 *
+	 * @param jobId The unique identifier of the job.
+	 * @return {@link ResponseEntity} containing the state of the job.
+	 * @throws Exception if the job does not exist.
+	 */
+	@GetMapping("/job")
+	@Operation(summary = FileControllerInformation.GET_JOB_SUMMARY, description = FileControllerInformation.GET_JOB_DESCRIPTION)
+	public ResponseEntity<JobDto> getJob(
+			@Parameter(description = FileControllerInformation.JOB_ID_PARAM_DESCRIPTION, required = true) @RequestParam String jobId)
+			throws Exception {
+		return ResponseEntity.ok(jobService.getJob(jobId));
+	}
 
-		return ResponseEntity.ok().build();
+	/**
+	 * Cancels a queued or running background job.
+	 *
+	 * @param jobId The unique identifier of the job.
+	 * @return {@link ResponseEntity} containing the state of the cancelled job.
+	 * @throws Exception if the job does not exist or has already finished.
+	 */
+	@DeleteMapping("/job")
+	@Operation(summary = FileControllerInformation.CANCEL_JOB_SUMMARY, description = FileControllerInformation.CANCEL_JOB_DESCRIPTION)
+	public ResponseEntity<JobDto> cancelJob(
+			@Parameter(description = FileControllerInformation.JOB_ID_PARAM_DESCRIPTION, required = true) @RequestParam String jobId)
+			throws Exception {
+		return ResponseEntity.ok(jobService.cancel(jobId));
+	}
+
+	/**
+	 * Starts moving the stored files into the sharded directory layout.
+	 * <p>
+	 * The migration runs in the background; files remain downloadable from both
+	 * layouts while it is in progress.
+	 * </p>
+	 *
+	 * @return {@link ResponseEntity} with HTTP 202 status containing the progress
+	 *         of the migration.
+	 * @throws Exception if sharding is disabled or a migration is already running.
+	 */
+	@PostMapping("/storage-layout-migration")
+	@Operation(summary = FileControllerInformation.START_STORAGE_LAYOUT_MIGRATION_SUMMARY, description = FileControllerInformation.START_STORAGE_LAYOUT_MIGRATION_DESCRIPTION)
+	public ResponseEntity<StorageLayoutMigrationStatusDto> startStorageLayoutMigration() throws Exception {
+		return ResponseEntity.status(HttpStatus.ACCEPTED).body(storageLayoutMigrationService.start());
+	}
+
+	/**
+	 * Retrieves the progress of the storage layout migration.
+	 *
+	 * @return {@link ResponseEntity} containing the progress of the current or the
+	 *         last migration.
+	 */
+	@GetMapping("/storage-layout-migration")
+	@Operation(summary = FileControllerInformation.GET_STORAGE_LAYOUT_MIGRATION_SUMMARY, description = FileControllerInformation.GET_STORAGE_LAYOUT_MIGRATION_DESCRIPTION)
+	public ResponseEntity<StorageLayoutMigrationStatusDto> getStorageLayoutMigration() {
+		return ResponseEntity.ok(storageLayoutMigrationService.getStatus());
 	}
 
 	/**
@@ -17,6 +17,66 @@ public class FileControllerInformation {
      */
     public static final String UPLOAD_FILE_DESCRIPTION = "Endpoint for uploading a file.";
 
+    /**
+     * {@value}.
+     */
+    public static final String UPLOAD_FILE_STREAM_SUMMARY = "Upload file as a stream";
+
+    /**
+     * {@value}.
+     */
+    public static final String UPLOAD_FILE_STREAM_DESCRIPTION = "Endpoint for uploading a file without temporary spooling. Accepts the same multipart fields as the upload endpoint plus an optional size field; the metadata fields must precede the file part.";
+
+    /**
+     * {@value}.
+     */
+    public static final String INITIATE_CHUNKED_UPLOAD_SUMMARY = "Initiate chunked upload";
+
+    /**
+     * {@value}.
+     */
+    public static final String INITIATE_CHUNKED_UPLOAD_DESCRIPTION = "Endpoint for starting a resumable chunked upload. Reserves the storage for the whole file and returns the upload id.";
+
+    /**
+     * {@value}.
+     */
+    public static final String UPLOAD_CHUNK_SUMMARY = "Upload chunk";
+
+    /**
+     * {@value}.
+     */
+    public static final String UPLOAD_CHUNK_DESCRIPTION = "Endpoint for uploading a single chunk of a chunked upload as the raw request body. Chunks can be sent in any order and retried.";
+
+    /**
+     * {@value}.
+     */
+    public static final String GET_CHUNKED_UPLOAD_STATUS_SUMMARY = "Get chunked upload status";
+
+    /**
+     * {@value}.
+     */
+    public static final String GET_CHUNKED_UPLOAD_STATUS_DESCRIPTION = "Endpoint for retrieving the received byte ranges and the missing chunks of a chunked upload.";
+
+    /**
+     * {@value}.
+     */
+    public static final String COMPLETE_CHUNKED_UPLOAD_SUMMARY = "Complete chunked upload";
+
+    /**
+     * {@value}.
+     */
+    public static final String COMPLETE_CHUNKED_UPLOAD_DESCRIPTION = "Endpoint for completing a chunked upload after all chunks have been received.";
+
+    /**
+     * {@value}.
+     */
+    public static final String ABORT_CHUNKED_UPLOAD_SUMMARY = "Abort chunked upload";
+
+    /**
+     * {@value}.
+     */
+    public static final String ABORT_CHUNKED_UPLOAD_DESCRIPTION = "Endpoint for aborting a chunked upload and deleting the received chunks.";
+
     /**
      * {@value}.
      */
@@ -37,6 +97,26 @@ public class FileControllerInformation {
      */
     public static final String GET_FILE_DETAILS_LIST_DESCRIPTION = "Endpoint for listing the file details.";
 
+    /**
+     * {@value}.
+     */
+    public static final String GET_FILE_DETAILS_BATCH_SUMMARY = "Get file details in batch";
+
+    /**
+     * {@value}.
+     */
+    public static final String GET_FILE_DETAILS_BATCH_DESCRIPTION = "Endpoint for retrieving the metadata of several files with one request. The ids without a file are listed in the response.";
+
+    /**
+     * {@value}.
+     */
+    public static final String DELETE_FILES_BATCH_SUMMARY = "Delete files in batch";
+
+    /**
+     * {@value}.
+     */
+    public static final String DELETE_FILES_BATCH_DESCRIPTION = "Endpoint for deleting several files with one request. The response contains the result of every id.";
+
     /**
      * {@value}.
      */
@@ -57,6 +137,26 @@ public class FileControllerInformation {
      */
     public static final String DOWNLOAD_SECURE_FILE_DESCRIPTION = "Endpoint for downloading a secure file.";
 
+    /**
+     * {@value}.
+     */
+    public static final String CREATE_DOWNLOAD_URL_SUMMARY = "Create pre-signed download URL";
+
+    /**
+     * {@value}.
+     */
+    public static final String CREATE_DOWNLOAD_URL_DESCRIPTION = "Endpoint for creating an expiring URL that downloads the file without further authentication. The password of a protected file is checked once, when the URL is created.";
+
+    /**
+     * {@value}.
+     */
+    public static final String DOWNLOAD_SIGNED_FILE_SUMMARY = "Download file with pre-signed URL";
+
+    /**
+     * {@value}.
+     */
+    public static final String DOWNLOAD_SIGNED_FILE_DESCRIPTION = "Endpoint for downloading a file with a pre-signed URL. The file is served from the signed metadata without reading the database.";
+
     /**
      * {@value}.
      */
@@ -72,11 +172,31 @@ public class FileControllerInformation {
      */
     public static final String FILE_ID_PARAM_DESCRIPTION = "The id of the file";
 
+    /**
+     * {@value}.
+     */
+    public static final String DOWNLOAD_TOKEN_PARAM_DESCRIPTION = "The signed token of the pre-signed download URL";
+
     /**
      * {@value}.
      */
     public static final String CHECK_HASH_PARAM_DESCRIPTION = "If set to true, the file's content will be examined during download. If the content has changed, the download will not be allowed.";
 
+    /**
+     * {@value}.
+     */
+    public static final String UPLOAD_ID_PARAM_DESCRIPTION = "The id of the chunked upload session";
+
+    /**
+     * {@value}.
+     */
+    public static final String CHUNK_NUMBER_PARAM_DESCRIPTION = "The zero-based number of the chunk";
+
+    /**
+     * {@value}.
+     */
+    public static final String JOB_ID_PARAM_DESCRIPTION = "The id of the background job";
+
     /**
      * {@value}.
      */
@@ -85,7 +205,7 @@ public class FileControllerInformation {
     /**
      * {@value}.
      */
-    public static final String RECALCULATE_ALL_FILE_SIZES_DESCRIPTION = "Recalculates the size of all stored files and updates the database in a memory- and CPU-efficient way using paginated processing.";
+    public static final String RECALCULATE_ALL_FILE_SIZES_DESCRIPTION = "Submits a background job recalculating the size of all stored files. The sizes are read in parallel and only the changed rows are updated. The progress of the job can be followed with the returned job id.";
 
     /**
      * {@value}.
@@ -105,5 +225,45 @@ public class FileControllerInformation {
     /**
      * {@value}.
      */
-    public static final String RECALCULATE_ALL_USED_STORAGE_DESCRIPTION = "Recalculate all used storage for all objectIds based on the actual file sizes in the database.";
+    public static final String RECALCULATE_ALL_USED_STORAGE_DESCRIPTION = "Submits a background job recalculating the used storage of all storage limits based on the actual file sizes in the database. The progress of the job can be followed with the returned job id.";
+
+    /**
+     * {@value}.
+     */
+    public static final String GET_JOB_SUMMARY = "Get background job";
+
+    /**
+     * {@value}.
+     */
+    public static final String GET_JOB_DESCRIPTION = "Returns the state, the progress and the throughput of a background job.";
+
+    /**
+     * {@value}.
+     */
+    public static final String CANCEL_JOB_SUMMARY = "Cancel background job";
+
+    /**
+     * {@value}.
+     */
+    public static final String CANCEL_JOB_DESCRIPTION = "Cancels a queued or running background job. A running job stops after its current batch.";
+
+    /**
+     * {@value}.
+     */
+    public static final String START_STORAGE_LAYOUT_MIGRATION_SUMMARY = "Start storage layout migration";
+
+    /**
+     * {@value}.
+     */
+    public static final String START_STORAGE_LAYOUT_MIGRATION_DESCRIPTION = "Moves the stored files into the sharded directory layout in the background. Files remain downloadable from both layouts during the migration.";
+
+    /**
+     * {@value}.
+     */
+    public static final String GET_STORAGE_LAYOUT_MIGRATION_SUMMARY = "Get storage layout migration status";
+
+    /**
+     * {@value}.
+     */
+    public static final String GET_STORAGE_LAYOUT_MIGRATION_DESCRIPTION = "Returns the progress of the current or the last storage layout migration.";
 }
@@ -0,0 +1,99 @@
+package hu.evocelot.filestore.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO class for initiating a chunked upload.
+ * 
+ * @author mark.danisovszky
+ */
+public class ChunkedUploadRequestDto {
+
+    @Schema(description = "The name of the file (used as filename)", required = true, maxLength = 250)
+    private String name;
+
+    @Schema(description = "The extension of the file (e.g., png, jpg, pdf)", required = true, maxLength = 10)
+    private String extension;
+
+    @Schema(description = "ID of the connected entity (internal owner of the file)", required = false, maxLength = 100)
+    private String objectId;
+
+    @Schema(description = "File creator system ID", required = false, maxLength = 100)
+    private String systemId;
+
+    @Schema(description = "The optional password", required = false, maxLength = 50)
+    private String password;
+
+    @Schema(description = "The optional label of the file", required = false, maxLength = 50)
+    private String label;
+
+    @Schema(description = "The total size of the file in bytes", required = true)
+    private long totalSize;
+
+    @Schema(description = "The size of a chunk in bytes. Only the last chunk can be smaller", required = true)
+    private long chunkSize;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public void setExtension(String extension) {
+        this.extension = extension;
+    }
+
+    public String getObjectId() {
+        return objectId;
+    }
+
+    public void setObjectId(String objectId) {
+        this.objectId = objectId;
+    }
+
+    public String getSystemId() {
+        return systemId;
+    }
+
+    public void setSystemId(String systemId) {
+        this.systemId = systemId;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
+
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+}
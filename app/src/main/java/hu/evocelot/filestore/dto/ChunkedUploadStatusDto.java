@@ -0,0 +1,79 @@
+package hu.evocelot.filestore.dto;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO class describing the progress of a chunked upload.
+ * 
+ * @author mark.danisovszky
+ */
+public class ChunkedUploadStatusDto {
+
+    @Schema(description = "The id of the upload session", required = true)
+    private String uploadId;
+
+    @Schema(description = "The total size of the file in bytes", required = true)
+    private long totalSize;
+
+    @Schema(description = "The size of a chunk in bytes", required = true)
+    private long chunkSize;
+
+    @Schema(description = "The number of chunks of the file", required = true)
+    private int totalChunks;
+
+    @Schema(description = "The received byte ranges (inclusive, e.g. 0-1048575)", required = true)
+    private List<String> receivedRanges;
+
+    @Schema(description = "The numbers of the chunks that are not received yet", required = true)
+    private List<Integer> missingChunks;
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
+
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+
+    public void setTotalChunks(int totalChunks) {
+        this.totalChunks = totalChunks;
+    }
+
+    public List<String> getReceivedRanges() {
+        return receivedRanges;
+    }
+
+    public void setReceivedRanges(List<String> receivedRanges) {
+        this.receivedRanges = receivedRanges;
+    }
+
+    public List<Integer> getMissingChunks() {
+        return missingChunks;
+    }
+
+    public void setMissingChunks(List<Integer> missingChunks) {
+        this.missingChunks = missingChunks;
+    }
+}
@@ -0,0 +1,32 @@
+package hu.evocelot.filestore.dto;
+
+import java.time.OffsetDateTime;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO class containing a pre-signed download URL of a file.
+ *
+ * @author mark.danisovszky
+ */
+public class DownloadUrlDto {
+
+    @Schema(description = "The URL downloading the file without further authentication", required = true)
+    private String url;
+
+    @Schema(description = "The time after which the URL is rejected", required = true)
+    private OffsetDateTime expiresAt;
+
+    public DownloadUrlDto(String url, OffsetDateTime expiresAt) {
+        this.url = url;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public OffsetDateTime getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,41 @@
+package hu.evocelot.filestore.dto;
+
+import org.springframework.http.HttpStatus;
+
+import hu.evocelot.filestore.exception.ExceptionType;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO class describing the result of deleting a file of a batch.
+ *
+ * @author mark.danisovszky
+ */
+public class FileDeleteResultDto {
+
+    @Schema(description = "The id of the file", required = true)
+    private String fileId;
+
+    @Schema(description = "The status the single delete endpoint would have returned", required = true)
+    private HttpStatus httpStatus;
+
+    @Schema(description = "The type of the error, if the file was not deleted")
+    private ExceptionType exceptionType;
+
+    public FileDeleteResultDto(String fileId, HttpStatus httpStatus, ExceptionType exceptionType) {
+        this.fileId = fileId;
+        this.httpStatus = httpStatus;
+        this.exceptionType = exceptionType;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public HttpStatus getHttpStatus() {
+        return httpStatus;
+    }
+
+    public ExceptionType getExceptionType() {
+        return exceptionType;
+    }
+}
@@ -0,0 +1,32 @@
+package hu.evocelot.filestore.dto;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO class containing the metadata of a batch of files.
+ *
+ * @author mark.danisovszky
+ */
+public class FileDetailsBatchDto {
+
+    @Schema(description = "The metadata of the existing files, in the order of the request", required = true)
+    private List<FileEntityWithIdDto> files;
+
+    @Schema(description = "The requested ids without a file", required = true)
+    private List<String> missingFileIds;
+
+    public FileDetailsBatchDto(List<FileEntityWithIdDto> files, List<String> missingFileIds) {
+        this.files = files;
+        this.missingFileIds = missingFileIds;
+    }
+
+    public List<FileEntityWithIdDto> getFiles() {
+        return files;
+    }
+
+    public List<String> getMissingFileIds() {
+        return missingFileIds;
+    }
+}
@@ -1,5 +1,6 @@
 package hu.evocelot.filestore.dto;
 
+import hu.evocelot.filestore.hashing.HashAlgorithm;
 import hu.evocelot.filestore.model.FileEntity;
 import io.swagger.v3.oas.annotations.media.Schema;
 
@@ -16,9 +17,12 @@ public class FileEntityDto {
     @Schema(description = "The extension of the file (e.g., png, jpg, pdf)", required = true, maxLength = 10)
     private String extension;
 
-    @Schema(description = "MD5 hash of the file", required = false, maxLength = 32)
+    @Schema(description = "Hash of the file", required = false, maxLength = 64)
     private String hash;
 
+    @Schema(description = "Algorithm of the hash (MD5, SHA256, BLAKE3 or CRC32C)", required = false)
+    private HashAlgorithm hashAlgorithm;
+
     @Schema(description = "ID of the connected entity (internal owner of the file)", required = false, maxLength = 100)
     private String objectId;
 
@@ -58,6 +62,14 @@ public class FileEntityDto {
         this.hash = hash;
     }
 
+    public HashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    public void setHashAlgorithm(HashAlgorithm hashAlgorithm) {
+        this.hashAlgorithm = hashAlgorithm;
+    }
+
     public String getObjectId() {
         return objectId;
     }
@@ -0,0 +1,24 @@
+package hu.evocelot.filestore.dto;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO class for the batch operations on files.
+ *
+ * @author mark.danisovszky
+ */
+public class FileIdsRequestDto {
+
+    @Schema(description = "The ids of the files. Duplicates are processed once", required = true)
+    private List<String> fileIds;
+
+    public List<String> getFileIds() {
+        return fileIds;
+    }
+
+    public void setFileIds(List<String> fileIds) {
+        this.fileIds = fileIds;
+    }
+}
@@ -2,6 +2,7 @@ package hu.evocelot.filestore.dto;
 
 import org.springframework.web.multipart.MultipartFile;
 
+import hu.evocelot.filestore.model.FileEntity;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 /**
@@ -11,10 +12,12 @@ import io.swagger.v3.oas.annotations.media.Schema;
  */
 public class FileUploadRequestDto {
 
-    @Schema(description = "The name of the file (used as filename)", required = true, maxLength = 250)
+    @Schema(description = "The name of the file (used as filename)", required = true,
+            maxLength = FileEntity.NAME_MAX_LENGTH)
     private String name;
 
-    @Schema(description = "The extension of the file (e.g., png, jpg, pdf)", required = true, maxLength = 10)
+    @Schema(description = "The extension of the file (e.g., png, jpg, pdf)", required = true,
+            maxLength = FileEntity.EXTENSION_MAX_LENGTH)
     private String extension;
 
     @Schema(description = "ID of the connected entity (internal owner of the file)", required = false, maxLength = 100)
@@ -0,0 +1,136 @@
+package hu.evocelot.filestore.dto;
+
+import java.time.OffsetDateTime;
+
+import hu.evocelot.filestore.job.JobStatus;
+import hu.evocelot.filestore.job.JobType;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO class describing the state and the progress of a background job.
+ *
+ * @author mark.danisovszky
+ */
+public class JobDto {
+
+    @Schema(description = "The id of the job", required = true)
+    private String id;
+
+    @Schema(description = "The type of the job", required = true)
+    private JobType type;
+
+    @Schema(description = "The state of the job", required = true)
+    private JobStatus status;
+
+    @Schema(description = "The number of the processed items", required = true)
+    private long processedItems;
+
+    @Schema(description = "The number of the items changed by the job", required = true)
+    private long updatedItems;
+
+    @Schema(description = "The number of the items the job could not process, e.g. missing files", required = true)
+    private long skippedItems;
+
+    @Schema(description = "The number of the items failed with an error", required = true)
+    private long failedItems;
+
+    @Schema(description = "The number of the items processed per second", required = true)
+    private double itemsPerSecond;
+
+    @Schema(description = "The time the job was started")
+    private OffsetDateTime startedDate;
+
+    @Schema(description = "The time the job has finished")
+    private OffsetDateTime finishedDate;
+
+    @Schema(description = "The reason of the failure of the job")
+    private String errorMessage;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public JobType getType() {
+        return type;
+    }
+
+    public void setType(JobType type) {
+        this.type = type;
+    }
+
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(JobStatus status) {
+        this.status = status;
+    }
+
+    public long getProcessedItems() {
+        return processedItems;
+    }
+
+    public void setProcessedItems(long processedItems) {
+        this.processedItems = processedItems;
+    }
+
+    public long getUpdatedItems() {
+        return updatedItems;
+    }
+
+    public void setUpdatedItems(long updatedItems) {
+        this.updatedItems = updatedItems;
+    }
+
+    public long getSkippedItems() {
+        return skippedItems;
+    }
+
+    public void setSkippedItems(long skippedItems) {
+        this.skippedItems = skippedItems;
+    }
+
+    public long getFailedItems() {
+        return failedItems;
+    }
+
+    public void setFailedItems(long failedItems) {
+        this.failedItems = failedItems;
+    }
+
+    public double getItemsPerSecond() {
+        return itemsPerSecond;
+    }
+
+    public void setItemsPerSecond(double itemsPerSecond) {
+        this.itemsPerSecond = itemsPerSecond;
+    }
+
+    public OffsetDateTime getStartedDate() {
+        return startedDate;
+    }
+
+    public void setStartedDate(OffsetDateTime startedDate) {
+        this.startedDate = startedDate;
+    }
+
+    public OffsetDateTime getFinishedDate() {
+        return finishedDate;
+    }
+
+    public void setFinishedDate(OffsetDateTime finishedDate) {
+        this.finishedDate = finishedDate;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+}
@@ -0,0 +1,32 @@
+package hu.evocelot.filestore.dto;
+
+public class StorageLayoutMigrationStatusDto {
+
+    private boolean running;
+    private long processedFiles;
+    private long movedFiles;
+    private long failedFiles;
+
+    public StorageLayoutMigrationStatusDto(boolean running, long processedFiles, long movedFiles, long failedFiles) {
+        this.running = running;
+        this.processedFiles = processedFiles;
+        this.movedFiles = movedFiles;
+        this.failedFiles = failedFiles;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long getProcessedFiles() {
+        return processedFiles;
+    }
+
+    public long getMovedFiles() {
+        return movedFiles;
+    }
+
+    public long getFailedFiles() {
+        return failedFiles;
+    }
+}
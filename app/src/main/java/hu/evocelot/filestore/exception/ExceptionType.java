@@ -50,4 +50,59 @@ public enum ExceptionType {
      * {@value}.
      */
     STORAGE_LIMIT_EXCEEDED,
+
+    /**
+     * {@value}.
+     */
+    UPLOAD_SESSION_NOT_FOUND,
+
+    /**
+     * {@value}.
+     */
+    UPLOAD_INCOMPLETE,
+
+    /**
+     * {@value}.
+     */
+    UPLOAD_COMPLETION_IN_PROGRESS,
+
+    /**
+     * {@value}.
+     */
+    UPLOAD_SIZE_EXCEEDED,
+
+    /**
+     * {@value}.
+     */
+    JOB_ALREADY_RUNNING,
+
+    /**
+     * {@value}.
+     */
+    CANNOT_DELETE_FILE,
+
+    /**
+     * {@value}.
+     */
+    JOB_NOT_FOUND,
+
+    /**
+     * {@value}.
+     */
+    JOB_ALREADY_FINISHED,
+
+    /**
+     * {@value}.
+     */
+    PASSWORD_HASHING_OVERLOADED,
+
+    /**
+     * {@value}.
+     */
+    INVALID_DOWNLOAD_URL,
+
+    /**
+     * {@value}.
+     */
+    DOWNLOAD_URL_EXPIRED,
 }
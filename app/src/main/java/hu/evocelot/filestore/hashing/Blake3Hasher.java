@@ -0,0 +1,45 @@
+package hu.evocelot.filestore.hashing;
+
+import java.nio.ByteBuffer;
+import java.util.HexFormat;
+
+import org.apache.commons.codec.digest.Blake3;
+
+/**
+ * {@link ContentHasher} computing the 256 bit BLAKE3 hash.
+ *
+ * @author mark.danisovszky
+ */
+class Blake3Hasher implements ContentHasher {
+
+    private static final int HASH_LENGTH = 32;
+
+    private final Blake3 blake3 = Blake3.initHash();
+
+    @Override
+    public HashAlgorithm getAlgorithm() {
+        return HashAlgorithm.BLAKE3;
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        blake3.update(bytes, offset, length);
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            blake3.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+        } else {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            blake3.update(bytes);
+        }
+    }
+
+    @Override
+    public String toHash() {
+        return HexFormat.of().withUpperCase().formatHex(blake3.doFinalize(HASH_LENGTH));
+    }
+}
@@ -0,0 +1,42 @@
+package hu.evocelot.filestore.hashing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental hash of the content of a file.
+ *
+ * @author mark.danisovszky
+ */
+public interface ContentHasher {
+
+    /**
+     * Returns the algorithm of the hash.
+     *
+     * @return the hash algorithm.
+     */
+    HashAlgorithm getAlgorithm();
+
+    /**
+     * Updates the hash with a region of the array.
+     *
+     * @param bytes  the array holding the content.
+     * @param offset the offset of the first byte.
+     * @param length the number of bytes.
+     */
+    void update(byte[] bytes, int offset, int length);
+
+    /**
+     * Updates the hash with the remaining bytes of the buffer. The position of
+     * the buffer is moved to its limit.
+     *
+     * @param buffer the buffer holding the content.
+     */
+    void update(ByteBuffer buffer);
+
+    /**
+     * Completes the hash. The hasher must not be used afterwards.
+     *
+     * @return the upper case hexadecimal hash.
+     */
+    String toHash();
+}
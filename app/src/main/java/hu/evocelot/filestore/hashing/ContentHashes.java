@@ -0,0 +1,81 @@
+package hu.evocelot.filestore.hashing;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The hashes of the content of a file computed in the same pass.
+ * <p>
+ * Every algorithm is computed once, even if it is requested for several
+ * purposes, e.g. SHA-256 as both the hash of the file and the content digest of
+ * the deduplicated blob store.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+public class ContentHashes {
+
+    public ContentHashes(Collection<HashAlgorithm> algorithms) {
+        for (HashAlgorithm algorithm : algorithms) {
+            hashers.computeIfAbsent(algorithm, HashAlgorithm::newHasher);
+        }
+    }
+
+    private final Map<HashAlgorithm, ContentHasher> hashers = new EnumMap<>(HashAlgorithm.class);
+    private final Map<HashAlgorithm, String> hashes = new EnumMap<>(HashAlgorithm.class);
+
+    /**
+     * Returns whether the algorithm is computed.
+     *
+     * @param algorithm the hash algorithm.
+     * @return {@code true} if the hash of the algorithm is computed.
+     */
+    public boolean contains(HashAlgorithm algorithm) {
+        return hashers.containsKey(algorithm);
+    }
+
+    /**
+     * Updates every hash with a region of the array.
+     *
+     * @param bytes  the array holding the content.
+     * @param offset the offset of the first byte.
+     * @param length the number of bytes.
+     */
+    public void update(byte[] bytes, int offset, int length) {
+        for (ContentHasher hasher : hashers.values()) {
+            hasher.update(bytes, offset, length);
+        }
+    }
+
+    /**
+     * Updates every hash with the remaining bytes of the buffer. The position of
+     * the buffer is moved to its limit.
+     *
+     * @param buffer the buffer holding the content.
+     */
+    public void update(ByteBuffer buffer) {
+        for (ContentHasher hasher : hashers.values()) {
+            hasher.update(buffer.duplicate());
+        }
+        buffer.position(buffer.limit());
+    }
+
+    /**
+     * Completes the hashes and returns the hash of the algorithm. The hashes must
+     * not be updated afterwards.
+     *
+     * @param algorithm the hash algorithm.
+     * @return the upper case hexadecimal hash, or {@code null} if the algorithm
+     *         is not computed.
+     */
+    public String toHash(HashAlgorithm algorithm) {
+        ContentHasher hasher = hashers.get(algorithm);
+        if (hasher == null) {
+            return null;
+        }
+
+        return hashes.computeIfAbsent(algorithm, key -> hasher.toHash());
+    }
+}
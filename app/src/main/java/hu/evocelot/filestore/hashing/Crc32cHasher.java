@@ -0,0 +1,37 @@
+package hu.evocelot.filestore.hashing;
+
+import java.nio.ByteBuffer;
+import java.util.HexFormat;
+import java.util.zip.CRC32C;
+
+/**
+ * {@link ContentHasher} computing the CRC32C checksum. The JDK computes it with
+ * the CRC32 instructions of the CPU, so it is much cheaper than a cryptographic
+ * hash, but it only detects accidental corruption.
+ *
+ * @author mark.danisovszky
+ */
+class Crc32cHasher implements ContentHasher {
+
+    private final CRC32C crc32c = new CRC32C();
+
+    @Override
+    public HashAlgorithm getAlgorithm() {
+        return HashAlgorithm.CRC32C;
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        crc32c.update(bytes, offset, length);
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        crc32c.update(buffer);
+    }
+
+    @Override
+    public String toHash() {
+        return HexFormat.of().withUpperCase().toHexDigits((int) crc32c.getValue());
+    }
+}
@@ -0,0 +1,74 @@
+package hu.evocelot.filestore.hashing;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * The algorithms the content of the files can be hashed with.
+ *
+ * @author mark.danisovszky
+ */
+public enum HashAlgorithm {
+
+    /**
+     * MD5, the hash of the files stored before the algorithm became
+     * configurable.
+     */
+    MD5 {
+        @Override
+        public ContentHasher newHasher() {
+            return new MessageDigestHasher(this, "MD5");
+        }
+    },
+
+    /**
+     * SHA-256, also the content digest of the deduplicated blob store.
+     */
+    SHA256 {
+        @Override
+        public ContentHasher newHasher() {
+            return new MessageDigestHasher(this, "SHA-256");
+        }
+    },
+
+    /**
+     * 256 bit BLAKE3.
+     */
+    BLAKE3 {
+        @Override
+        public ContentHasher newHasher() {
+            return new Blake3Hasher();
+        }
+    },
+
+    /**
+     * CRC32C checksum. It is only suitable for detecting corruption.
+     */
+    CRC32C {
+        @Override
+        public ContentHasher newHasher() {
+            return new Crc32cHasher();
+        }
+    };
+
+    /**
+     * Creates a new hasher of the algorithm.
+     *
+     * @return the new hasher.
+     */
+    public abstract ContentHasher newHasher();
+
+    /**
+     * Returns the algorithm with the given case insensitive name.
+     *
+     * @param name the name of the algorithm, e.g. {@code sha-256}.
+     * @return the algorithm, or {@link #MD5} if the name is blank.
+     * @throws IllegalArgumentException if there is no algorithm with the name.
+     */
+    public static HashAlgorithm fromName(String name) {
+        if (StringUtils.isBlank(name)) {
+            return MD5;
+        }
+
+        return valueOf(name.trim().replace("-", "").toUpperCase());
+    }
+}
@@ -0,0 +1,50 @@
+package hu.evocelot.filestore.hashing;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream updating the {@link ContentHashes} with the bytes read through
+ * it.
+ *
+ * @author mark.danisovszky
+ */
+public class HashingInputStream extends FilterInputStream {
+
+    public HashingInputStream(InputStream inputStream, ContentHashes contentHashes) {
+        super(inputStream);
+        this.contentHashes = contentHashes;
+    }
+
+    private final ContentHashes contentHashes;
+
+    @Override
+    public int read() throws IOException {
+        int value = in.read();
+        if (value != -1) {
+            contentHashes.update(new byte[] { (byte) value }, 0, 1);
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int bytesRead = in.read(b, off, len);
+        if (bytesRead > 0) {
+            contentHashes.update(b, off, bytesRead);
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped bytes would be missing from the hashes.
+        return 0;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,48 @@
+package hu.evocelot.filestore.hashing;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * {@link ContentHasher} backed by a JCA {@link MessageDigest}. The JDK uses CPU
+ * intrinsics for MD5 and for SHA-256 where the hardware supports them.
+ *
+ * @author mark.danisovszky
+ */
+class MessageDigestHasher implements ContentHasher {
+
+    MessageDigestHasher(HashAlgorithm algorithm, String digestName) {
+        this.algorithm = algorithm;
+        try {
+            this.messageDigest = MessageDigest.getInstance(digestName);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support MD5 and SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final HashAlgorithm algorithm;
+    private final MessageDigest messageDigest;
+
+    @Override
+    public HashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        messageDigest.update(bytes, offset, length);
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        messageDigest.update(buffer);
+    }
+
+    @Override
+    public String toHash() {
+        return HexFormat.of().withUpperCase().formatHex(messageDigest.digest());
+    }
+}
@@ -0,0 +1,58 @@
+package hu.evocelot.filestore.helper;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import hu.evocelot.filestore.dto.FileIdsRequestDto;
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+
+/**
+ * Helper class validating the requests of the batch operations.
+ *
+ * @author mark.danisovszky
+ */
+@Component
+public class BatchHelper {
+
+    public BatchHelper(FileStoreProperties fileStoreProperties) {
+        this.fileStoreProperties = fileStoreProperties;
+    }
+
+    private final FileStoreProperties fileStoreProperties;
+
+    /**
+     * Returns the distinct, non-blank file ids of the request in their original
+     * order.
+     *
+     * @param fileIdsRequestDto the request.
+     * @return the file ids to process.
+     * @throws BaseException if the request has no file id, or more than
+     *                       {@code filestore.batch-max-size}.
+     */
+    public List<String> getFileIds(FileIdsRequestDto fileIdsRequestDto) throws BaseException {
+        Set<String> fileIds = new LinkedHashSet<>();
+        if (fileIdsRequestDto != null && fileIdsRequestDto.getFileIds() != null) {
+            fileIdsRequestDto.getFileIds().stream()
+                    .filter(StringUtils::isNotBlank)
+                    .forEach(fileIds::add);
+        }
+
+        if (fileIds.isEmpty()) {
+            throw new BaseException(HttpStatus.BAD_REQUEST, ExceptionType.INVALID_INPUT,
+                    "At least one file id is required.");
+        }
+        if (fileIds.size() > fileStoreProperties.getBatchMaxSize()) {
+            throw new BaseException(HttpStatus.BAD_REQUEST, ExceptionType.INVALID_INPUT,
+                    "At most " + fileStoreProperties.getBatchMaxSize() + " file ids can be processed at once.");
+        }
+
+        return List.copyOf(fileIds);
+    }
+}
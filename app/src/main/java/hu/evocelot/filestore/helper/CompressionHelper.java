@@ -0,0 +1,79 @@
+package hu.evocelot.filestore.helper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import hu.evocelot.filestore.compression.CompressionCodec;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+
+/**
+ * Helper class deciding whether the content of a file is compressed at rest.
+ * <p>
+ * Only files with one of the configured extensions are considered. Their
+ * beginning is compressed as a sample, and the configured codec is used only if
+ * the sample shrinks enough, so already compressed content (e.g. a zipped file
+ * with a {@code .log} extension) is stored as it is.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+@Component
+public class CompressionHelper {
+
+    private static final int SAMPLE_SIZE = 64 * 1024;
+    private static final int MIN_SAMPLE_SIZE = 512;
+
+    public CompressionHelper(FileStoreProperties fileStoreProperties) {
+        this.fileStoreProperties = fileStoreProperties;
+    }
+
+    private final FileStoreProperties fileStoreProperties;
+
+    /**
+     * Selects the compression of a file.
+     * <p>
+     * The sample is read with {@link InputStream#mark(int)} and
+     * {@link InputStream#reset()}, so the stream is left at its beginning.
+     * </p>
+     *
+     * @param extension   the extension of the file.
+     * @param inputStream the content of the file. It must support marking.
+     * @return the codec to store the file with, or {@link CompressionCodec#NONE}.
+     * @throws IOException if we cannot read the sample.
+     */
+    public CompressionCodec selectCodec(String extension, InputStream inputStream) throws IOException {
+        if (!fileStoreProperties.isCompressionEnabled() || StringUtils.isBlank(extension)
+                || !inputStream.markSupported()
+                || fileStoreProperties.getCompressionExtensions().stream()
+                        .noneMatch(candidate -> candidate.trim().equalsIgnoreCase(extension))) {
+            return CompressionCodec.NONE;
+        }
+
+        CompressionCodec codec = CompressionCodec.fromName(fileStoreProperties.getCompressionCodec());
+        if (codec == CompressionCodec.NONE) {
+            return codec;
+        }
+
+        inputStream.mark(SAMPLE_SIZE);
+        byte[] sample = inputStream.readNBytes(SAMPLE_SIZE);
+        inputStream.reset();
+
+        // The frame overhead outweighs the gain on tiny files.
+        if (sample.length < MIN_SAMPLE_SIZE) {
+            return CompressionCodec.NONE;
+        }
+
+        ByteArrayOutputStream compressedSample = new ByteArrayOutputStream();
+        try (OutputStream outputStream = codec.compress(compressedSample)) {
+            outputStream.write(sample);
+        }
+
+        double ratio = (double) compressedSample.size() / sample.length;
+        return ratio <= fileStoreProperties.getCompressionMaxRatio() ? codec : CompressionCodec.NONE;
+    }
+}
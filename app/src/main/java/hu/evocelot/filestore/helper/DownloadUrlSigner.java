@@ -0,0 +1,138 @@
+package hu.evocelot.filestore.helper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.pojo.DownloadableFile;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+
+/**
+ * Helper class signing and verifying the tokens of the pre-signed download
+ * URLs.
+ * <p>
+ * A token carries the {@link DownloadableFile} and its expiry, signed with
+ * HMAC-SHA256:
+ * {@code base64url(json) "." expiry-epoch-seconds "." base64url(signature)}.
+ * The file can therefore be served by any instance knowing the
+ * {@code filestore.download-url-secret} without reading the database. If no
+ * secret is configured, a random one is generated and the tokens are only
+ * accepted by this instance until it is restarted.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+@Component
+public class DownloadUrlSigner {
+
+    private static final Logger LOG = LogManager.getLogger(DownloadUrlSigner.class);
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    public DownloadUrlSigner(FileStoreProperties fileStoreProperties, ObjectMapper objectMapper) {
+        String secret = fileStoreProperties.getDownloadUrlSecret();
+        byte[] key;
+        if (StringUtils.isBlank(secret)) {
+            LOG.warn("No download URL secret is configured, the pre-signed download URLs are only accepted "
+                    + "by this instance until it is restarted.");
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+        } else {
+            key = secret.getBytes(StandardCharsets.UTF_8);
+        }
+
+        this.signature = Hashing.hmacSha256(key);
+        this.ttl = fileStoreProperties.getDownloadUrlTtl();
+        this.objectMapper = objectMapper;
+    }
+
+    private final HashFunction signature;
+    private final Duration ttl;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Returns the expiry of a token signed now.
+     *
+     * @return the current time plus {@code filestore.download-url-ttl}.
+     */
+    public Instant getExpiry() {
+        return Instant.now().plus(ttl);
+    }
+
+    /**
+     * Signs the file.
+     *
+     * @param downloadableFile the file to serve.
+     * @param expiresAt        the time after which the token is rejected.
+     * @return the URL-safe token.
+     */
+    public String sign(DownloadableFile downloadableFile, Instant expiresAt) {
+        String payload;
+        try {
+            payload = ENCODER.encodeToString(objectMapper.writeValueAsBytes(downloadableFile)) + "."
+                    + expiresAt.getEpochSecond();
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return payload + "." + ENCODER.encodeToString(sign(payload));
+    }
+
+    /**
+     * Verifies the token and returns the signed file.
+     *
+     * @param token the token of the download URL.
+     * @return the signed file.
+     * @throws BaseException if the token is not signed with the secret, or it has
+     *                       expired.
+     */
+    public DownloadableFile verify(String token) throws BaseException {
+        String[] parts = StringUtils.split(StringUtils.defaultString(token), '.');
+        if (parts.length != 3) {
+            throw createInvalidUrlException();
+        }
+
+        try {
+            String payload = parts[0] + "." + parts[1];
+            if (!MessageDigest.isEqual(sign(payload), DECODER.decode(parts[2]))) {
+                throw createInvalidUrlException();
+            }
+
+            if (Instant.now().getEpochSecond() >= Long.parseLong(parts[1])) {
+                throw new BaseException(HttpStatus.FORBIDDEN, ExceptionType.DOWNLOAD_URL_EXPIRED,
+                        "The download URL has expired.");
+            }
+
+            return objectMapper.readValue(DECODER.decode(parts[0]), DownloadableFile.class);
+        } catch (IllegalArgumentException | IOException e) {
+            throw createInvalidUrlException();
+        }
+    }
+
+    private byte[] sign(String payload) {
+        return signature.hashString(payload, StandardCharsets.UTF_8).asBytes();
+    }
+
+    private BaseException createInvalidUrlException() {
+        return new BaseException(HttpStatus.FORBIDDEN, ExceptionType.INVALID_DOWNLOAD_URL, "Invalid download URL.");
+    }
+}
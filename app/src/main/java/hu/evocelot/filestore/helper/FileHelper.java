@@ -1,18 +1,19 @@
 package hu.evocelot.filestore.helper;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.DigestInputStream;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.StandardOpenOption;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
@@ -20,11 +21,23 @@ import org.apache.logging.log4j.Logger;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
+import com.google.common.io.CountingInputStream;
+
+import hu.evocelot.filestore.compression.CompressingInputStream;
+import hu.evocelot.filestore.compression.CompressionCodec;
 import hu.evocelot.filestore.exception.BaseException;
 import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.hashing.ContentHasher;
+import hu.evocelot.filestore.hashing.ContentHashes;
+import hu.evocelot.filestore.hashing.HashAlgorithm;
+import hu.evocelot.filestore.hashing.HashingInputStream;
+import hu.evocelot.filestore.model.FileEntity;
 import hu.evocelot.filestore.pojo.FileStoreResult;
 import hu.evocelot.filestore.properties.FileStoreProperties;
-import jakarta.xml.bind.annotation.adapters.HexBinaryAdapter;
+import hu.evocelot.filestore.storage.LocalStorageBackend;
+import hu.evocelot.filestore.storage.ReadThrottle;
+import hu.evocelot.filestore.storage.StorageBackend;
+import jakarta.servlet.http.HttpServletRequest;
 
 /**
  * Helper class for handling file storage operations.
@@ -35,79 +48,184 @@ import jakarta.xml.bind.annotation.adapters.HexBinaryAdapter;
 public class FileHelper {
 
     private static final Logger LOG = LogManager.getLogger(FileHelper.class);
-    private static final String MD5_DIGEST = "MD5";
+    private static final String BLOB_DIRECTORY = "blobs";
+    private static final String STAGING_DIRECTORY = "staging";
+    private static final String STAGING_EXTENSION = "tmp";
+    private static final String PENDING_EXTENSION = "pending";
+    private static final int MAX_SHARD_DEPTH = 3;
+    private static final int SHARD_PREFIX_LENGTH = 2;
+
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
 
-    public FileHelper(FileStoreProperties fileStoreProperties) {
+    public FileHelper(FileStoreProperties fileStoreProperties, StorageBackend storageBackend) {
         this.fileStoreProperties = fileStoreProperties;
+        this.storageBackend = storageBackend;
+        this.localStorageBackend = new LocalStorageBackend(fileStoreProperties);
     }
 
     private FileStoreProperties fileStoreProperties;
+    private StorageBackend storageBackend;
+
+    /**
+     * The local disk under the store path, which holds the files being assembled
+     * (chunked uploads, staged blobs) regardless of the storage backend.
+     */
+    private LocalStorageBackend localStorageBackend;
 
     /**
      * Stores a file at the specified path using the provided input stream.
      *
      * @param fullPath    the full path where the file will be saved.
      * @param inputStream the input stream containing the file data.
-     * @return the MD5 hash of the file content.
+     * @return the hash (computed with the configured hash algorithm), the
+     *         checksum and the size of the file.
      * @throws Exception if the input parameters are invalid or if an error occurs
      *                   during file saving.
      */
     public FileStoreResult storeFile(String fullPath, InputStream inputStream) throws Exception {
+        return storeFile(fullPath, inputStream, false);
+    }
+
+    /**
+     * Stores a file at the specified path using the provided input stream.
+     * <p>
+     * If requested, the SHA-256 content digest used by the deduplicated blob store
+     * is computed in the same pass as the hash.
+     * </p>
+     *
+     * @param fullPath             the full path where the file will be saved.
+     * @param inputStream          the input stream containing the file data.
+     * @param computeContentDigest whether to compute the SHA-256 content digest.
+     * @return the hash, the size and the optional content digest of the file.
+     * @throws Exception if the input parameters are invalid or if an error occurs
+     *                   during file saving.
+     */
+    public FileStoreResult storeFile(String fullPath, InputStream inputStream, boolean computeContentDigest)
+            throws Exception {
+        return storeFile(storageBackend, fullPath, inputStream, computeContentDigest, CompressionCodec.NONE);
+    }
+
+    /**
+     * Stores a file at the specified path, compressed with the given codec.
+     * <p>
+     * The hashes and the size are computed from the uncompressed content, so
+     * they do not depend on the compression. The size of the compressed content
+     * is returned as the stored size.
+     * </p>
+     *
+     * @param fullPath    the full path where the file will be saved.
+     * @param inputStream the input stream containing the file data.
+     * @param compression the codec to compress the content with.
+     * @return the hash, the size, the stored size and the compression of the
+     *         file.
+     * @throws Exception if the input parameters are invalid or if an error occurs
+     *                   during file saving.
+     */
+    public FileStoreResult storeFile(String fullPath, InputStream inputStream, CompressionCodec compression)
+            throws Exception {
+        return storeFile(storageBackend, fullPath, inputStream, false, compression);
+    }
+
+    /**
+     * Stores a file on the local disk, regardless of the storage backend. The
+     * file can later be moved into the storage with
+     * {@link #moveFile(String, String)}.
+     *
+     * @param fullPath             the full path where the file will be saved.
+     * @param inputStream          the input stream containing the file data.
+     * @param computeContentDigest whether to compute the SHA-256 content digest.
+     * @return the hash, the size and the optional content digest of the file.
+     * @throws Exception if the input parameters are invalid or if an error occurs
+     *                   during file saving.
+     */
+    public FileStoreResult storeLocalFile(String fullPath, InputStream inputStream, boolean computeContentDigest)
+            throws Exception {
+        return storeFile(localStorageBackend, fullPath, inputStream, computeContentDigest, CompressionCodec.NONE);
+    }
+
+    private FileStoreResult storeFile(StorageBackend backend, String fullPath, InputStream inputStream,
+            boolean computeContentDigest, CompressionCodec compression) throws Exception {
         if (StringUtils.isBlank(fullPath) || inputStream == null) {
             throw new BaseException(HttpStatus.BAD_REQUEST, ExceptionType.INVALID_INPUT,
                     "Invalid file path or input stream.");
         }
 
-        MessageDigest messageDigest = MessageDigest.getInstance(MD5_DIGEST);
-        long totalSize = 0;
-
-        try (DigestInputStream digestInputStream = new DigestInputStream(inputStream, messageDigest);
-                FileOutputStream fileOutputStream = new FileOutputStream(fullPath)) {
-
-            byte[] buffer = new byte[fileStoreProperties.getBufferSize()];
-            int bytesRead;
+        // Every hash is updated from the same buffer in a single pass.
+        ContentHashes contentHashes = createContentHashes(computeContentDigest);
+        CountingInputStream countingStream = new CountingInputStream(
+                new HashingInputStream(inputStream, contentHashes));
+        InputStream storedStream = compression == CompressionCodec.NONE ? countingStream
+                : new CompressingInputStream(countingStream, compression, fileStoreProperties.getBufferSize());
 
-            while ((bytesRead = digestInputStream.read(buffer)) != -1) {
-                fileOutputStream.write(buffer, 0, bytesRead);
-                totalSize += bytesRead;
-            }
-
-            LOG.info("File successfully saved at: " + fullPath);
-        } catch (IOException e) {
-            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_READ_FILE, e.getMessage());
-        }
+        // The staging files are flushed and renamed only when they are moved into place.
+        long storedSize = fullPath.startsWith(getStagingDirectoryPath())
+                ? localStorageBackend.writeStaged(fullPath, storedStream)
+                : backend.write(fullPath, storedStream);
+        LOG.info("File successfully saved at: " + fullPath);
 
-        byte[] hashBytes = messageDigest.digest();
-        String hash = (new HexBinaryAdapter()).marshal(hashBytes);
+        HashAlgorithm hashAlgorithm = getHashAlgorithm();
+        String contentDigest = computeContentDigest ? contentHashes.toHash(HashAlgorithm.SHA256) : null;
 
-        return new FileStoreResult(hash, totalSize);
+        return new FileStoreResult(contentHashes.toHash(hashAlgorithm), hashAlgorithm,
+                contentHashes.toHash(HashAlgorithm.CRC32C), countingStream.getCount(), contentDigest, storedSize,
+                compression);
     }
 
     /**
-     * Calculates the hash of the file.
+     * Calculates the hash of the file with the configured algorithm.
      * 
      * @param fullPath the full path where the file can be located.
-     * @return the MD5 hash of the file content.
-     * @throws BaseException            if we cannot calculate MD5 hash.
-     * @throws NoSuchAlgorithmException if we cannot create MessageDigest.
+     * @return the hash of the file content.
+     * @throws BaseException if we cannot calculate the hash.
+     */
+    public String getFileHash(String fullPath) throws BaseException {
+        return getFileHash(fullPath, CompressionCodec.NONE, getHashAlgorithm());
+    }
+
+    /**
+     * Calculates the hash of the uncompressed content of the file.
+     * 
+     * @param fullPath      the full path where the file can be located.
+     * @param compression   the compression of the stored content.
+     * @param hashAlgorithm the algorithm of the hash.
+     * @return the hash of the file content.
+     * @throws BaseException if we cannot calculate the hash.
      */
-    public String getFileHash(String fullPath) throws BaseException, NoSuchAlgorithmException {
-        MessageDigest messageDigest = MessageDigest.getInstance(MD5_DIGEST);
+    public String getFileHash(String fullPath, CompressionCodec compression, HashAlgorithm hashAlgorithm)
+            throws BaseException {
+        return getFileHash(fullPath, compression, hashAlgorithm, null);
+    }
 
-        try (DigestInputStream digestInputStream = new DigestInputStream(new FileInputStream(fullPath),
-                messageDigest);) {
+    /**
+     * Calculates the hash of the uncompressed content of the file, limiting the
+     * reads from the storage.
+     * 
+     * @param fullPath      the full path where the file can be located.
+     * @param compression   the compression of the stored content.
+     * @param hashAlgorithm the algorithm of the hash.
+     * @param readThrottle  the throttle of the stored content, or {@code null}.
+     * @return the hash of the file content.
+     * @throws BaseException if we cannot calculate the hash.
+     */
+    public String getFileHash(String fullPath, CompressionCodec compression, HashAlgorithm hashAlgorithm,
+            ReadThrottle readThrottle) throws BaseException {
+        ContentHasher hasher = hashAlgorithm.newHasher();
 
+        try (InputStream inputStream = openFile(fullPath, compression, readThrottle)) {
             byte[] buffer = new byte[fileStoreProperties.getBufferSize()];
-            while (digestInputStream.read(buffer) != -1) {
-                // Read next buffer.
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                hasher.update(buffer, 0, bytesRead);
             }
-        } catch (IOException e) {
+        } catch (IOException | BaseException e) {
             throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_CALCULATE_MD5,
                     e.getMessage());
         }
 
-        byte[] hashBytes = messageDigest.digest();
-        return (new HexBinaryAdapter()).marshal(hashBytes);
+        return hasher.toHash();
     }
 
     /**
@@ -118,18 +236,416 @@ public class FileHelper {
      * @throws BaseException if we cannot read the file.
      */
     public void getFile(String fullPath, OutputStream outputStream) throws BaseException {
-        try (InputStream inputStream = new FileInputStream(fullPath)) {
+        getFile(fullPath, CompressionCodec.NONE, outputStream);
+    }
+
+    /**
+     * Reads the uncompressed content of the file into the output stream.
+     * 
+     * @param fullPath     the path of the file.
+     * @param compression  the compression of the stored content.
+     * @param outputStream the target output stream to write the file content.
+     * @throws BaseException if we cannot read the file.
+     */
+    public void getFile(String fullPath, CompressionCodec compression, OutputStream outputStream)
+            throws BaseException {
+        try (InputStream inputStream = openFile(fullPath, compression)) {
+
+            byte[] buffer = new byte[fileStoreProperties.getBufferSize()];
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, bytesRead);
+            }
+        } catch (IOException e) {
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_READ_FILE, e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the uncompressed content of the file into the output stream while
+     * verifying its hash.
+     * <p>
+     * The last buffer is held back until the whole content is hashed, so a
+     * corrupted file is never sent completely: the response ends short of its
+     * {@code Content-Length}, or, for files smaller than the buffer, nothing is
+     * written and the error can still be reported to the client.
+     * </p>
+     * 
+     * @param fullPath      the path of the file.
+     * @param compression   the compression of the stored content.
+     * @param hashAlgorithm the algorithm of the expected hash.
+     * @param expectedHash  the expected hash of the content.
+     * @param outputStream  the target output stream to write the file content.
+     * @throws BaseException if we cannot read the file or the hash does not
+     *                       match.
+     */
+    public void getVerifiedFile(String fullPath, CompressionCodec compression, HashAlgorithm hashAlgorithm,
+            String expectedHash, OutputStream outputStream) throws BaseException {
+        ContentHasher hasher = hashAlgorithm.newHasher();
 
+        try (InputStream inputStream = openFile(fullPath, compression)) {
             byte[] buffer = new byte[fileStoreProperties.getBufferSize()];
+            byte[] pending = new byte[buffer.length];
+            int pendingLength = 0;
             int bytesRead;
             while ((bytesRead = inputStream.read(buffer)) != -1) {
+                hasher.update(buffer, 0, bytesRead);
+                outputStream.write(pending, 0, pendingLength);
+
+                byte[] swap = pending;
+                pending = buffer;
+                buffer = swap;
+                pendingLength = bytesRead;
+            }
+
+            if (!hasher.toHash().equals(expectedHash)) {
+                throw new BaseException(HttpStatus.CONFLICT, ExceptionType.CORRUPTED_FILE, "Corrupted file!");
+            }
+            outputStream.write(pending, 0, pendingLength);
+        } catch (IOException e) {
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_READ_FILE, e.getMessage());
+        }
+    }
+
+    /**
+     * Reads a region of the file into the output stream.
+     * <p>
+     * Only the requested bytes are read from the storage: the local disk is read
+     * with positional reads, an object store with a ranged request.
+     * </p>
+     * 
+     * @param fullPath     the path of the file.
+     * @param position     the offset of the first byte to read.
+     * @param count        the number of bytes to read.
+     * @param outputStream the target output stream to write the file content.
+     * @throws BaseException if we cannot read the file.
+     */
+    public void getFile(String fullPath, long position, long count, OutputStream outputStream) throws BaseException {
+        getFile(fullPath, CompressionCodec.NONE, position, count, outputStream);
+    }
+
+    /**
+     * Reads a region of the uncompressed content of the file into the output
+     * stream.
+     * <p>
+     * A compressed file cannot be read from an arbitrary offset, so it is
+     * decompressed from its beginning and the bytes before the region are
+     * skipped.
+     * </p>
+     * 
+     * @param fullPath     the path of the file.
+     * @param compression  the compression of the stored content.
+     * @param position     the offset of the first byte to read.
+     * @param count        the number of bytes to read.
+     * @param outputStream the target output stream to write the file content.
+     * @throws BaseException if we cannot read the file.
+     */
+    public void getFile(String fullPath, CompressionCodec compression, long position, long count,
+            OutputStream outputStream) throws BaseException {
+        try (InputStream inputStream = openFile(fullPath, compression, position, count)) {
+            byte[] buffer = new byte[fileStoreProperties.getBufferSize()];
+            long remaining = count;
+
+            while (remaining > 0) {
+                int bytesRead = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (bytesRead == -1) {
+                    throw new IOException("Unexpected end of file: " + fullPath);
+                }
+
                 outputStream.write(buffer, 0, bytesRead);
+                remaining -= bytesRead;
             }
         } catch (IOException e) {
             throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_READ_FILE, e.getMessage());
         }
     }
 
+    private InputStream openFile(String fullPath, CompressionCodec compression) throws BaseException, IOException {
+        return openFile(fullPath, compression, (ReadThrottle) null);
+    }
+
+    private InputStream openFile(String fullPath, CompressionCodec compression, ReadThrottle readThrottle)
+            throws BaseException, IOException {
+        InputStream inputStream = storageBackend.read(fullPath);
+        if (readThrottle != null) {
+            inputStream = readThrottle.wrap(inputStream);
+        }
+        try {
+            return compression.decompress(inputStream);
+        } catch (IOException e) {
+            inputStream.close();
+            throw e;
+        }
+    }
+
+    private InputStream openFile(String fullPath, CompressionCodec compression, long position, long count)
+            throws BaseException, IOException {
+        if (compression == CompressionCodec.NONE) {
+            return storageBackend.read(fullPath, position, count);
+        }
+
+        InputStream inputStream = openFile(fullPath, compression);
+        try {
+            inputStream.skipNBytes(position);
+            return inputStream;
+        } catch (IOException e) {
+            inputStream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Hands a region of the file over to the servlet container for zero-copy
+     * transfer.
+     * <p>
+     * The embedded Tomcat connector advertises sendfile support with a request
+     * attribute. When it is available, the container streams the file to the
+     * socket with {@link FileChannel#transferTo} after the handler returns, so the
+     * response body must not be written by the application. The method returns
+     * {@code false} when zero-copy is disabled, the region is smaller than the
+     * configured threshold, the connector cannot expose a channel (e.g. TLS) or
+     * the files are not stored on the local disk, in which case the caller falls
+     * back to {@link #getFile(String, OutputStream)}.
+     * </p>
+     * 
+     * @param request  the current HTTP request.
+     * @param fullPath the path of the file.
+     * @param position the offset of the first byte to send.
+     * @param count    the number of bytes to send.
+     * @return {@code true} if the container will send the file.
+     */
+    public boolean sendFile(HttpServletRequest request, String fullPath, long position, long count) {
+        if (!fileStoreProperties.isZeroCopyEnabled() || !storageBackend.isLocal() || request == null
+                || count < fileStoreProperties.getZeroCopyMinSize()
+                || !Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            return false;
+        }
+
+        request.setAttribute(SENDFILE_FILENAME_ATTR, Paths.get(fullPath).toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START_ATTR, Long.valueOf(position));
+        request.setAttribute(SENDFILE_END_ATTR, Long.valueOf(position + count));
+
+        return true;
+    }
+
+    /**
+     * Creates the file on the local disk with the given size, so its chunks can be
+     * written at their offsets in any order.
+     * 
+     * @param fullPath the path of the file.
+     * @param size     the size of the file in bytes.
+     * @throws BaseException if we cannot create the file.
+     */
+    public void preallocateFile(String fullPath, long size) throws BaseException {
+        try (RandomAccessFile file = new RandomAccessFile(fullPath, "rw")) {
+            file.setLength(size);
+        } catch (IOException e) {
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_SAVE_FILE, e.getMessage());
+        }
+    }
+
+    /**
+     * Writes exactly {@code count} bytes of the input stream into the file at the
+     * given position.
+     * 
+     * @param fullPath      the path of an existing file.
+     * @param position      the offset of the first byte to write.
+     * @param inputStream   the input stream containing the data.
+     * @param count         the number of bytes to write.
+     * @param contentHashes the hashes updated with the written bytes, or
+     *                      {@code null}.
+     * @throws BaseException if the stream does not contain exactly {@code count}
+     *                       bytes or we cannot write the file.
+     */
+    public void writeFile(String fullPath, long position, InputStream inputStream, long count,
+            ContentHashes contentHashes) throws BaseException {
+        try (FileChannel fileChannel = FileChannel.open(Paths.get(fullPath), StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[fileStoreProperties.getBufferSize()];
+            long written = 0;
+            int bytesRead;
+
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                if (written + bytesRead > count) {
+                    throw new BaseException(HttpStatus.BAD_REQUEST, ExceptionType.INVALID_INPUT,
+                            "The chunk is larger than " + count + " bytes.");
+                }
+
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, bytesRead);
+                while (byteBuffer.hasRemaining()) {
+                    written += fileChannel.write(byteBuffer, position + written);
+                }
+                if (contentHashes != null) {
+                    contentHashes.update(buffer, 0, bytesRead);
+                }
+            }
+
+            if (written != count) {
+                throw new BaseException(HttpStatus.BAD_REQUEST, ExceptionType.INVALID_INPUT,
+                        "The chunk must contain " + count + " bytes, but it contained " + written + " bytes.");
+            }
+        } catch (IOException e) {
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_SAVE_FILE, e.getMessage());
+        }
+    }
+
+    /**
+     * Updates the hashes with a region of the file.
+     * 
+     * @param fullPath      the path of the file.
+     * @param position      the offset of the first byte to hash.
+     * @param count         the number of bytes to hash.
+     * @param contentHashes the hashes to update.
+     * @throws BaseException if we cannot read the file.
+     */
+    public void updateDigest(String fullPath, long position, long count, ContentHashes contentHashes)
+            throws BaseException {
+        try (FileChannel fileChannel = FileChannel.open(Paths.get(fullPath), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(fileStoreProperties.getBufferSize());
+            long remaining = count;
+
+            while (remaining > 0) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), remaining));
+
+                int bytesRead = fileChannel.read(buffer, position + count - remaining);
+                if (bytesRead == -1) {
+                    throw new IOException("Unexpected end of file: " + fullPath);
+                }
+
+                buffer.flip();
+                contentHashes.update(buffer);
+                remaining -= bytesRead;
+            }
+        } catch (IOException e) {
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_CALCULATE_MD5,
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the hashes computed for the content of a new file: the hash of the
+     * configured algorithm, the CRC32C checksum if it is enabled, and optionally
+     * the SHA-256 content digest of the deduplicated blob store.
+     * 
+     * @param computeContentDigest whether to compute the SHA-256 content digest.
+     * @return the new hashes.
+     */
+    public ContentHashes createContentHashes(boolean computeContentDigest) {
+        List<HashAlgorithm> algorithms = new ArrayList<>();
+        algorithms.add(getHashAlgorithm());
+        if (fileStoreProperties.isChecksumEnabled()) {
+            algorithms.add(HashAlgorithm.CRC32C);
+        }
+        if (computeContentDigest) {
+            algorithms.add(HashAlgorithm.SHA256);
+        }
+
+        return new ContentHashes(algorithms);
+    }
+
+    /**
+     * Returns the algorithm of the hash of the new files.
+     * 
+     * @return the configured hash algorithm.
+     */
+    public HashAlgorithm getHashAlgorithm() {
+        return HashAlgorithm.fromName(fileStoreProperties.getHashAlgorithm());
+    }
+
+    /**
+     * Moves a file from the local disk into the storage. On the local disk the
+     * target is replaced atomically if the file system supports it.
+     * 
+     * @param sourcePath the path of the file on the local disk.
+     * @param targetPath the new path of the file in the storage.
+     * @throws BaseException if we cannot move the file.
+     */
+    public void moveFile(String sourcePath, String targetPath) throws BaseException {
+        storageBackend.importFile(Paths.get(sourcePath), targetPath);
+    }
+
+    /**
+     * Creates a hard link to a file of the local disk, so the file can be moved
+     * to the storage while it is kept at its current path. The file is copied if
+     * the file system does not support hard links.
+     * 
+     * @param sourcePath the path of the file on the local disk.
+     * @param targetPath the path of the link on the local disk.
+     * @throws BaseException if we cannot link the file.
+     */
+    public void linkLocalFile(String sourcePath, String targetPath) throws BaseException {
+        Path source = Paths.get(sourcePath);
+        Path target = Paths.get(targetPath);
+        try {
+            try {
+                Files.createLink(target, source);
+            } catch (UnsupportedOperationException e) {
+                Files.copy(source, target);
+            }
+        } catch (IOException e) {
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_SAVE_FILE, e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the file at the given path from the storage if it exists.
+     * 
+     * @param fullPath the path of the file.
+     */
+    public void deleteFile(String fullPath) {
+        deleteFile(storageBackend, fullPath);
+    }
+
+    /**
+     * Deletes the file at the given path from the local disk if it exists,
+     * regardless of the storage backend.
+     * 
+     * @param fullPath the path of the file.
+     */
+    public void deleteLocalFile(String fullPath) {
+        deleteFile(localStorageBackend, fullPath);
+    }
+
+    private void deleteFile(StorageBackend backend, String fullPath) {
+        try {
+            backend.delete(fullPath);
+        } catch (BaseException e) {
+            LOG.error(MessageFormat.format("Cannot delete the file {0}. Reason: {1}", fullPath, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Returns the size of the file in the storage.
+     * 
+     * @param fullPath the path of the file.
+     * @return the size of the file in bytes, or {@code -1} if it does not exist.
+     * @throws BaseException if we cannot access the storage.
+     */
+    public long getFileSize(String fullPath) throws BaseException {
+        return storageBackend.size(fullPath);
+    }
+
+    /**
+     * Returns the last modification time of the file in the storage.
+     * 
+     * @param fullPath the path of the file.
+     * @return the modification time in epoch milliseconds, or {@code -1} if the
+     *         file does not exist.
+     * @throws BaseException if we cannot access the storage.
+     */
+    public long getLastModified(String fullPath) throws BaseException {
+        return storageBackend.lastModified(fullPath);
+    }
+
+    /**
+     * Returns whether the files are stored on the local disk.
+     * 
+     * @return {@code true} if the storage backend is the local disk.
+     */
+    public boolean isLocalStorage() {
+        return storageBackend.isLocal();
+    }
+
     /**
      * Deletes a file identified by the given system ID, file ID, and extension.
      * <p>
@@ -145,10 +661,13 @@ public class FileHelper {
     public void deleteFile(String systemId, String fileId, String extension) {
         String directoryPath = getDirectoryPath(systemId);
         String fullPath = getFullPath(directoryPath, fileId, extension);
-        Path path = Paths.get(fullPath);
 
         try {
-            Files.deleteIfExists(path);
+            storageBackend.delete(fullPath);
+            if (isSharded()) {
+                // The file may not have been migrated to the sharded layout yet.
+                storageBackend.delete(getFlatPath(directoryPath, fileId, extension));
+            }
             LOG.info(MessageFormat.format("File with id {0} deleted successfuly", fileId));
         } catch (Exception e) {
             LOG.error(MessageFormat.format("Cannot delete the file with id {0}. Reason: {1}", fileId, e.getMessage()),
@@ -174,9 +693,42 @@ public class FileHelper {
         return directoryPathBuilder.toString();
     }
 
+    /**
+     * Constructs the directory of a file in the sharded layout.
+     * <p>
+     * When sharding is enabled, the files of a directory are spread over
+     * {@code filestore.shard-depth} levels of subdirectories named after the
+     * two-character prefixes of the file name (e.g. {@code 3f/a2/3fa2...}), so no
+     * directory holds more than a few thousand entries. Otherwise the directory
+     * path is returned unchanged.
+     * </p>
+     *
+     * @param directoryPath the directory path.
+     * @param filename      the name of the file.
+     * @return the directory path of the file.
+     */
+    public String getShardedDirectoryPath(String directoryPath, String filename) {
+        int shardDepth = getShardDepth();
+        if (shardDepth == 0 || filename.length() < shardDepth * SHARD_PREFIX_LENGTH) {
+            return directoryPath;
+        }
+
+        StringBuilder directoryPathBuilder = new StringBuilder(directoryPath);
+        for (int level = 0; level < shardDepth; level++) {
+            int start = level * SHARD_PREFIX_LENGTH;
+            directoryPathBuilder.append(filename, start, start + SHARD_PREFIX_LENGTH).append(File.separatorChar);
+        }
+
+        return directoryPathBuilder.toString();
+    }
+
     /**
      * Constructs the full file path by combining the directory path, file name, and
      * extension.
+     * <p>
+     * The file is placed in the sharded layout, see
+     * {@link #getShardedDirectoryPath(String, String)}.
+     * </p>
      *
      * @param directoryPath the directory path.
      * @param filename      the name of the file.
@@ -184,6 +736,19 @@ public class FileHelper {
      * @return the constructed full file path.
      */
     public String getFullPath(String directoryPath, String filename, String extension) {
+        return getFlatPath(getShardedDirectoryPath(directoryPath, filename), filename, extension);
+    }
+
+    /**
+     * Constructs the file path of the flat layout, where every file is stored
+     * directly in the directory of its system.
+     *
+     * @param directoryPath the directory path.
+     * @param filename      the name of the file.
+     * @param extension     the file extension (without the dot).
+     * @return the constructed full file path.
+     */
+    public String getFlatPath(String directoryPath, String filename, String extension) {
         StringBuilder fullPathBuilder = new StringBuilder();
 
         fullPathBuilder.append(directoryPath).append(filename).append(".").append(extension);
@@ -192,7 +757,163 @@ public class FileHelper {
     }
 
     /**
-     * Creates a directory at the specified path if it does not already exist.
+     * Returns whether the files are stored in the sharded layout.
+     *
+     * @return {@code true} if the shard depth is positive.
+     */
+    public boolean isSharded() {
+        return getShardDepth() > 0;
+    }
+
+    private int getShardDepth() {
+        return Math.max(0, Math.min(fileStoreProperties.getShardDepth(), MAX_SHARD_DEPTH));
+    }
+
+    /**
+     * Returns the path of the stored content of the file entity.
+     * <p>
+     * Files stored in the deduplicated blob store are resolved by their content
+     * digest, all other files by their id in the directory of their system. While
+     * the store is being migrated to the sharded layout, a file that has not been
+     * moved yet is resolved in the flat layout.
+     * </p>
+     *
+     * @param fileEntity the file entity.
+     * @return the full path of the stored content.
+     * @throws BaseException if we cannot access the storage.
+     */
+    public String getFullPath(FileEntity fileEntity) throws BaseException {
+        if (StringUtils.isNotBlank(fileEntity.getContentDigest())) {
+            return getBlobPath(fileEntity.getContentDigest());
+        }
+
+        String directoryPath = getDirectoryPath(fileEntity.getSystemId());
+        String fullPath = getFullPath(directoryPath, fileEntity.getId(), fileEntity.getExtension());
+
+        if (isSharded() && !storageBackend.exists(fullPath)) {
+            String flatPath = getFlatPath(directoryPath, fileEntity.getId(), fileEntity.getExtension());
+            if (storageBackend.exists(flatPath)) {
+                return flatPath;
+            }
+        }
+
+        return fullPath;
+    }
+
+    /**
+     * Returns the directory of a blob in the deduplicated blob store.
+     * <p>
+     * Blobs are spread over two directory levels named after the first two byte
+     * pairs of the digest, so no directory holds more than a few thousand
+     * entries.
+     * </p>
+     *
+     * @param contentDigest the SHA-256 content digest of the blob.
+     * @return the directory path of the blob.
+     */
+    public String getBlobDirectoryPath(String contentDigest) {
+        StringBuilder directoryPathBuilder = new StringBuilder();
+
+        directoryPathBuilder.append(fileStoreProperties.getStorePath()).append(File.separatorChar)
+                .append(BLOB_DIRECTORY).append(File.separatorChar)
+                .append(contentDigest, 0, 2).append(File.separatorChar)
+                .append(contentDigest, 2, 4).append(File.separatorChar);
+
+        return directoryPathBuilder.toString();
+    }
+
+    /**
+     * Returns the full path of a blob in the deduplicated blob store.
+     *
+     * @param contentDigest the SHA-256 content digest of the blob.
+     * @return the full path of the blob.
+     */
+    public String getBlobPath(String contentDigest) {
+        return getBlobDirectoryPath(contentDigest) + contentDigest;
+    }
+
+    /**
+     * Returns the directory where the content of the uploads is written before
+     * their row is inserted, or before their digest is known. It is on the same
+     * file system as the stored files, so a staged file can be moved to its final
+     * place atomically.
+     *
+     * @return the staging directory path.
+     */
+    public String getStagingDirectoryPath() {
+        StringBuilder directoryPathBuilder = new StringBuilder();
+
+        directoryPathBuilder.append(fileStoreProperties.getStorePath()).append(File.separatorChar)
+                .append(BLOB_DIRECTORY).append(File.separatorChar)
+                .append(STAGING_DIRECTORY).append(File.separatorChar);
+
+        return directoryPathBuilder.toString();
+    }
+
+    /**
+     * Returns the path of a staged file.
+     *
+     * @param filename the unique name of the staged file.
+     * @return the full path of the staged file.
+     */
+    public String getStagingPath(String filename) {
+        return getFlatPath(getStagingDirectoryPath(), filename, STAGING_EXTENSION);
+    }
+
+    /**
+     * Returns the path of the marker recording the final path of an upload
+     * whose row has not been inserted yet.
+     *
+     * @param filename the unique name of the uploaded file.
+     * @return the full path of the marker.
+     */
+    public String getPendingMarkerPath(String filename) {
+        return getFlatPath(getStagingDirectoryPath(), filename, PENDING_EXTENSION);
+    }
+
+    /**
+     * Records the final path of an upload before its content is stored there,
+     * so the staging sweep can delete the content if the row of the file is
+     * never inserted. The marker is always written to the local disk.
+     *
+     * @param filename the unique name of the uploaded file.
+     * @param fullPath the final path of the content in the storage.
+     * @throws BaseException if the marker cannot be written.
+     */
+    public void markPending(String filename, String fullPath) throws BaseException {
+        createDirectoryIfNotExists(getStagingDirectoryPath());
+        try {
+            Files.writeString(Paths.get(getPendingMarkerPath(filename)), fullPath);
+        } catch (IOException e) {
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_SAVE_FILE, e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the marker of an upload once the row of the file is inserted.
+     *
+     * @param filename the unique name of the uploaded file.
+     */
+    public void clearPending(String filename) {
+        deleteLocalFile(getPendingMarkerPath(filename));
+    }
+
+    /**
+     * Creates a directory of the storage if it does not already exist. Object
+     * stores have no directories, so nothing is created for them.
+     *
+     * @param directoryPath the directory path to create.
+     * @throws RuntimeException if the directory could not be created.
+     */
+    public void createStorageDirectoryIfNotExists(String directoryPath) {
+        if (storageBackend.isLocal()) {
+            createDirectoryIfNotExists(directoryPath);
+        }
+    }
+
+    /**
+     * Creates a directory on the local disk at the specified path if it does not
+     * already exist.
      *
      * @param directoryPath the directory path to create.
      * @throws RuntimeException if the directory could not be created.
@@ -200,9 +921,10 @@ public class FileHelper {
     public void createDirectoryIfNotExists(String directoryPath) {
         File directory = new File(directoryPath);
         if (!directory.exists()) {
+            // mkdirs also fails if a concurrent upload has just created the directory.
             if (directory.mkdirs()) {
                 LOG.info("Created new directory: " + directoryPath);
-            } else {
+            } else if (!directory.isDirectory()) {
                 throw new RuntimeException("Could not create directory at: " + directoryPath);
             }
         }
@@ -0,0 +1,217 @@
+package hu.evocelot.filestore.helper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import hu.evocelot.filestore.kafka.KafkaMessageProducer;
+import hu.evocelot.filestore.kafka.KafkaTopics;
+import hu.evocelot.filestore.model.FileEntity;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import hu.evocelot.filestore.properties.KafkaProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
+/**
+ * Helper class caching the metadata of the recently read files.
+ * <p>
+ * The cache holds detached copies of the entities and every read returns a new
+ * copy, so the callers can modify the returned entity. Entries are evicted
+ * when the file is saved or deleted and expire after
+ * {@code filestore.metadata-cache-ttl}; a zero size or TTL disables the cache.
+ * If Kafka is enabled, the changes are published on the
+ * {@link KafkaTopics#FILE_METADATA_CHANGED} topic, so the other instances evict
+ * the file as well. One message carries the comma separated ids of every file
+ * changed by the same call.
+ * </p>
+ * <p>
+ * A change made within a transaction is only evicted once the transaction has
+ * committed, otherwise a concurrent read could cache the old row again before
+ * the change becomes visible.
+ * </p>
+ * <p>
+ * The hits, misses and evictions are exported as the
+ * {@code cache.*{cache="filestore.file-metadata"}} metrics.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+@Component
+public class FileMetadataCache {
+
+    private static final Logger LOG = LogManager.getLogger(FileMetadataCache.class);
+
+    public FileMetadataCache(FileStoreProperties fileStoreProperties, KafkaProperties kafkaProperties,
+            @Nullable KafkaMessageProducer kafkaMessageProducer, MeterRegistry meterRegistry) {
+        Duration ttl = fileStoreProperties.getMetadataCacheTtl();
+        this.enabled = fileStoreProperties.getMetadataCacheSize() > 0 && ttl != null && ttl.isPositive();
+        this.files = CacheBuilder.newBuilder()
+                .maximumSize(enabled ? fileStoreProperties.getMetadataCacheSize() : 0)
+                .expireAfterWrite(enabled ? ttl : Duration.ZERO)
+                .recordStats()
+                .build();
+        this.kafkaMessageProducer = "true".equals(kafkaProperties.getEnabled()) ? kafkaMessageProducer : null;
+
+        GuavaCacheMetrics.monitor(meterRegistry, files, "filestore.file-metadata");
+    }
+
+    private final boolean enabled;
+    private final Cache<String, FileEntity> files;
+    private final KafkaMessageProducer kafkaMessageProducer;
+
+    /**
+     * Incremented by every eviction, so a value loaded before an eviction is not
+     * put into the cache afterwards.
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Returns the file from the cache, or loads it with the given function.
+     * Missing files are not cached.
+     *
+     * @param id     the id of the file.
+     * @param loader the function reading the file from the database.
+     * @return a copy of the file, or an empty {@link Optional} if it does not
+     *         exist.
+     */
+    public Optional<FileEntity> get(String id, Function<String, Optional<FileEntity>> loader) {
+        if (!enabled || id == null) {
+            return loader.apply(id);
+        }
+
+        FileEntity cached = files.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(copy(cached));
+        }
+
+        long evictionsBeforeLoad = evictions.get();
+        Optional<FileEntity> loaded = loader.apply(id);
+        if (loaded.isPresent() && evictions.get() == evictionsBeforeLoad) {
+            files.put(id, copy(loaded.get()));
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns the files from the cache, and loads the missing ones with a single
+     * call of the given function. Missing files are not cached.
+     *
+     * @param ids    the distinct ids of the files.
+     * @param loader the function reading the files from the database.
+     * @return copies of the existing files, in no particular order.
+     */
+    public List<FileEntity> getAll(Collection<String> ids, Function<Collection<String>, List<FileEntity>> loader) {
+        if (!enabled) {
+            return loader.apply(ids);
+        }
+
+        List<FileEntity> result = new ArrayList<>(ids.size());
+        List<String> missingIds = new ArrayList<>();
+        for (String id : ids) {
+            FileEntity cached = files.getIfPresent(id);
+            if (cached != null) {
+                result.add(copy(cached));
+            } else {
+                missingIds.add(id);
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            long evictionsBeforeLoad = evictions.get();
+            List<FileEntity> loaded = loader.apply(missingIds);
+            boolean cacheable = evictions.get() == evictionsBeforeLoad;
+            for (FileEntity fileEntity : loaded) {
+                if (cacheable) {
+                    files.put(fileEntity.getId(), copy(fileEntity));
+                }
+                result.add(fileEntity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Evicts the changed files on every instance. Within a transaction the
+     * files are evicted after the commit, and not at all on a rollback.
+     *
+     * @param ids the ids of the changed or deleted files.
+     */
+    public void invalidate(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<String> changedIds = List.copyOf(ids);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictEverywhere(changedIds);
+                }
+            });
+        } else {
+            evictEverywhere(ids);
+        }
+    }
+
+    /**
+     * Evicts the file from the cache of this instance.
+     *
+     * @param id the id of the file.
+     */
+    public void evict(String id) {
+        evictions.incrementAndGet();
+        files.invalidate(id);
+    }
+
+    private void evictEverywhere(Collection<String> ids) {
+        ids.forEach(this::evict);
+        if (kafkaMessageProducer != null) {
+            try {
+                kafkaMessageProducer.sendMessage(KafkaTopics.FILE_METADATA_CHANGED, String.join(",", ids));
+            } catch (RuntimeException e) {
+                // The other instances serve the old metadata until it expires.
+                LOG.warn("Cannot publish the change of {} file(s). Reason: {}", ids.size(), e.getMessage());
+            }
+        }
+    }
+
+    private FileEntity copy(FileEntity source) {
+        FileEntity copy = new FileEntity();
+        copy.setId(source.getId());
+        copy.setInsDate(source.getInsDate());
+        copy.setInsUser(source.getInsUser());
+        copy.setModDate(source.getModDate());
+        copy.setModUser(source.getModUser());
+        copy.setVersion(source.getVersion());
+        copy.setName(source.getName());
+        copy.setExtension(source.getExtension());
+        copy.setHash(source.getHash());
+        copy.setHashAlgorithm(source.getHashAlgorithm());
+        copy.setChecksum(source.getChecksum());
+        copy.setContentDigest(source.getContentDigest());
+        copy.setObjectId(source.getObjectId());
+        copy.setSystemId(source.getSystemId());
+        copy.setSize(source.getSize());
+        copy.setStoredSize(source.getStoredSize());
+        copy.setCompression(source.getCompression());
+        copy.setPasswordHash(source.getPasswordHash());
+        copy.setDownloadCount(source.getDownloadCount());
+        copy.setLabel(source.getLabel());
+        return copy;
+    }
+}
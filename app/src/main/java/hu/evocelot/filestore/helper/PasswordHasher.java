@@ -0,0 +1,142 @@
+package hu.evocelot.filestore.helper;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Helper class hashing and verifying the passwords of the protected files.
+ * <p>
+ * BCrypt is deliberately expensive, so it runs on a fixed pool of
+ * {@code filestore.password-hashing-parallelism} platform threads instead of the
+ * virtual threads of the requests, which would otherwise pin the carrier threads
+ * serving every other request. At most {@code filestore.password-hashing-queue-size}
+ * hashes wait for a thread; beyond that the request is rejected with
+ * {@link HttpStatus#SERVICE_UNAVAILABLE}.
+ * </p>
+ * <p>
+ * A successful verification is remembered for {@code filestore.password-cache-ttl},
+ * so repeated and ranged downloads of the same file with the same password skip
+ * BCrypt. The entries are keyed on the stored hash of the file, so changing the
+ * password invalidates them, and on an HMAC of the supplied password with a key
+ * generated at startup, so the cache never holds the plain password. Failed
+ * verifications are not cached and always pay the full BCrypt cost. A zero size
+ * or TTL disables the cache.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+@Component
+public class PasswordHasher {
+
+    public PasswordHasher(PasswordEncoder passwordEncoder, FileStoreProperties fileStoreProperties) {
+        this.passwordEncoder = passwordEncoder;
+
+        int parallelism = Math.max(1, fileStoreProperties.getPasswordHashingParallelism());
+        this.hashingExecutor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, fileStoreProperties.getPasswordHashingQueueSize())),
+                new ThreadFactoryBuilder().setNameFormat("password-hashing-%d").setDaemon(true).build());
+
+        Duration ttl = fileStoreProperties.getPasswordCacheTtl();
+        this.cacheEnabled = fileStoreProperties.getPasswordCacheSize() > 0 && ttl != null && ttl.isPositive();
+        this.verifiedPasswords = CacheBuilder.newBuilder()
+                .maximumSize(cacheEnabled ? fileStoreProperties.getPasswordCacheSize() : 0)
+                .expireAfterWrite(cacheEnabled ? ttl : Duration.ZERO)
+                .build();
+
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.credentialHash = Hashing.hmacSha256(key);
+    }
+
+    private final PasswordEncoder passwordEncoder;
+    private final ExecutorService hashingExecutor;
+    private final boolean cacheEnabled;
+    private final Cache<VerifiedPassword, Boolean> verifiedPasswords;
+    private final HashFunction credentialHash;
+
+    /**
+     * Hashes the password of a file.
+     *
+     * @param password the plain password.
+     * @return the BCrypt hash of the password.
+     * @throws BaseException when too many passwords are being hashed.
+     */
+    public String encode(String password) throws BaseException {
+        return hash(() -> passwordEncoder.encode(password));
+    }
+
+    /**
+     * Checks whether the supplied password matches the stored hash of the file.
+     *
+     * @param fileId       the id of the file.
+     * @param password     the supplied plain password.
+     * @param passwordHash the stored BCrypt hash of the password of the file.
+     * @return true if the password matches.
+     * @throws BaseException when too many passwords are being hashed.
+     */
+    public boolean matches(String fileId, String password, String passwordHash) throws BaseException {
+        VerifiedPassword verifiedPassword = new VerifiedPassword(fileId, passwordHash,
+                credentialHash.hashString(password, StandardCharsets.UTF_8).toString());
+        if (cacheEnabled && verifiedPasswords.getIfPresent(verifiedPassword) != null) {
+            return true;
+        }
+
+        boolean matches = hash(() -> passwordEncoder.matches(password, passwordHash));
+        if (matches && cacheEnabled) {
+            verifiedPasswords.put(verifiedPassword, Boolean.TRUE);
+        }
+        return matches;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        hashingExecutor.shutdownNow();
+    }
+
+    private <T> T hash(Supplier<T> task) throws BaseException {
+        CompletableFuture<T> future;
+        try {
+            future = CompletableFuture.supplyAsync(task, hashingExecutor);
+        } catch (RejectedExecutionException e) {
+            throw new BaseException(HttpStatus.SERVICE_UNAVAILABLE, ExceptionType.PASSWORD_HASHING_OVERLOADED,
+                    "Too many password checks are in progress, try again later.");
+        }
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // Rethrow the failure of the encoder as if it was called on this thread.
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private record VerifiedPassword(String fileId, String passwordHash, String credential) {
+    }
+}
@@ -0,0 +1,75 @@
+package hu.evocelot.filestore.helper;
+
+import java.time.Duration;
+
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import hu.evocelot.filestore.properties.FileStoreProperties;
+
+/**
+ * Helper class remembering the files whose content hash was verified recently.
+ * <p>
+ * An entry is keyed by the id, the modification time and the size of the stored
+ * file, so any change of the stored content invalidates it. Entries expire
+ * after {@code filestore.verification-cache-window}; a zero window disables the
+ * cache, so every verified download hashes the content.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+@Component
+public class VerificationCache {
+
+    public VerificationCache(FileStoreProperties fileStoreProperties) {
+        Duration window = fileStoreProperties.getVerificationCacheWindow();
+        this.enabled = window != null && window.isPositive();
+        this.verifiedFiles = CacheBuilder.newBuilder()
+                .maximumSize(fileStoreProperties.getVerificationCacheSize())
+                .expireAfterWrite(enabled ? window : Duration.ZERO)
+                .build();
+    }
+
+    private final boolean enabled;
+    private final Cache<VerifiedFile, Boolean> verifiedFiles;
+
+    /**
+     * Returns whether the stored file was verified within the window.
+     *
+     * @param fileId       the id of the file.
+     * @param lastModified the modification time of the stored file.
+     * @param size         the size of the stored file.
+     * @return {@code true} if the hash does not have to be verified again.
+     */
+    public boolean isVerified(String fileId, long lastModified, long size) {
+        return enabled && verifiedFiles.getIfPresent(new VerifiedFile(fileId, lastModified, size)) != null;
+    }
+
+    /**
+     * Records that the hash of the stored file matched.
+     *
+     * @param fileId       the id of the file.
+     * @param lastModified the modification time of the stored file.
+     * @param size         the size of the stored file.
+     */
+    public void markVerified(String fileId, long lastModified, long size) {
+        if (enabled) {
+            verifiedFiles.put(new VerifiedFile(fileId, lastModified, size), Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Forgets the verifications of the file, e.g. after its content was found
+     * corrupted.
+     *
+     * @param fileId the id of the file.
+     */
+    public void invalidate(String fileId) {
+        verifiedFiles.asMap().keySet().removeIf(verifiedFile -> verifiedFile.fileId().equals(fileId));
+    }
+
+    private record VerifiedFile(String fileId, long lastModified, long size) {
+    }
+}
@@ -6,9 +6,11 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.slf4j.MDC;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.util.ContentCachingRequestWrapper;
@@ -140,9 +142,12 @@ public class LoggingInterceptor implements HandlerInterceptor {
         }
         details.put("headers", headers);
 
-        // Collect request parameters.
-        Map<String, String[]> parameters = request.getParameterMap();
-        details.put("parameters", parameters);
+        // Collect request parameters. Multipart bodies are not parsed here, otherwise
+        // streamed uploads would be spooled before reaching the handler.
+        if (!StringUtils.startsWithIgnoreCase(request.getContentType(), MediaType.MULTIPART_FORM_DATA_VALUE)) {
+            Map<String, String[]> parameters = request.getParameterMap();
+            details.put("parameters", parameters);
+        }
 
         // Collect request body, if available.
         try {
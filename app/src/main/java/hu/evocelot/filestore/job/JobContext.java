@@ -0,0 +1,168 @@
+package hu.evocelot.filestore.job;
+
+import java.math.BigInteger;
+import java.time.OffsetDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+import hu.evocelot.filestore.accessor.BackgroundJobAccessor;
+import hu.evocelot.filestore.model.BackgroundJob;
+
+/**
+ * The state of a running background job, shared by the job handler and the
+ * job service.
+ * <p>
+ * The counters can be updated from several threads. They are persisted
+ * together with the checkpoint, so a resumed job continues counting from the
+ * last checkpoint.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+public class JobContext {
+
+    /**
+     * Creates the context of a claimed job.
+     *
+     * @param job                   the job, as read before it was claimed.
+     * @param version               the version of the claimed job.
+     * @param backgroundJobAccessor the accessor persisting the progress.
+     */
+    public JobContext(BackgroundJob job, BigInteger version, BackgroundJobAccessor backgroundJobAccessor) {
+        this.jobId = job.getId();
+        this.submittedDate = job.getInsDate();
+        this.checkpoint = job.getCheckpoint();
+        this.version = version;
+        this.backgroundJobAccessor = backgroundJobAccessor;
+        this.processedItems = new AtomicLong(job.getProcessedItems());
+        this.updatedItems = new AtomicLong(job.getUpdatedItems());
+        this.skippedItems = new AtomicLong(job.getSkippedItems());
+        this.failedItems = new AtomicLong(job.getFailedItems());
+        this.resumedItems = job.getProcessedItems();
+    }
+
+    private final String jobId;
+    private final OffsetDateTime submittedDate;
+    private final BackgroundJobAccessor backgroundJobAccessor;
+    private final AtomicLong processedItems;
+    private final AtomicLong updatedItems;
+    private final AtomicLong skippedItems;
+    private final AtomicLong failedItems;
+    private final long startedAt = System.nanoTime();
+    private final long resumedItems;
+    private volatile String checkpoint;
+    private volatile BigInteger version;
+    private volatile boolean cancelled;
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    /**
+     * Returns the time the job was submitted. It does not change when the job is
+     * resumed.
+     *
+     * @return the submission time.
+     */
+    public OffsetDateTime getSubmittedDate() {
+        return submittedDate;
+    }
+
+    /**
+     * Returns the key of the last item processed before the last checkpoint.
+     *
+     * @return the checkpoint, or {@code null} if the job starts from the
+     *         beginning.
+     */
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    public BigInteger getVersion() {
+        return version;
+    }
+
+    public long getProcessedItems() {
+        return processedItems.get();
+    }
+
+    public long getUpdatedItems() {
+        return updatedItems.get();
+    }
+
+    public long getSkippedItems() {
+        return skippedItems.get();
+    }
+
+    public long getFailedItems() {
+        return failedItems.get();
+    }
+
+    public void addProcessedItems(long count) {
+        processedItems.addAndGet(count);
+    }
+
+    public void addUpdatedItems(long count) {
+        updatedItems.addAndGet(count);
+    }
+
+    public void addSkippedItems(long count) {
+        skippedItems.addAndGet(count);
+    }
+
+    public void addFailedItems(long count) {
+        failedItems.addAndGet(count);
+    }
+
+    /**
+     * Returns whether the job should stop, because it has been cancelled or the
+     * instance has lost it.
+     *
+     * @return {@code true} if the job should stop.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Stops the job at its next checkpoint.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns the number of the items processed per second since the job was
+     * started or resumed on this instance.
+     *
+     * @return the processing rate.
+     */
+    public double getItemsPerSecond() {
+        long elapsedNanos = System.nanoTime() - startedAt;
+        return elapsedNanos > 0 ? (processedItems.get() - resumedItems) * 1_000_000_000d / elapsedNanos : 0;
+    }
+
+    /**
+     * Persists the progress of the job. The job must not be resumed from a
+     * checkpoint before every item up to and including it has been processed.
+     *
+     * @param checkpoint the key of the last processed item.
+     * @return {@code true} if the job should continue, {@code false} if it has
+     *         been cancelled or taken over by another instance.
+     */
+    public boolean checkpoint(String checkpoint) {
+        if (cancelled) {
+            return false;
+        }
+
+        BigInteger currentVersion = version;
+        if (!backgroundJobAccessor.updateProgress(jobId, currentVersion, checkpoint, processedItems.get(),
+                updatedItems.get(), skippedItems.get(), failedItems.get())) {
+            cancelled = true;
+            return false;
+        }
+
+        this.version = currentVersion.add(BigInteger.ONE);
+        this.checkpoint = checkpoint;
+        return true;
+    }
+}
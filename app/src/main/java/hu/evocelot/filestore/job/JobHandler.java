@@ -0,0 +1,34 @@
+package hu.evocelot.filestore.job;
+
+/**
+ * The implementation of a type of background job.
+ * <p>
+ * A handler processes its items in a stable key order and reports the key of
+ * the last processed item with {@link JobContext#checkpoint(String)} after
+ * every batch. A resumed job is run again with the context holding the last
+ * checkpoint, so the items after the checkpoint may be processed twice and the
+ * handlers have to be idempotent.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+public interface JobHandler {
+
+    /**
+     * Returns the type of the jobs run by the handler.
+     *
+     * @return the type of the job.
+     */
+    JobType getType();
+
+    /**
+     * Runs the job from the checkpoint of the context until every item is
+     * processed or the job is cancelled.
+     *
+     * @param context the state of the job.
+     * @throws InterruptedException if the instance is shutting down, the job is
+     *                              resumed later.
+     * @throws Exception            if the job has failed.
+     */
+    void run(JobContext context) throws Exception;
+}
@@ -0,0 +1,42 @@
+package hu.evocelot.filestore.job;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The lifecycle states of a background job.
+ *
+ * @author mark.danisovszky
+ */
+public enum JobStatus {
+
+    /**
+     * The job is submitted but not picked up by an instance yet.
+     */
+    QUEUED,
+
+    /**
+     * The job is being run by an instance.
+     */
+    RUNNING,
+
+    /**
+     * The job has processed every item.
+     */
+    SUCCEEDED,
+
+    /**
+     * The job has stopped with an error.
+     */
+    FAILED,
+
+    /**
+     * The job has been cancelled before it finished.
+     */
+    CANCELLED;
+
+    /**
+     * The states of the jobs that are not finished yet.
+     */
+    public static final Set<JobStatus> ACTIVE = EnumSet.of(QUEUED, RUNNING);
+}
@@ -0,0 +1,32 @@
+package hu.evocelot.filestore.job;
+
+/**
+ * The types of the background jobs. Every type is run by the
+ * {@link JobHandler} returning it from {@link JobHandler#getType()}.
+ *
+ * @author mark.danisovszky
+ */
+public enum JobType {
+
+    /**
+     * Recalculates the size of every file from the storage.
+     */
+    FILE_SIZE_RECALCULATION,
+
+    /**
+     * Recalculates the used disk space of every storage limit from the file
+     * metadata.
+     */
+    USED_STORAGE_RECALCULATION,
+
+    /**
+     * Recalculates the used disk space of the storage limits whose object has
+     * changed since the last reconciliation.
+     */
+    USED_STORAGE_RECONCILIATION,
+
+    /**
+     * Verifies the stored content of every file against its checksum or hash.
+     */
+    INTEGRITY_SCRUB
+}
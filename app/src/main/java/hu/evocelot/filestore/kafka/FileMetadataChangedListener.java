@@ -0,0 +1,37 @@
+package hu.evocelot.filestore.kafka;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import hu.evocelot.filestore.helper.FileMetadataCache;
+
+/**
+ * Kafka listener evicting the files changed by any instance from the local
+ * {@link FileMetadataCache}.
+ *
+ * @author mark.danisovszky
+ */
+@Component
+@ConditionalOnProperty(name = "kafka.enabled", havingValue = "true", matchIfMissing = false)
+public class FileMetadataChangedListener {
+
+    public FileMetadataChangedListener(FileMetadataCache fileMetadataCache) {
+        this.fileMetadataCache = fileMetadataCache;
+    }
+
+    private FileMetadataCache fileMetadataCache;
+
+    /**
+     * Evicts the changed files.
+     *
+     * @param fileIds the comma separated ids of the changed files.
+     */
+    @KafkaListener(topics = KafkaTopics.FILE_METADATA_CHANGED)
+    public void onFileMetadataChanged(String fileIds) {
+        for (String fileId : StringUtils.split(fileIds, ',')) {
+            fileMetadataCache.evict(fileId);
+        }
+    }
+}
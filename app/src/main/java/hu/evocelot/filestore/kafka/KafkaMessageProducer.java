@@ -1,10 +1,19 @@
 package hu.evocelot.filestore.kafka;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import jakarta.annotation.PreDestroy;
+
 /**
  * Kafka message producer responsible for sending messages to Kafka topics.
  * <p>
@@ -13,6 +22,13 @@ import org.springframework.stereotype.Component;
  * consumed by other services or components listening on the same topic. It also
  * logs the sent messages for monitoring and debugging purposes.
  * </p>
+ * <p>
+ * The Kafka producer waits for the metadata of an unknown topic in a
+ * {@code synchronized} block, which pins a virtual thread to its carrier for up
+ * to {@code max.block.ms}. The messages are therefore handed over to a few
+ * platform threads, and the calling request thread only parks until the
+ * message is accepted by the producer.
+ * </p>
  * 
  * @author mark.danisovszky
  */
@@ -20,6 +36,7 @@ import org.springframework.stereotype.Component;
 public class KafkaMessageProducer {
 
     private static final Logger LOG = LogManager.getLogger(KafkaMessageProducer.class);
+    private static final int SEND_THREADS = 2;
 
     public KafkaMessageProducer(KafkaTemplate<String, String> kafkaTemplate) {
         this.kafkaTemplate = kafkaTemplate;
@@ -27,6 +44,9 @@ public class KafkaMessageProducer {
 
     private KafkaTemplate<String, String> kafkaTemplate;
 
+    private final ExecutorService sendExecutor = Executors.newFixedThreadPool(SEND_THREADS,
+            new ThreadFactoryBuilder().setNameFormat("kafka-send-%d").setDaemon(true).build());
+
     /**
      * Sends a message to the specified Kafka topic.
      * <p>
@@ -40,7 +60,20 @@ public class KafkaMessageProducer {
      *                expected to be a string.
      */
     public void sendMessage(String topic, String message) {
-        kafkaTemplate.send(topic, message);
+        try {
+            CompletableFuture.runAsync(() -> kafkaTemplate.send(topic, message), sendExecutor).join();
+        } catch (CompletionException e) {
+            // Rethrow the failure of the producer as if it was sent on this thread.
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
         LOG.info("Kafka message sent: " + message);
     }
+
+    @PreDestroy
+    void shutdown() {
+        sendExecutor.shutdown();
+    }
 }
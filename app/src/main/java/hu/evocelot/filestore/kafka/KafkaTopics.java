@@ -20,4 +20,24 @@ public class KafkaTopics {
      * </p>
      */
     public static final String FILE_SAVED = "file-saved";
+
+    /**
+     * The Kafka topic key for reporting a file whose stored content is corrupted
+     * or missing.
+     * <p>
+     * This topic is published by the integrity scrubber, so the related modules
+     * can restore the file from another copy or notify its owner.
+     * </p>
+     */
+    public static final String FILE_CORRUPTED = "file-corrupted";
+
+    /**
+     * The Kafka topic key for notifying that the metadata of a file has been
+     * changed or deleted.
+     * <p>
+     * Every instance consumes this topic to evict the file from its metadata
+     * cache. The message is the comma separated ids of the changed files.
+     * </p>
+     */
+    public static final String FILE_METADATA_CHANGED = "file-metadata-changed";
 }
@@ -4,8 +4,6 @@ import java.math.BigInteger;
 import java.time.OffsetDateTime;
 
 import jakarta.persistence.Column;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.MappedSuperclass;
 
@@ -60,11 +58,11 @@ public class AbstractIdentifiedAuditEntity {
      * The unique identifier for the entity.
      * <p>
      * This field is automatically generated using UUID as the strategy for unique
-     * identification.
+     * identification, unless it has been assigned before the entity is inserted.
      * </p>
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @AssignableUuid
     @Column(name = "ID", length = 36, nullable = false, unique = true)
     private String id;
 
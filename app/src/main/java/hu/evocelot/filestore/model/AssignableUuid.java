@@ -0,0 +1,19 @@
+package hu.evocelot.filestore.model;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+/**
+ * Marks an identifier generated by the {@link AssignableUuidGenerator}.
+ *
+ * @author mark.danisovszky
+ */
+@IdGeneratorType(AssignableUuidGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.FIELD, ElementType.METHOD })
+public @interface AssignableUuid {
+}
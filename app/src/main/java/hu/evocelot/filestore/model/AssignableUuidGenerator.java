@@ -0,0 +1,38 @@
+package hu.evocelot.filestore.model;
+
+import java.util.EnumSet;
+import java.util.UUID;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+/**
+ * Identifier generator creating a random UUID for the new entities, unless the
+ * identifier has already been assigned by the application.
+ * <p>
+ * Assigning the identifier up front allows the content of a file to be stored
+ * under its final name before its row is inserted.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+public class AssignableUuidGenerator implements BeforeExecutionGenerator {
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+            EventType eventType) {
+        return currentValue != null ? currentValue : UUID.randomUUID().toString();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+
+    @Override
+    public boolean allowAssignedIdentifiers() {
+        return true;
+    }
+}
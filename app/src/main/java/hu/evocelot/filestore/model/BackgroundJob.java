@@ -0,0 +1,190 @@
+package hu.evocelot.filestore.model;
+
+import java.time.OffsetDateTime;
+
+import hu.evocelot.filestore.job.JobStatus;
+import hu.evocelot.filestore.job.JobType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Inheritance;
+import jakarta.persistence.InheritanceType;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.Size;
+
+/**
+ * The background job entity.
+ * <p>
+ * It stores the state and the progress of a long running administrative job,
+ * so the job can be followed from any instance and resumed from its last
+ * checkpoint after a restart.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+@Entity
+@Table(name = "BACKGROUND_JOB")
+@Inheritance(strategy = InheritanceType.SINGLE_TABLE)
+public class BackgroundJob extends AbstractIdentifiedAuditEntity {
+
+    /**
+     * The type of the job.
+     */
+    @Column(name = "type", length = 50, nullable = false)
+    @Enumerated(EnumType.STRING)
+    private JobType type;
+
+    /**
+     * The state of the job.
+     */
+    @Column(name = "status", length = 20, nullable = false)
+    @Enumerated(EnumType.STRING)
+    private JobStatus status;
+
+    /**
+     * The key of the last item processed before the last checkpoint, the job
+     * continues after it when it is resumed.
+     */
+    @Column(name = "checkpoint", length = 100, nullable = true)
+    @Size(max = 100)
+    private String checkpoint;
+
+    /**
+     * The number of the processed items.
+     */
+    @Column(name = "processed_items", nullable = false)
+    private long processedItems;
+
+    /**
+     * The number of the items changed by the job.
+     */
+    @Column(name = "updated_items", nullable = false)
+    private long updatedItems;
+
+    /**
+     * The number of the items the job could not process, e.g. missing files.
+     */
+    @Column(name = "skipped_items", nullable = false)
+    private long skippedItems;
+
+    /**
+     * The number of the items failed with an error.
+     */
+    @Column(name = "failed_items", nullable = false)
+    private long failedItems;
+
+    /**
+     * The time the job was first picked up by an instance.
+     */
+    @Column(name = "started_date", nullable = true)
+    private OffsetDateTime startedDate;
+
+    /**
+     * The time the job has finished.
+     */
+    @Column(name = "finished_date", nullable = true)
+    private OffsetDateTime finishedDate;
+
+    /**
+     * The time the instance running the job has last reported its progress. A
+     * job without a recent heartbeat is resumed by another instance.
+     */
+    @Column(name = "heartbeat_date", nullable = false)
+    private OffsetDateTime heartbeatDate;
+
+    /**
+     * The reason of the failure of the job.
+     */
+    @Column(name = "error_message", length = 1000, nullable = true)
+    @Size(max = 1000)
+    private String errorMessage;
+
+    public JobType getType() {
+        return type;
+    }
+
+    public void setType(JobType type) {
+        this.type = type;
+    }
+
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(JobStatus status) {
+        this.status = status;
+    }
+
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(String checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    public long getProcessedItems() {
+        return processedItems;
+    }
+
+    public void setProcessedItems(long processedItems) {
+        this.processedItems = processedItems;
+    }
+
+    public long getUpdatedItems() {
+        return updatedItems;
+    }
+
+    public void setUpdatedItems(long updatedItems) {
+        this.updatedItems = updatedItems;
+    }
+
+    public long getSkippedItems() {
+        return skippedItems;
+    }
+
+    public void setSkippedItems(long skippedItems) {
+        this.skippedItems = skippedItems;
+    }
+
+    public long getFailedItems() {
+        return failedItems;
+    }
+
+    public void setFailedItems(long failedItems) {
+        this.failedItems = failedItems;
+    }
+
+    public OffsetDateTime getStartedDate() {
+        return startedDate;
+    }
+
+    public void setStartedDate(OffsetDateTime startedDate) {
+        this.startedDate = startedDate;
+    }
+
+    public OffsetDateTime getFinishedDate() {
+        return finishedDate;
+    }
+
+    public void setFinishedDate(OffsetDateTime finishedDate) {
+        this.finishedDate = finishedDate;
+    }
+
+    public OffsetDateTime getHeartbeatDate() {
+        return heartbeatDate;
+    }
+
+    public void setHeartbeatDate(OffsetDateTime heartbeatDate) {
+        this.heartbeatDate = heartbeatDate;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+}
@@ -0,0 +1,77 @@
+package hu.evocelot.filestore.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Inheritance;
+import jakarta.persistence.InheritanceType;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.Size;
+
+/**
+ * The blob entity of the deduplicated blob store.
+ * <p>
+ * A blob is the stored content shared by every {@link FileEntity} with the
+ * same content digest. It is deleted from the disk when its last reference is
+ * removed.
+ * </p>
+ * 
+ * @author mark.danisovszky
+ */
+@Entity
+@Table(name = "FILE_BLOB")
+@Inheritance(strategy = InheritanceType.SINGLE_TABLE)
+public class FileBlob extends AbstractIdentifiedAuditEntity {
+
+    public FileBlob() {
+
+    }
+
+    public FileBlob(String contentDigest, Long size) {
+        this.contentDigest = contentDigest;
+        this.size = size;
+        this.referenceCount = 1L;
+    }
+
+    /**
+     * SHA-256 hash of the content
+     */
+    @Column(name = "content_digest", length = 64, nullable = false, unique = true)
+    @Size(max = 64)
+    private String contentDigest;
+
+    /**
+     * Blob size in bytes
+     */
+    @Column(name = "size", nullable = false)
+    private Long size;
+
+    /**
+     * Number of file entities sharing the blob
+     */
+    @Column(name = "reference_count", nullable = false)
+    private Long referenceCount;
+
+    public String getContentDigest() {
+        return contentDigest;
+    }
+
+    public void setContentDigest(String contentDigest) {
+        this.contentDigest = contentDigest;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public Long getReferenceCount() {
+        return referenceCount;
+    }
+
+    public void setReferenceCount(Long referenceCount) {
+        this.referenceCount = referenceCount;
+    }
+}
@@ -1,7 +1,11 @@
 package hu.evocelot.filestore.model;
 
+import hu.evocelot.filestore.compression.CompressionCodec;
+import hu.evocelot.filestore.hashing.HashAlgorithm;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.Inheritance;
 import jakarta.persistence.InheritanceType;
 import jakarta.persistence.Table;
@@ -17,6 +21,16 @@ import jakarta.validation.constraints.Size;
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 public class FileEntity extends AbstractIdentifiedAuditEntity {
 
+    /**
+     * The maximum length of the name of the file.
+     */
+    public static final int NAME_MAX_LENGTH = 250;
+
+    /**
+     * The maximum length of the extension of the file.
+     */
+    public static final int EXTENSION_MAX_LENGTH = 10;
+
     public FileEntity() {
         this.downloadCount = 0L;
     }
@@ -24,24 +38,47 @@ public class FileEntity extends AbstractIdentifiedAuditEntity {
     /**
      * The name of the file (used as filename)
      */
-    @Column(name = "name", length = 250, nullable = false)
-    @Size(max = 250)
+    @Column(name = "name", length = NAME_MAX_LENGTH, nullable = false)
+    @Size(max = NAME_MAX_LENGTH)
     private String name;
 
     /**
      * The extension of the file (e.g., png, jpg, pdf)
      */
-    @Column(name = "extension", length = 10, nullable = false)
-    @Size(max = 10)
+    @Column(name = "extension", length = EXTENSION_MAX_LENGTH, nullable = false)
+    @Size(max = EXTENSION_MAX_LENGTH)
     private String extension;
 
     /**
-     * MD5 hash of the file
+     * Hash of the file, computed with the hash algorithm
      */
-    @Column(name = "hash", length = 32, nullable = true)
-    @Size(max = 32)
+    @Column(name = "hash", length = 64, nullable = true)
+    @Size(max = 64)
     private String hash;
 
+    /**
+     * Algorithm of the hash, {@code null} for the MD5 hashes of the files stored
+     * before the algorithm became configurable.
+     */
+    @Column(name = "hash_algorithm", length = 10, nullable = true)
+    @Enumerated(EnumType.STRING)
+    private HashAlgorithm hashAlgorithm;
+
+    /**
+     * CRC32C checksum of the file, used for fast integrity checks
+     */
+    @Column(name = "checksum", length = 8, nullable = true)
+    @Size(max = 8)
+    private String checksum;
+
+    /**
+     * SHA-256 hash of the file, set when the content is stored in the
+     * deduplicated blob store.
+     */
+    @Column(name = "content_digest", length = 64, nullable = true)
+    @Size(max = 64)
+    private String contentDigest;
+
     /**
      * ID of the connected entity (internal owner of the file)
      */
@@ -62,6 +99,21 @@ public class FileEntity extends AbstractIdentifiedAuditEntity {
     @Column(name = "size", nullable = true)
     private Long size;
 
+    /**
+     * Size of the stored content in bytes. It differs from the size of the file
+     * if the content is compressed.
+     */
+    @Column(name = "stored_size", nullable = true)
+    private Long storedSize;
+
+    /**
+     * Compression of the stored content, {@code null} for files stored before
+     * compression was introduced.
+     */
+    @Column(name = "compression", length = 10, nullable = true)
+    @Enumerated(EnumType.STRING)
+    private CompressionCodec compression;
+
     /**
      * Bcrypt hash of the file
      */
@@ -106,6 +158,30 @@ public class FileEntity extends AbstractIdentifiedAuditEntity {
         this.hash = hash;
     }
 
+    public HashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    public void setHashAlgorithm(HashAlgorithm hashAlgorithm) {
+        this.hashAlgorithm = hashAlgorithm;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
+    public String getContentDigest() {
+        return contentDigest;
+    }
+
+    public void setContentDigest(String contentDigest) {
+        this.contentDigest = contentDigest;
+    }
+
     public String getObjectId() {
         return objectId;
     }
@@ -130,6 +206,22 @@ public class FileEntity extends AbstractIdentifiedAuditEntity {
         this.size = size;
     }
 
+    public Long getStoredSize() {
+        return storedSize;
+    }
+
+    public void setStoredSize(Long storedSize) {
+        this.storedSize = storedSize;
+    }
+
+    public CompressionCodec getCompression() {
+        return compression;
+    }
+
+    public void setCompression(CompressionCodec compression) {
+        this.compression = compression;
+    }
+
     public double getSizeInMb() {
         return size != null ? size / (1024.0 * 1024.0) : 0;
     }
@@ -0,0 +1,180 @@
+package hu.evocelot.filestore.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Inheritance;
+import jakarta.persistence.InheritanceType;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.Size;
+
+/**
+ * The upload session entity of a chunked upload.
+ * <p>
+ * It stores the metadata of the file being uploaded and the set of chunks that
+ * have already been written, so an interrupted upload can be resumed.
+ * </p>
+ * 
+ * @author mark.danisovszky
+ */
+@Entity
+@Table(name = "UPLOAD_SESSION")
+@Inheritance(strategy = InheritanceType.SINGLE_TABLE)
+public class UploadSession extends AbstractIdentifiedAuditEntity {
+
+    /**
+     * The name of the file (used as filename)
+     */
+    @Column(name = "name", length = 250, nullable = false)
+    @Size(max = 250)
+    private String name;
+
+    /**
+     * The extension of the file (e.g., png, jpg, pdf)
+     */
+    @Column(name = "extension", length = 10, nullable = false)
+    @Size(max = 10)
+    private String extension;
+
+    /**
+     * ID of the connected entity (internal owner of the file)
+     */
+    @Column(name = "object_id", length = 100, nullable = true)
+    @Size(max = 100)
+    private String objectId;
+
+    /**
+     * File creator system ID
+     */
+    @Column(name = "system_id", length = 100, nullable = true)
+    @Size(max = 100)
+    private String systemId;
+
+    /**
+     * Label of the file.
+     */
+    @Column(name = "label", length = 100, nullable = true)
+    @Size(max = 100)
+    private String label;
+
+    /**
+     * Bcrypt hash of the file
+     */
+    @Column(name = "password_hash", length = 100, nullable = true)
+    @Size(max = 100)
+    private String passwordHash;
+
+    /**
+     * The total size of the file in bytes.
+     */
+    @Column(name = "total_size", nullable = false)
+    private Long totalSize;
+
+    /**
+     * The size of a chunk in bytes. Only the last chunk can be smaller.
+     */
+    @Column(name = "chunk_size", nullable = false)
+    private Long chunkSize;
+
+    /**
+     * Bit set of the received chunk numbers.
+     */
+    @Column(name = "received_chunks", nullable = true)
+    private byte[] receivedChunks;
+
+    /**
+     * The ID of the file created by the completion of the upload, or
+     * {@code null} if the completion has not been claimed.
+     */
+    @Column(name = "file_id", length = 36, nullable = true)
+    @Size(max = 36)
+    private String fileId;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public void setExtension(String extension) {
+        this.extension = extension;
+    }
+
+    public String getObjectId() {
+        return objectId;
+    }
+
+    public void setObjectId(String objectId) {
+        this.objectId = objectId;
+    }
+
+    public String getSystemId() {
+        return systemId;
+    }
+
+    public void setSystemId(String systemId) {
+        this.systemId = systemId;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    public void setPasswordHash(String passwordHash) {
+        this.passwordHash = passwordHash;
+    }
+
+    public Long getTotalSize() {
+        return totalSize;
+    }
+
+    public void setTotalSize(Long totalSize) {
+        this.totalSize = totalSize;
+    }
+
+    public Long getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(Long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public byte[] getReceivedChunks() {
+        return receivedChunks;
+    }
+
+    public void setReceivedChunks(byte[] receivedChunks) {
+        this.receivedChunks = receivedChunks;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public void setFileId(String fileId) {
+        this.fileId = fileId;
+    }
+
+    /**
+     * Returns the number of chunks of the file.
+     * 
+     * @return the number of chunks.
+     */
+    public int getTotalChunks() {
+        return (int) ((totalSize + chunkSize - 1) / chunkSize);
+    }
+}
@@ -0,0 +1,45 @@
+package hu.evocelot.filestore.pojo;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import hu.evocelot.filestore.hashing.ContentHashes;
+
+/**
+ * Incremental hash state of a chunked upload.
+ * <p>
+ * The hashes always cover the contiguous prefix of chunks
+ * {@code [0, nextChunk)}. Chunks must be added in order while holding the
+ * lock.
+ * </p>
+ */
+public class ChunkedUploadDigest {
+    private final ContentHashes contentHashes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private int nextChunk;
+
+    public ChunkedUploadDigest(ContentHashes contentHashes) {
+        this.contentHashes = contentHashes;
+    }
+
+    /**
+     * Returns every hash that has to be updated with the content.
+     * 
+     * @return the hash of the file, the optional checksum and the optional
+     *         content digest.
+     */
+    public ContentHashes getContentHashes() {
+        return contentHashes;
+    }
+
+    public ReentrantLock getLock() {
+        return lock;
+    }
+
+    public int getNextChunk() {
+        return nextChunk;
+    }
+
+    public void advance() {
+        nextChunk++;
+    }
+}
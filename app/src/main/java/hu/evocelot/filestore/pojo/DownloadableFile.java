@@ -0,0 +1,19 @@
+package hu.evocelot.filestore.pojo;
+
+import hu.evocelot.filestore.compression.CompressionCodec;
+
+/**
+ * Everything needed to serve the stored content of a file, without reading its
+ * metadata from the database.
+ *
+ * @param fileId       the id of the file.
+ * @param path         the full path of the stored content.
+ * @param compression  the codec the content is stored with.
+ * @param size         the size of the uncompressed content.
+ * @param hash         the hash of the content, used as the entity tag.
+ * @param lastModified the modification date of the file in epoch milliseconds.
+ * @param filename     the name of the file including its extension.
+ */
+public record DownloadableFile(String fileId, String path, CompressionCodec compression, Long size, String hash,
+        long lastModified, String filename) {
+}
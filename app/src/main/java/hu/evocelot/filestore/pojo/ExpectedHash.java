@@ -0,0 +1,55 @@
+package hu.evocelot.filestore.pojo;
+
+import java.util.Objects;
+
+import hu.evocelot.filestore.hashing.HashAlgorithm;
+import hu.evocelot.filestore.model.FileEntity;
+
+/**
+ * The hash the stored content of a file is verified against.
+ */
+public class ExpectedHash {
+    private final HashAlgorithm hashAlgorithm;
+    private final String hash;
+
+    public ExpectedHash(HashAlgorithm hashAlgorithm, String hash) {
+        this.hashAlgorithm = hashAlgorithm;
+        this.hash = hash;
+    }
+
+    /**
+     * Selects the hash of the file to verify. The CRC32C checksum is the
+     * cheapest to verify, the hash is the fallback for files stored without a
+     * checksum. Rows without an algorithm tag are MD5.
+     * 
+     * @param fileEntity the file.
+     * @return the expected hash of the content of the file.
+     */
+    public static ExpectedHash of(FileEntity fileEntity) {
+        if (fileEntity.getChecksum() != null) {
+            return new ExpectedHash(HashAlgorithm.CRC32C, fileEntity.getChecksum());
+        }
+
+        return new ExpectedHash(Objects.requireNonNullElse(fileEntity.getHashAlgorithm(), HashAlgorithm.MD5),
+                fileEntity.getHash());
+    }
+
+    public HashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * Checks whether the actual hash matches the expected one.
+     * 
+     * @param actualHash the hash of the stored content.
+     * @return {@code true} if the hashes are equal. A file without a stored hash
+     *         never matches.
+     */
+    public boolean matches(String actualHash) {
+        return hash != null && hash.equals(actualHash);
+    }
+}
@@ -0,0 +1,64 @@
+package hu.evocelot.filestore.pojo;
+
+import hu.evocelot.filestore.hashing.HashAlgorithm;
+
+/**
+ * Message published when the stored content of a file is found corrupted or
+ * missing.
+ */
+public class FileIntegrityMessage {
+
+    /**
+     * The detected problem of the stored content.
+     */
+    public enum Status {
+        CORRUPTED, MISSING
+    }
+
+    private final String fileId;
+    private final String systemId;
+    private final String objectId;
+    private final Status status;
+    private final HashAlgorithm hashAlgorithm;
+    private final String expectedHash;
+    private final String actualHash;
+
+    public FileIntegrityMessage(String fileId, String systemId, String objectId, Status status,
+            HashAlgorithm hashAlgorithm, String expectedHash, String actualHash) {
+        this.fileId = fileId;
+        this.systemId = systemId;
+        this.objectId = objectId;
+        this.status = status;
+        this.hashAlgorithm = hashAlgorithm;
+        this.expectedHash = expectedHash;
+        this.actualHash = actualHash;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public String getSystemId() {
+        return systemId;
+    }
+
+    public String getObjectId() {
+        return objectId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public HashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    public String getExpectedHash() {
+        return expectedHash;
+    }
+
+    public String getActualHash() {
+        return actualHash;
+    }
+}
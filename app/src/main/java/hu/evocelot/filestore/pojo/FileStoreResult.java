@@ -1,12 +1,39 @@
 package hu.evocelot.filestore.pojo;
 
+import hu.evocelot.filestore.compression.CompressionCodec;
+import hu.evocelot.filestore.hashing.HashAlgorithm;
+
 public class FileStoreResult {
     private String hash;
     private long size;
+    private String contentDigest;
+    private long storedSize;
+    private CompressionCodec compression;
+    private HashAlgorithm hashAlgorithm;
+    private String checksum;
 
     public FileStoreResult(String hash, long size) {
+        this(hash, size, null);
+    }
+
+    public FileStoreResult(String hash, long size, String contentDigest) {
+        this(hash, size, contentDigest, size, CompressionCodec.NONE);
+    }
+
+    public FileStoreResult(String hash, long size, String contentDigest, long storedSize,
+            CompressionCodec compression) {
+        this(hash, HashAlgorithm.MD5, null, size, contentDigest, storedSize, compression);
+    }
+
+    public FileStoreResult(String hash, HashAlgorithm hashAlgorithm, String checksum, long size,
+            String contentDigest, long storedSize, CompressionCodec compression) {
         this.hash = hash;
+        this.hashAlgorithm = hashAlgorithm;
+        this.checksum = checksum;
         this.size = size;
+        this.contentDigest = contentDigest;
+        this.storedSize = storedSize;
+        this.compression = compression;
     }
 
     public String getHash() {
@@ -16,4 +43,24 @@ public class FileStoreResult {
     public long getSize() {
         return size;
     }
-}
\ No newline at end of file
+
+    public String getContentDigest() {
+        return contentDigest;
+    }
+
+    public long getStoredSize() {
+        return storedSize;
+    }
+
+    public CompressionCodec getCompression() {
+        return compression;
+    }
+
+    public HashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+}
@@ -0,0 +1,54 @@
+package hu.evocelot.filestore.pojo;
+
+import java.time.Instant;
+
+/**
+ * Storage leased by the instance from the storage limit of an object.
+ * <p>
+ * The leased bytes are already counted as used in the database, so the
+ * reservations can be served from the lease without updating the limit. The
+ * lease is not thread-safe, it must only be used while holding the lock of
+ * its object.
+ * </p>
+ */
+public class QuotaLease {
+    private final Instant expiresAt;
+    private long available;
+
+    public QuotaLease(long available, Instant expiresAt) {
+        this.available = available;
+        this.expiresAt = expiresAt;
+    }
+
+    public boolean isExpired(Instant now) {
+        return !now.isBefore(expiresAt);
+    }
+
+    public long getAvailable() {
+        return available;
+    }
+
+    /**
+     * Takes the given number of bytes from the lease.
+     *
+     * @param size the number of the reserved bytes.
+     * @return {@code true} if the lease had enough storage available.
+     */
+    public boolean take(long size) {
+        if (size > available) {
+            return false;
+        }
+
+        available -= size;
+        return true;
+    }
+
+    /**
+     * Gives back released bytes to the lease.
+     *
+     * @param size the number of the released bytes.
+     */
+    public void give(long size) {
+        available += size;
+    }
+}
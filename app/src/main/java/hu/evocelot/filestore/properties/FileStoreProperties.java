@@ -1,8 +1,14 @@
 package hu.evocelot.filestore.properties;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import hu.evocelot.filestore.storage.FsyncPolicy;
+
 /**
  * Class for reading the relevant project ENVs.
  * 
@@ -13,6 +19,48 @@ import org.springframework.context.annotation.Configuration;
 public class FileStoreProperties {
     private String storePath;
     private int bufferSize;
+    private boolean zeroCopyEnabled;
+    private long zeroCopyMinSize;
+    private boolean deduplicationEnabled;
+    private int shardDepth;
+    private String storageBackend;
+    private boolean compressionEnabled;
+    private String compressionCodec;
+    private List<String> compressionExtensions = new ArrayList<>();
+    private double compressionMaxRatio;
+    private Duration stagingSweepInterval;
+    private Duration stagingMaxAge;
+    private Duration uploadSessionTtl;
+    private FsyncPolicy fsyncPolicy;
+    private String hashAlgorithm;
+    private boolean checksumEnabled;
+    private Duration verificationCacheWindow;
+    private long verificationCacheSize;
+    private boolean scrubEnabled;
+    private Duration scrubInterval;
+    private long scrubBytesPerSecond;
+    private int scrubIops;
+    private int recalculationParallelism;
+    private int jobParallelism;
+    private Duration jobHeartbeatTimeout;
+    private boolean usedStorageReconciliationEnabled;
+    private Duration usedStorageReconciliationInterval;
+    private Duration usedStorageReconciliationGrace;
+    private boolean quotaLeaseEnabled;
+    private long quotaLeaseSize;
+    private Duration quotaLeaseDuration;
+    private long quotaOverCommit;
+    private long metadataCacheSize;
+    private Duration metadataCacheTtl;
+    private Duration downloadCountFlushInterval;
+    private int passwordHashingParallelism;
+    private int passwordHashingQueueSize;
+    private long passwordCacheSize;
+    private Duration passwordCacheTtl;
+    private String downloadUrlSecret;
+    private Duration downloadUrlTtl;
+    private int batchMaxSize;
+    private int deleteParallelism;
 
     public String getStorePath() {
         return storePath;
@@ -29,4 +77,340 @@ public class FileStoreProperties {
     public void setBufferSize(int bufferSize) {
         this.bufferSize = bufferSize;
     }
+
+    public boolean isZeroCopyEnabled() {
+        return zeroCopyEnabled;
+    }
+
+    public void setZeroCopyEnabled(boolean zeroCopyEnabled) {
+        this.zeroCopyEnabled = zeroCopyEnabled;
+    }
+
+    public long getZeroCopyMinSize() {
+        return zeroCopyMinSize;
+    }
+
+    public void setZeroCopyMinSize(long zeroCopyMinSize) {
+        this.zeroCopyMinSize = zeroCopyMinSize;
+    }
+
+    public boolean isDeduplicationEnabled() {
+        return deduplicationEnabled;
+    }
+
+    public void setDeduplicationEnabled(boolean deduplicationEnabled) {
+        this.deduplicationEnabled = deduplicationEnabled;
+    }
+
+    public int getShardDepth() {
+        return shardDepth;
+    }
+
+    public void setShardDepth(int shardDepth) {
+        this.shardDepth = shardDepth;
+    }
+
+    public String getStorageBackend() {
+        return storageBackend;
+    }
+
+    public void setStorageBackend(String storageBackend) {
+        this.storageBackend = storageBackend;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    public String getCompressionCodec() {
+        return compressionCodec;
+    }
+
+    public void setCompressionCodec(String compressionCodec) {
+        this.compressionCodec = compressionCodec;
+    }
+
+    public List<String> getCompressionExtensions() {
+        return compressionExtensions;
+    }
+
+    public void setCompressionExtensions(List<String> compressionExtensions) {
+        this.compressionExtensions = compressionExtensions;
+    }
+
+    public double getCompressionMaxRatio() {
+        return compressionMaxRatio;
+    }
+
+    public void setCompressionMaxRatio(double compressionMaxRatio) {
+        this.compressionMaxRatio = compressionMaxRatio;
+    }
+
+    public Duration getStagingSweepInterval() {
+        return stagingSweepInterval;
+    }
+
+    public void setStagingSweepInterval(Duration stagingSweepInterval) {
+        this.stagingSweepInterval = stagingSweepInterval;
+    }
+
+    public Duration getStagingMaxAge() {
+        return stagingMaxAge;
+    }
+
+    public void setStagingMaxAge(Duration stagingMaxAge) {
+        this.stagingMaxAge = stagingMaxAge;
+    }
+
+    public Duration getUploadSessionTtl() {
+        return uploadSessionTtl;
+    }
+
+    public void setUploadSessionTtl(Duration uploadSessionTtl) {
+        this.uploadSessionTtl = uploadSessionTtl;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    public void setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+        this.fsyncPolicy = fsyncPolicy;
+    }
+
+    public String getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    public void setHashAlgorithm(String hashAlgorithm) {
+        this.hashAlgorithm = hashAlgorithm;
+    }
+
+    public boolean isChecksumEnabled() {
+        return checksumEnabled;
+    }
+
+    public void setChecksumEnabled(boolean checksumEnabled) {
+        this.checksumEnabled = checksumEnabled;
+    }
+
+    public Duration getVerificationCacheWindow() {
+        return verificationCacheWindow;
+    }
+
+    public void setVerificationCacheWindow(Duration verificationCacheWindow) {
+        this.verificationCacheWindow = verificationCacheWindow;
+    }
+
+    public long getVerificationCacheSize() {
+        return verificationCacheSize;
+    }
+
+    public void setVerificationCacheSize(long verificationCacheSize) {
+        this.verificationCacheSize = verificationCacheSize;
+    }
+
+    public boolean isScrubEnabled() {
+        return scrubEnabled;
+    }
+
+    public void setScrubEnabled(boolean scrubEnabled) {
+        this.scrubEnabled = scrubEnabled;
+    }
+
+    public Duration getScrubInterval() {
+        return scrubInterval;
+    }
+
+    public void setScrubInterval(Duration scrubInterval) {
+        this.scrubInterval = scrubInterval;
+    }
+
+    public long getScrubBytesPerSecond() {
+        return scrubBytesPerSecond;
+    }
+
+    public void setScrubBytesPerSecond(long scrubBytesPerSecond) {
+        this.scrubBytesPerSecond = scrubBytesPerSecond;
+    }
+
+    public int getScrubIops() {
+        return scrubIops;
+    }
+
+    public void setScrubIops(int scrubIops) {
+        this.scrubIops = scrubIops;
+    }
+
+    public int getRecalculationParallelism() {
+        return recalculationParallelism;
+    }
+
+    public void setRecalculationParallelism(int recalculationParallelism) {
+        this.recalculationParallelism = recalculationParallelism;
+    }
+
+    public int getJobParallelism() {
+        return jobParallelism;
+    }
+
+    public void setJobParallelism(int jobParallelism) {
+        this.jobParallelism = jobParallelism;
+    }
+
+    public Duration getJobHeartbeatTimeout() {
+        return jobHeartbeatTimeout;
+    }
+
+    public void setJobHeartbeatTimeout(Duration jobHeartbeatTimeout) {
+        this.jobHeartbeatTimeout = jobHeartbeatTimeout;
+    }
+
+    public boolean isUsedStorageReconciliationEnabled() {
+        return usedStorageReconciliationEnabled;
+    }
+
+    public void setUsedStorageReconciliationEnabled(boolean usedStorageReconciliationEnabled) {
+        this.usedStorageReconciliationEnabled = usedStorageReconciliationEnabled;
+    }
+
+    public Duration getUsedStorageReconciliationInterval() {
+        return usedStorageReconciliationInterval;
+    }
+
+    public void setUsedStorageReconciliationInterval(Duration usedStorageReconciliationInterval) {
+        this.usedStorageReconciliationInterval = usedStorageReconciliationInterval;
+    }
+
+    public Duration getUsedStorageReconciliationGrace() {
+        return usedStorageReconciliationGrace;
+    }
+
+    public void setUsedStorageReconciliationGrace(Duration usedStorageReconciliationGrace) {
+        this.usedStorageReconciliationGrace = usedStorageReconciliationGrace;
+    }
+
+    public boolean isQuotaLeaseEnabled() {
+        return quotaLeaseEnabled;
+    }
+
+    public void setQuotaLeaseEnabled(boolean quotaLeaseEnabled) {
+        this.quotaLeaseEnabled = quotaLeaseEnabled;
+    }
+
+    public long getQuotaLeaseSize() {
+        return quotaLeaseSize;
+    }
+
+    public void setQuotaLeaseSize(long quotaLeaseSize) {
+        this.quotaLeaseSize = quotaLeaseSize;
+    }
+
+    public Duration getQuotaLeaseDuration() {
+        return quotaLeaseDuration;
+    }
+
+    public void setQuotaLeaseDuration(Duration quotaLeaseDuration) {
+        this.quotaLeaseDuration = quotaLeaseDuration;
+    }
+
+    public long getQuotaOverCommit() {
+        return quotaOverCommit;
+    }
+
+    public void setQuotaOverCommit(long quotaOverCommit) {
+        this.quotaOverCommit = quotaOverCommit;
+    }
+
+    public long getMetadataCacheSize() {
+        return metadataCacheSize;
+    }
+
+    public void setMetadataCacheSize(long metadataCacheSize) {
+        this.metadataCacheSize = metadataCacheSize;
+    }
+
+    public Duration getMetadataCacheTtl() {
+        return metadataCacheTtl;
+    }
+
+    public void setMetadataCacheTtl(Duration metadataCacheTtl) {
+        this.metadataCacheTtl = metadataCacheTtl;
+    }
+
+    public Duration getDownloadCountFlushInterval() {
+        return downloadCountFlushInterval;
+    }
+
+    public void setDownloadCountFlushInterval(Duration downloadCountFlushInterval) {
+        this.downloadCountFlushInterval = downloadCountFlushInterval;
+    }
+
+    public int getPasswordHashingParallelism() {
+        return passwordHashingParallelism;
+    }
+
+    public void setPasswordHashingParallelism(int passwordHashingParallelism) {
+        this.passwordHashingParallelism = passwordHashingParallelism;
+    }
+
+    public int getPasswordHashingQueueSize() {
+        return passwordHashingQueueSize;
+    }
+
+    public void setPasswordHashingQueueSize(int passwordHashingQueueSize) {
+        this.passwordHashingQueueSize = passwordHashingQueueSize;
+    }
+
+    public long getPasswordCacheSize() {
+        return passwordCacheSize;
+    }
+
+    public void setPasswordCacheSize(long passwordCacheSize) {
+        this.passwordCacheSize = passwordCacheSize;
+    }
+
+    public Duration getPasswordCacheTtl() {
+        return passwordCacheTtl;
+    }
+
+    public void setPasswordCacheTtl(Duration passwordCacheTtl) {
+        this.passwordCacheTtl = passwordCacheTtl;
+    }
+
+    public String getDownloadUrlSecret() {
+        return downloadUrlSecret;
+    }
+
+    public void setDownloadUrlSecret(String downloadUrlSecret) {
+        this.downloadUrlSecret = downloadUrlSecret;
+    }
+
+    public Duration getDownloadUrlTtl() {
+        return downloadUrlTtl;
+    }
+
+    public void setDownloadUrlTtl(Duration downloadUrlTtl) {
+        this.downloadUrlTtl = downloadUrlTtl;
+    }
+
+    public int getBatchMaxSize() {
+        return batchMaxSize;
+    }
+
+    public void setBatchMaxSize(int batchMaxSize) {
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    public int getDeleteParallelism() {
+        return deleteParallelism;
+    }
+
+    public void setDeleteParallelism(int deleteParallelism) {
+        this.deleteParallelism = deleteParallelism;
+    }
 }
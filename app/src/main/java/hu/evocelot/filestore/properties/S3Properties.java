@@ -0,0 +1,96 @@
+package hu.evocelot.filestore.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Properties class for reading the configuration of the S3-compatible object
+ * store used when {@code filestore.storage-backend} is {@code s3}.
+ *
+ * @author mark.danisovszky
+ */
+@Configuration
+@ConfigurationProperties(prefix = "filestore.s3")
+public class S3Properties {
+    private String endpoint;
+    private String region;
+    private String bucket;
+    private String accessKey;
+    private String secretKey;
+    private boolean pathStyleAccess;
+    private int partSize;
+    private int uploadParallelism;
+    private long uploadMemoryLimit;
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public void setRegion(String region) {
+        this.region = region;
+    }
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(String bucket) {
+        this.bucket = bucket;
+    }
+
+    public String getAccessKey() {
+        return accessKey;
+    }
+
+    public void setAccessKey(String accessKey) {
+        this.accessKey = accessKey;
+    }
+
+    public String getSecretKey() {
+        return secretKey;
+    }
+
+    public void setSecretKey(String secretKey) {
+        this.secretKey = secretKey;
+    }
+
+    public boolean isPathStyleAccess() {
+        return pathStyleAccess;
+    }
+
+    public void setPathStyleAccess(boolean pathStyleAccess) {
+        this.pathStyleAccess = pathStyleAccess;
+    }
+
+    public int getPartSize() {
+        return partSize;
+    }
+
+    public void setPartSize(int partSize) {
+        this.partSize = partSize;
+    }
+
+    public int getUploadParallelism() {
+        return uploadParallelism;
+    }
+
+    public void setUploadParallelism(int uploadParallelism) {
+        this.uploadParallelism = uploadParallelism;
+    }
+
+    public long getUploadMemoryLimit() {
+        return uploadMemoryLimit;
+    }
+
+    public void setUploadMemoryLimit(long uploadMemoryLimit) {
+        this.uploadMemoryLimit = uploadMemoryLimit;
+    }
+}
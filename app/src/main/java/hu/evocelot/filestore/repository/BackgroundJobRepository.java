@@ -0,0 +1,98 @@
+package hu.evocelot.filestore.repository;
+
+import java.math.BigInteger;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import hu.evocelot.filestore.job.JobStatus;
+import hu.evocelot.filestore.job.JobType;
+import hu.evocelot.filestore.model.BackgroundJob;
+
+/**
+ * Background job repository for defining the custom functions for the
+ * {@link BackgroundJob}.
+ * <p>
+ * The updates of a job are conditional on its version, so only the instance
+ * that has claimed the job with the current version can report its progress.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+@Repository
+public interface BackgroundJobRepository extends JpaRepository<BackgroundJob, String> {
+
+    boolean existsByTypeAndStatusIn(JobType type, Collection<JobStatus> statuses);
+
+    Optional<BackgroundJob> findFirstByTypeAndStatusOrderByInsDateDesc(JobType type, JobStatus status);
+
+    List<BackgroundJob> findByStatusInAndHeartbeatDateBefore(Collection<JobStatus> statuses,
+            OffsetDateTime heartbeatDate);
+
+    @Modifying
+    @Query("""
+            UPDATE BackgroundJob j
+            SET j.status = :status,
+                j.startedDate = COALESCE(j.startedDate, :now),
+                j.heartbeatDate = :now,
+                j.version = j.version + 1
+            WHERE j.id = :id
+              AND j.version = :version
+              AND j.status IN :activeStatuses
+            """)
+    int claim(String id, BigInteger version, JobStatus status, Collection<JobStatus> activeStatuses,
+            OffsetDateTime now);
+
+    @Modifying
+    @Query("""
+            UPDATE BackgroundJob j
+            SET j.checkpoint = :checkpoint,
+                j.processedItems = :processedItems,
+                j.updatedItems = :updatedItems,
+                j.skippedItems = :skippedItems,
+                j.failedItems = :failedItems,
+                j.heartbeatDate = :now,
+                j.version = j.version + 1
+            WHERE j.id = :id
+              AND j.version = :version
+              AND j.status = :status
+            """)
+    int updateProgress(String id, BigInteger version, JobStatus status, String checkpoint, long processedItems,
+            long updatedItems, long skippedItems, long failedItems, OffsetDateTime now);
+
+    @Modifying
+    @Query("""
+            UPDATE BackgroundJob j
+            SET j.status = :status,
+                j.errorMessage = :errorMessage,
+                j.processedItems = :processedItems,
+                j.updatedItems = :updatedItems,
+                j.skippedItems = :skippedItems,
+                j.failedItems = :failedItems,
+                j.finishedDate = :now,
+                j.heartbeatDate = :now,
+                j.version = j.version + 1
+            WHERE j.id = :id
+              AND j.version = :version
+              AND j.status = :runningStatus
+            """)
+    int finish(String id, BigInteger version, JobStatus runningStatus, JobStatus status, String errorMessage,
+            long processedItems, long updatedItems, long skippedItems, long failedItems, OffsetDateTime now);
+
+    @Modifying
+    @Query("""
+            UPDATE BackgroundJob j
+            SET j.status = :status,
+                j.finishedDate = :now,
+                j.version = j.version + 1
+            WHERE j.id = :id
+              AND j.status IN :activeStatuses
+            """)
+    int cancel(String id, JobStatus status, Collection<JobStatus> activeStatuses, OffsetDateTime now);
+}
@@ -0,0 +1,34 @@
+package hu.evocelot.filestore.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import hu.evocelot.filestore.model.FileBlob;
+import jakarta.persistence.LockModeType;
+
+/**
+ * File blob repository for defining the custom functions for the
+ * {@link FileBlob}.
+ * 
+ * @author mark.danisovszky
+ */
+@Repository
+public interface FileBlobRepository extends JpaRepository<FileBlob, String> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from FileBlob b where b.contentDigest = :contentDigest")
+    Optional<FileBlob> findByContentDigestForUpdate(String contentDigest);
+
+    @Modifying
+    @Query("""
+                UPDATE FileBlob b
+                SET b.referenceCount = b.referenceCount + 1
+                WHERE b.contentDigest = :contentDigest
+            """)
+    int incrementReferenceCount(String contentDigest);
+}
@@ -1,7 +1,10 @@
 package hu.evocelot.filestore.repository;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
@@ -24,8 +27,21 @@ public interface FileRepository extends JpaRepository<FileEntity, String>, JpaSp
     @Query("""
                 SELECT f.objectId, COALESCE(SUM(f.size), 0)
                 FROM FileEntity f
-                WHERE f.objectId IS NOT NULL
+                WHERE f.objectId IN :objectIds
                 GROUP BY f.objectId
             """)
-    List<Object[]> findUsedStorageByObjectId();
+    List<Object[]> findUsedStorageByObjectIdIn(@Param("objectIds") Collection<String> objectIds);
+
+    @Query("""
+                SELECT DISTINCT f.objectId
+                FROM FileEntity f
+                WHERE f.modDate > :since
+                  AND f.modDate <= :until
+                  AND f.objectId > :objectId
+                ORDER BY f.objectId
+            """)
+    List<String> findObjectIdsModifiedBetween(@Param("since") OffsetDateTime since,
+            @Param("until") OffsetDateTime until, @Param("objectId") String objectId, Pageable pageable);
+
+    List<FileEntity> findByIdGreaterThanOrderByIdAsc(String id, Pageable pageable);
 }
@@ -1,5 +1,10 @@
 package hu.evocelot.filestore.repository;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -21,20 +26,59 @@ public interface FileStorageLimitRepository extends JpaRepository<FileStorageLim
   @Query("select f from FileStorageLimit f where f.objectId = :objectId")
   FileStorageLimit findByObjectId(String objectId);
 
+  List<FileStorageLimit> findByObjectIdIn(Collection<String> objectIds);
+
+  @Query("""
+          SELECT f.objectId
+          FROM FileStorageLimit f
+          WHERE f.modDate > :since
+            AND f.modDate <= :until
+            AND f.objectId > :objectId
+          ORDER BY f.objectId
+      """)
+  List<String> findObjectIdsModifiedBetween(OffsetDateTime since, OffsetDateTime until, String objectId,
+      Pageable pageable);
+
+  @Modifying
+  @Query("""
+          UPDATE FileStorageLimit f
+          SET f.usedDiskSpace = COALESCE(f.usedDiskSpace, 0) + :fileSize,
+              f.modDate = :now
+          WHERE f.objectId = :objectId
+            AND COALESCE(f.usedDiskSpace, 0) + :fileSize <= f.maxDiskSpace
+      """)
+  int reserveStorage(String objectId, long fileSize, OffsetDateTime now);
+
   @Modifying
   @Query("""
           UPDATE FileStorageLimit f
-          SET f.usedDiskSpace = f.usedDiskSpace + :fileSize
+          SET f.usedDiskSpace = COALESCE(f.usedDiskSpace, 0) + :size,
+              f.modDate = :now
           WHERE f.objectId = :objectId
-            AND f.usedDiskSpace + :fileSize <= f.maxDiskSpace
+            AND COALESCE(f.usedDiskSpace, 0) + :size <= f.maxDiskSpace + :overCommit
       """)
-  int reserveStorage(String objectId, long fileSize);
+  int leaseStorage(String objectId, long size, long overCommit, OffsetDateTime now);
+
+  @Modifying
+  @Query("""
+          UPDATE FileStorageLimit f
+          SET f.usedDiskSpace = CASE
+                WHEN COALESCE(f.usedDiskSpace, 0) + :delta < 0 THEN 0
+                ELSE COALESCE(f.usedDiskSpace, 0) + :delta
+              END,
+              f.modDate = :now
+          WHERE f.objectId = :objectId
+      """)
+  int adjustUsedDiskSpace(String objectId, long delta, OffsetDateTime now);
+
+  List<FileStorageLimit> findByObjectIdGreaterThanOrderByObjectIdAsc(String objectId, Pageable pageable);
 
   @Modifying
   @Query("""
           UPDATE FileStorageLimit f
           SET f.usedDiskSpace = :usedDiskSpace
           WHERE f.objectId = :objectId
+            AND f.modDate <= :until
       """)
-  int updateUsedDiskSpace(String objectId, long usedDiskSpace);
+  int reconcileUsedDiskSpace(String objectId, long usedDiskSpace, OffsetDateTime until);
 }
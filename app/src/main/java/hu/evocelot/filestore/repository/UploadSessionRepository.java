@@ -0,0 +1,71 @@
+package hu.evocelot.filestore.repository;
+
+import java.math.BigInteger;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import hu.evocelot.filestore.model.UploadSession;
+import jakarta.persistence.LockModeType;
+
+/**
+ * Upload session repository for defining the custom functions for the
+ * {@link UploadSession}.
+ * 
+ * @author mark.danisovszky
+ */
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from UploadSession s where s.id = :id")
+    Optional<UploadSession> findByIdForUpdate(String id);
+
+    @Query("""
+            SELECT s.objectId, COALESCE(SUM(s.totalSize), 0)
+            FROM UploadSession s
+            WHERE s.objectId IN :objectIds
+            GROUP BY s.objectId
+            """)
+    List<Object[]> findReservedStorageByObjectIdIn(Collection<String> objectIds);
+
+    List<UploadSession> findByModDateBeforeOrderByModDateAsc(OffsetDateTime modDate, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM UploadSession s WHERE s.id = :id")
+    int deleteSessionById(String id);
+
+    @Modifying
+    @Query("DELETE FROM UploadSession s WHERE s.id = :id AND s.version = :version")
+    int deleteSessionByIdAndVersion(String id, BigInteger version);
+
+    @Modifying
+    @Query("""
+            UPDATE UploadSession s
+            SET s.fileId = :fileId,
+                s.modDate = :now,
+                s.version = s.version + 1
+            WHERE s.id = :id
+              AND s.fileId IS NULL
+            """)
+    int claimCompletion(String id, String fileId, OffsetDateTime now);
+
+    @Modifying
+    @Query("""
+            UPDATE UploadSession s
+            SET s.fileId = NULL,
+                s.modDate = :now,
+                s.version = s.version + 1
+            WHERE s.id = :id
+              AND s.fileId = :fileId
+            """)
+    int releaseCompletion(String id, String fileId, OffsetDateTime now);
+}
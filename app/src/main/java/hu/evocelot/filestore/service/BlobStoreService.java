@@ -0,0 +1,137 @@
+package hu.evocelot.filestore.service;
+
+import java.io.InputStream;
+import java.util.Optional;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import hu.evocelot.filestore.accessor.FileBlobAccessor;
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.helper.FileHelper;
+import hu.evocelot.filestore.model.FileBlob;
+import hu.evocelot.filestore.pojo.FileStoreResult;
+
+/**
+ * Service class responsible for the deduplicated blob store.
+ * <p>
+ * The content of the files is stored once per SHA-256 content digest and
+ * shared by every {@link hu.evocelot.filestore.model.FileEntity} with the same
+ * content. The blob is deleted from the disk only when its last reference is
+ * released.
+ * </p>
+ * 
+ * @author mark.danisovszky
+ */
+@Service
+public class BlobStoreService {
+
+    private static final Logger LOG = LogManager.getLogger(BlobStoreService.class);
+
+    public BlobStoreService(FileBlobAccessor fileBlobAccessor, FileHelper fileHelper) {
+        this.fileBlobAccessor = fileBlobAccessor;
+        this.fileHelper = fileHelper;
+    }
+
+    private final FileBlobAccessor fileBlobAccessor;
+    private final FileHelper fileHelper;
+
+    /**
+     * Stores the content of the stream in the blob store.
+     * <p>
+     * The content is written to a staging file on the local disk while its hash
+     * and SHA-256 content digest are computed, then it is either discarded in
+     * favour of an existing blob or moved to its final place in the storage.
+     * </p>
+     * 
+     * @param filename    the unique name of the staging file.
+     * @param inputStream the input stream containing the file data.
+     * @return the hash, the size and the content digest of the stored content.
+     * @throws Exception if the content cannot be stored.
+     */
+    public FileStoreResult storeBlob(String filename, InputStream inputStream) throws Exception {
+        fileHelper.createDirectoryIfNotExists(fileHelper.getStagingDirectoryPath());
+        String stagingPath = fileHelper.getStagingPath(filename);
+
+        FileStoreResult result;
+        try {
+            result = fileHelper.storeLocalFile(stagingPath, inputStream, true);
+        } catch (Exception e) {
+            fileHelper.deleteLocalFile(stagingPath);
+            throw e;
+        }
+
+        addBlob(stagingPath, result.getContentDigest(), result.getSize());
+
+        return result;
+    }
+
+    /**
+     * Adds a reference to the blob with the given content digest.
+     * <p>
+     * If the blob already exists, the staged file is deleted. Otherwise the staged
+     * file becomes the blob.
+     * </p>
+     * 
+     * @param stagingPath   the path of the staged content.
+     * @param contentDigest the SHA-256 content digest of the staged content.
+     * @param size          the size of the staged content.
+     * @throws BaseException if the blob cannot be created.
+     */
+    public void addBlob(String stagingPath, String contentDigest, long size) throws BaseException {
+        if (fileBlobAccessor.addReference(contentDigest)) {
+            LOG.debug("Content {} is already stored, the duplicate is discarded.", contentDigest);
+            fileHelper.deleteLocalFile(stagingPath);
+            return;
+        }
+
+        fileHelper.createStorageDirectoryIfNotExists(fileHelper.getBlobDirectoryPath(contentDigest));
+        fileHelper.moveFile(stagingPath, fileHelper.getBlobPath(contentDigest));
+
+        try {
+            fileBlobAccessor.save(new FileBlob(contentDigest, size));
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent upload of the same content has created the blob first. The
+            // moved file has the same content, so only the reference has to be added.
+            if (!fileBlobAccessor.addReference(contentDigest)) {
+                throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_SAVE_FILE,
+                        "Cannot create blob " + contentDigest + ". Reason: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Releases a reference of the blob with the given content digest and deletes
+     * the blob when its last reference is released.
+     * <p>
+     * The blob file is deleted while the row is locked, so a concurrent upload of
+     * the same content waits for the deletion and recreates the blob afterwards.
+     * </p>
+     * 
+     * @param contentDigest the SHA-256 content digest of the blob.
+     */
+    @Transactional
+    public void releaseBlob(String contentDigest) {
+        Optional<FileBlob> optionalBlob = fileBlobAccessor.findByContentDigestForUpdate(contentDigest);
+        if (optionalBlob.isEmpty()) {
+            LOG.warn("Cannot find blob {} to release.", contentDigest);
+            return;
+        }
+
+        FileBlob blob = optionalBlob.get();
+        if (blob.getReferenceCount() > 1) {
+            blob.setReferenceCount(blob.getReferenceCount() - 1);
+            fileBlobAccessor.save(blob);
+            return;
+        }
+
+        fileBlobAccessor.delete(blob);
+        fileHelper.deleteFile(fileHelper.getBlobPath(contentDigest));
+        LOG.info("Blob {} deleted, it has no more references.", contentDigest);
+    }
+}
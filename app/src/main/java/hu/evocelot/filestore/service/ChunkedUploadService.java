@@ -0,0 +1,572 @@
+package hu.evocelot.filestore.service;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import hu.evocelot.filestore.accessor.FileEntityAccessor;
+import hu.evocelot.filestore.accessor.UploadSessionAccessor;
+import hu.evocelot.filestore.compression.CompressionCodec;
+import hu.evocelot.filestore.converter.FileEntityWithIdConverter;
+import hu.evocelot.filestore.dto.ChunkedUploadRequestDto;
+import hu.evocelot.filestore.dto.ChunkedUploadStatusDto;
+import hu.evocelot.filestore.dto.FileEntityWithIdDto;
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.hashing.ContentHashes;
+import hu.evocelot.filestore.hashing.HashAlgorithm;
+import hu.evocelot.filestore.helper.FileHelper;
+import hu.evocelot.filestore.helper.PasswordHasher;
+import hu.evocelot.filestore.model.FileEntity;
+import hu.evocelot.filestore.model.UploadSession;
+import hu.evocelot.filestore.pojo.ChunkedUploadDigest;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+
+/**
+ * Action class responsible for handling resumable chunked uploads.
+ * <p>
+ * A chunked upload consists of the following steps:
+ * </p>
+ * <ul>
+ * <li>Initiate: the quota is reserved once for the whole file and a
+ * pre-allocated part file is created.</li>
+ * <li>Upload chunks: every chunk is written at its offset with positional
+ * writes, so chunks can be sent in any order and retried independently.</li>
+ * <li>Query status: returns the received byte ranges and the missing chunks,
+ * so an interrupted upload can be resumed.</li>
+ * <li>Complete: the part file is linked to its final place (or handed over to
+ * the deduplicated blob store) and the file entity is created. The session and
+ * the part file are kept until the entity is inserted, so a failed completion
+ * can be retried.</li>
+ * </ul>
+ * <p>
+ * The hash is computed incrementally over the contiguous prefix of received
+ * chunks. A chunk that continues the prefix is hashed while it is written;
+ * chunks that arrived out of order are read back once the gap is filled. If
+ * the hash state is lost (e.g. after a restart), it is rebuilt from the part
+ * file on completion. The hash states are evicted once they have not been used
+ * for the time to live of the upload sessions, so the states of the sessions
+ * expired by another instance do not pile up.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+@Component
+public class ChunkedUploadService {
+
+    private static final Logger LOG = LogManager.getLogger(ChunkedUploadService.class);
+    private static final String PART_EXTENSION = "part";
+    private static final int MAX_CHUNKS = 100_000;
+
+    public ChunkedUploadService(UploadSessionAccessor uploadSessionAccessor, FileEntityAccessor fileEntityAccessor,
+            FileEntityWithIdConverter fileEntityWithIdConverter, FileHelper fileHelper,
+            PasswordHasher passwordHasher, StorageQuotaService storageQuotaService,
+            UploadFileService uploadFileService, FileStoreProperties fileStoreProperties,
+            BlobStoreService blobStoreService) {
+        this.uploadSessionAccessor = uploadSessionAccessor;
+        this.fileEntityAccessor = fileEntityAccessor;
+        this.fileEntityWithIdConverter = fileEntityWithIdConverter;
+        this.fileHelper = fileHelper;
+        this.passwordHasher = passwordHasher;
+        this.storageQuotaService = storageQuotaService;
+        this.uploadFileService = uploadFileService;
+        this.fileStoreProperties = fileStoreProperties;
+        this.blobStoreService = blobStoreService;
+        // The sessions expired by the sweep of any instance are evicted after the same time.
+        this.digests = CacheBuilder.newBuilder()
+                .expireAfterAccess(fileStoreProperties.getUploadSessionTtl())
+                .build();
+    }
+
+    private final UploadSessionAccessor uploadSessionAccessor;
+    private final FileEntityAccessor fileEntityAccessor;
+    private final FileEntityWithIdConverter fileEntityWithIdConverter;
+    private final FileHelper fileHelper;
+    private final PasswordHasher passwordHasher;
+    private final StorageQuotaService storageQuotaService;
+    private final UploadFileService uploadFileService;
+    private final FileStoreProperties fileStoreProperties;
+    private final BlobStoreService blobStoreService;
+
+    private final Cache<String, ChunkedUploadDigest> digests;
+
+    /**
+     * Initiates a chunked upload.
+     *
+     * @param chunkedUploadRequestDto DTO containing the metadata of the file and
+     *                                the chunk layout.
+     * @return {@link ResponseEntity} containing the status of the new upload
+     *         session.
+     * @throws Exception if the request is invalid or the storage limit is
+     *                   exceeded.
+     */
+    public ResponseEntity<ChunkedUploadStatusDto> initiateUpload(ChunkedUploadRequestDto chunkedUploadRequestDto)
+            throws Exception {
+        validate(chunkedUploadRequestDto);
+
+        storageQuotaService.reserveStorage(
+                chunkedUploadRequestDto.getObjectId(),
+                chunkedUploadRequestDto.getTotalSize());
+
+        // Create the session.
+        UploadSession session = new UploadSession();
+        session.setName(chunkedUploadRequestDto.getName());
+        session.setExtension(chunkedUploadRequestDto.getExtension());
+        session.setObjectId(chunkedUploadRequestDto.getObjectId());
+        session.setSystemId(chunkedUploadRequestDto.getSystemId());
+        session.setLabel(chunkedUploadRequestDto.getLabel());
+        session.setTotalSize(chunkedUploadRequestDto.getTotalSize());
+        session.setChunkSize(chunkedUploadRequestDto.getChunkSize());
+
+        boolean saved = false;
+        try {
+            String passwordFromRequest = chunkedUploadRequestDto.getPassword();
+            if (StringUtils.isNotBlank(passwordFromRequest)) {
+                session.setPasswordHash(passwordHasher.encode(passwordFromRequest));
+            }
+            session = uploadSessionAccessor.save(session);
+            saved = true;
+
+            // Create the pre-allocated part file.
+            String directoryPath = fileHelper.getDirectoryPath(session.getSystemId());
+            fileHelper.createDirectoryIfNotExists(fileHelper.getShardedDirectoryPath(directoryPath, session.getId()));
+            fileHelper.preallocateFile(getPartPath(session), session.getTotalSize());
+        } catch (Exception e) {
+            // Once the session exists, its reservation is released by whoever deletes it.
+            if (saved) {
+                discardUpload(session);
+            } else {
+                storageQuotaService.releaseStorage(session.getObjectId(), session.getTotalSize());
+            }
+            throw e;
+        }
+
+        digests.put(session.getId(), createDigest());
+
+        return new ResponseEntity<>(createStatus(session, new BitSet()), HttpStatus.OK);
+    }
+
+    /**
+     * Writes a chunk of the file at its offset.
+     * <p>
+     * Chunks that have already been received are acknowledged without being
+     * written again, so retrying a chunk is safe.
+     * </p>
+     *
+     * @param uploadId    the id of the upload session.
+     * @param chunkNumber the zero-based number of the chunk.
+     * @param inputStream the content of the chunk.
+     * @return {@link ResponseEntity} containing the status of the upload session.
+     * @throws Exception if the session does not exist or the chunk is invalid.
+     */
+    public ResponseEntity<ChunkedUploadStatusDto> uploadChunk(String uploadId, int chunkNumber,
+            InputStream inputStream) throws Exception {
+        UploadSession session = getSession(uploadId);
+        if (chunkNumber < 0 || chunkNumber >= session.getTotalChunks()) {
+            throw new BaseException(HttpStatus.BAD_REQUEST, ExceptionType.INVALID_INPUT,
+                    "Invalid chunk number: " + chunkNumber);
+        }
+
+        BitSet receivedChunks = uploadSessionAccessor.getReceivedChunks(session);
+        if (receivedChunks.get(chunkNumber)) {
+            return new ResponseEntity<>(createStatus(session, receivedChunks), HttpStatus.OK);
+        }
+
+        String partPath = getPartPath(session);
+        ChunkedUploadDigest digest = digests.getIfPresent(uploadId);
+        boolean locked = digest != null && digest.getLock().tryLock();
+        try {
+            // Hash the chunk while writing it if it continues the hashed prefix.
+            boolean hashInline = locked && digest.getNextChunk() == chunkNumber;
+            try {
+                fileHelper.writeFile(partPath, getChunkPosition(session, chunkNumber), inputStream,
+                        getChunkLength(session, chunkNumber),
+                        hashInline ? digest.getContentHashes() : null);
+            } catch (BaseException e) {
+                if (hashInline) {
+                    // The digest contains a partial chunk, so it is rebuilt on completion.
+                    digests.invalidate(uploadId);
+                }
+                throw e;
+            }
+            if (hashInline) {
+                digest.advance();
+            }
+
+            receivedChunks = uploadSessionAccessor.markChunkReceived(uploadId, chunkNumber)
+                    .orElseThrow(() -> createSessionNotFoundException(uploadId));
+
+            if (locked) {
+                advanceDigest(session, digest, receivedChunks);
+            }
+        } finally {
+            if (locked) {
+                digest.getLock().unlock();
+            }
+        }
+
+        return new ResponseEntity<>(createStatus(session, receivedChunks), HttpStatus.OK);
+    }
+
+    /**
+     * Returns the status of a chunked upload.
+     *
+     * @param uploadId the id of the upload session.
+     * @return {@link ResponseEntity} containing the received ranges and the
+     *         missing chunks.
+     * @throws BaseException if the session does not exist.
+     */
+    public ResponseEntity<ChunkedUploadStatusDto> getStatus(String uploadId) throws BaseException {
+        UploadSession session = getSession(uploadId);
+
+        return new ResponseEntity<>(createStatus(session, uploadSessionAccessor.getReceivedChunks(session)),
+                HttpStatus.OK);
+    }
+
+    /**
+     * Completes a chunked upload.
+     * <p>
+     * The completion is claimed first, so only one of the concurrent requests
+     * completes the upload and an abort or expiry of the session cannot delete
+     * the part file in the meantime. The part file is then linked to its final
+     * path and the file entity is inserted with the computed hash. The session
+     * and the part file are only deleted once the file is inserted, so if any of
+     * the steps fails, the claim is released and the completion can be retried.
+     * </p>
+     *
+     * @param uploadId the id of the upload session.
+     * @return {@link ResponseEntity} containing the saved file's metadata and ID.
+     * @throws Exception if the session does not exist, chunks are missing or the
+     *                   upload is being completed by another request.
+     */
+    public ResponseEntity<FileEntityWithIdDto> completeUpload(String uploadId) throws Exception {
+        UploadSession session = getSession(uploadId);
+
+        // An earlier completion may have inserted the file without deleting the session.
+        if (session.getFileId() != null) {
+            Optional<FileEntity> optionalFileEntity = fileEntityAccessor.findById(session.getFileId());
+            if (optionalFileEntity.isEmpty()) {
+                throw createCompletionInProgressException(uploadId);
+            }
+            if (finishUpload(session)) {
+                uploadFileService.sendFileSavedMessage(optionalFileEntity.get());
+            }
+            return createResponse(optionalFileEntity.get());
+        }
+
+        BitSet receivedChunks = uploadSessionAccessor.getReceivedChunks(session);
+        int missingChunks = session.getTotalChunks() - receivedChunks.cardinality();
+        if (missingChunks > 0) {
+            throw new BaseException(HttpStatus.CONFLICT, ExceptionType.UPLOAD_INCOMPLETE,
+                    "The upload is incomplete, " + missingChunks + " chunk(s) are missing.");
+        }
+
+        // Claim the completion. The ID is assigned here, so the content can be stored
+        // before the row is inserted with a single statement.
+        String fileId = UUID.randomUUID().toString();
+        if (!uploadSessionAccessor.claimCompletion(uploadId, fileId)) {
+            throw uploadSessionAccessor.findById(uploadId).isPresent()
+                    ? createCompletionInProgressException(uploadId)
+                    : createSessionNotFoundException(uploadId);
+        }
+
+        FileEntity fileEntity;
+        try {
+            fileEntity = createFileEntity(session, fileId);
+        } catch (Exception e) {
+            // The part file and the reserved storage are kept for the retry.
+            try {
+                uploadSessionAccessor.releaseCompletion(uploadId, fileId);
+            } catch (RuntimeException releaseException) {
+                e.addSuppressed(releaseException);
+            }
+            throw e;
+        }
+
+        if (finishUpload(session)) {
+            uploadFileService.sendFileSavedMessage(fileEntity);
+        }
+
+        return createResponse(fileEntity);
+    }
+
+    /**
+     * Aborts a chunked upload, deletes the part file and releases the storage
+     * reserved for the file.
+     *
+     * @param uploadId the id of the upload session.
+     * @return {@link ResponseEntity} with HTTP 204 (No Content) status.
+     * @throws BaseException if the session does not exist or it is being
+     *                       completed.
+     */
+    public ResponseEntity<Void> abortUpload(String uploadId) throws BaseException {
+        UploadSession session = getSession(uploadId);
+        if (session.getFileId() != null) {
+            throw createCompletionInProgressException(uploadId);
+        }
+
+        discardUpload(session);
+
+        return new ResponseEntity<>(null, HttpStatus.NO_CONTENT);
+    }
+
+    /**
+     * Deletes the upload session, its part file and releases the storage
+     * reserved for the file.
+     * <p>
+     * The session is only deleted if it has not been modified since it was read,
+     * so nothing is done if a concurrent request has received a chunk, claimed
+     * the completion, aborted or expired it. If the file of the session has
+     * already been inserted, the storage belongs to the file, so the upload is
+     * finished instead.
+     * </p>
+     *
+     * @param session the upload session.
+     * @return {@code true} if the session has been discarded by this call.
+     */
+    boolean discardUpload(UploadSession session) {
+        if (session.getFileId() != null) {
+            Optional<FileEntity> optionalFileEntity = fileEntityAccessor.findById(session.getFileId());
+            if (optionalFileEntity.isPresent()) {
+                if (finishUpload(session)) {
+                    try {
+                        uploadFileService.sendFileSavedMessage(optionalFileEntity.get());
+                    } catch (Exception e) {
+                        LOG.error("Cannot publish the saved file {}. Reason: {}", session.getFileId(),
+                                e.getMessage(), e);
+                    }
+                }
+                return false;
+            }
+        }
+
+        if (!uploadSessionAccessor.deleteIfUnchanged(session)) {
+            return false;
+        }
+
+        digests.invalidate(session.getId());
+        fileHelper.deleteLocalFile(getPartPath(session));
+        storageQuotaService.releaseStorage(session.getObjectId(), session.getTotalSize());
+        return true;
+    }
+
+    /**
+     * Deletes the session and the part file of an upload whose file has been
+     * inserted. The reserved storage belongs to the file from now on.
+     *
+     * @return {@code true} if the session has been deleted by this call.
+     */
+    private boolean finishUpload(UploadSession session) {
+        digests.invalidate(session.getId());
+        if (!uploadSessionAccessor.deleteIfExists(session.getId())) {
+            return false;
+        }
+
+        fileHelper.deleteLocalFile(getPartPath(session));
+        return true;
+    }
+
+    /**
+     * Hashes the part file, stores its content at its final place and inserts
+     * the file entity. The part file is kept, and the stored content is deleted
+     * if the entity cannot be inserted.
+     */
+    private FileEntity createFileEntity(UploadSession session, String fileId) throws Exception {
+        // Finish the hash, rebuilding it from the part file if the state is lost.
+        ChunkedUploadDigest digest = digests.getIfPresent(session.getId());
+        if (digest == null || (fileStoreProperties.isDeduplicationEnabled()
+                && !digest.getContentHashes().contains(HashAlgorithm.SHA256))) {
+            LOG.info("Rebuilding the hash of upload session {} from the part file.", session.getId());
+            digest = createDigest();
+            digests.put(session.getId(), digest);
+        }
+
+        HashAlgorithm hashAlgorithm = fileHelper.getHashAlgorithm();
+        String hash;
+        String checksum;
+        String contentDigest = null;
+        digest.getLock().lock();
+        try {
+            advanceDigest(session, digest, uploadSessionAccessor.getReceivedChunks(session));
+            ContentHashes contentHashes = digest.getContentHashes();
+            hash = contentHashes.toHash(hashAlgorithm);
+            checksum = contentHashes.toHash(HashAlgorithm.CRC32C);
+            if (fileStoreProperties.isDeduplicationEnabled()) {
+                contentDigest = contentHashes.toHash(HashAlgorithm.SHA256);
+            }
+        } finally {
+            digest.getLock().unlock();
+        }
+
+        // Create the entity.
+        FileEntity fileEntity = new FileEntity();
+        fileEntity.setId(fileId);
+        fileEntity.setName(session.getName());
+        fileEntity.setExtension(session.getExtension());
+        fileEntity.setObjectId(session.getObjectId());
+        fileEntity.setSystemId(session.getSystemId());
+        fileEntity.setLabel(session.getLabel());
+        fileEntity.setPasswordHash(session.getPasswordHash());
+        fileEntity.setHash(hash);
+        fileEntity.setHashAlgorithm(hashAlgorithm);
+        fileEntity.setChecksum(checksum);
+        fileEntity.setSize(session.getTotalSize());
+        fileEntity.setStoredSize(session.getTotalSize());
+        fileEntity.setCompression(CompressionCodec.NONE);
+        fileEntity.setContentDigest(contentDigest);
+
+        // A link of the part file is moved to its final place, so the part file is kept for a retry.
+        fileHelper.createDirectoryIfNotExists(fileHelper.getStagingDirectoryPath());
+        String stagingPath = fileHelper.getStagingPath(fileId);
+        fileHelper.linkLocalFile(getPartPath(session), stagingPath);
+
+        String fullPath = null;
+        try {
+            if (contentDigest != null) {
+                blobStoreService.addBlob(stagingPath, contentDigest, session.getTotalSize());
+            } else {
+                String directoryPath = fileHelper.getDirectoryPath(session.getSystemId());
+                fullPath = fileHelper.getFullPath(directoryPath, fileId, session.getExtension());
+                fileHelper.markPending(fileId, fullPath);
+                fileHelper.createStorageDirectoryIfNotExists(fileHelper.getShardedDirectoryPath(directoryPath, fileId));
+                fileHelper.moveFile(stagingPath, fullPath);
+            }
+        } catch (Exception e) {
+            fileHelper.deleteLocalFile(stagingPath);
+            throw e;
+        }
+
+        // Insert the entity.
+        try {
+            fileEntity = fileEntityAccessor.insert(fileEntity);
+        } catch (RuntimeException e) {
+            if (contentDigest != null) {
+                blobStoreService.releaseBlob(contentDigest);
+            } else {
+                fileHelper.deleteFile(fullPath);
+            }
+            throw e;
+        }
+
+        if (contentDigest == null) {
+            fileHelper.clearPending(fileId);
+        }
+        return fileEntity;
+    }
+
+    /**
+     * Adds the received chunks that continue the hashed prefix to the digest.
+     * The caller must hold the lock of the digest.
+     */
+    private void advanceDigest(UploadSession session, ChunkedUploadDigest digest, BitSet receivedChunks)
+            throws BaseException {
+        String partPath = getPartPath(session);
+
+        while (digest.getNextChunk() < session.getTotalChunks() && receivedChunks.get(digest.getNextChunk())) {
+            int chunkNumber = digest.getNextChunk();
+            fileHelper.updateDigest(partPath, getChunkPosition(session, chunkNumber),
+                    getChunkLength(session, chunkNumber), digest.getContentHashes());
+            digest.advance();
+        }
+    }
+
+    private ResponseEntity<FileEntityWithIdDto> createResponse(FileEntity fileEntity) {
+        FileEntityWithIdDto response = fileEntityWithIdConverter.convert(fileEntity);
+
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    private ChunkedUploadDigest createDigest() {
+        return new ChunkedUploadDigest(fileHelper.createContentHashes(fileStoreProperties.isDeduplicationEnabled()));
+    }
+
+    private ChunkedUploadStatusDto createStatus(UploadSession session, BitSet receivedChunks) {
+        int totalChunks = session.getTotalChunks();
+
+        // Merge the consecutive received chunks into byte ranges.
+        List<String> receivedRanges = new ArrayList<>();
+        for (int first = receivedChunks.nextSetBit(0); first >= 0 && first < totalChunks;
+                first = receivedChunks.nextSetBit(first + 1)) {
+            int last = Math.min(receivedChunks.nextClearBit(first), totalChunks) - 1;
+            long end = getChunkPosition(session, last) + getChunkLength(session, last) - 1;
+            receivedRanges.add(getChunkPosition(session, first) + "-" + end);
+            first = last;
+        }
+
+        List<Integer> missingChunks = new ArrayList<>();
+        for (int chunk = receivedChunks.nextClearBit(0); chunk < totalChunks;
+                chunk = receivedChunks.nextClearBit(chunk + 1)) {
+            missingChunks.add(chunk);
+        }
+
+        ChunkedUploadStatusDto status = new ChunkedUploadStatusDto();
+        status.setUploadId(session.getId());
+        status.setTotalSize(session.getTotalSize());
+        status.setChunkSize(session.getChunkSize());
+        status.setTotalChunks(totalChunks);
+        status.setReceivedRanges(receivedRanges);
+        status.setMissingChunks(missingChunks);
+
+        return status;
+    }
+
+    private void validate(ChunkedUploadRequestDto chunkedUploadRequestDto) throws BaseException {
+        if (StringUtils.isBlank(chunkedUploadRequestDto.getName())
+                || StringUtils.isBlank(chunkedUploadRequestDto.getExtension())) {
+            throw new BaseException(HttpStatus.BAD_REQUEST, ExceptionType.INVALID_INPUT,
+                    "The name and the extension of the file are mandatory.");
+        }
+
+        long totalSize = chunkedUploadRequestDto.getTotalSize();
+        long chunkSize = chunkedUploadRequestDto.getChunkSize();
+        if (totalSize < 0 || chunkSize <= 0 || (totalSize + chunkSize - 1) / chunkSize > MAX_CHUNKS) {
+            throw new BaseException(HttpStatus.BAD_REQUEST, ExceptionType.INVALID_INPUT,
+                    "Invalid total size or chunk size. A file can consist of at most " + MAX_CHUNKS + " chunks.");
+        }
+    }
+
+    private UploadSession getSession(String uploadId) throws BaseException {
+        Optional<UploadSession> optionalSession = uploadSessionAccessor.findById(uploadId);
+        if (optionalSession.isEmpty()) {
+            throw createSessionNotFoundException(uploadId);
+        }
+
+        return optionalSession.get();
+    }
+
+    private BaseException createCompletionInProgressException(String uploadId) {
+        return new BaseException(HttpStatus.CONFLICT, ExceptionType.UPLOAD_COMPLETION_IN_PROGRESS,
+                "The upload session with id :" + uploadId + " is being completed.");
+    }
+
+    private BaseException createSessionNotFoundException(String uploadId) {
+        return new BaseException(HttpStatus.NOT_FOUND, ExceptionType.UPLOAD_SESSION_NOT_FOUND,
+                "Cannot find upload session with id :" + uploadId);
+    }
+
+    private String getPartPath(UploadSession session) {
+        String directoryPath = fileHelper.getDirectoryPath(session.getSystemId());
+        return fileHelper.getFullPath(directoryPath, session.getId(), PART_EXTENSION);
+    }
+
+    private long getChunkPosition(UploadSession session, int chunkNumber) {
+        return chunkNumber * session.getChunkSize();
+    }
+
+    private long getChunkLength(UploadSession session, int chunkNumber) {
+        return Math.min(session.getChunkSize(), session.getTotalSize() - getChunkPosition(session, chunkNumber));
+    }
+}
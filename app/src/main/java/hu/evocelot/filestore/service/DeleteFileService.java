@@ -1,16 +1,35 @@
 package hu.evocelot.filestore.service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import hu.evocelot.filestore.accessor.FileEntityAccessor;
+import hu.evocelot.filestore.dto.FileDeleteResultDto;
+import hu.evocelot.filestore.dto.FileIdsRequestDto;
 import hu.evocelot.filestore.exception.BaseException;
 import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.helper.BatchHelper;
 import hu.evocelot.filestore.helper.FileHelper;
 import hu.evocelot.filestore.model.FileEntity;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import jakarta.annotation.PreDestroy;
 
 /**
  * Service class responsible for deleting a file and its metadata.
@@ -19,7 +38,13 @@ import hu.evocelot.filestore.model.FileEntity;
  * metadata. It interacts with the {@link FileEntityAccessor} to delete the file
  * entity
  * from the database and uses {@link FileHelper} to remove the actual file from
- * the storage system.
+ * the storage system. The size of the file is released from the storage limit
+ * of its object.
+ * </p>
+ * <p>
+ * Batches of files are deleted from the database with a single JDBC batch, and
+ * their contents are removed in parallel on {@code filestore.delete-parallelism}
+ * threads.
  * </p>
  * 
  * @author mark.danisovszky
@@ -27,25 +52,39 @@ import hu.evocelot.filestore.model.FileEntity;
 @Component
 public class DeleteFileService {
 
-    public DeleteFileService(FileEntityAccessor fileEntityAccessor, FileHelper fileHelper) {
+    public DeleteFileService(FileEntityAccessor fileEntityAccessor, FileHelper fileHelper,
+            BlobStoreService blobStoreService, StorageQuotaService storageQuotaService, BatchHelper batchHelper,
+            FileStoreProperties fileStoreProperties) {
         this.fileEntityAccessor = fileEntityAccessor;
         this.fileHelper = fileHelper;
+        this.blobStoreService = blobStoreService;
+        this.storageQuotaService = storageQuotaService;
+        this.batchHelper = batchHelper;
+        this.deleteExecutor = Executors.newFixedThreadPool(Math.max(1, fileStoreProperties.getDeleteParallelism()),
+                new ThreadFactoryBuilder().setNameFormat("file-delete-%d").setDaemon(true).build());
     }
 
     private FileEntityAccessor fileEntityAccessor;
     private FileHelper fileHelper;
+    private BlobStoreService blobStoreService;
+    private StorageQuotaService storageQuotaService;
+    private BatchHelper batchHelper;
+    private final ExecutorService deleteExecutor;
 
     /**
      * Deletes a file and its metadata.
      * <p>
      * This method fetches the file entity by its ID, removes it from the database,
-     * and deletes the corresponding file from the storage system.
+     * and deletes the corresponding file from the storage system. The content is
+     * only released by the request that has removed the row, and deduplicated
+     * content is only deleted when no other file references it.
      * </p>
      * 
      * @param fileId The unique identifier of the file.
      * @return {@link ResponseEntity} with a status indicating the result of the
      *         operation.
-     * @throws BaseException If the file is not found.
+     * @throws BaseException If the file is not found, or it has been deleted by
+     *                       a concurrent request.
      */
     public ResponseEntity<Void> deleteFile(String fileId) throws BaseException {
         // Get the file entity.
@@ -56,9 +95,83 @@ public class DeleteFileService {
         }
         FileEntity fileEntity = optionalFileEntity.get();
 
-        fileHelper.deleteFile(fileEntity.getSystemId(), fileEntity.getId(), fileEntity.getExtension());
-        fileEntityAccessor.delete(fileEntity);
+        // Only the request that removed the row releases the content and the size.
+        if (!fileEntityAccessor.deleteIfExists(fileId)) {
+            throw new BaseException(HttpStatus.NOT_FOUND, ExceptionType.FILE_ENTITY_NOT_FOUND,
+                    "Cannot find file entity with id :" + fileId);
+        }
+
+        if (StringUtils.isNotBlank(fileEntity.getContentDigest())) {
+            blobStoreService.releaseBlob(fileEntity.getContentDigest());
+        } else {
+            fileHelper.deleteFile(fileEntity.getSystemId(), fileEntity.getId(), fileEntity.getExtension());
+        }
+
+        // The deleted file no longer counts towards the storage limit of its object.
+        if (fileEntity.getSize() != null) {
+            storageQuotaService.releaseStorage(fileEntity.getObjectId(), fileEntity.getSize());
+        }
 
         return new ResponseEntity<>(null, HttpStatus.NO_CONTENT);
     }
+
+    /**
+     * Deletes a batch of files and their metadata.
+     * <p>
+     * The files are read with a single query and deleted from the database with
+     * a single JDBC batch. The contents are removed in parallel afterwards, and
+     * the sizes are released from the storage limits once per object. Every id
+     * has its own result; ids without a file do not fail the request.
+     * </p>
+     *
+     * @param fileIdsRequestDto the ids of the files.
+     * @return {@link ResponseEntity} containing the result of every distinct id
+     *         in the order of the request.
+     * @throws BaseException If the request has no file id or too many.
+     */
+    public ResponseEntity<List<FileDeleteResultDto>> deleteFiles(FileIdsRequestDto fileIdsRequestDto)
+            throws BaseException {
+        List<String> fileIds = batchHelper.getFileIds(fileIdsRequestDto);
+
+        // Get and delete the file entities.
+        Map<String, FileEntity> fileEntities = fileEntityAccessor.findAllById(fileIds).stream()
+                .collect(Collectors.toMap(FileEntity::getId, Function.identity()));
+        Set<String> deletedIds = fileEntities.isEmpty()
+                ? Set.of()
+                : new HashSet<>(fileEntityAccessor.deleteAllById(List.copyOf(fileEntities.keySet())));
+
+        // Remove the contents of the deleted files.
+        Map<String, Long> releasedSizes = new HashMap<>();
+        List<CompletableFuture<Void>> deletions = new ArrayList<>();
+        for (String fileId : deletedIds) {
+            FileEntity fileEntity = fileEntities.get(fileId);
+            if (StringUtils.isNotBlank(fileEntity.getContentDigest())) {
+                blobStoreService.releaseBlob(fileEntity.getContentDigest());
+            } else {
+                deletions.add(CompletableFuture.runAsync(() -> fileHelper.deleteFile(fileEntity.getSystemId(),
+                        fileEntity.getId(), fileEntity.getExtension()), deleteExecutor));
+            }
+
+            if (fileEntity.getSize() != null) {
+                releasedSizes.merge(fileEntity.getObjectId(), fileEntity.getSize(), Long::sum);
+            }
+        }
+
+        // The deleted files no longer count towards the storage limits of their objects.
+        releasedSizes.forEach(storageQuotaService::releaseStorage);
+        CompletableFuture.allOf(deletions.toArray(CompletableFuture[]::new)).join();
+
+        List<FileDeleteResultDto> results = fileIds.stream()
+                .map(fileId -> deletedIds.contains(fileId)
+                        ? new FileDeleteResultDto(fileId, HttpStatus.NO_CONTENT, null)
+                        : new FileDeleteResultDto(fileId, HttpStatus.NOT_FOUND, ExceptionType.FILE_ENTITY_NOT_FOUND))
+                .toList();
+
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        deleteExecutor.shutdown();
+    }
 }
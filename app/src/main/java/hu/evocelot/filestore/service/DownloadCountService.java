@@ -0,0 +1,111 @@
+package hu.evocelot.filestore.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import hu.evocelot.filestore.accessor.FileEntityAccessor;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Counts the downloads of the files in memory and writes them to the database
+ * in periodic batches.
+ * <p>
+ * Every file has a {@link LongAdder}, so the concurrent downloads of a popular
+ * file neither wait for each other nor lock its row. The counters are added to
+ * the download counts of the files every
+ * {@code filestore.download-count-flush-interval} and on shutdown.
+ * </p>
+ * <p>
+ * A counter that had nothing to flush is removed from the map. A download that
+ * incremented a counter after its removal moves its increment to the new
+ * counter of the file, so no download is lost.
+ * </p>
+ */
+@Component
+public class DownloadCountService {
+
+    private static final Logger LOG = LogManager.getLogger(DownloadCountService.class);
+
+    public DownloadCountService(FileEntityAccessor fileEntityAccessor) {
+        this.fileEntityAccessor = fileEntityAccessor;
+    }
+
+    private final FileEntityAccessor fileEntityAccessor;
+
+    private final Map<String, LongAdder> downloadCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Counts a download of the file.
+     *
+     * @param fileId the id of the downloaded file.
+     */
+    public void countDownload(String fileId) {
+        add(fileId, 1);
+    }
+
+    /**
+     * Writes the counted downloads to the database.
+     */
+    @Scheduled(fixedDelayString = "${filestore.download-count-flush-interval}")
+    public void flush() {
+        if (!flushDownloadCounts()) {
+            LOG.warn("The download counts will be flushed again later.");
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (!flushDownloadCounts()) {
+            LOG.error("The download counts could not be flushed on shutdown and are lost.");
+        }
+    }
+
+    private boolean flushDownloadCounts() {
+        Map<String, Long> flushed = new HashMap<>();
+        for (Map.Entry<String, LongAdder> entry : downloadCounts.entrySet()) {
+            long count = entry.getValue().sumThenReset();
+            if (count == 0 && downloadCounts.remove(entry.getKey(), entry.getValue())) {
+                // Collect the downloads counted since the reset.
+                count = entry.getValue().sumThenReset();
+            }
+            if (count > 0) {
+                flushed.put(entry.getKey(), count);
+            }
+        }
+
+        if (flushed.isEmpty()) {
+            return true;
+        }
+
+        try {
+            fileEntityAccessor.incrementDownloadCounts(flushed);
+            LOG.debug("Flushed the download counts of {} files.", flushed.size());
+            return true;
+        } catch (RuntimeException e) {
+            LOG.warn("Cannot flush the download counts of {} files. Reason: {}", flushed.size(), e.getMessage());
+            flushed.forEach(this::add);
+            return false;
+        }
+    }
+
+    private void add(String fileId, long count) {
+        LongAdder counter = downloadCounts.computeIfAbsent(fileId, id -> new LongAdder());
+        counter.add(count);
+
+        // The flush has removed the counter meanwhile. Whatever it has not collected
+        // yet is moved to the new counter of the file.
+        if (downloadCounts.get(fileId) != counter) {
+            long uncollected = counter.sumThenReset();
+            if (uncollected > 0) {
+                add(fileId, uncollected);
+            }
+        }
+    }
+}
@@ -1,7 +1,14 @@
 package hu.evocelot.filestore.service;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -9,19 +16,30 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.tomcat.util.http.fileupload.IOUtils;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import hu.evocelot.filestore.accessor.FileEntityAccessor;
+import hu.evocelot.filestore.compression.CompressionCodec;
+import hu.evocelot.filestore.dto.DownloadUrlDto;
 import hu.evocelot.filestore.dto.PasswordDto;
 import hu.evocelot.filestore.exception.BaseException;
 import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.helper.DownloadUrlSigner;
 import hu.evocelot.filestore.helper.FileHelper;
+import hu.evocelot.filestore.helper.PasswordHasher;
+import hu.evocelot.filestore.helper.VerificationCache;
 import hu.evocelot.filestore.model.FileEntity;
+import hu.evocelot.filestore.pojo.DownloadableFile;
+import hu.evocelot.filestore.pojo.ExpectedHash;
+import jakarta.servlet.http.HttpServletRequest;
 
 /**
  * Handles the action of downloading a file from the file store.
@@ -38,34 +56,113 @@ public class DownloadFileService {
     private static final Logger LOG = LogManager.getLogger(DownloadFileService.class);
 
     public DownloadFileService(FileEntityAccessor fileEntityAccessor, FileHelper fileHelper,
-            PasswordEncoder passwordEncoder) {
+            PasswordHasher passwordHasher, VerificationCache verificationCache,
+            DownloadCountService downloadCountService, DownloadUrlSigner downloadUrlSigner) {
         this.fileEntityAccessor = fileEntityAccessor;
         this.fileHelper = fileHelper;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHasher = passwordHasher;
+        this.verificationCache = verificationCache;
+        this.downloadCountService = downloadCountService;
+        this.downloadUrlSigner = downloadUrlSigner;
     }
 
     private final FileEntityAccessor fileEntityAccessor;
     private final FileHelper fileHelper;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
+    private final VerificationCache verificationCache;
+    private final DownloadCountService downloadCountService;
+    private final DownloadUrlSigner downloadUrlSigner;
 
     /**
      * Downloads a file based on its unique identifier.
      * <p>
      * This method retrieves file metadata from the database, constructs the file's
      * path, verifies its existence and readability, and streams the file to the
-     * client as an HTTP response.
+     * client as an HTTP response. When the servlet container supports it, the
+     * file is sent with zero-copy sendfile; otherwise it is streamed through a
+     * {@link StreamingResponseBody}.
+     * </p>
+     * <p>
+     * The response carries an {@code ETag} based on the stored hash and a
+     * {@code Last-Modified} header based on the modification date, so repeated
+     * fetches can be answered with 304. Single and multiple byte ranges are served
+     * with 206 responses that read only the requested regions from the storage.
+     * </p>
+     * <p>
+     * With {@code checkHash}, the whole file is verified while it is streamed, so
+     * it is read only once; other responses are verified before they are sent.
+     * Files verified within the configured window are not hashed again.
      * </p>
      *
      * @param fileId    the unique identifier of the file to download
-     * @param checkHash if true, we will check the MD5 hash of the file content.
+     * @param checkHash if true, we will check the hash of the file content.
+     * @param request   the current HTTP request.
      * 
      * @return a {@link ResponseEntity} containing the file as a
      *         {@link StreamingResponseBody}
      * @throws Exception when error occurs.
      */
     public ResponseEntity<StreamingResponseBody> downloadFile(String fileId, boolean checkHash, PasswordDto passwordDto,
-            boolean preview)
+            boolean preview, HttpServletRequest request)
+            throws Exception {
+        FileEntity fileEntity = getAuthorizedFileEntity(fileId, passwordDto);
+        return createDownloadResponse(toDownloadableFile(fileEntity),
+                checkHash ? ExpectedHash.of(fileEntity) : null, preview, request);
+    }
+
+    /**
+     * Creates a pre-signed URL downloading the file without further
+     * authentication until it expires.
+     * <p>
+     * The URL carries the storage path, the size, the hash and the name of the
+     * file signed by the {@link DownloadUrlSigner}, so it is served by
+     * {@link #downloadSignedFile(String, HttpServletRequest)} without reading
+     * the database. The password of a protected file is checked once, when the
+     * URL is created.
+     * </p>
+     *
+     * @param fileId      the unique identifier of the file to download.
+     * @param passwordDto the password of the file, if it is protected.
+     * @return a {@link ResponseEntity} containing the URL and its expiry.
+     * @throws Exception when error occurs.
+     */
+    public ResponseEntity<DownloadUrlDto> createDownloadUrl(String fileId, PasswordDto passwordDto)
+            throws Exception {
+        FileEntity fileEntity = getAuthorizedFileEntity(fileId, passwordDto);
+
+        Instant expiresAt = downloadUrlSigner.getExpiry();
+        String token = downloadUrlSigner.sign(toDownloadableFile(fileEntity), expiresAt);
+        String url = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/file/download/signed")
+                .queryParam("token", token)
+                .toUriString();
+
+        return ResponseEntity.ok(new DownloadUrlDto(url, expiresAt.atOffset(ZoneOffset.UTC)));
+    }
+
+    /**
+     * Downloads a file with a pre-signed URL.
+     * <p>
+     * The file is served from the signed metadata without any database query,
+     * with the same validators and byte range support as
+     * {@link #downloadFile(String, boolean, PasswordDto, boolean, HttpServletRequest)}.
+     * </p>
+     *
+     * @param token   the token of the pre-signed URL.
+     * @param request the current HTTP request.
+     * @return a {@link ResponseEntity} containing the file as a
+     *         {@link StreamingResponseBody}
+     * @throws Exception when the token is invalid or expired, or error occurs.
+     */
+    public ResponseEntity<StreamingResponseBody> downloadSignedFile(String token, HttpServletRequest request)
             throws Exception {
+        return createDownloadResponse(downloadUrlSigner.verify(token), null, false, request);
+    }
+
+    /**
+     * Returns the file entity after checking the password of a protected file.
+     */
+    private FileEntity getAuthorizedFileEntity(String fileId, PasswordDto passwordDto) throws BaseException {
         // Get the file entity.
         Optional<FileEntity> optionalFileEntity = fileEntityAccessor.findById(fileId);
         if (optionalFileEntity.isEmpty()) {
@@ -79,40 +176,151 @@ public class DownloadFileService {
             if (Objects.isNull(passwordDto) || Objects.isNull(passwordDto.getPassword())) {
                 throw new RuntimeException("Password is mandatory for this file");
             }
-            if (!passwordEncoder.matches(passwordDto.getPassword(), fileEntity.getPasswordHash())) {
+            if (!passwordHasher.matches(fileId, passwordDto.getPassword(), fileEntity.getPasswordHash())) {
                 throw new RuntimeException("Invalid password");
             }
         }
 
-        String directoryPath = fileHelper.getDirectoryPath(fileEntity.getSystemId());
-        String fullPath = fileHelper.getFullPath(directoryPath, fileId, fileEntity.getExtension());
+        return fileEntity;
+    }
+
+    private DownloadableFile toDownloadableFile(FileEntity fileEntity) throws BaseException {
+        long lastModified = fileEntity.getModDate() != null ? fileEntity.getModDate().toInstant().toEpochMilli() : 0L;
+        return new DownloadableFile(fileEntity.getId(), fileHelper.getFullPath(fileEntity),
+                Objects.requireNonNullElse(fileEntity.getCompression(), CompressionCodec.NONE),
+                fileEntity.getSize(), fileEntity.getHash(), lastModified,
+                fileEntity.getName() + "." + fileEntity.getExtension());
+    }
+
+    /**
+     * Creates the download response of the file. If an expected hash is given,
+     * the content is verified before or while it is sent.
+     */
+    private ResponseEntity<StreamingResponseBody> createDownloadResponse(DownloadableFile downloadableFile,
+            ExpectedHash expectedHash, boolean preview, HttpServletRequest request) throws BaseException {
+        String fileId = downloadableFile.fileId();
+        String fullPath = downloadableFile.path();
+        CompressionCodec compression = downloadableFile.compression();
 
         // Get the file.
-        File file = new File(fullPath);
-        if (!file.exists() || !file.canRead()) {
+        long storedLength = fileHelper.getFileSize(fullPath);
+        if (storedLength < 0) {
             throw new BaseException(HttpStatus.NOT_FOUND,
                     ExceptionType.FILE_ENTITY_NOT_FOUND,
                     "Cannot find file in path:" + fullPath);
         }
+        long fileLength = compression == CompressionCodec.NONE ? storedLength : downloadableFile.size();
+
+        // A compressed file is sent as it is stored if the client accepts its
+        // encoding. Range requests are answered from the decompressed content.
+        HttpHeaders requestHeaders = new ServletServerHttpRequest(request).getHeaders();
+        String contentEncoding = compression.getContentEncoding();
+        boolean encoded = contentEncoding != null && !requestHeaders.containsKey(HttpHeaders.RANGE)
+                && acceptsEncoding(requestHeaders, contentEncoding);
 
-        // Check the file content hash if needed.
-        if (checkHash) {
-            String actualHash = fileHelper.getFileHash(fullPath);
-            if (!actualHash.equals(fileEntity.getHash())) {
-                throw new BaseException(HttpStatus.CONFLICT, ExceptionType.CORRUPTED_FILE,
-                        "Corrupted file!");
+        // Answer conditional requests from the stored validators. The encoded
+        // representation has its own entity tag.
+        String eTag = downloadableFile.hash() != null
+                ? "\"" + downloadableFile.hash() + (encoded ? "-" + contentEncoding : "") + "\""
+                : null;
+        long lastModified = downloadableFile.lastModified();
+
+        if (isNotModified(requestHeaders, eTag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .headers(createValidatorHeaders(eTag, lastModified))
+                    .build();
+        }
+
+        // Resolve the requested byte ranges.
+        List<ByteRange> regions;
+        try {
+            regions = isRangeApplicable(requestHeaders, eTag, lastModified)
+                    ? toByteRanges(requestHeaders.getRange(), fileLength)
+                    : List.of();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + fileLength)
+                    .build();
+        }
+
+        // Check the file content hash if needed. The whole file is verified while it
+        // is streamed, other responses are verified before they are sent.
+        Verification verification = null;
+        if (expectedHash != null) {
+            long storedModified = fileHelper.getLastModified(fullPath);
+            if (!verificationCache.isVerified(fileId, storedModified, storedLength)) {
+                verification = new Verification(expectedHash,
+                        () -> verificationCache.markVerified(fileId, storedModified, storedLength));
+                if (encoded || !regions.isEmpty()) {
+                    if (!expectedHash.matches(
+                            fileHelper.getFileHash(fullPath, compression, expectedHash.getHashAlgorithm()))) {
+                        throw new BaseException(HttpStatus.CONFLICT, ExceptionType.CORRUPTED_FILE,
+                                "Corrupted file!");
+                    }
+                    verification.onVerified().run();
+                    verification = null;
+                }
             }
         }
 
-        if (!preview) {
-            fileEntity.setDownloadCount(fileEntity.getDownloadCount() + 1);
-            fileEntityAccessor.save(fileEntity);
+        // Resumed and partial fetches are counted only once, by the part starting at
+        // the beginning of the file.
+        if (!preview && (regions.isEmpty() || regions.get(0).position() == 0)) {
+            downloadCountService.countDownload(fileId);
+        }
+
+        HttpHeaders responseHeaders = createValidatorHeaders(eTag, lastModified);
+        responseHeaders.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        responseHeaders.set(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"" + downloadableFile.filename() + "\"");
+
+        if (compression != CompressionCodec.NONE) {
+            responseHeaders.set(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+
+        if (encoded) {
+            // The stored bytes are the encoded representation.
+            responseHeaders.set(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+            return createFileResponse(request, fullPath, CompressionCodec.NONE, responseHeaders, storedLength, null);
+        }
+        if (regions.isEmpty()) {
+            return createFileResponse(request, fullPath, compression, responseHeaders, fileLength, verification);
+        }
+        if (regions.size() == 1) {
+            return createSingleRangeResponse(request, fullPath, compression, responseHeaders, regions.get(0),
+                    fileLength);
+        }
+        return createMultiRangeResponse(fullPath, compression, responseHeaders, regions, fileLength);
+    }
+
+    /**
+     * Creates the response containing the whole file. A compressed file is
+     * decompressed while it is streamed. If a verification is given, the file is
+     * hashed while it is streamed instead of being sent with zero-copy.
+     */
+    private ResponseEntity<StreamingResponseBody> createFileResponse(HttpServletRequest request, String fullPath,
+            CompressionCodec compression, HttpHeaders responseHeaders, long fileLength, Verification verification) {
+        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.ok()
+                .headers(responseHeaders)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(fileLength);
+
+        // Let the container send the file with zero-copy if it can.
+        if (verification == null && compression == CompressionCodec.NONE
+                && fileHelper.sendFile(request, fullPath, 0, fileLength)) {
+            return responseBuilder.build();
         }
 
         // Streaming the file as a response.
         StreamingResponseBody responseBody = outputStream -> {
             try {
-                fileHelper.getFile(fullPath, outputStream);
+                if (verification != null) {
+                    fileHelper.getVerifiedFile(fullPath, compression, verification.expectedHash().getHashAlgorithm(),
+                            verification.expectedHash().getHash(), outputStream);
+                    verification.onVerified().run();
+                } else {
+                    fileHelper.getFile(fullPath, compression, outputStream);
+                }
             } catch (Exception e) {
                 LOG.error("Error while streaming file", e);
                 throw new IOException(e);
@@ -121,11 +329,214 @@ public class DownloadFileService {
             }
         };
 
-        return ResponseEntity.ok()
+        return responseBuilder.body(responseBody);
+    }
+
+    /**
+     * Creates a 206 response containing a single byte range of the file.
+     */
+    private ResponseEntity<StreamingResponseBody> createSingleRangeResponse(HttpServletRequest request,
+            String fullPath, CompressionCodec compression, HttpHeaders responseHeaders, ByteRange region,
+            long fileLength) {
+        long position = region.position();
+        long count = region.count();
+
+        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .headers(responseHeaders)
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .header(HttpHeaders.CONTENT_DISPOSITION,
-                        "attachment; filename=\"" + fileEntity.getName() + "." + fileEntity.getExtension() + "\"")
-                .contentLength(file.length())
+                .header(HttpHeaders.CONTENT_RANGE, getContentRange(region, fileLength))
+                .contentLength(count);
+
+        if (compression == CompressionCodec.NONE && fileHelper.sendFile(request, fullPath, position, count)) {
+            return responseBuilder.build();
+        }
+
+        StreamingResponseBody responseBody = outputStream -> {
+            try {
+                fileHelper.getFile(fullPath, compression, position, count, outputStream);
+            } catch (Exception e) {
+                LOG.error("Error while streaming file range", e);
+                throw new IOException(e);
+            } finally {
+                IOUtils.closeQuietly(outputStream);
+            }
+        };
+
+        return responseBuilder.body(responseBody);
+    }
+
+    /**
+     * Creates a 206 {@code multipart/byteranges} response containing every
+     * requested byte range of the file.
+     */
+    private ResponseEntity<StreamingResponseBody> createMultiRangeResponse(String fullPath,
+            CompressionCodec compression, HttpHeaders responseHeaders, List<ByteRange> regions,
+            long fileLength) {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        byte[] closingBoundary = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        long contentLength = closingBoundary.length;
+        for (ByteRange region : regions) {
+            contentLength += getPartHeader(boundary, region, fileLength).length + region.count();
+        }
+
+        StreamingResponseBody responseBody = outputStream -> {
+            try {
+                for (ByteRange region : regions) {
+                    outputStream.write(getPartHeader(boundary, region, fileLength));
+                    fileHelper.getFile(fullPath, compression, region.position(), region.count(),
+                            outputStream);
+                }
+                outputStream.write(closingBoundary);
+            } catch (Exception e) {
+                LOG.error("Error while streaming file ranges", e);
+                throw new IOException(e);
+            } finally {
+                IOUtils.closeQuietly(outputStream);
+            }
+        };
+
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .headers(responseHeaders)
+                .contentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary))
+                .contentLength(contentLength)
                 .body(responseBody);
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks whether the {@code Accept-Encoding} header accepts the content
+     * coding with a non-zero quality.
+     */
+    private boolean acceptsEncoding(HttpHeaders requestHeaders, String contentEncoding) {
+        for (String acceptEncoding : requestHeaders.getValuesAsList(HttpHeaders.ACCEPT_ENCODING)) {
+            String[] parts = acceptEncoding.split(";");
+            if (!parts[0].trim().equalsIgnoreCase(contentEncoding)) {
+                continue;
+            }
+
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks the {@code If-None-Match} and {@code If-Modified-Since} headers
+     * against the stored validators of the file.
+     */
+    private boolean isNotModified(HttpHeaders requestHeaders, String eTag, long lastModified) {
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            // If-None-Match takes precedence and uses the weak comparison.
+            return eTag != null && ifNoneMatch.stream()
+                    .anyMatch(tag -> "*".equals(tag) || eTag.equals(stripWeakPrefix(tag)));
+        }
+
+        long ifModifiedSince = requestHeaders.getIfModifiedSince();
+        return ifModifiedSince != -1 && truncateToSeconds(lastModified) <= ifModifiedSince;
+    }
+
+    /**
+     * Checks whether the {@code Range} header should be served. A range is
+     * ignored when the {@code If-Range} validator no longer matches the file.
+     */
+    private boolean isRangeApplicable(HttpHeaders requestHeaders, String eTag, long lastModified) {
+        if (!requestHeaders.containsKey(HttpHeaders.RANGE)) {
+            return false;
+        }
+
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range requires the strong comparison.
+            return ifRange.equals(eTag);
+        }
+
+        try {
+            long ifRangeDate = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME)
+                    .toInstant().toEpochMilli();
+            return ifRangeDate == truncateToSeconds(lastModified);
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private HttpHeaders createValidatorHeaders(String eTag, long lastModified) {
+        HttpHeaders headers = new HttpHeaders();
+        if (eTag != null) {
+            headers.setETag(eTag);
+        }
+        headers.setLastModified(lastModified);
+
+        return headers;
+    }
+
+    /**
+     * Resolves the requested byte ranges against the length of the file. Like
+     * {@link HttpRange#toResourceRegions}, several ranges together must request
+     * less than the whole file.
+     *
+     * @throws IllegalArgumentException if a range cannot be satisfied.
+     */
+    private List<ByteRange> toByteRanges(List<HttpRange> ranges, long fileLength) {
+        List<ByteRange> byteRanges = new ArrayList<>(ranges.size());
+        long total = 0;
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(fileLength);
+            long count = range.getRangeEnd(fileLength) - start + 1;
+            byteRanges.add(new ByteRange(start, count));
+            total += count;
+        }
+
+        if (ranges.size() > 1 && total >= fileLength) {
+            throw new IllegalArgumentException("The sum of all ranges (" + total
+                    + ") should be less than the file length (" + fileLength + ")");
+        }
+        return byteRanges;
+    }
+
+    private byte[] getPartHeader(String boundary, ByteRange region, long fileLength) {
+        return ("\r\n--" + boundary + "\r\n"
+                + HttpHeaders.CONTENT_TYPE + ": " + MediaType.APPLICATION_OCTET_STREAM_VALUE + "\r\n"
+                + HttpHeaders.CONTENT_RANGE + ": " + getContentRange(region, fileLength) + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private String getContentRange(ByteRange region, long fileLength) {
+        long end = region.position() + region.count() - 1;
+        return "bytes " + region.position() + "-" + end + "/" + fileLength;
+    }
+
+    private String stripWeakPrefix(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private long truncateToSeconds(long millis) {
+        return millis / 1000 * 1000;
+    }
+
+    /**
+     * The expected hash of a file and the action recording its successful
+     * verification.
+     */
+    private record Verification(ExpectedHash expectedHash, Runnable onVerified) {
+    }
+
+    /**
+     * A requested byte range of a file, resolved against its length.
+     */
+    private record ByteRange(long position, long count) {
+    }
+}
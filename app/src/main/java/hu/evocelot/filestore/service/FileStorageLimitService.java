@@ -1,26 +1,56 @@
 package hu.evocelot.filestore.service;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import hu.evocelot.filestore.exception.BaseException;
 import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.repository.FileRepository;
 import hu.evocelot.filestore.repository.FileStorageLimitRepository;
+import hu.evocelot.filestore.repository.UploadSessionRepository;
 
+/**
+ * Service maintaining the used disk space counter of the storage limits.
+ * <p>
+ * The counter is changed incrementally by the uploads, the deletes and the
+ * size corrections, so the usage can be read without summing the files of an
+ * object. Every change also updates the modification date of the limit, which
+ * the used storage reconciliation uses to find the objects to check.
+ * </p>
+ */
 @Service
 public class FileStorageLimitService {
 
     private final FileStorageLimitRepository repository;
+    private final FileRepository fileRepository;
+    private final UploadSessionRepository uploadSessionRepository;
 
-    public FileStorageLimitService(FileStorageLimitRepository repository) {
+    public FileStorageLimitService(FileStorageLimitRepository repository, FileRepository fileRepository,
+            UploadSessionRepository uploadSessionRepository) {
         this.repository = repository;
+        this.fileRepository = fileRepository;
+        this.uploadSessionRepository = uploadSessionRepository;
     }
 
+    /**
+     * Reserves storage for a file before its content is written. The
+     * reservation has to be either committed or released once the upload has
+     * finished.
+     *
+     * @param objectId the identifier of the object.
+     * @param fileSize the declared size of the file in bytes.
+     * @throws BaseException if the storage limit of the object is exceeded.
+     */
     @Transactional
     public void reserveStorage(String objectId, long fileSize) throws BaseException {
 
-        int updated = repository.reserveStorage(objectId, fileSize);
+        int updated = repository.reserveStorage(objectId, fileSize, OffsetDateTime.now());
 
         if (updated == 0) {
             throw new BaseException(
@@ -29,4 +59,110 @@ public class FileStorageLimitService {
                     "Not enough storage available.");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Leases a block of storage for the reservations served in memory. The
+     * leased block counts as used until its unused part is released.
+     *
+     * @param objectId   the identifier of the object.
+     * @param size       the size of the block in bytes.
+     * @param overCommit the number of bytes the block may exceed the limit by.
+     * @return {@code true} if the block has been leased, {@code false} if it
+     *         does not fit into the limit or the object has no limit.
+     */
+    @Transactional
+    public boolean leaseStorage(String objectId, long size, long overCommit) {
+        return repository.leaseStorage(objectId, size, overCommit, OffsetDateTime.now()) > 0;
+    }
+
+    /**
+     * Commits a reservation once the file has been stored. If the stored size
+     * differs from the reserved one, the used disk space is corrected by the
+     * difference.
+     *
+     * @param objectId     the identifier of the object.
+     * @param reservedSize the size reserved by {@link #reserveStorage}.
+     * @param storedSize   the real size of the stored file.
+     */
+    @Transactional
+    public void commitStorage(String objectId, long reservedSize, long storedSize) {
+        adjustUsedDiskSpace(objectId, storedSize - reservedSize);
+    }
+
+    /**
+     * Releases a reservation, or the storage of a deleted file.
+     *
+     * @param objectId the identifier of the object.
+     * @param size     the released size in bytes.
+     */
+    @Transactional
+    public void releaseStorage(String objectId, long size) {
+        adjustUsedDiskSpace(objectId, -size);
+    }
+
+    /**
+     * Changes the used disk space of an object by the given amount, without
+     * checking the limit. The counter does not go below zero.
+     *
+     * @param objectId the identifier of the object.
+     * @param delta    the change of the used disk space in bytes.
+     */
+    @Transactional
+    public void adjustUsedDiskSpace(String objectId, long delta) {
+        if (objectId != null && delta != 0) {
+            repository.adjustUsedDiskSpace(objectId, delta, OffsetDateTime.now());
+        }
+    }
+
+    /**
+     * Changes the used disk space of several objects in one transaction.
+     *
+     * @param deltas the change of the used disk space by the object id.
+     */
+    @Transactional
+    public void adjustUsedDiskSpaces(Map<String, Long> deltas) {
+        OffsetDateTime now = OffsetDateTime.now();
+        deltas.forEach((objectId, delta) -> {
+            if (delta != 0) {
+                repository.adjustUsedDiskSpace(objectId, delta, now);
+            }
+        });
+    }
+
+    /**
+     * Overwrites the used disk space of the storage limits that have not been
+     * changed since the given time, so a concurrent upload or delete is not
+     * overwritten with a stale value.
+     *
+     * @param usedDiskSpaces the used disk space by the object id.
+     * @param until          the time of the latest accepted change of a limit.
+     * @return the number of the overwritten limits.
+     */
+    @Transactional
+    public int reconcileUsedDiskSpaces(Map<String, Long> usedDiskSpaces, OffsetDateTime until) {
+        int updated = 0;
+        for (Map.Entry<String, Long> entry : usedDiskSpaces.entrySet()) {
+            updated += repository.reconcileUsedDiskSpace(entry.getKey(), entry.getValue(), until);
+        }
+        return updated;
+    }
+
+    /**
+     * Calculates the used disk space of the objects from the sizes of their
+     * files and the storage reserved by their unfinished chunked uploads.
+     *
+     * @param objectIds the identifiers of the objects.
+     * @return the used disk space by the object id, objects without files and
+     *         uploads are missing.
+     */
+    public Map<String, Long> calculateUsedDiskSpaces(Collection<String> objectIds) {
+        Map<String, Long> usedDiskSpaces = new HashMap<>();
+        for (Object[] result : fileRepository.findUsedStorageByObjectIdIn(objectIds)) {
+            usedDiskSpaces.merge((String) result[0], ((Number) result[1]).longValue(), Long::sum);
+        }
+        for (Object[] result : uploadSessionRepository.findReservedStorageByObjectIdIn(objectIds)) {
+            usedDiskSpaces.merge((String) result[0], ((Number) result[1]).longValue(), Long::sum);
+        }
+        return usedDiskSpaces;
+    }
+}
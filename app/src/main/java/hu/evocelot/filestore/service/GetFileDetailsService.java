@@ -1,6 +1,10 @@
 package hu.evocelot.filestore.service;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -8,9 +12,12 @@ import org.springframework.stereotype.Component;
 
 import hu.evocelot.filestore.accessor.FileEntityAccessor;
 import hu.evocelot.filestore.converter.FileEntityWithIdConverter;
+import hu.evocelot.filestore.dto.FileDetailsBatchDto;
 import hu.evocelot.filestore.dto.FileEntityWithIdDto;
+import hu.evocelot.filestore.dto.FileIdsRequestDto;
 import hu.evocelot.filestore.exception.BaseException;
 import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.helper.BatchHelper;
 import hu.evocelot.filestore.model.FileEntity;
 
 /**
@@ -29,13 +36,15 @@ import hu.evocelot.filestore.model.FileEntity;
 public class GetFileDetailsService {
 
     public GetFileDetailsService(FileEntityAccessor fileEntityAccessor,
-            FileEntityWithIdConverter fileEntityWithIdConverter) {
+            FileEntityWithIdConverter fileEntityWithIdConverter, BatchHelper batchHelper) {
         this.fileEntityAccessor = fileEntityAccessor;
         this.fileEntityWithIdConverter = fileEntityWithIdConverter;
+        this.batchHelper = batchHelper;
     }
 
     private FileEntityAccessor fileEntityAccessor;
     private FileEntityWithIdConverter fileEntityWithIdConverter;
+    private BatchHelper batchHelper;
 
     /**
      * Retrieves metadata details of a file.
@@ -63,4 +72,37 @@ public class GetFileDetailsService {
 
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
+
+    /**
+     * Retrieves metadata details of a batch of files.
+     * <p>
+     * The files missing from the metadata cache are read with a single query.
+     * Ids without a file are listed in the response instead of failing the
+     * request.
+     * </p>
+     *
+     * @param fileIdsRequestDto the ids of the files.
+     * @return {@link ResponseEntity} containing the metadata of the existing
+     *         files and the missing ids.
+     * @throws BaseException If the request has no file id or too many.
+     */
+    public ResponseEntity<FileDetailsBatchDto> getFileDetails(FileIdsRequestDto fileIdsRequestDto)
+            throws BaseException {
+        List<String> fileIds = batchHelper.getFileIds(fileIdsRequestDto);
+
+        // Get the file entities.
+        Map<String, FileEntity> fileEntities = fileEntityAccessor.findAllById(fileIds).stream()
+                .collect(Collectors.toMap(FileEntity::getId, Function.identity()));
+
+        // Create the response in the order of the request.
+        List<FileEntityWithIdDto> files = fileIds.stream()
+                .filter(fileEntities::containsKey)
+                .map(fileId -> fileEntityWithIdConverter.convert(fileEntities.get(fileId)))
+                .toList();
+        List<String> missingFileIds = fileIds.stream()
+                .filter(fileId -> !fileEntities.containsKey(fileId))
+                .toList();
+
+        return new ResponseEntity<>(new FileDetailsBatchDto(files, missingFileIds), HttpStatus.OK);
+    }
 }
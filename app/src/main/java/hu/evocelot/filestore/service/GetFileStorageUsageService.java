@@ -3,6 +3,7 @@ package hu.evocelot.filestore.service;
 import org.springframework.stereotype.Component;
 
 import hu.evocelot.filestore.dto.FileStorageUsageDto;
+import hu.evocelot.filestore.model.FileStorageLimit;
 import hu.evocelot.filestore.repository.FileRepository;
 import hu.evocelot.filestore.repository.FileStorageLimitRepository;
 
@@ -10,8 +11,9 @@ import hu.evocelot.filestore.repository.FileStorageLimitRepository;
  * Service responsible for calculating storage usage for files belonging to a
  * specific object.
  * <p>
- * It aggregates the total used disk space from the database and returns it
- * together with a predefined maximum storage limit.
+ * The used disk space is read from the counter of the storage limit, which is
+ * maintained incrementally by the uploads and the deletes. The files are only
+ * summed for objects without a storage limit.
  * </p>
  */
 @Component
@@ -35,11 +37,14 @@ public class GetFileStorageUsageService {
      * @return a {@link FileStorageUsageDto} containing used and maximum disk space
      */
     public FileStorageUsageDto getUsage(String objectId) {
-        Long used = fileRepository.sumSizeByObjectId(objectId);
-        long usedDiskSpace = used != null ? used : 0L;
-
-        Long max = limitRepository.findMaxDiskSpaceByObjectId(objectId);
-        long maxDiskSpace = max != null ? max : DEFAULT_MAX_DISK_SPACE;
+        FileStorageLimit limit = limitRepository.findByObjectId(objectId);
+        if (limit == null) {
+            Long used = fileRepository.sumSizeByObjectId(objectId);
+            return new FileStorageUsageDto(DEFAULT_MAX_DISK_SPACE, used != null ? used : 0L);
+        }
+
+        long usedDiskSpace = limit.getUsedDiskSpace() != null ? limit.getUsedDiskSpace() : 0L;
+        long maxDiskSpace = limit.getMaxDiskSpace() != null ? limit.getMaxDiskSpace() : DEFAULT_MAX_DISK_SPACE;
 
         return new FileStorageUsageDto(maxDiskSpace, usedDiskSpace);
     }
@@ -0,0 +1,44 @@
+package hu.evocelot.filestore.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.job.JobType;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+
+/**
+ * Submits the integrity scrub job periodically.
+ * <p>
+ * Every instance tries to submit the job, but only one scrub pass can be
+ * queued or running at a time.
+ * </p>
+ */
+@Component
+public class IntegrityScrubScheduler {
+
+    private static final Logger LOG = LogManager.getLogger(IntegrityScrubScheduler.class);
+
+    public IntegrityScrubScheduler(JobService jobService, FileStoreProperties fileStoreProperties) {
+        this.jobService = jobService;
+        this.fileStoreProperties = fileStoreProperties;
+    }
+
+    private final JobService jobService;
+    private final FileStoreProperties fileStoreProperties;
+
+    @Scheduled(fixedDelayString = "${filestore.scrub-interval}", initialDelayString = "${filestore.scrub-interval}")
+    public void submit() {
+        if (!fileStoreProperties.isScrubEnabled()) {
+            return;
+        }
+
+        try {
+            jobService.submit(JobType.INTEGRITY_SCRUB);
+        } catch (BaseException e) {
+            LOG.debug("Integrity scrub not submitted. Reason: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package hu.evocelot.filestore.service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import hu.evocelot.filestore.compression.CompressionCodec;
+import hu.evocelot.filestore.helper.FileHelper;
+import hu.evocelot.filestore.helper.VerificationCache;
+import hu.evocelot.filestore.job.JobContext;
+import hu.evocelot.filestore.job.JobHandler;
+import hu.evocelot.filestore.job.JobType;
+import hu.evocelot.filestore.kafka.KafkaMessageProducer;
+import hu.evocelot.filestore.kafka.KafkaTopics;
+import hu.evocelot.filestore.model.FileEntity;
+import hu.evocelot.filestore.pojo.ExpectedHash;
+import hu.evocelot.filestore.pojo.FileIntegrityMessage;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import hu.evocelot.filestore.properties.KafkaProperties;
+import hu.evocelot.filestore.repository.FileRepository;
+import hu.evocelot.filestore.storage.ReadThrottle;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Job re-hashing the stored files, so silent corruption of rarely downloaded
+ * files is detected.
+ * <p>
+ * A pass walks the file metadata in id order with keyset pagination and
+ * verifies every file against its stored checksum or hash. The reads are
+ * limited by a bandwidth and an operation budget, so the pass does not compete
+ * with the foreground traffic. As a background job, a pass runs on one
+ * instance at a time, and its checkpoint is stored with the job, so an
+ * interrupted pass is resumed by any instance where it stopped.
+ * </p>
+ * <p>
+ * Corrupted and missing files are counted in the {@code filestore.scrub.files}
+ * metric and published to the {@link KafkaTopics#FILE_CORRUPTED} topic.
+ * </p>
+ */
+@Component
+public class IntegrityScrubService implements JobHandler {
+
+    private static final Logger LOG = LogManager.getLogger(IntegrityScrubService.class);
+    private static final int BATCH_SIZE = 100;
+
+    public IntegrityScrubService(FileRepository fileRepository, FileHelper fileHelper,
+            FileStoreProperties fileStoreProperties, VerificationCache verificationCache,
+            KafkaProperties kafkaProperties, KafkaMessageProducer kafkaMessageProducer, ObjectMapper objectMapper,
+            MeterRegistry meterRegistry) {
+        this.fileRepository = fileRepository;
+        this.fileHelper = fileHelper;
+        this.fileStoreProperties = fileStoreProperties;
+        this.verificationCache = verificationCache;
+        this.kafkaProperties = kafkaProperties;
+        this.kafkaMessageProducer = kafkaMessageProducer;
+        this.objectMapper = objectMapper;
+        // A batch of large files can take longer than the heartbeat timeout at the throttled rate.
+        this.checkpointInterval = fileStoreProperties.getJobHeartbeatTimeout().dividedBy(2);
+
+        this.verifiedFiles = createFileCounter(meterRegistry, "verified");
+        this.corruptedFiles = createFileCounter(meterRegistry, "corrupted");
+        this.missingFiles = createFileCounter(meterRegistry, "missing");
+        this.failedFiles = createFileCounter(meterRegistry, "failed");
+        this.scrubbedBytes = Counter.builder("filestore.scrub.bytes")
+                .description("The number of stored bytes read by the integrity scrubber.")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    private final FileRepository fileRepository;
+    private final FileHelper fileHelper;
+    private final FileStoreProperties fileStoreProperties;
+    private final VerificationCache verificationCache;
+    private final KafkaProperties kafkaProperties;
+    private final KafkaMessageProducer kafkaMessageProducer;
+    private final ObjectMapper objectMapper;
+    private final Duration checkpointInterval;
+
+    private final Counter verifiedFiles;
+    private final Counter corruptedFiles;
+    private final Counter missingFiles;
+    private final Counter failedFiles;
+    private final Counter scrubbedBytes;
+
+    @Override
+    public JobType getType() {
+        return JobType.INTEGRITY_SCRUB;
+    }
+
+    /**
+     * Verifies the files after the checkpoint until the end of the store.
+     */
+    @Override
+    public void run(JobContext context) throws InterruptedException {
+        ReadThrottle readThrottle = new ReadThrottle(fileStoreProperties.getScrubBytesPerSecond(),
+                fileStoreProperties.getScrubIops());
+        // Files inserted recently may still be moved out of the staging directory.
+        OffsetDateTime insertedBefore = OffsetDateTime.now().minus(fileStoreProperties.getStagingMaxAge());
+
+        String lastId = Objects.requireNonNullElse(context.getCheckpoint(), "");
+        LOG.info("Starting integrity scrub after fileId='{}'.", lastId);
+
+        long lastCheckpoint = System.nanoTime();
+        List<FileEntity> files;
+        do {
+            files = fileRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, BATCH_SIZE));
+
+            for (FileEntity file : files) {
+                if (file.getInsDate() == null || file.getInsDate().isBefore(insertedBefore)) {
+                    scrub(file, context, readThrottle);
+                } else {
+                    context.addSkippedItems(1);
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    // The files after the last checkpoint are verified again when the job is resumed.
+                    throw new InterruptedException();
+                }
+                context.addProcessedItems(1);
+                lastId = file.getId();
+
+                if (System.nanoTime() - lastCheckpoint > checkpointInterval.toNanos()) {
+                    if (!context.checkpoint(lastId)) {
+                        return;
+                    }
+                    lastCheckpoint = System.nanoTime();
+                }
+            }
+
+            if (!files.isEmpty() && !context.checkpoint(lastId)) {
+                return;
+            }
+            lastCheckpoint = System.nanoTime();
+        } while (files.size() == BATCH_SIZE);
+
+        LOG.info("Integrity scrub finished. processed={}, skipped={}, failed={}", context.getProcessedItems(),
+                context.getSkippedItems(), context.getFailedItems());
+    }
+
+    private void scrub(FileEntity file, JobContext context, ReadThrottle readThrottle) {
+        try {
+            String fullPath = fileHelper.getFullPath(file);
+            long storedSize = fileHelper.getFileSize(fullPath);
+            ExpectedHash expectedHash = ExpectedHash.of(file);
+            if (storedSize < 0) {
+                missingFiles.increment();
+                context.addFailedItems(1);
+                LOG.error("The stored content of fileId={} is missing.", file.getId());
+                report(file, FileIntegrityMessage.Status.MISSING, expectedHash, null);
+                return;
+            }
+            if (expectedHash.getHash() == null) {
+                context.addSkippedItems(1);
+                return;
+            }
+
+            long lastModified = fileHelper.getLastModified(fullPath);
+            CompressionCodec compression = Objects.requireNonNullElse(file.getCompression(), CompressionCodec.NONE);
+            String actualHash = fileHelper.getFileHash(fullPath, compression, expectedHash.getHashAlgorithm(),
+                    readThrottle);
+            scrubbedBytes.increment(storedSize);
+
+            if (expectedHash.matches(actualHash)) {
+                verifiedFiles.increment();
+                verificationCache.markVerified(file.getId(), lastModified, storedSize);
+            } else {
+                corruptedFiles.increment();
+                context.addFailedItems(1);
+                verificationCache.invalidate(file.getId());
+                LOG.error("The stored content of fileId={} is corrupted. expected={}, actual={}", file.getId(),
+                        expectedHash.getHash(), actualHash);
+                report(file, FileIntegrityMessage.Status.CORRUPTED, expectedHash, actualHash);
+            }
+        } catch (Exception e) {
+            failedFiles.increment();
+            context.addFailedItems(1);
+            LOG.error("Cannot verify fileId={}. Reason: {}", file.getId(), e.getMessage(), e);
+        }
+    }
+
+    private void report(FileEntity file, FileIntegrityMessage.Status status, ExpectedHash expectedHash,
+            String actualHash) throws Exception {
+        if (kafkaProperties.getEnabled().equals("true")) {
+            FileIntegrityMessage message = new FileIntegrityMessage(file.getId(), file.getSystemId(),
+                    file.getObjectId(), status, expectedHash.getHashAlgorithm(), expectedHash.getHash(), actualHash);
+            kafkaMessageProducer.sendMessage(KafkaTopics.FILE_CORRUPTED, objectMapper.writeValueAsString(message));
+        }
+    }
+
+    private Counter createFileCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("filestore.scrub.files")
+                .description("The number of files checked by the integrity scrubber.")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,234 @@
+package hu.evocelot.filestore.service;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import hu.evocelot.filestore.accessor.BackgroundJobAccessor;
+import hu.evocelot.filestore.dto.JobDto;
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.job.JobContext;
+import hu.evocelot.filestore.job.JobHandler;
+import hu.evocelot.filestore.job.JobStatus;
+import hu.evocelot.filestore.job.JobType;
+import hu.evocelot.filestore.model.BackgroundJob;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Service running the long administrative jobs in the background.
+ * <p>
+ * A submitted job is persisted and run by a {@link JobHandler} on a bounded
+ * executor, so the request submitting it returns immediately with the id of
+ * the job. The handlers persist their checkpoint and counters after every
+ * batch, which also serves as the heartbeat of the job. An unfinished job
+ * without a heartbeat within the heartbeat timeout, e.g. because its instance
+ * was restarted, is resumed from its last checkpoint by any instance.
+ * </p>
+ * <p>
+ * Only one job of a type can be queued or running at a time.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+@Component
+public class JobService {
+
+    private static final Logger LOG = LogManager.getLogger(JobService.class);
+    private static final int ERROR_MESSAGE_MAX_LENGTH = 1000;
+
+    public JobService(List<JobHandler> jobHandlers, BackgroundJobAccessor backgroundJobAccessor,
+            FileStoreProperties fileStoreProperties) {
+        for (JobHandler jobHandler : jobHandlers) {
+            this.jobHandlers.put(jobHandler.getType(), jobHandler);
+        }
+        this.backgroundJobAccessor = backgroundJobAccessor;
+        this.heartbeatTimeout = fileStoreProperties.getJobHeartbeatTimeout();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, fileStoreProperties.getJobParallelism()),
+                new ThreadFactoryBuilder().setNameFormat("background-job-%d").setDaemon(true).build());
+    }
+
+    private final Map<JobType, JobHandler> jobHandlers = new EnumMap<>(JobType.class);
+    private final BackgroundJobAccessor backgroundJobAccessor;
+    private final Duration heartbeatTimeout;
+    private final ExecutorService executor;
+
+    private final Map<String, JobContext> runningJobs = new ConcurrentHashMap<>();
+
+    /**
+     * Submits a job to be run in the background.
+     *
+     * @param type the type of the job.
+     * @return the state of the submitted job.
+     * @throws BaseException if a job of the type is already queued or running.
+     */
+    public synchronized JobDto submit(JobType type) throws BaseException {
+        if (backgroundJobAccessor.isActive(type)) {
+            throw new BaseException(HttpStatus.CONFLICT, ExceptionType.JOB_ALREADY_RUNNING,
+                    "A " + type + " job is already running.");
+        }
+
+        BackgroundJob job = new BackgroundJob();
+        job.setType(type);
+        job.setStatus(JobStatus.QUEUED);
+        job.setHeartbeatDate(OffsetDateTime.now());
+        job = backgroundJobAccessor.insert(job);
+
+        LOG.info("Submitted {} job. jobId={}", type, job.getId());
+        execute(job);
+
+        return toDto(job, null);
+    }
+
+    /**
+     * Returns the state and the progress of a job.
+     *
+     * @param jobId the id of the job.
+     * @return the state of the job.
+     * @throws BaseException if the job does not exist.
+     */
+    public JobDto getJob(String jobId) throws BaseException {
+        return toDto(findJob(jobId), runningJobs.get(jobId));
+    }
+
+    /**
+     * Cancels a queued or running job. A running job stops after its current
+     * batch, the items processed so far are kept.
+     *
+     * @param jobId the id of the job.
+     * @return the state of the cancelled job.
+     * @throws BaseException if the job does not exist or has already finished.
+     */
+    public JobDto cancel(String jobId) throws BaseException {
+        findJob(jobId);
+        if (!backgroundJobAccessor.cancel(jobId)) {
+            throw new BaseException(HttpStatus.CONFLICT, ExceptionType.JOB_ALREADY_FINISHED,
+                    "The job with id " + jobId + " has already finished.");
+        }
+
+        JobContext context = runningJobs.get(jobId);
+        if (context != null) {
+            context.cancel();
+        }
+
+        LOG.info("Cancelled job. jobId={}", jobId);
+        return getJob(jobId);
+    }
+
+    /**
+     * Resumes the unfinished jobs that have not reported their progress within
+     * the heartbeat timeout.
+     */
+    @Scheduled(fixedDelayString = "${filestore.job-heartbeat-timeout}")
+    public void resumeStaleJobs() {
+        OffsetDateTime heartbeatBefore = OffsetDateTime.now().minus(heartbeatTimeout);
+
+        for (BackgroundJob job : backgroundJobAccessor.findStaleJobs(heartbeatBefore)) {
+            if (!runningJobs.containsKey(job.getId())) {
+                LOG.info("Resuming {} job after checkpoint '{}'. jobId={}", job.getType(), job.getCheckpoint(),
+                        job.getId());
+                execute(job);
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // The interrupted jobs stay running in the database and are resumed later.
+        executor.shutdownNow();
+    }
+
+    private void execute(BackgroundJob job) {
+        executor.execute(() -> run(job));
+    }
+
+    private void run(BackgroundJob job) {
+        JobHandler jobHandler = jobHandlers.get(job.getType());
+        if (jobHandler == null || !backgroundJobAccessor.claim(job.getId(), job.getVersion())) {
+            // The job has been claimed, cancelled or finished meanwhile.
+            return;
+        }
+
+        JobContext context = new JobContext(job, job.getVersion().add(BigInteger.ONE), backgroundJobAccessor);
+        runningJobs.put(job.getId(), context);
+        try {
+            jobHandler.run(context);
+
+            if (!context.isCancelled()) {
+                finish(context, JobStatus.SUCCEEDED, null);
+                LOG.info("{} job finished. jobId={}, processed={}", job.getType(), job.getId(),
+                        context.getProcessedItems());
+            } else {
+                LOG.info("{} job stopped. jobId={}, processed={}", job.getType(), job.getId(),
+                        context.getProcessedItems());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("{} job interrupted, it is resumed later. jobId={}", job.getType(), job.getId());
+        } catch (Exception e) {
+            LOG.error("{} job failed. jobId={}, reason: {}", job.getType(), job.getId(), e.getMessage(), e);
+            finish(context, JobStatus.FAILED, StringUtils.abbreviate(e.getMessage(), ERROR_MESSAGE_MAX_LENGTH));
+        } finally {
+            runningJobs.remove(job.getId());
+        }
+    }
+
+    private void finish(JobContext context, JobStatus status, String errorMessage) {
+        backgroundJobAccessor.finish(context.getJobId(), context.getVersion(), status, errorMessage,
+                context.getProcessedItems(), context.getUpdatedItems(), context.getSkippedItems(),
+                context.getFailedItems());
+    }
+
+    private BackgroundJob findJob(String jobId) throws BaseException {
+        return backgroundJobAccessor.findById(jobId)
+                .orElseThrow(() -> new BaseException(HttpStatus.NOT_FOUND, ExceptionType.JOB_NOT_FOUND,
+                        "Job with id " + jobId + " not found."));
+    }
+
+    private JobDto toDto(BackgroundJob job, JobContext context) {
+        JobDto jobDto = new JobDto();
+        jobDto.setId(job.getId());
+        jobDto.setType(job.getType());
+        jobDto.setStatus(job.getStatus());
+        jobDto.setStartedDate(job.getStartedDate());
+        jobDto.setFinishedDate(job.getFinishedDate());
+        jobDto.setErrorMessage(job.getErrorMessage());
+
+        if (context != null && job.getStatus() == JobStatus.RUNNING) {
+            // The job runs on this instance, its counters are newer than the checkpoint.
+            jobDto.setProcessedItems(context.getProcessedItems());
+            jobDto.setUpdatedItems(context.getUpdatedItems());
+            jobDto.setSkippedItems(context.getSkippedItems());
+            jobDto.setFailedItems(context.getFailedItems());
+            jobDto.setItemsPerSecond(context.getItemsPerSecond());
+            return jobDto;
+        }
+
+        jobDto.setProcessedItems(job.getProcessedItems());
+        jobDto.setUpdatedItems(job.getUpdatedItems());
+        jobDto.setSkippedItems(job.getSkippedItems());
+        jobDto.setFailedItems(job.getFailedItems());
+        if (job.getStartedDate() != null) {
+            OffsetDateTime lastUpdate = job.getFinishedDate() != null ? job.getFinishedDate() : job.getHeartbeatDate();
+            long elapsedMillis = Duration.between(job.getStartedDate(), lastUpdate).toMillis();
+            jobDto.setItemsPerSecond(elapsedMillis > 0 ? job.getProcessedItems() * 1000d / elapsedMillis : 0);
+        }
+        return jobDto;
+    }
+}
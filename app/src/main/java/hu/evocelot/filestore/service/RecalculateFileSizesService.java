@@ -1,90 +1,218 @@
 package hu.evocelot.filestore.service;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Component;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import hu.evocelot.filestore.accessor.FileEntityAccessor;
+import hu.evocelot.filestore.compression.CompressionCodec;
 import hu.evocelot.filestore.helper.FileHelper;
+import hu.evocelot.filestore.job.JobContext;
+import hu.evocelot.filestore.job.JobHandler;
+import hu.evocelot.filestore.job.JobType;
 import hu.evocelot.filestore.model.FileEntity;
+import hu.evocelot.filestore.properties.FileStoreProperties;
 import hu.evocelot.filestore.repository.FileRepository;
-
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Job recalculating the size of every file from the storage.
+ * <p>
+ * The job walks the file metadata in id order with keyset pagination, so it
+ * can be resumed after the id of the last finished batch. The sizes of a batch
+ * are read from the storage in parallel by a bounded worker pool, and only the
+ * changed rows are written back with a single JDBC batch, and the storage
+ * limits of their objects are adjusted by the size differences. The processed
+ * files are also counted in the {@code filestore.file-size-recalculation.files}
+ * metric.
+ * </p>
+ */
 @Component
-public class RecalculateFileSizesService {
+public class RecalculateFileSizesService implements JobHandler {
     private static final Logger LOG = LogManager.getLogger(RecalculateFileSizesService.class);
 
-    private final FileEntityAccessor fileEntityAccessor;
-    private final FileRepository fileRepository;
-    private final FileHelper fileHelper;
-
-    private static final int PAGE_SIZE = 100;
+    private static final int BATCH_SIZE = 1000;
 
     public RecalculateFileSizesService(FileEntityAccessor fileEntityAccessor,
-            FileHelper fileHelper, FileRepository fileRepository) {
+            FileHelper fileHelper, FileRepository fileRepository, FileStorageLimitService fileStorageLimitService,
+            FileStoreProperties fileStoreProperties, MeterRegistry meterRegistry) {
         this.fileEntityAccessor = fileEntityAccessor;
+        this.fileStorageLimitService = fileStorageLimitService;
         this.fileRepository = fileRepository;
         this.fileHelper = fileHelper;
+        this.workers = Executors.newFixedThreadPool(Math.max(1, fileStoreProperties.getRecalculationParallelism()),
+                new ThreadFactoryBuilder().setNameFormat("file-size-recalculation-%d").setDaemon(true).build());
+
+        this.unchangedCounter = createFileCounter(meterRegistry, "unchanged");
+        this.updatedCounter = createFileCounter(meterRegistry, "updated");
+        this.missingCounter = createFileCounter(meterRegistry, "missing");
+        this.failedCounter = createFileCounter(meterRegistry, "failed");
     }
 
-    public void recalculateAll() throws Exception {
-        LOG.info("Starting file size recalculation...");
+    private final FileEntityAccessor fileEntityAccessor;
+    private final FileStorageLimitService fileStorageLimitService;
+    private final FileRepository fileRepository;
+    private final FileHelper fileHelper;
+    private final ExecutorService workers;
+
+    private final Counter unchangedCounter;
+    private final Counter updatedCounter;
+    private final Counter missingCounter;
+    private final Counter failedCounter;
+
+    @Override
+    public JobType getType() {
+        return JobType.FILE_SIZE_RECALCULATION;
+    }
 
-        int page = 0;
-        Page<FileEntity> result;
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
 
+    /**
+     * Recalculates the size of every file after the checkpoint of the job.
+     *
+     * @param context the state of the job.
+     * @throws InterruptedException if the thread is interrupted.
+     */
+    @Override
+    public void run(JobContext context) throws InterruptedException {
+        String lastId = Objects.requireNonNullElse(context.getCheckpoint(), "");
+        LOG.info("Starting file size recalculation after fileId='{}'...", lastId);
+
+        List<FileEntity> files;
         do {
-            result = fileRepository.findAll(PageRequest.of(page, PAGE_SIZE));
-            List<FileEntity> files = result.getContent();
-
-            LOG.info("Processing page {} with {} files", page, files.size());
+            files = fileRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, BATCH_SIZE));
 
+            // Read the sizes of the batch in parallel.
+            List<Long> oldSizes = files.stream().map(FileEntity::getSize).toList();
+            List<Callable<Boolean>> tasks = new ArrayList<>(files.size());
             for (FileEntity file : files) {
-                recalculateSingle(file);
+                tasks.add(() -> recalculateSingle(file, context));
+            }
+            List<Future<Boolean>> results = workers.invokeAll(tasks);
+
+            List<FileEntity> changedFiles = new ArrayList<>();
+            Map<String, Long> usedDiskSpaceDeltas = new HashMap<>();
+            for (int i = 0; i < files.size(); i++) {
+                if (isChanged(results.get(i))) {
+                    FileEntity file = files.get(i);
+                    changedFiles.add(file);
+                    if (file.getObjectId() != null) {
+                        long oldSize = Objects.requireNonNullElse(oldSizes.get(i), 0L);
+                        usedDiskSpaceDeltas.merge(file.getObjectId(), file.getSize() - oldSize, Long::sum);
+                    }
+                }
+            }
+
+            if (!changedFiles.isEmpty()) {
+                fileEntityAccessor.updateSizes(changedFiles);
+                // The storage limits follow the corrected sizes.
+                fileStorageLimitService.adjustUsedDiskSpaces(usedDiskSpaceDeltas);
+                context.addUpdatedItems(changedFiles.size());
+                updatedCounter.increment(changedFiles.size());
             }
 
-            page++;
-        } while (!result.isLast());
+            if (!files.isEmpty()) {
+                lastId = files.get(files.size() - 1).getId();
+                LOG.info("Processed {} files, last fileId={}", context.getProcessedItems(), lastId);
+                if (!context.checkpoint(lastId)) {
+                    return;
+                }
+            }
+        } while (files.size() == BATCH_SIZE);
 
-        LOG.info("File size recalculation finished.");
+        LOG.info("File size recalculation finished. processed={}, updated={}, missing={}, failed={}",
+                context.getProcessedItems(), context.getUpdatedItems(), context.getSkippedItems(),
+                context.getFailedItems());
     }
 
-    private void recalculateSingle(FileEntity file) {
+    /**
+     * Reads the size of the file from the storage and updates the entity.
+     *
+     * @return {@code true} if the size of the entity has changed.
+     */
+    private boolean recalculateSingle(FileEntity file, JobContext context) {
+        context.addProcessedItems(1);
+
         try {
-            String directoryPath = fileHelper.getDirectoryPath(file.getSystemId());
-            String fullPath = fileHelper.getFullPath(
-                    directoryPath,
-                    file.getId(),
-                    file.getExtension());
+            String fullPath = fileHelper.getFullPath(file);
 
-            Path path = Paths.get(fullPath);
+            long size = fileHelper.getFileSize(fullPath);
 
-            if (Files.exists(path)) {
-                long size = Files.size(path);
+            if (size >= 0 && isCompressed(file)) {
+                // The logical size of a compressed file cannot change, only the stored one.
+                if (file.getStoredSize() == null || !file.getStoredSize().equals(size)) {
+                    LOG.debug("Updating stored size for fileId={} oldStoredSize={} newStoredSize={}",
+                            file.getId(), file.getStoredSize(), size);
 
-                if (file.getSize() == null || !file.getSize().equals(size)) {
+                    file.setStoredSize(size);
+                    return true;
+                }
+            } else if (size >= 0) {
+                if (file.getSize() == null || !file.getSize().equals(size)
+                        || file.getStoredSize() == null || !file.getStoredSize().equals(size)) {
                     LOG.debug("Updating size for fileId={} oldSize={} newSize={}",
                             file.getId(), file.getSize(), size);
 
                     file.setSize(size);
-                    fileEntityAccessor.save(file);
-                } else {
-                    LOG.debug("Size unchanged for fileId={}", file.getId());
+                    file.setStoredSize(size);
+                    return true;
                 }
             } else {
-                LOG.warn("File not found on disk. fileId={}, path={}",
+                LOG.warn("File not found in the storage. fileId={}, path={}",
                         file.getId(), fullPath);
+                context.addSkippedItems(1);
+                missingCounter.increment();
+                return false;
             }
 
+            LOG.debug("Size unchanged for fileId={}", file.getId());
+            unchangedCounter.increment();
+            return false;
         } catch (Exception e) {
             LOG.error("Error recalculating size for fileId={}. Reason: {}",
                     file.getId(), e.getMessage(), e);
+            context.addFailedItems(1);
+            failedCounter.increment();
+            return false;
         }
     }
+
+    private boolean isChanged(Future<Boolean> result) throws InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            // recalculateSingle handles its own failures.
+            return false;
+        }
+    }
+
+    private boolean isCompressed(FileEntity file) {
+        return file.getCompression() != null && file.getCompression() != CompressionCodec.NONE;
+    }
+
+    private Counter createFileCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("filestore.file-size-recalculation.files")
+                .description("The number of files processed by the file size recalculation.")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
 }
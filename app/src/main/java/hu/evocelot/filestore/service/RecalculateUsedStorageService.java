@@ -1,59 +1,129 @@
 package hu.evocelot.filestore.service;
 
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
-import hu.evocelot.filestore.repository.FileRepository;
+import hu.evocelot.filestore.job.JobContext;
+import hu.evocelot.filestore.job.JobHandler;
+import hu.evocelot.filestore.job.JobType;
+import hu.evocelot.filestore.model.FileStorageLimit;
+import hu.evocelot.filestore.properties.FileStoreProperties;
 import hu.evocelot.filestore.repository.FileStorageLimitRepository;
 
+/**
+ * Job recalculating the used disk space of every storage limit from the sizes
+ * of the files of its object.
+ * <p>
+ * The job walks the storage limits in object id order with keyset pagination,
+ * sums the file sizes and the unfinished chunked uploads of a batch of objects
+ * with one query each and writes back only the changed values, so it can be
+ * resumed after the last finished batch.
+ * </p>
+ * <p>
+ * Like the {@link UsedStorageReconciliationService}, the job only overwrites
+ * the limits that have not been modified within the reconciliation grace
+ * period before it was submitted. The reservations of the uploads still in
+ * progress and the quota leases of every instance are not in the sums yet, so
+ * the limits changed by them are counted as skipped instead.
+ * </p>
+ */
 @Component
-public class RecalculateUsedStorageService {
+public class RecalculateUsedStorageService implements JobHandler {
 
     private static final Logger LOG = LogManager.getLogger(RecalculateUsedStorageService.class);
+    private static final int BATCH_SIZE = 500;
 
-    private final FileRepository fileRepository;
     private final FileStorageLimitRepository fileStorageLimitRepository;
+    private final FileStorageLimitService fileStorageLimitService;
+    private final Duration grace;
 
     public RecalculateUsedStorageService(
-            FileRepository fileRepository,
-            FileStorageLimitRepository fileStorageLimitRepository) {
+            FileStorageLimitRepository fileStorageLimitRepository,
+            FileStorageLimitService fileStorageLimitService,
+            FileStoreProperties fileStoreProperties) {
 
-        this.fileRepository = fileRepository;
         this.fileStorageLimitRepository = fileStorageLimitRepository;
+        this.fileStorageLimitService = fileStorageLimitService;
+        this.grace = fileStoreProperties.getUsedStorageReconciliationGrace();
     }
 
-    @Transactional
-    public void recalculateAll() {
+    @Override
+    public JobType getType() {
+        return JobType.USED_STORAGE_RECALCULATION;
+    }
+
+    @Override
+    public void run(JobContext context) throws InterruptedException {
 
-        LOG.info("Starting used storage recalculation...");
+        // The limits changed after this point may have reservations or leases missing from the sums.
+        OffsetDateTime until = context.getSubmittedDate().minus(grace);
+        String lastObjectId = Objects.requireNonNullElse(context.getCheckpoint(), "");
+        LOG.info("Starting used storage recalculation of the limits unchanged since {} after objectId='{}'...",
+                until, lastObjectId);
 
-        List<Object[]> results = fileRepository.findUsedStorageByObjectId();
+        List<FileStorageLimit> limits;
+        do {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
 
-        for (Object[] result : results) {
+            limits = fileStorageLimitRepository.findByObjectIdGreaterThanOrderByObjectIdAsc(
+                    lastObjectId,
+                    PageRequest.of(0, BATCH_SIZE));
+            if (limits.isEmpty()) {
+                break;
+            }
 
-            String objectId = (String) result[0];
-            long usedDiskSpace = ((Number) result[1]).longValue();
+            List<String> objectIds = limits.stream().map(FileStorageLimit::getObjectId).toList();
+            Map<String, Long> usedDiskSpaces = fileStorageLimitService.calculateUsedDiskSpaces(objectIds);
+
+            // Limits without files are reset to zero.
+            Map<String, Long> changedDiskSpaces = new HashMap<>();
+            for (FileStorageLimit limit : limits) {
+                if (limit.getModDate().isAfter(until)) {
+                    context.addSkippedItems(1);
+                    continue;
+                }
+
+                long usedDiskSpace = usedDiskSpaces.getOrDefault(limit.getObjectId(), 0L);
+
+                if (!Objects.equals(limit.getUsedDiskSpace(), usedDiskSpace)) {
+                    LOG.info(
+                            "Updating used storage. objectId={}, oldUsedDiskSpace={}, usedDiskSpace={}",
+                            limit.getObjectId(),
+                            limit.getUsedDiskSpace(),
+                            usedDiskSpace);
+                    changedDiskSpaces.put(limit.getObjectId(), usedDiskSpace);
+                }
+            }
 
-            int updated = fileStorageLimitRepository.updateUsedDiskSpace(
-                    objectId,
-                    usedDiskSpace);
+            if (!changedDiskSpaces.isEmpty()) {
+                int updated = fileStorageLimitService.reconcileUsedDiskSpaces(changedDiskSpaces, until);
+                context.addUpdatedItems(updated);
+                // The limits changed meanwhile are corrected by the next recalculation or reconciliation.
+                context.addSkippedItems(changedDiskSpaces.size() - updated);
+            }
+            context.addProcessedItems(limits.size());
 
-            if (updated > 0) {
-                LOG.info(
-                        "Updated used storage. objectId={}, usedDiskSpace={}",
-                        objectId,
-                        usedDiskSpace);
-            } else {
-                LOG.warn(
-                        "No storage limit found for objectId={}",
-                        objectId);
+            lastObjectId = limits.get(limits.size() - 1).getObjectId();
+            if (!context.checkpoint(lastObjectId)) {
+                return;
             }
-        }
+        } while (limits.size() == BATCH_SIZE);
 
-        LOG.info("Used storage recalculation finished.");
+        LOG.info(
+                "Used storage recalculation finished. processed={}, updated={}, skipped={}",
+                context.getProcessedItems(),
+                context.getUpdatedItems(),
+                context.getSkippedItems());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,168 @@
+package hu.evocelot.filestore.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import hu.evocelot.filestore.accessor.FileEntityAccessor;
+import hu.evocelot.filestore.accessor.UploadSessionAccessor;
+import hu.evocelot.filestore.helper.FileHelper;
+import hu.evocelot.filestore.model.UploadSession;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+
+/**
+ * Service class cleaning up the staging directory.
+ * <p>
+ * The uploads are written to a staging file named after the ID of the file,
+ * which is renamed to its final path before the row of the file is inserted.
+ * A staging file older than the configured age is therefore an orphan whose
+ * row was never inserted, which is deleted.
+ * </p>
+ * <p>
+ * Before its content is stored, an upload records its final path in a pending
+ * marker, which is deleted once the row is inserted. An old marker without a
+ * row belongs to an upload that stopped between storing its content and the
+ * insert, so the content is deleted from its final path, on the local disk
+ * and on the object store alike.
+ * </p>
+ * <p>
+ * The chunked uploads that have not received a chunk within the configured
+ * time to live are discarded as well, so their part files are deleted and
+ * their reserved storage is released.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+@Component
+public class StagingSweepService {
+
+    private static final Logger LOG = LogManager.getLogger(StagingSweepService.class);
+    private static final int SESSION_BATCH_SIZE = 100;
+
+    public StagingSweepService(FileEntityAccessor fileEntityAccessor, UploadSessionAccessor uploadSessionAccessor,
+            ChunkedUploadService chunkedUploadService, FileHelper fileHelper,
+            FileStoreProperties fileStoreProperties) {
+        this.fileEntityAccessor = fileEntityAccessor;
+        this.uploadSessionAccessor = uploadSessionAccessor;
+        this.chunkedUploadService = chunkedUploadService;
+        this.fileHelper = fileHelper;
+        this.fileStoreProperties = fileStoreProperties;
+    }
+
+    private final FileEntityAccessor fileEntityAccessor;
+    private final UploadSessionAccessor uploadSessionAccessor;
+    private final ChunkedUploadService chunkedUploadService;
+    private final FileHelper fileHelper;
+    private final FileStoreProperties fileStoreProperties;
+
+    /**
+     * Sweeps the staging files older than the configured maximum age.
+     */
+    @Scheduled(fixedDelayString = "${filestore.staging-sweep-interval}",
+            initialDelayString = "${filestore.staging-sweep-interval}")
+    public void sweep() {
+        Path stagingDirectory = Paths.get(fileHelper.getStagingDirectoryPath());
+        if (!Files.isDirectory(stagingDirectory)) {
+            return;
+        }
+
+        Instant threshold = Instant.now().minus(fileStoreProperties.getStagingMaxAge());
+        int swept = 0;
+
+        try (DirectoryStream<Path> stagingFiles = Files.newDirectoryStream(stagingDirectory)) {
+            for (Path stagingFile : stagingFiles) {
+                try {
+                    if (Files.isRegularFile(stagingFile)
+                            && Files.getLastModifiedTime(stagingFile).toInstant().isBefore(threshold)) {
+                        if (sweep(stagingFile, threshold)) {
+                            swept++;
+                        }
+                    }
+                } catch (NoSuchFileException e) {
+                    // The upload has finished in the meantime.
+                } catch (Exception e) {
+                    LOG.error("Cannot sweep the staging file {}. Reason: {}", stagingFile, e.getMessage(), e);
+                }
+            }
+        } catch (IOException e) {
+            LOG.error("Cannot list the staging directory {}. Reason: {}", stagingDirectory, e.getMessage(), e);
+        }
+
+        if (swept > 0) {
+            LOG.info("Swept {} staging files.", swept);
+        }
+    }
+
+    /**
+     * Discards the chunked uploads that have not received a chunk within the
+     * configured time to live.
+     */
+    @Scheduled(fixedDelayString = "${filestore.staging-sweep-interval}",
+            initialDelayString = "${filestore.staging-sweep-interval}")
+    public void sweepUploadSessions() {
+        OffsetDateTime threshold = OffsetDateTime.now().minus(fileStoreProperties.getUploadSessionTtl());
+        int discarded = 0;
+
+        try {
+            // Every returned session is deleted, either by this sweep or concurrently.
+            List<UploadSession> sessions;
+            do {
+                sessions = uploadSessionAccessor.findExpired(threshold, SESSION_BATCH_SIZE);
+                for (UploadSession session : sessions) {
+                    if (chunkedUploadService.discardUpload(session)) {
+                        discarded++;
+                    }
+                }
+            } while (sessions.size() == SESSION_BATCH_SIZE);
+        } catch (RuntimeException e) {
+            LOG.error("Cannot discard the expired upload sessions. Reason: {}", e.getMessage(), e);
+        }
+
+        if (discarded > 0) {
+            LOG.info("Discarded {} expired upload sessions.", discarded);
+        }
+    }
+
+    private boolean sweep(Path stagingFile, Instant threshold) throws Exception {
+        String fileId = StringUtils.substringBeforeLast(stagingFile.getFileName().toString(), ".");
+        if (stagingFile.getFileName().equals(Paths.get(fileHelper.getPendingMarkerPath(fileId)).getFileName())) {
+            return sweepPendingMarker(stagingFile, fileId, threshold);
+        }
+
+        LOG.info("Deleting the orphan staging file {}.", stagingFile);
+        fileHelper.deleteLocalFile(stagingFile.toString());
+        return true;
+    }
+
+    private boolean sweepPendingMarker(Path marker, String fileId, Instant threshold) throws Exception {
+        if (fileEntityAccessor.findById(fileId).isEmpty()) {
+            String fullPath = Files.readString(marker);
+            long lastModified = fileHelper.getLastModified(fullPath);
+
+            // The content has just been stored, its row may still be inserted.
+            if (lastModified >= threshold.toEpochMilli()) {
+                return false;
+            }
+
+            if (lastModified >= 0) {
+                LOG.info("Deleting the content {} of the file {} whose row was never inserted.", fullPath, fileId);
+                fileHelper.deleteFile(fullPath);
+            }
+        }
+
+        fileHelper.deleteLocalFile(marker.toString());
+        return true;
+    }
+}
@@ -0,0 +1,160 @@
+package hu.evocelot.filestore.service;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import hu.evocelot.filestore.dto.StorageLayoutMigrationStatusDto;
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.helper.FileHelper;
+import hu.evocelot.filestore.model.FileEntity;
+import hu.evocelot.filestore.repository.FileRepository;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Service responsible for moving the stored files from the flat layout into the
+ * sharded layout.
+ * <p>
+ * The migration runs in the background and walks the file metadata in id
+ * order with keyset pagination. Every file is moved with an atomic rename, and
+ * reads resolve both layouts in the meantime, so the store stays online. The
+ * migration can be restarted at any time: files that are already in the
+ * sharded layout are skipped.
+ * </p>
+ */
+@Component
+public class StorageLayoutMigrationService {
+
+    private static final Logger LOG = LogManager.getLogger(StorageLayoutMigrationService.class);
+    private static final int BATCH_SIZE = 500;
+
+    public StorageLayoutMigrationService(FileRepository fileRepository, FileHelper fileHelper) {
+        this.fileRepository = fileRepository;
+        this.fileHelper = fileHelper;
+    }
+
+    private final FileRepository fileRepository;
+    private final FileHelper fileHelper;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "storage-layout-migration");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong processedFiles = new AtomicLong();
+    private final AtomicLong movedFiles = new AtomicLong();
+    private final AtomicLong failedFiles = new AtomicLong();
+
+    /**
+     * Starts the migration in the background.
+     *
+     * @return the status of the started migration.
+     * @throws BaseException if sharding is disabled, the files are not stored on
+     *                       the local disk or a migration is already running.
+     */
+    public StorageLayoutMigrationStatusDto start() throws BaseException {
+        if (!fileHelper.isSharded()) {
+            throw new BaseException(HttpStatus.BAD_REQUEST, ExceptionType.INVALID_INPUT,
+                    "The sharded layout is disabled, set the shard depth first.");
+        }
+        if (!fileHelper.isLocalStorage()) {
+            throw new BaseException(HttpStatus.BAD_REQUEST, ExceptionType.INVALID_INPUT,
+                    "The storage layout migration is only supported on the local disk.");
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new BaseException(HttpStatus.CONFLICT, ExceptionType.JOB_ALREADY_RUNNING,
+                    "The storage layout migration is already running.");
+        }
+
+        processedFiles.set(0);
+        movedFiles.set(0);
+        failedFiles.set(0);
+        executor.execute(this::migrateAll);
+
+        return getStatus();
+    }
+
+    /**
+     * Returns the progress of the current or the last migration.
+     *
+     * @return the status of the migration.
+     */
+    public StorageLayoutMigrationStatusDto getStatus() {
+        return new StorageLayoutMigrationStatusDto(running.get(), processedFiles.get(), movedFiles.get(),
+                failedFiles.get());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void migrateAll() {
+        LOG.info("Starting storage layout migration...");
+
+        try {
+            String lastId = "";
+            List<FileEntity> files;
+
+            do {
+                files = fileRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, BATCH_SIZE));
+
+                for (FileEntity file : files) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        LOG.warn("Storage layout migration interrupted after {} files.", processedFiles.get());
+                        return;
+                    }
+                    migrateSingle(file);
+                }
+
+                if (!files.isEmpty()) {
+                    lastId = files.get(files.size() - 1).getId();
+                }
+            } while (files.size() == BATCH_SIZE);
+
+            LOG.info("Storage layout migration finished. processed={}, moved={}, failed={}",
+                    processedFiles.get(), movedFiles.get(), failedFiles.get());
+        } catch (Exception e) {
+            LOG.error("Storage layout migration failed. Reason: {}", e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void migrateSingle(FileEntity file) {
+        processedFiles.incrementAndGet();
+
+        // Deduplicated content is stored in the blob store.
+        if (StringUtils.isNotBlank(file.getContentDigest())) {
+            return;
+        }
+
+        String directoryPath = fileHelper.getDirectoryPath(file.getSystemId());
+        String flatPath = fileHelper.getFlatPath(directoryPath, file.getId(), file.getExtension());
+        if (!Files.exists(Paths.get(flatPath))) {
+            return;
+        }
+
+        try {
+            fileHelper.createDirectoryIfNotExists(fileHelper.getShardedDirectoryPath(directoryPath, file.getId()));
+            fileHelper.moveFile(flatPath, fileHelper.getFullPath(directoryPath, file.getId(), file.getExtension()));
+            movedFiles.incrementAndGet();
+        } catch (Exception e) {
+            failedFiles.incrementAndGet();
+            LOG.error("Cannot move fileId={} into the sharded layout. Reason: {}", file.getId(), e.getMessage(), e);
+        }
+    }
+}
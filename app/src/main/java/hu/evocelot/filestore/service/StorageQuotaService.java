@@ -0,0 +1,209 @@
+package hu.evocelot.filestore.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.google.common.util.concurrent.Striped;
+
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.pojo.QuotaLease;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Service reserving the storage of the uploads against the storage limits.
+ * <p>
+ * By default every reservation is a conditional update of the storage limit,
+ * so the uploads of the same object serialize on the lock of its row. When the
+ * quota leases are enabled, the instance leases a block of storage from the
+ * limit and serves the reservations of the object from the lease in memory.
+ * The database is only updated when a new block is leased and when the unused
+ * part of an expired lease is returned.
+ * </p>
+ * <p>
+ * The leased blocks are counted as used in the database, so the instances
+ * together never grant more than the limit plus the configured over-commit. If
+ * an instance stops without returning its leases, the used storage
+ * reconciliation corrects the counters once the grace period has passed.
+ * </p>
+ */
+@Service
+public class StorageQuotaService {
+
+    private static final Logger LOG = LogManager.getLogger(StorageQuotaService.class);
+    private static final int LOCK_STRIPES = 64;
+
+    public StorageQuotaService(FileStorageLimitService fileStorageLimitService,
+            FileStoreProperties fileStoreProperties) {
+        this.fileStorageLimitService = fileStorageLimitService;
+        this.enabled = fileStoreProperties.isQuotaLeaseEnabled();
+        this.leaseSize = fileStoreProperties.getQuotaLeaseSize();
+        this.leaseDuration = fileStoreProperties.getQuotaLeaseDuration();
+        this.overCommit = fileStoreProperties.getQuotaOverCommit();
+
+        // A lease is returned at most two lease durations after it has been taken.
+        if (enabled && leaseDuration.multipliedBy(2)
+                .compareTo(fileStoreProperties.getUsedStorageReconciliationGrace()) >= 0) {
+            LOG.warn("The quota lease duration should be less than half of the used storage reconciliation "
+                    + "grace period, otherwise the reconciliation can discard the unused part of the leases.");
+        }
+    }
+
+    private final FileStorageLimitService fileStorageLimitService;
+    private final boolean enabled;
+    private final long leaseSize;
+    private final Duration leaseDuration;
+    private final long overCommit;
+
+    private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+    private final Map<String, QuotaLease> leases = new ConcurrentHashMap<>();
+
+    /**
+     * Reserves storage for a file before its content is written. The
+     * reservation has to be either committed or released once the upload has
+     * finished.
+     *
+     * @param objectId the identifier of the object.
+     * @param size     the declared size of the file in bytes.
+     * @throws BaseException if the storage limit of the object is exceeded.
+     */
+    public void reserveStorage(String objectId, long size) throws BaseException {
+        if (enabled && objectId != null && reserveFromLease(objectId, size)) {
+            return;
+        }
+
+        // Near the limit only the reservation itself is taken from the database.
+        fileStorageLimitService.reserveStorage(objectId, size);
+    }
+
+    /**
+     * Commits a reservation once the file has been stored. If the stored file
+     * is smaller than the reservation, the difference is released.
+     *
+     * @param objectId     the identifier of the object.
+     * @param reservedSize the size reserved by {@link #reserveStorage}.
+     * @param storedSize   the real size of the stored file.
+     */
+    public void commitStorage(String objectId, long reservedSize, long storedSize) {
+        if (storedSize < reservedSize) {
+            releaseStorage(objectId, reservedSize - storedSize);
+        } else {
+            fileStorageLimitService.commitStorage(objectId, reservedSize, storedSize);
+        }
+    }
+
+    /**
+     * Releases a reservation, or the storage of a deleted file.
+     * <p>
+     * If the object has a valid lease, the released storage is kept in the
+     * lease up to the size of a block, the rest is released in the database.
+     * </p>
+     *
+     * @param objectId the identifier of the object.
+     * @param size     the released size in bytes.
+     */
+    public void releaseStorage(String objectId, long size) {
+        long remaining = size;
+        if (enabled && objectId != null && size > 0) {
+            Lock lock = locks.get(objectId);
+            lock.lock();
+            try {
+                QuotaLease lease = leases.get(objectId);
+                if (lease != null && !lease.isExpired(Instant.now())) {
+                    long kept = Math.min(size, Math.max(0, leaseSize - lease.getAvailable()));
+                    lease.give(kept);
+                    remaining -= kept;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        fileStorageLimitService.releaseStorage(objectId, remaining);
+    }
+
+    /**
+     * Returns the unused storage of the expired leases to the storage limits.
+     */
+    @Scheduled(fixedDelayString = "${filestore.quota-lease-duration}")
+    public void returnExpiredLeases() {
+        if (enabled) {
+            returnLeases(Instant.now());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        returnLeases(Instant.MAX);
+    }
+
+    /**
+     * Serves the reservation from the lease of the object, leasing a new block
+     * if the current one is expired or exhausted.
+     *
+     * @return {@code false} if no block could be leased within the limit.
+     */
+    private boolean reserveFromLease(String objectId, long size) {
+        Lock lock = locks.get(objectId);
+        lock.lock();
+        try {
+            Instant now = Instant.now();
+            QuotaLease lease = leases.get(objectId);
+            if (lease != null && !lease.isExpired(now) && lease.take(size)) {
+                return true;
+            }
+
+            // The new block also covers the reservation itself.
+            long block = Math.max(leaseSize, size);
+            if (!fileStorageLimitService.leaseStorage(objectId, block, overCommit)) {
+                return false;
+            }
+
+            // The rest of the previous lease is still counted in the database, so it is carried over.
+            long carriedOver = lease != null ? lease.getAvailable() : 0;
+            leases.put(objectId, new QuotaLease(block - size + carriedOver, now.plus(leaseDuration)));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void returnLeases(Instant now) {
+        Map<String, Long> returned = new HashMap<>();
+        for (String objectId : leases.keySet()) {
+            Lock lock = locks.get(objectId);
+            lock.lock();
+            try {
+                QuotaLease lease = leases.get(objectId);
+                if (lease != null && lease.isExpired(now)) {
+                    leases.remove(objectId);
+                    if (lease.getAvailable() > 0) {
+                        returned.put(objectId, -lease.getAvailable());
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        if (returned.isEmpty()) {
+            return;
+        }
+
+        try {
+            fileStorageLimitService.adjustUsedDiskSpaces(returned);
+        } catch (RuntimeException e) {
+            // The unused storage stays counted until the next used storage reconciliation.
+            LOG.warn("Cannot return the unused storage of {} quota lease(s).", returned.size(), e);
+        }
+    }
+}
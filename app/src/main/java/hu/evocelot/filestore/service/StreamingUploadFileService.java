@@ -0,0 +1,219 @@
+package hu.evocelot.filestore.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.fileupload2.core.DiskFileItem;
+import org.apache.commons.fileupload2.core.DiskFileItemFactory;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import hu.evocelot.filestore.dto.FileEntityWithIdDto;
+import hu.evocelot.filestore.dto.FileUploadRequestDto;
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.model.FileEntity;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Action class responsible for handling streamed file uploads.
+ * <p>
+ * Unlike {@link UploadFileService#uploadFile(FileUploadRequestDto)}, the
+ * multipart body is parsed incrementally from the request stream, so the file
+ * part is never spooled to a temporary file. The content is hashed and written
+ * straight into its final location in a single pass, and the size is not
+ * limited by the multipart configuration.
+ * </p>
+ *
+ * <h3>Request format:</h3>
+ * <ul>
+ * <li>The metadata fields ({@code name}, {@code extension}, {@code objectId},
+ * {@code systemId}, {@code password}, {@code label}) must precede the
+ * {@code file} part.</li>
+ * <li>The optional {@code size} field declares the size of the file. If it is
+ * missing, the request's {@code Content-Length} is used as an upper bound for
+ * the storage limit. A file part longer than this size is rejected with
+ * {@code 413 Payload Too Large}.</li>
+ * </ul>
+ *
+ * @author mark.danisovszky
+ */
+@Component
+public class StreamingUploadFileService {
+
+    private static final String FILE_FIELD = "file";
+
+    public StreamingUploadFileService(UploadFileService uploadFileService) {
+        this.uploadFileService = uploadFileService;
+    }
+
+    private final UploadFileService uploadFileService;
+
+    /**
+     * Handles the logic for processing a streamed file upload.
+     *
+     * @param request the multipart HTTP request.
+     * @return {@link ResponseEntity} containing the saved file's metadata and ID.
+     * @throws Exception if an error occurs during file upload or processing.
+     */
+    public ResponseEntity<FileEntityWithIdDto> uploadFile(HttpServletRequest request) throws Exception {
+        if (!JakartaServletFileUpload.isMultipartContent(request)) {
+            throw new BaseException(HttpStatus.BAD_REQUEST, ExceptionType.INVALID_INPUT,
+                    "The request must be a multipart request.");
+        }
+
+        FileUploadRequestDto fileUploadRequestDto = new FileUploadRequestDto();
+        String declaredSize = null;
+
+        FileItemInputIterator iterator = new JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory>()
+                .getItemIterator(request);
+        while (iterator.hasNext()) {
+            FileItemInput item = iterator.next();
+
+            if (!item.isFormField()) {
+                if (!FILE_FIELD.equals(item.getFieldName())) {
+                    continue;
+                }
+
+                validate(fileUploadRequestDto);
+                long fileSize = getFileSize(declaredSize, request);
+                try (SizeLimitedInputStream inputStream = new SizeLimitedInputStream(item.getInputStream(),
+                        fileSize)) {
+                    try {
+                        return uploadFileService.uploadFile(fileUploadRequestDto, inputStream, fileSize);
+                    } catch (Exception e) {
+                        // The overrun surfaces wrapped by the storage layer, so it is recognised on the stream.
+                        if (inputStream.isExceeded()) {
+                            throw new BaseException(HttpStatus.PAYLOAD_TOO_LARGE, ExceptionType.UPLOAD_SIZE_EXCEEDED,
+                                    "The uploaded file exceeds the declared size of " + fileSize + " bytes.");
+                        }
+                        throw e;
+                    }
+                }
+            }
+
+            String value;
+            try (InputStream inputStream = item.getInputStream()) {
+                value = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+            }
+
+            switch (item.getFieldName()) {
+                case "name" -> fileUploadRequestDto.setName(value);
+                case "extension" -> fileUploadRequestDto.setExtension(value);
+                case "objectId" -> fileUploadRequestDto.setObjectId(value);
+                case "systemId" -> fileUploadRequestDto.setSystemId(value);
+                case "password" -> fileUploadRequestDto.setPassword(value);
+                case "label" -> fileUploadRequestDto.setLabel(value);
+                case "size" -> declaredSize = value;
+                default -> {
+                    // Unknown fields are ignored.
+                }
+            }
+        }
+
+        throw new BaseException(HttpStatus.BAD_REQUEST, ExceptionType.INVALID_INPUT,
+                "The request does not contain a file part.");
+    }
+
+    /**
+     * Checks the metadata preceding the file part, so an invalid request is
+     * rejected before any storage is reserved or content is written.
+     */
+    private void validate(FileUploadRequestDto fileUploadRequestDto) throws BaseException {
+        String name = fileUploadRequestDto.getName();
+        String extension = fileUploadRequestDto.getExtension();
+        if (StringUtils.isBlank(name) || StringUtils.isBlank(extension)) {
+            throw new BaseException(HttpStatus.BAD_REQUEST, ExceptionType.INVALID_INPUT,
+                    "The name and the extension of the file are mandatory.");
+        }
+
+        if (name.length() > FileEntity.NAME_MAX_LENGTH || extension.length() > FileEntity.EXTENSION_MAX_LENGTH) {
+            throw new BaseException(HttpStatus.BAD_REQUEST, ExceptionType.INVALID_INPUT,
+                    "The name can be at most " + FileEntity.NAME_MAX_LENGTH + " and the extension at most "
+                            + FileEntity.EXTENSION_MAX_LENGTH + " characters long.");
+        }
+    }
+
+    /**
+     * Returns the size reserved for the file: the declared size if present,
+     * otherwise the length of the whole request.
+     */
+    private long getFileSize(String declaredSize, HttpServletRequest request) throws BaseException {
+        if (StringUtils.isNotBlank(declaredSize)) {
+            long fileSize;
+            try {
+                fileSize = Long.parseLong(declaredSize.trim());
+            } catch (NumberFormatException e) {
+                throw new BaseException(HttpStatus.BAD_REQUEST, ExceptionType.INVALID_INPUT,
+                        "Invalid file size: " + declaredSize);
+            }
+
+            if (fileSize < 0) {
+                throw new BaseException(HttpStatus.BAD_REQUEST, ExceptionType.INVALID_INPUT,
+                        "Invalid file size: " + declaredSize);
+            }
+            return fileSize;
+        }
+
+        long contentLength = request.getContentLengthLong();
+        if (contentLength < 0) {
+            throw new BaseException(HttpStatus.LENGTH_REQUIRED, ExceptionType.INVALID_INPUT,
+                    "Either the size field or the Content-Length header is required.");
+        }
+
+        return contentLength;
+    }
+
+    /**
+     * Stream limiting the file part to the reserved size, so a client cannot
+     * write more than the storage it has reserved.
+     */
+    private static class SizeLimitedInputStream extends FilterInputStream {
+
+        private final long sizeMax;
+        private long count;
+        private boolean exceeded;
+
+        SizeLimitedInputStream(InputStream inputStream, long sizeMax) {
+            super(inputStream);
+            this.sizeMax = sizeMax;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result != -1) {
+                count(1);
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int result = super.read(b, off, len);
+            if (result > 0) {
+                count(result);
+            }
+            return result;
+        }
+
+        boolean isExceeded() {
+            return exceeded;
+        }
+
+        private void count(int length) throws IOException {
+            count += length;
+            if (count > sizeMax) {
+                exceeded = true;
+                throw new IOException("The uploaded file exceeds the declared size of " + sizeMax + " bytes.");
+            }
+        }
+    }
+}
@@ -1,23 +1,30 @@
 package hu.evocelot.filestore.service;
 
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.util.UUID;
+
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.Nullable;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import hu.evocelot.filestore.accessor.FileEntityAccessor;
+import hu.evocelot.filestore.compression.CompressionCodec;
 import hu.evocelot.filestore.converter.FileEntityWithIdConverter;
 import hu.evocelot.filestore.dto.FileEntityWithIdDto;
 import hu.evocelot.filestore.dto.FileUploadRequestDto;
+import hu.evocelot.filestore.helper.CompressionHelper;
 import hu.evocelot.filestore.helper.FileHelper;
+import hu.evocelot.filestore.helper.PasswordHasher;
 import hu.evocelot.filestore.kafka.KafkaMessageProducer;
 import hu.evocelot.filestore.kafka.KafkaTopics;
 import hu.evocelot.filestore.model.FileEntity;
 import hu.evocelot.filestore.pojo.FileStoreResult;
+import hu.evocelot.filestore.properties.FileStoreProperties;
 import hu.evocelot.filestore.properties.KafkaProperties;
 
 /**
@@ -29,11 +36,13 @@ import hu.evocelot.filestore.properties.KafkaProperties;
  * 
  * <h3>Responsibilities:</h3>
  * <ul>
- * <li>Generate a unique filename for the uploaded file.</li>
+ * <li>Generate a unique filename for the uploaded file, or store the content
+ * once per content digest when deduplication is enabled.</li>
  * <li>Create necessary directories if they do not exist.</li>
  * <li>Store the uploaded file on the file system.</li>
  * <li>Generate a hash of the file's contents for integrity checking.</li>
- * <li>Convert and save file metadata as an entity in the database.</li>
+ * <li>Insert the file metadata with a single statement once the content is
+ * stored.</li>
  * <li>Return a response containing the saved file's metadata and ID.</li>
  * </ul>
  * 
@@ -44,16 +53,20 @@ public class UploadFileService {
 
     public UploadFileService(FileEntityWithIdConverter fileEntityWithIdConverter, FileEntityAccessor fileEntityAccessor,
             FileHelper fileHelper, KafkaProperties kafkaProperties, ObjectMapper objectMapper,
-            @Nullable KafkaMessageProducer kafkaMessageProducer, PasswordEncoder passwordEncoder,
-            FileStorageLimitService fileStorageLimitService) {
+            @Nullable KafkaMessageProducer kafkaMessageProducer, PasswordHasher passwordHasher,
+            StorageQuotaService storageQuotaService, FileStoreProperties fileStoreProperties,
+            BlobStoreService blobStoreService, CompressionHelper compressionHelper) {
         this.fileEntityWithIdConverter = fileEntityWithIdConverter;
         this.fileEntityAccessor = fileEntityAccessor;
         this.fileHelper = fileHelper;
         this.kafkaProperties = kafkaProperties;
         this.objectMapper = objectMapper;
         this.kafkaMessageProducer = kafkaMessageProducer;
-        this.passwordEncoder = passwordEncoder;
-        this.fileStorageLimitService = fileStorageLimitService;
+        this.passwordHasher = passwordHasher;
+        this.storageQuotaService = storageQuotaService;
+        this.fileStoreProperties = fileStoreProperties;
+        this.blobStoreService = blobStoreService;
+        this.compressionHelper = compressionHelper;
     }
 
     private final FileEntityWithIdConverter fileEntityWithIdConverter;
@@ -62,8 +75,11 @@ public class UploadFileService {
     private final KafkaProperties kafkaProperties;
     private final ObjectMapper objectMapper;
     private final KafkaMessageProducer kafkaMessageProducer;
-    private final PasswordEncoder passwordEncoder;
-    private final FileStorageLimitService fileStorageLimitService;
+    private final PasswordHasher passwordHasher;
+    private final StorageQuotaService storageQuotaService;
+    private final FileStoreProperties fileStoreProperties;
+    private final BlobStoreService blobStoreService;
+    private final CompressionHelper compressionHelper;
 
     /**
      * Handles the logic for processing a file upload.
@@ -74,52 +90,152 @@ public class UploadFileService {
      * @throws Exception if an error occurs during file upload or processing.
      */
     public ResponseEntity<FileEntityWithIdDto> uploadFile(FileUploadRequestDto fileUploadRequestDto) throws Exception {
-        long fileSize = fileUploadRequestDto.getFile().getSize();
-
-        fileStorageLimitService.reserveStorage(
-                fileUploadRequestDto.getObjectId(),
-                fileSize);
-
-        // Create the entity.
-        FileEntity fileEntity = new FileEntity();
-        fileEntity.setName(fileUploadRequestDto.getName());
-        fileEntity.setExtension(fileUploadRequestDto.getExtension());
-        fileEntity.setObjectId(fileUploadRequestDto.getObjectId());
-        fileEntity.setSystemId(fileUploadRequestDto.getSystemId());
-        fileEntity.setLabel(fileUploadRequestDto.getLabel());
-
-        String passwordFromRequest = fileUploadRequestDto.getPassword();
-        if (StringUtils.isNotBlank(passwordFromRequest)) {
-            String hashedPassword = passwordEncoder.encode(passwordFromRequest);
-            fileEntity.setPasswordHash(hashedPassword);
+        try (InputStream inputStream = fileUploadRequestDto.getFile().getInputStream()) {
+            return uploadFile(fileUploadRequestDto, inputStream, fileUploadRequestDto.getFile().getSize());
         }
-        fileEntity = fileEntityAccessor.save(fileEntity);
+    }
 
-        // Create the base details of the file.
-        String filename = fileEntity.getId();
-        String directoryPath = fileHelper.getDirectoryPath(fileUploadRequestDto.getSystemId());
-        String fullPath = fileHelper.getFullPath(directoryPath, filename,
-                fileUploadRequestDto.getExtension());
+    /**
+     * Handles the logic for processing a file upload from an input stream.
+     * <p>
+     * The file content is read from the given stream instead of the
+     * {@link FileUploadRequestDto#getFile()} part, so the caller can pass the
+     * content of a request body without buffering it first.
+     * </p>
+     * 
+     * @param fileUploadRequestDto DTO containing the metadata of the file.
+     * @param inputStream          the input stream containing the file data.
+     * @param fileSize             the declared size of the file used for the
+     *                             storage limit.
+     * @return {@link ResponseEntity} containing the saved file's metadata and ID.
+     * @throws Exception if an error occurs during file upload or processing.
+     */
+    public ResponseEntity<FileEntityWithIdDto> uploadFile(FileUploadRequestDto fileUploadRequestDto,
+            InputStream inputStream, long fileSize) throws Exception {
+        // The declared size is reserved before the content is written, released if
+        // the upload fails and corrected to the stored size once the file exists.
+        String objectId = fileUploadRequestDto.getObjectId();
+        storageQuotaService.reserveStorage(objectId, fileSize);
+
+        FileEntity fileEntity;
+        FileStoreResult result;
+        try {
+            // Create the entity. The ID is assigned here, so the content can be stored
+            // before the row is inserted with a single statement.
+            fileEntity = new FileEntity();
+            fileEntity.setId(UUID.randomUUID().toString());
+            fileEntity.setName(fileUploadRequestDto.getName());
+            fileEntity.setExtension(fileUploadRequestDto.getExtension());
+            fileEntity.setObjectId(objectId);
+            fileEntity.setSystemId(fileUploadRequestDto.getSystemId());
+            fileEntity.setLabel(fileUploadRequestDto.getLabel());
+
+            String passwordFromRequest = fileUploadRequestDto.getPassword();
+            if (StringUtils.isNotBlank(passwordFromRequest)) {
+                String hashedPassword = passwordHasher.encode(passwordFromRequest);
+                fileEntity.setPasswordHash(hashedPassword);
+            }
+
+            // Create the file.
+            String directoryPath = fileHelper.getDirectoryPath(fileUploadRequestDto.getSystemId());
+            String fullPath = fileHelper.getFullPath(directoryPath, fileEntity.getId(),
+                    fileUploadRequestDto.getExtension());
+
+            if (fileStoreProperties.isDeduplicationEnabled()) {
+                result = blobStoreService.storeBlob(fileEntity.getId(), inputStream);
+            } else {
+                // The final path is recorded before the content is stored there, so the
+                // staging sweep can delete the content if the row is never inserted.
+                fileHelper.markPending(fileEntity.getId(), fullPath);
+
+                // On the local disk the content is staged and renamed only when it is
+                // complete, so a partially written file is never visible under its final
+                // name. An object store publishes the object only when it is complete anyway.
+                String stagingPath = null;
+                String targetPath = fullPath;
+                if (fileHelper.isLocalStorage()) {
+                    fileHelper.createDirectoryIfNotExists(fileHelper.getStagingDirectoryPath());
+                    stagingPath = fileHelper.getStagingPath(fileEntity.getId());
+                    targetPath = stagingPath;
+                } else {
+                    fileHelper.createStorageDirectoryIfNotExists(
+                            fileHelper.getShardedDirectoryPath(directoryPath, fileEntity.getId()));
+                }
+
+                // The beginning of the content is sampled to decide on the compression.
+                InputStream bufferedStream = new BufferedInputStream(inputStream,
+                        fileStoreProperties.getBufferSize());
+                try {
+                    CompressionCodec compression = compressionHelper.selectCodec(
+                            fileUploadRequestDto.getExtension(), bufferedStream);
+                    result = fileHelper.storeFile(targetPath, bufferedStream, compression);
+                } catch (Exception e) {
+                    fileHelper.deleteFile(targetPath);
+                    throw e;
+                }
+
+                // The content is moved to its final path before the row is inserted, so
+                // the file can be downloaded as soon as its row is visible.
+                if (stagingPath != null) {
+                    try {
+                        fileHelper.createStorageDirectoryIfNotExists(
+                                fileHelper.getShardedDirectoryPath(directoryPath, fileEntity.getId()));
+                        fileHelper.moveFile(stagingPath, fullPath);
+                    } catch (Exception e) {
+                        fileHelper.deleteFile(stagingPath);
+                        throw e;
+                    }
+                }
+            }
+
+            // Insert the entity.
+            fileEntity.setHash(result.getHash());
+            fileEntity.setHashAlgorithm(result.getHashAlgorithm());
+            fileEntity.setChecksum(result.getChecksum());
+            fileEntity.setSize(result.getSize());
+            fileEntity.setStoredSize(result.getStoredSize());
+            fileEntity.setCompression(result.getCompression());
+            fileEntity.setContentDigest(result.getContentDigest());
+            try {
+                fileEntity = fileEntityAccessor.insert(fileEntity);
+            } catch (RuntimeException e) {
+                if (result.getContentDigest() != null) {
+                    blobStoreService.releaseBlob(result.getContentDigest());
+                } else {
+                    fileHelper.deleteFile(fullPath);
+                }
+                throw e;
+            }
+
+            // The marker of a failed upload is left to the staging sweep, in case its content could not be deleted.
+            if (result.getContentDigest() == null) {
+                fileHelper.clearPending(fileEntity.getId());
+            }
+        } catch (Exception e) {
+            storageQuotaService.releaseStorage(objectId, fileSize);
+            throw e;
+        }
+        storageQuotaService.commitStorage(objectId, fileSize, result.getSize());
 
-        // Create the file
-        fileHelper.createDirectoryIfNotExists(directoryPath);
-        FileStoreResult result = fileHelper.storeFile(
-                fullPath,
-                fileUploadRequestDto.getFile().getInputStream());
+        sendFileSavedMessage(fileEntity);
 
-        // Update the entity.
-        fileEntity.setHash(result.getHash());
-        fileEntity.setSize(result.getSize());
-        fileEntity = fileEntityAccessor.save(fileEntity);
+        // Create the response.
+        FileEntityWithIdDto response = fileEntityWithIdConverter.convert(fileEntity);
 
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    /**
+     * Publishes the metadata of the saved file to the {@link KafkaTopics#FILE_SAVED}
+     * topic if Kafka is enabled.
+     * 
+     * @param fileEntity the saved file entity.
+     * @throws Exception if the entity cannot be serialized.
+     */
+    public void sendFileSavedMessage(FileEntity fileEntity) throws Exception {
         if (kafkaProperties.getEnabled().equals("true")) {
             String json = objectMapper.writeValueAsString(fileEntity);
             kafkaMessageProducer.sendMessage(KafkaTopics.FILE_SAVED, json);
         }
-
-        // Create the response.
-        FileEntityWithIdDto response = fileEntityWithIdConverter.convert(fileEntity);
-
-        return new ResponseEntity<>(response, HttpStatus.OK);
     }
-}
\ No newline at end of file
+}
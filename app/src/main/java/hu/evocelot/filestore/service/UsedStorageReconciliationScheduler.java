@@ -0,0 +1,45 @@
+package hu.evocelot.filestore.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.job.JobType;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+
+/**
+ * Submits the used storage reconciliation job periodically.
+ * <p>
+ * Every instance tries to submit the job, but only one reconciliation can be
+ * queued or running at a time.
+ * </p>
+ */
+@Component
+public class UsedStorageReconciliationScheduler {
+
+    private static final Logger LOG = LogManager.getLogger(UsedStorageReconciliationScheduler.class);
+
+    public UsedStorageReconciliationScheduler(JobService jobService, FileStoreProperties fileStoreProperties) {
+        this.jobService = jobService;
+        this.fileStoreProperties = fileStoreProperties;
+    }
+
+    private final JobService jobService;
+    private final FileStoreProperties fileStoreProperties;
+
+    @Scheduled(fixedDelayString = "${filestore.used-storage-reconciliation-interval}",
+            initialDelayString = "${filestore.used-storage-reconciliation-interval}")
+    public void submit() {
+        if (!fileStoreProperties.isUsedStorageReconciliationEnabled()) {
+            return;
+        }
+
+        try {
+            jobService.submit(JobType.USED_STORAGE_RECONCILIATION);
+        } catch (BaseException e) {
+            LOG.debug("Used storage reconciliation not submitted. Reason: {}", e.getMessage());
+        }
+    }
+}
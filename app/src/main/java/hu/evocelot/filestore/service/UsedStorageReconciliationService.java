@@ -0,0 +1,147 @@
+package hu.evocelot.filestore.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import hu.evocelot.filestore.accessor.BackgroundJobAccessor;
+import hu.evocelot.filestore.job.JobContext;
+import hu.evocelot.filestore.job.JobHandler;
+import hu.evocelot.filestore.job.JobType;
+import hu.evocelot.filestore.model.BackgroundJob;
+import hu.evocelot.filestore.model.FileStorageLimit;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import hu.evocelot.filestore.repository.FileRepository;
+import hu.evocelot.filestore.repository.FileStorageLimitRepository;
+
+/**
+ * Job correcting the drift of the incrementally maintained used disk space
+ * counters.
+ * <p>
+ * Instead of summing every file, the job only checks the objects whose files
+ * or storage limit have been modified within its window. The window of a job
+ * starts where the window of the last succeeded reconciliation ended and ends
+ * a grace period before the job was submitted, so the uploads still in
+ * progress are not counted as missing files. A limit modified after the end of
+ * the window is left alone and checked by the next reconciliation.
+ * </p>
+ */
+@Component
+public class UsedStorageReconciliationService implements JobHandler {
+
+    private static final Logger LOG = LogManager.getLogger(UsedStorageReconciliationService.class);
+    private static final int BATCH_SIZE = 500;
+    private static final OffsetDateTime BEGINNING = Instant.EPOCH.atOffset(ZoneOffset.UTC);
+
+    public UsedStorageReconciliationService(FileRepository fileRepository,
+            FileStorageLimitRepository fileStorageLimitRepository, FileStorageLimitService fileStorageLimitService,
+            BackgroundJobAccessor backgroundJobAccessor, FileStoreProperties fileStoreProperties) {
+        this.fileRepository = fileRepository;
+        this.fileStorageLimitRepository = fileStorageLimitRepository;
+        this.fileStorageLimitService = fileStorageLimitService;
+        this.backgroundJobAccessor = backgroundJobAccessor;
+        this.grace = fileStoreProperties.getUsedStorageReconciliationGrace();
+    }
+
+    private final FileRepository fileRepository;
+    private final FileStorageLimitRepository fileStorageLimitRepository;
+    private final FileStorageLimitService fileStorageLimitService;
+    private final BackgroundJobAccessor backgroundJobAccessor;
+    private final Duration grace;
+
+    @Override
+    public JobType getType() {
+        return JobType.USED_STORAGE_RECONCILIATION;
+    }
+
+    @Override
+    public void run(JobContext context) throws InterruptedException {
+        OffsetDateTime until = context.getSubmittedDate().minus(grace);
+        // The first reconciliation checks every object.
+        OffsetDateTime since = backgroundJobAccessor.findLastSucceeded(getType())
+                .map(BackgroundJob::getInsDate)
+                .map(submittedDate -> submittedDate.minus(grace))
+                .orElse(BEGINNING);
+
+        String lastObjectId = Objects.requireNonNullElse(context.getCheckpoint(), "");
+        LOG.info("Starting used storage reconciliation of the changes between {} and {} after objectId='{}'...",
+                since, until, lastObjectId);
+
+        List<String> objectIds;
+        do {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+
+            objectIds = findModifiedObjectIds(since, until, lastObjectId);
+            if (objectIds.isEmpty()) {
+                break;
+            }
+
+            Map<String, Long> usedDiskSpaces = fileStorageLimitService.calculateUsedDiskSpaces(objectIds);
+            Map<String, Long> changedDiskSpaces = new HashMap<>();
+            for (FileStorageLimit limit : fileStorageLimitRepository.findByObjectIdIn(objectIds)) {
+                if (limit.getModDate().isAfter(until)) {
+                    context.addSkippedItems(1);
+                    continue;
+                }
+
+                long usedDiskSpace = usedDiskSpaces.getOrDefault(limit.getObjectId(), 0L);
+                if (!Objects.equals(limit.getUsedDiskSpace(), usedDiskSpace)) {
+                    LOG.info("Correcting used storage. objectId={}, oldUsedDiskSpace={}, usedDiskSpace={}",
+                            limit.getObjectId(), limit.getUsedDiskSpace(), usedDiskSpace);
+                    changedDiskSpaces.put(limit.getObjectId(), usedDiskSpace);
+                }
+            }
+
+            if (!changedDiskSpaces.isEmpty()) {
+                int updated = fileStorageLimitService.reconcileUsedDiskSpaces(changedDiskSpaces, until);
+                context.addUpdatedItems(updated);
+                // The limits changed meanwhile are checked by the next reconciliation.
+                context.addSkippedItems(changedDiskSpaces.size() - updated);
+            }
+            context.addProcessedItems(objectIds.size());
+
+            lastObjectId = objectIds.get(objectIds.size() - 1);
+            if (!context.checkpoint(lastObjectId)) {
+                return;
+            }
+        } while (objectIds.size() == BATCH_SIZE);
+
+        LOG.info("Used storage reconciliation finished. processed={}, updated={}, skipped={}",
+                context.getProcessedItems(), context.getUpdatedItems(), context.getSkippedItems());
+    }
+
+    /**
+     * Returns the next batch of the objects whose files or storage limit have
+     * been modified within the window, in object id order.
+     */
+    private List<String> findModifiedObjectIds(OffsetDateTime since, OffsetDateTime until, String lastObjectId) {
+        PageRequest page = PageRequest.of(0, BATCH_SIZE);
+        TreeSet<String> objectIds = new TreeSet<>();
+        objectIds.addAll(fileRepository.findObjectIdsModifiedBetween(since, until, lastObjectId, page));
+        objectIds.addAll(fileStorageLimitRepository.findObjectIdsModifiedBetween(since, until, lastObjectId, page));
+
+        // Both lists are sorted, the first batch of their union is complete.
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        for (String objectId : objectIds) {
+            if (batch.size() == BATCH_SIZE) {
+                break;
+            }
+            batch.add(objectId);
+        }
+        return batch;
+    }
+}
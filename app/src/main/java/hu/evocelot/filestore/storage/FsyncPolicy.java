@@ -0,0 +1,28 @@
+package hu.evocelot.filestore.storage;
+
+/**
+ * Controls how the files written to the local disk are flushed to the storage
+ * device before they are moved into place.
+ *
+ * @author mark.danisovszky
+ */
+public enum FsyncPolicy {
+
+    /**
+     * The files are left in the page cache of the operating system. A power loss
+     * may lose recently uploaded files.
+     */
+    NONE,
+
+    /**
+     * The content of a file is flushed before it is moved into place, so a file
+     * is never visible with partial content.
+     */
+    ON_CLOSE,
+
+    /**
+     * The content of a file and the directory holding it are flushed, so the
+     * rename itself survives a power loss too.
+     */
+    ON_CLOSE_AND_DIRECTORY
+}
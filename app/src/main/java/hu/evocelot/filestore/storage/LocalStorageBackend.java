@@ -0,0 +1,234 @@
+package hu.evocelot.filestore.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.UUID;
+
+import org.springframework.http.HttpStatus;
+
+import com.google.common.io.ByteStreams;
+
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+
+/**
+ * {@link StorageBackend} storing the files on the local disk under
+ * {@code filestore.store-path}.
+ *
+ * @author mark.danisovszky
+ */
+public class LocalStorageBackend implements StorageBackend {
+
+    public LocalStorageBackend(FileStoreProperties fileStoreProperties) {
+        this.fileStoreProperties = fileStoreProperties;
+    }
+
+    private final FileStoreProperties fileStoreProperties;
+
+    /**
+     * Writes the content to a temporary file in the directory of the target and
+     * moves it into place when it is complete, so the target never has partial
+     * content. The file is flushed according to the {@link FsyncPolicy}.
+     */
+    @Override
+    public long write(String path, InputStream inputStream) throws BaseException {
+        Path target = Paths.get(path);
+        Path temporaryFile = target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        FsyncPolicy fsyncPolicy = getFsyncPolicy();
+
+        try {
+            long totalSize;
+            try (FileChannel fileChannel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                totalSize = copy(inputStream, Channels.newOutputStream(fileChannel));
+
+                if (fsyncPolicy != FsyncPolicy.NONE) {
+                    // The size is flushed with the data, the other metadata is not needed.
+                    fileChannel.force(false);
+                }
+            }
+
+            move(temporaryFile, target);
+            if (fsyncPolicy == FsyncPolicy.ON_CLOSE_AND_DIRECTORY) {
+                forceDirectory(target.getParent());
+            }
+
+            return totalSize;
+        } catch (IOException e) {
+            deleteQuietly(temporaryFile);
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_SAVE_FILE, e.getMessage());
+        } catch (RuntimeException e) {
+            deleteQuietly(temporaryFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the content directly to the given path, without a temporary file
+     * and without flushing it. It is meant for the staging files, which are
+     * never visible under a final name: they are flushed and renamed once, by
+     * {@link #importFile(Path, String)} when they are moved into place.
+     *
+     * @param path        the path of the staging file.
+     * @param inputStream the input stream containing the file data.
+     * @return the number of bytes written.
+     * @throws BaseException if we cannot save the file.
+     */
+    public long writeStaged(String path, InputStream inputStream) throws BaseException {
+        Path target = Paths.get(path);
+
+        try (OutputStream outputStream = Files.newOutputStream(target)) {
+            return copy(inputStream, outputStream);
+        } catch (IOException e) {
+            deleteQuietly(target);
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_SAVE_FILE, e.getMessage());
+        } catch (RuntimeException e) {
+            deleteQuietly(target);
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream read(String path) throws BaseException {
+        try {
+            return Files.newInputStream(Paths.get(path));
+        } catch (IOException e) {
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_READ_FILE, e.getMessage());
+        }
+    }
+
+    @Override
+    public InputStream read(String path, long position, long count) throws BaseException {
+        try {
+            // Positional read: only the requested region is read from the disk.
+            FileChannel fileChannel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+            return ByteStreams.limit(Channels.newInputStream(fileChannel.position(position)), count);
+        } catch (IOException e) {
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_READ_FILE, e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean exists(String path) {
+        return Files.exists(Paths.get(path));
+    }
+
+    @Override
+    public long size(String path) throws BaseException {
+        try {
+            return Files.size(Paths.get(path));
+        } catch (NoSuchFileException e) {
+            return -1;
+        } catch (IOException e) {
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_READ_FILE, e.getMessage());
+        }
+    }
+
+    @Override
+    public long lastModified(String path) throws BaseException {
+        try {
+            return Files.getLastModifiedTime(Paths.get(path)).toMillis();
+        } catch (NoSuchFileException e) {
+            return -1;
+        } catch (IOException e) {
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_READ_FILE, e.getMessage());
+        }
+    }
+
+    @Override
+    public void delete(String path) throws BaseException {
+        try {
+            Files.deleteIfExists(Paths.get(path));
+        } catch (IOException e) {
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_DELETE_FILE,
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Moves the local file to the given path, replacing the target atomically if
+     * the file system supports it. The file is flushed according to the
+     * {@link FsyncPolicy} first, since it has been written without flushing,
+     * either by {@link #writeStaged(String, InputStream)} or by the chunked
+     * uploads.
+     */
+    @Override
+    public void importFile(Path localFile, String path) throws BaseException {
+        Path target = Paths.get(path);
+        FsyncPolicy fsyncPolicy = getFsyncPolicy();
+
+        try {
+            if (fsyncPolicy != FsyncPolicy.NONE) {
+                try (FileChannel fileChannel = FileChannel.open(localFile, StandardOpenOption.WRITE)) {
+                    fileChannel.force(false);
+                }
+            }
+
+            move(localFile, target);
+            if (fsyncPolicy == FsyncPolicy.ON_CLOSE_AND_DIRECTORY) {
+                forceDirectory(target.getParent());
+            }
+        } catch (IOException e) {
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_SAVE_FILE, e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
+
+    private FsyncPolicy getFsyncPolicy() {
+        return Objects.requireNonNullElse(fileStoreProperties.getFsyncPolicy(), FsyncPolicy.NONE);
+    }
+
+    private long copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[fileStoreProperties.getBufferSize()];
+        long totalSize = 0;
+        int bytesRead;
+
+        while ((bytesRead = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, bytesRead);
+            totalSize += bytesRead;
+        }
+        return totalSize;
+    }
+
+    private void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Flushes the entries of the directory, so a new or renamed file in it
+     * survives a power loss.
+     */
+    private void forceDirectory(Path directory) throws IOException {
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // The write has failed already, the caller gets that error.
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package hu.evocelot.filestore.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Limits the bandwidth and the number of read operations of background jobs, so
+ * they do not compete with the foreground traffic for the storage.
+ * <p>
+ * Opening a stream and every read call count as one operation. The limits are
+ * shared by every stream wrapped by the same throttle.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+public class ReadThrottle {
+
+    /**
+     * Creates a throttle.
+     *
+     * @param bytesPerSecond      the bandwidth limit, or a non-positive value for
+     *                            no limit.
+     * @param operationsPerSecond the limit of the read operations, or a
+     *                            non-positive value for no limit.
+     */
+    public ReadThrottle(double bytesPerSecond, double operationsPerSecond) {
+        this.bytesLimiter = bytesPerSecond > 0 ? RateLimiter.create(bytesPerSecond) : null;
+        this.operationsLimiter = operationsPerSecond > 0 ? RateLimiter.create(operationsPerSecond) : null;
+    }
+
+    private final RateLimiter bytesLimiter;
+    private final RateLimiter operationsLimiter;
+
+    /**
+     * Wraps the input stream, so reading it is throttled.
+     *
+     * @param inputStream the stream read from the storage.
+     * @return the throttled stream.
+     */
+    public InputStream wrap(InputStream inputStream) {
+        acquireOperation();
+        return new ThrottledInputStream(inputStream);
+    }
+
+    private void acquireOperation() {
+        if (operationsLimiter != null) {
+            operationsLimiter.acquire();
+        }
+    }
+
+    private void acquireBytes(int bytes) {
+        // The bytes are paid after they are read, the next read waits for them.
+        if (bytesLimiter != null && bytes > 0) {
+            bytesLimiter.acquire(bytes);
+        }
+    }
+
+    private final class ThrottledInputStream extends FilterInputStream {
+
+        private ThrottledInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            acquireOperation();
+            int value = super.read();
+            acquireBytes(value == -1 ? 0 : 1);
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            acquireOperation();
+            int bytesRead = super.read(b, off, len);
+            acquireBytes(bytesRead);
+            return bytesRead;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes may still be read from the storage, e.g. by a decompressor.
+            acquireOperation();
+            long skipped = super.skip(n);
+            acquireBytes((int) Math.min(skipped, Integer.MAX_VALUE));
+            return skipped;
+        }
+    }
+}
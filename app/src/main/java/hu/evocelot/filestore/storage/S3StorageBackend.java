@@ -0,0 +1,424 @@
+package hu.evocelot.filestore.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpStatus;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import hu.evocelot.filestore.properties.S3Properties;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+/**
+ * {@link StorageBackend} storing the files in an S3-compatible object store
+ * (e.g. AWS S3 or MinIO).
+ * <p>
+ * The object key of a file is its path relative to {@code filestore.store-path}
+ * with {@code /} separators, so the bucket mirrors the layout of the local disk.
+ * Files smaller than {@code filestore.s3.part-size} are uploaded with a single
+ * request, larger ones with a parallel multipart upload. Regions are read with
+ * ranged GET requests.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+public class S3StorageBackend implements StorageBackend {
+
+    private static final Logger LOG = LogManager.getLogger(S3StorageBackend.class);
+    private static final int NOT_FOUND_STATUS_CODE = 404;
+    private static final String CONTENT_TYPE = "application/octet-stream";
+
+    /**
+     * The minimum size of a multipart upload part except the last one.
+     */
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    /**
+     * The size of the buffer the beginning of a file is read into before a part
+     * buffer is taken from the pool.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    public S3StorageBackend(S3Client s3Client, S3Properties s3Properties, FileStoreProperties fileStoreProperties) {
+        this.s3Client = s3Client;
+        this.s3Properties = s3Properties;
+        this.fileStoreProperties = fileStoreProperties;
+
+        this.partSize = Math.max(MIN_PART_SIZE, s3Properties.getPartSize());
+        this.uploadParallelism = Math.max(1, s3Properties.getUploadParallelism());
+        int bufferCount = (int) Math.max(1, s3Properties.getUploadMemoryLimit() / partSize);
+        this.bufferPermits = new Semaphore(bufferCount);
+        this.uploadExecutor = Executors.newFixedThreadPool(bufferCount,
+                new ThreadFactoryBuilder().setNameFormat("s3-upload-%d").setDaemon(true).build());
+    }
+
+    private final S3Client s3Client;
+    private final S3Properties s3Properties;
+    private final FileStoreProperties fileStoreProperties;
+
+    private final int partSize;
+    private final int uploadParallelism;
+
+    /**
+     * The part buffers of all uploads. The number of permits bounds the memory
+     * used by the uploads to {@code filestore.s3.upload-memory-limit}, and the
+     * released buffers are reused, so large arrays are not allocated per part.
+     */
+    private final Semaphore bufferPermits;
+    private final Queue<byte[]> freeBuffers = new ConcurrentLinkedQueue<>();
+    private final ExecutorService uploadExecutor;
+
+    /**
+     * Writes the content of the input stream to the object store.
+     * <p>
+     * The stream is read sequentially by the calling thread, so the digests
+     * computed by the caller while the stream is read stay correct. Files larger
+     * than a part are uploaded with a multipart upload: up to
+     * {@code filestore.s3.upload-parallelism} parts of a file are uploaded
+     * concurrently while the next part is being read.
+     * </p>
+     * <p>
+     * The beginning of the file is read into a small buffer first. A file that
+     * fits into it is uploaded from there, so small files neither hold nor wait
+     * for a part buffer of the pool.
+     * </p>
+     */
+    @Override
+    public long write(String path, InputStream inputStream) throws BaseException {
+        String key = toKey(path);
+
+        try {
+            byte[] initialBuffer = new byte[Math.min(INITIAL_BUFFER_SIZE, partSize)];
+            int initialLength = inputStream.readNBytes(initialBuffer, 0, initialBuffer.length);
+            if (initialLength < initialBuffer.length) {
+                putObject(key, initialBuffer, initialLength);
+                return initialLength;
+            }
+
+            byte[] buffer = acquireBuffer();
+            int bytesRead;
+            try {
+                System.arraycopy(initialBuffer, 0, buffer, 0, initialLength);
+                bytesRead = initialLength + inputStream.readNBytes(buffer, initialLength, partSize - initialLength);
+                if (bytesRead < partSize) {
+                    putObject(key, buffer, bytesRead);
+                    return bytesRead;
+                }
+            } catch (IOException | RuntimeException e) {
+                releaseBuffer(buffer);
+                throw e;
+            }
+
+            // The buffer is released after it has been uploaded.
+            return writeMultipart(key, inputStream, buffer);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_SAVE_FILE, e.getMessage());
+        } catch (IOException | SdkException e) {
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_SAVE_FILE, e.getMessage());
+        }
+    }
+
+    private void putObject(String key, byte[] buffer, int length) {
+        s3Client.putObject(PutObjectRequest.builder().bucket(s3Properties.getBucket()).key(key).build(),
+                toRequestBody(buffer, length));
+    }
+
+    private long writeMultipart(String key, InputStream inputStream, byte[] firstPart) throws IOException,
+            InterruptedException {
+        String uploadId;
+        try {
+            uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(s3Properties.getBucket()).key(key).build()).uploadId();
+        } catch (RuntimeException e) {
+            releaseBuffer(firstPart);
+            throw e;
+        }
+
+        Semaphore partPermits = new Semaphore(uploadParallelism);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Future<CompletedPart>> parts = new ArrayList<>();
+        byte[] buffer = firstPart;
+        int bytesRead = partSize;
+        long totalSize = 0;
+
+        try {
+            while (true) {
+                partPermits.acquire();
+                parts.add(uploadExecutor.submit(
+                        createPartUpload(key, uploadId, parts.size() + 1, buffer, bytesRead, partPermits, failure)));
+                buffer = null;
+                totalSize += bytesRead;
+
+                if (bytesRead < partSize || failure.get() != null) {
+                    break;
+                }
+
+                buffer = acquireBuffer();
+                bytesRead = readPart(inputStream, buffer);
+                if (bytesRead == 0) {
+                    break;
+                }
+            }
+
+            List<CompletedPart> completedParts = new ArrayList<>();
+            for (Future<CompletedPart> part : parts) {
+                completedParts.add(part.get());
+            }
+
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder().bucket(s3Properties.getBucket())
+                    .key(key).uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build()).build());
+
+            return totalSize;
+        } catch (ExecutionException e) {
+            abortMultipart(key, uploadId, parts);
+            throw SdkException.create(e.getCause().getMessage(), e.getCause());
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            abortMultipart(key, uploadId, parts);
+            throw e;
+        } finally {
+            if (buffer != null) {
+                releaseBuffer(buffer);
+            }
+        }
+    }
+
+    /**
+     * Creates the task uploading a part of a multipart upload. The task releases
+     * the buffer and the in-flight permit of the part when it finishes.
+     */
+    private Callable<CompletedPart> createPartUpload(String key, String uploadId, int partNumber, byte[] buffer,
+            int length, Semaphore partPermits, AtomicReference<Throwable> failure) {
+        return () -> {
+            try {
+                String eTag = s3Client.uploadPart(UploadPartRequest.builder().bucket(s3Properties.getBucket())
+                        .key(key).uploadId(uploadId).partNumber(partNumber).contentLength((long) length).build(),
+                        toRequestBody(buffer, length)).eTag();
+
+                return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+                throw e;
+            } finally {
+                releaseBuffer(buffer);
+                partPermits.release();
+            }
+        };
+    }
+
+    /**
+     * Aborts the multipart upload after its submitted parts have finished, so no
+     * part is uploaded after the abort.
+     */
+    private void abortMultipart(String key, String uploadId, List<Future<CompletedPart>> parts) {
+        for (Future<CompletedPart> part : parts) {
+            try {
+                part.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                // The failure is reported by the caller.
+            }
+        }
+
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder().bucket(s3Properties.getBucket())
+                    .key(key).uploadId(uploadId).build());
+        } catch (SdkException e) {
+            LOG.error(MessageFormat.format("Cannot abort the multipart upload of {0}. Reason: {1}", key,
+                    e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Creates a request body reading the buffer without copying it. The provider
+     * returns a new stream for every attempt, so the SDK can retry the request.
+     */
+    private RequestBody toRequestBody(byte[] buffer, int length) {
+        return RequestBody.fromContentProvider(() -> new ByteArrayInputStream(buffer, 0, length), length,
+                CONTENT_TYPE);
+    }
+
+    private byte[] acquireBuffer() throws InterruptedException {
+        bufferPermits.acquire();
+        byte[] buffer = freeBuffers.poll();
+        return buffer != null ? buffer : new byte[partSize];
+    }
+
+    private void releaseBuffer(byte[] buffer) {
+        freeBuffers.offer(buffer);
+        bufferPermits.release();
+    }
+
+    /**
+     * Fills the buffer from the input stream. Returns less than the buffer length
+     * only at the end of the stream.
+     */
+    private int readPart(InputStream inputStream, byte[] buffer) throws IOException {
+        return inputStream.readNBytes(buffer, 0, buffer.length);
+    }
+
+    /**
+     * Stops the part upload threads.
+     */
+    public void shutdown() {
+        uploadExecutor.shutdownNow();
+    }
+
+    @Override
+    public InputStream read(String path) throws BaseException {
+        try {
+            return s3Client.getObject(GetObjectRequest.builder().bucket(s3Properties.getBucket()).key(toKey(path))
+                    .build());
+        } catch (SdkException e) {
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_READ_FILE, e.getMessage());
+        }
+    }
+
+    @Override
+    public InputStream read(String path, long position, long count) throws BaseException {
+        if (count <= 0) {
+            return InputStream.nullInputStream();
+        }
+
+        try {
+            return s3Client.getObject(GetObjectRequest.builder().bucket(s3Properties.getBucket()).key(toKey(path))
+                    .range("bytes=" + position + "-" + (position + count - 1)).build());
+        } catch (SdkException e) {
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_READ_FILE, e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean exists(String path) throws BaseException {
+        return size(path) >= 0;
+    }
+
+    @Override
+    public long size(String path) throws BaseException {
+        HeadObjectResponse response = headObject(path);
+        return response != null ? response.contentLength() : -1;
+    }
+
+    @Override
+    public long lastModified(String path) throws BaseException {
+        HeadObjectResponse response = headObject(path);
+        return response != null ? response.lastModified().toEpochMilli() : -1;
+    }
+
+    /**
+     * Requests the metadata of the object.
+     *
+     * @return the metadata, or {@code null} if the object does not exist.
+     */
+    private HeadObjectResponse headObject(String path) throws BaseException {
+        try {
+            return s3Client.headObject(HeadObjectRequest.builder().bucket(s3Properties.getBucket()).key(toKey(path))
+                    .build());
+        } catch (NoSuchKeyException e) {
+            return null;
+        } catch (S3Exception e) {
+            if (e.statusCode() == NOT_FOUND_STATUS_CODE) {
+                // HEAD responses have no body, so a missing key is only reported by the status code.
+                return null;
+            }
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_READ_FILE, e.getMessage());
+        } catch (SdkException e) {
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_READ_FILE, e.getMessage());
+        }
+    }
+
+    @Override
+    public void delete(String path) throws BaseException {
+        try {
+            s3Client.deleteObject(DeleteObjectRequest.builder().bucket(s3Properties.getBucket()).key(toKey(path))
+                    .build());
+        } catch (SdkException e) {
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_DELETE_FILE,
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Uploads the local file to the object store, then deletes it from the local
+     * disk.
+     */
+    @Override
+    public void importFile(Path localFile, String path) throws BaseException {
+        try (InputStream inputStream = Files.newInputStream(localFile)) {
+            write(path, inputStream);
+        } catch (IOException e) {
+            throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_SAVE_FILE, e.getMessage());
+        }
+
+        try {
+            Files.deleteIfExists(localFile);
+        } catch (IOException e) {
+            LOG.error(MessageFormat.format("Cannot delete the imported file {0}. Reason: {1}", localFile,
+                    e.getMessage()), e);
+        }
+    }
+
+    @Override
+    public boolean isLocal() {
+        return false;
+    }
+
+    /**
+     * Converts a path under the store path to an object key.
+     */
+    String toKey(String path) {
+        Path storePath = Paths.get(fileStoreProperties.getStorePath()).toAbsolutePath().normalize();
+        Path filePath = Paths.get(path).toAbsolutePath().normalize();
+
+        if (!filePath.startsWith(storePath) || filePath.equals(storePath)) {
+            throw new IllegalArgumentException("The path is not under the store path: " + path);
+        }
+
+        List<String> segments = new ArrayList<>();
+        for (Path segment : storePath.relativize(filePath)) {
+            segments.add(segment.toString());
+        }
+
+        return String.join("/", segments);
+    }
+}
@@ -0,0 +1,107 @@
+package hu.evocelot.filestore.storage;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import hu.evocelot.filestore.exception.BaseException;
+
+/**
+ * Streaming interface of the storage that holds the content of the files.
+ * <p>
+ * The files are addressed by the paths built by
+ * {@link hu.evocelot.filestore.helper.FileHelper} under
+ * {@code filestore.store-path}. The local implementation uses them as they are,
+ * while remote implementations map them to object keys relative to the store
+ * path.
+ * </p>
+ *
+ * @author mark.danisovszky
+ */
+public interface StorageBackend {
+
+    /**
+     * Writes the content of the input stream to the given path, replacing any
+     * existing content.
+     *
+     * @param path        the path of the file.
+     * @param inputStream the input stream containing the file data.
+     * @return the number of bytes written.
+     * @throws BaseException if we cannot save the file.
+     */
+    long write(String path, InputStream inputStream) throws BaseException;
+
+    /**
+     * Opens the whole content of the file for reading.
+     *
+     * @param path the path of the file.
+     * @return the input stream of the content. The caller must close it.
+     * @throws BaseException if we cannot read the file.
+     */
+    InputStream read(String path) throws BaseException;
+
+    /**
+     * Opens a region of the file for reading. Only the requested bytes are read
+     * from the storage.
+     *
+     * @param path     the path of the file.
+     * @param position the offset of the first byte to read.
+     * @param count    the number of bytes to read.
+     * @return the input stream of the region. The caller must close it.
+     * @throws BaseException if we cannot read the file.
+     */
+    InputStream read(String path, long position, long count) throws BaseException;
+
+    /**
+     * Returns whether the file exists.
+     *
+     * @param path the path of the file.
+     * @return {@code true} if the file exists.
+     * @throws BaseException if we cannot access the storage.
+     */
+    boolean exists(String path) throws BaseException;
+
+    /**
+     * Returns the size of the file.
+     *
+     * @param path the path of the file.
+     * @return the size of the file in bytes, or {@code -1} if it does not exist.
+     * @throws BaseException if we cannot access the storage.
+     */
+    long size(String path) throws BaseException;
+
+    /**
+     * Returns the last modification time of the file.
+     *
+     * @param path the path of the file.
+     * @return the modification time in epoch milliseconds, or {@code -1} if the
+     *         file does not exist.
+     * @throws BaseException if we cannot access the storage.
+     */
+    long lastModified(String path) throws BaseException;
+
+    /**
+     * Deletes the file if it exists.
+     *
+     * @param path the path of the file.
+     * @throws BaseException if we cannot delete the file.
+     */
+    void delete(String path) throws BaseException;
+
+    /**
+     * Moves a file assembled on the local disk into the storage. The local file
+     * no longer exists when the method returns successfully.
+     *
+     * @param localFile the local file.
+     * @param path      the path of the file in the storage.
+     * @throws BaseException if we cannot save the file.
+     */
+    void importFile(Path localFile, String path) throws BaseException;
+
+    /**
+     * Returns whether the files are stored on the local disk, so they can be
+     * accessed directly (e.g. by the servlet container for zero-copy transfer).
+     *
+     * @return {@code true} if the storage is the local disk.
+     */
+    boolean isLocal();
+}
@@ -0,0 +1,70 @@
+package hu.evocelot.filestore.compression;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class CompressingInputStreamTest {
+
+    @ParameterizedTest
+    @EnumSource(CompressionCodec.class)
+    @DisplayName("CompressingInputStream should produce content the codec decompresses to the original")
+    void testRoundTrip(CompressionCodec codec) throws Exception {
+        // Arrange
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            content.append(i).append(";name-").append(i % 10).append(";value\n");
+        }
+        byte[] original = content.toString().getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        byte[] compressed;
+        try (InputStream inputStream = new CompressingInputStream(new ByteArrayInputStream(original), codec, 1024)) {
+            compressed = inputStream.readAllBytes();
+        }
+        byte[] decompressed;
+        try (InputStream inputStream = codec.decompress(new ByteArrayInputStream(compressed))) {
+            decompressed = inputStream.readAllBytes();
+        }
+
+        // Assert
+        assertArrayEquals(original, decompressed);
+        if (codec != CompressionCodec.NONE) {
+            assertTrue(compressed.length < original.length);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(CompressionCodec.class)
+    @DisplayName("CompressingInputStream should finish the compressor and close the source when closed early")
+    void testClose_beforeEnd(CompressionCodec codec) throws Exception {
+        // Arrange
+        AtomicBoolean sourceClosed = new AtomicBoolean();
+        InputStream source = new ByteArrayInputStream(new byte[64 * 1024]) {
+            @Override
+            public void close() {
+                sourceClosed.set(true);
+            }
+        };
+        InputStream inputStream = new CompressingInputStream(source, codec, 1024);
+        inputStream.read(new byte[16]);
+
+        // Act
+        inputStream.close();
+
+        // Assert
+        assertTrue(sourceClosed.get());
+        assertEquals(-1, inputStream.read(new byte[16]));
+        // A second close does not close the compressor again.
+        inputStream.close();
+    }
+}
@@ -0,0 +1,95 @@
+package hu.evocelot.filestore.hashing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ContentHashesTest {
+
+    private static final byte[] CONTENT = "123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    @DisplayName("toHash should return the known hashes of the content computed in the same pass")
+    void testToHash_knownVectors() {
+        // Arrange
+        ContentHashes contentHashes = new ContentHashes(
+                List.of(HashAlgorithm.MD5, HashAlgorithm.SHA256, HashAlgorithm.CRC32C));
+
+        // Act
+        contentHashes.update(CONTENT, 0, 4);
+        contentHashes.update(CONTENT, 4, CONTENT.length - 4);
+
+        // Assert
+        assertEquals("25F9E794323B453885F5181F1B624D0B", contentHashes.toHash(HashAlgorithm.MD5));
+        assertEquals("15E2B0D3C33891EBB0F1EF609EC419420C20E320CE94C65FBC8C3312448EB225",
+                contentHashes.toHash(HashAlgorithm.SHA256));
+        assertEquals("E3069283", contentHashes.toHash(HashAlgorithm.CRC32C));
+        assertNull(contentHashes.toHash(HashAlgorithm.BLAKE3));
+    }
+
+    @Test
+    @DisplayName("toHash should return the known BLAKE3 hash of the empty content")
+    void testToHash_blake3() {
+        // Arrange
+        ContentHashes contentHashes = new ContentHashes(List.of(HashAlgorithm.BLAKE3));
+
+        // Act & Assert
+        assertEquals("AF1349B9F5F9A1A6A0404DEA36DCC9499BCB25C9ADC112B7CC9A93CAE41F3262",
+                contentHashes.toHash(HashAlgorithm.BLAKE3));
+    }
+
+    @Test
+    @DisplayName("update should hash a buffer the same as an array and consume the buffer")
+    void testUpdate_byteBuffer() {
+        // Arrange
+        List<HashAlgorithm> algorithms = List.of(HashAlgorithm.SHA256, HashAlgorithm.BLAKE3, HashAlgorithm.CRC32C);
+        ContentHashes arrayHashes = new ContentHashes(algorithms);
+        ContentHashes bufferHashes = new ContentHashes(algorithms);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CONTENT.length);
+        buffer.put(CONTENT).flip();
+
+        // Act
+        arrayHashes.update(CONTENT, 0, CONTENT.length);
+        bufferHashes.update(buffer);
+
+        // Assert
+        assertFalse(buffer.hasRemaining());
+        for (HashAlgorithm algorithm : algorithms) {
+            assertEquals(arrayHashes.toHash(algorithm), bufferHashes.toHash(algorithm));
+        }
+    }
+
+    @Test
+    @DisplayName("an algorithm requested several times should be computed once")
+    void testContentHashes_duplicateAlgorithm() {
+        // Arrange
+        ContentHashes contentHashes = new ContentHashes(List.of(HashAlgorithm.SHA256, HashAlgorithm.SHA256));
+
+        // Act
+        contentHashes.update(CONTENT, 0, CONTENT.length);
+
+        // Assert
+        assertTrue(contentHashes.contains(HashAlgorithm.SHA256));
+        assertEquals("15E2B0D3C33891EBB0F1EF609EC419420C20E320CE94C65FBC8C3312448EB225",
+                contentHashes.toHash(HashAlgorithm.SHA256));
+    }
+
+    @Test
+    @DisplayName("fromName should accept the names with or without dashes and default to MD5")
+    void testFromName() {
+        // Act & Assert
+        assertEquals(HashAlgorithm.SHA256, HashAlgorithm.fromName("sha-256"));
+        assertEquals(HashAlgorithm.CRC32C, HashAlgorithm.fromName(" crc32c "));
+        assertEquals(HashAlgorithm.MD5, HashAlgorithm.fromName(""));
+        assertThrows(IllegalArgumentException.class, () -> HashAlgorithm.fromName("sha1"));
+    }
+}
@@ -0,0 +1,92 @@
+package hu.evocelot.filestore.helper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import hu.evocelot.filestore.compression.CompressionCodec;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+
+class CompressionHelperTest {
+
+    @Mock
+    private FileStoreProperties fileStoreProperties;
+
+    @InjectMocks
+    private CompressionHelper compressionHelper;
+
+    private AutoCloseable closeable;
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        when(fileStoreProperties.isCompressionEnabled()).thenReturn(true);
+        when(fileStoreProperties.getCompressionCodec()).thenReturn("zstd");
+        when(fileStoreProperties.getCompressionExtensions()).thenReturn(List.of("csv", "log"));
+        when(fileStoreProperties.getCompressionMaxRatio()).thenReturn(0.9);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("selectCodec should select the configured codec for compressible content and rewind the stream")
+    void testSelectCodec_compressible() throws Exception {
+        // Arrange
+        byte[] content = "id;name;value\n".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        InputStream inputStream = new BufferedInputStream(new ByteArrayInputStream(content));
+
+        // Act
+        CompressionCodec codec = compressionHelper.selectCodec("CSV", inputStream);
+
+        // Assert
+        assertEquals(CompressionCodec.ZSTD, codec);
+        assertArrayEquals(content, inputStream.readAllBytes());
+    }
+
+    @Test
+    @DisplayName("selectCodec should not compress incompressible content")
+    void testSelectCodec_incompressible() throws Exception {
+        // Arrange
+        byte[] content = new byte[16 * 1024];
+        new Random(42).nextBytes(content);
+
+        // Act
+        CompressionCodec codec = compressionHelper.selectCodec("log",
+                new BufferedInputStream(new ByteArrayInputStream(content)));
+
+        // Assert
+        assertEquals(CompressionCodec.NONE, codec);
+    }
+
+    @Test
+    @DisplayName("selectCodec should not compress files with other extensions")
+    void testSelectCodec_otherExtension() throws Exception {
+        // Arrange
+        byte[] content = "id;name;value\n".repeat(1000).getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        CompressionCodec codec = compressionHelper.selectCodec("png",
+                new BufferedInputStream(new ByteArrayInputStream(content)));
+
+        // Assert
+        assertEquals(CompressionCodec.NONE, codec);
+    }
+}
@@ -0,0 +1,112 @@
+package hu.evocelot.filestore.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import hu.evocelot.filestore.compression.CompressionCodec;
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.pojo.DownloadableFile;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+
+class DownloadUrlSignerTest {
+
+    private static final DownloadableFile FILE = new DownloadableFile("file1", "/data/system/ab/file1.txt",
+            CompressionCodec.ZSTD, 100L, "D41D8CD98F00B204E9800998ECF8427E", 1000L, "report \"final\".txt");
+
+    @Mock
+    private FileStoreProperties fileStoreProperties;
+
+    private AutoCloseable closeable;
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        when(fileStoreProperties.getDownloadUrlSecret()).thenReturn("secret");
+        when(fileStoreProperties.getDownloadUrlTtl()).thenReturn(Duration.ofMinutes(15));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("verify should return the signed file")
+    void testVerify() throws Exception {
+        // Arrange
+        DownloadUrlSigner signer = createSigner();
+        String token = signer.sign(FILE, signer.getExpiry());
+
+        // Act
+        DownloadableFile downloadableFile = createSigner().verify(token);
+
+        // Assert
+        assertEquals(FILE, downloadableFile);
+    }
+
+    @Test
+    @DisplayName("verify should reject a modified token")
+    void testVerify_modified() {
+        // Arrange
+        DownloadUrlSigner signer = createSigner();
+        String token = signer.sign(FILE, signer.getExpiry());
+        String[] parts = token.split("\\.");
+        String modified = parts[0] + "." + (Long.parseLong(parts[1]) + 3600) + "." + parts[2];
+
+        // Act
+        BaseException exception = assertThrows(BaseException.class, () -> signer.verify(modified));
+
+        // Assert
+        assertEquals(HttpStatus.FORBIDDEN, exception.getHttpStatus());
+        assertEquals(ExceptionType.INVALID_DOWNLOAD_URL, exception.getExceptionType());
+    }
+
+    @Test
+    @DisplayName("verify should reject a token signed with another secret")
+    void testVerify_otherSecret() {
+        // Arrange
+        String token = createSigner().sign(FILE, Instant.now().plusSeconds(60));
+        when(fileStoreProperties.getDownloadUrlSecret()).thenReturn("other");
+        DownloadUrlSigner signer = createSigner();
+
+        // Act
+        BaseException exception = assertThrows(BaseException.class, () -> signer.verify(token));
+
+        // Assert
+        assertEquals(ExceptionType.INVALID_DOWNLOAD_URL, exception.getExceptionType());
+    }
+
+    @Test
+    @DisplayName("verify should reject an expired token")
+    void testVerify_expired() {
+        // Arrange
+        DownloadUrlSigner signer = createSigner();
+        String token = signer.sign(FILE, Instant.now().minusSeconds(1));
+
+        // Act
+        BaseException exception = assertThrows(BaseException.class, () -> signer.verify(token));
+
+        // Assert
+        assertEquals(HttpStatus.FORBIDDEN, exception.getHttpStatus());
+        assertEquals(ExceptionType.DOWNLOAD_URL_EXPIRED, exception.getExceptionType());
+    }
+
+    private DownloadUrlSigner createSigner() {
+        return new DownloadUrlSigner(fileStoreProperties, new ObjectMapper());
+    }
+}
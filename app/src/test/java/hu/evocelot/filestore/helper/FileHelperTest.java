@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
@@ -19,21 +20,25 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
 
+import hu.evocelot.filestore.compression.CompressionCodec;
 import hu.evocelot.filestore.exception.BaseException;
 import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.hashing.HashAlgorithm;
+import hu.evocelot.filestore.model.FileEntity;
+import hu.evocelot.filestore.pojo.FileStoreResult;
 import hu.evocelot.filestore.properties.FileStoreProperties;
+import hu.evocelot.filestore.storage.LocalStorageBackend;
 
 class FileHelperTest {
 
     @Mock
     private FileStoreProperties fileStoreProperties;
 
-    @InjectMocks
     private FileHelper fileHelper;
 
     private AutoCloseable closeable;
@@ -43,6 +48,7 @@ class FileHelperTest {
         closeable = MockitoAnnotations.openMocks(this);
         when(fileStoreProperties.getBufferSize()).thenReturn(1024);
         when(fileStoreProperties.getStorePath()).thenReturn(System.getProperty("java.io.tmpdir"));
+        fileHelper = new FileHelper(fileStoreProperties, new LocalStorageBackend(fileStoreProperties));
     }
 
     @AfterEach
@@ -59,13 +65,34 @@ class FileHelperTest {
         byte[] content = "Hello World!".getBytes();
         ByteArrayInputStream inputStream = new ByteArrayInputStream(content);
 
-        String hash = fileHelper.storeFile(tempFile.toString(), inputStream);
+        FileStoreResult result = fileHelper.storeFile(tempFile.toString(), inputStream);
 
-        assertNotNull(hash);
-        assertTrue(hash.matches("[A-F0-9]+"));
+        assertNotNull(result.getHash());
+        assertTrue(result.getHash().matches("[A-F0-9]+"));
+        assertEquals(content.length, result.getSize());
         assertTrue(tempFile.toFile().exists());
     }
 
+    @Test
+    @DisplayName("storeFile should compute the configured hash and the CRC32C checksum in the same pass")
+    void testStoreFile_hashAlgorithm() throws Exception {
+        // Arrange
+        when(fileStoreProperties.getHashAlgorithm()).thenReturn("sha-256");
+        when(fileStoreProperties.isChecksumEnabled()).thenReturn(true);
+        Path tempFile = Files.createTempFile("test", ".txt");
+        tempFile.toFile().deleteOnExit();
+
+        // Act
+        FileStoreResult result = fileHelper.storeFile(tempFile.toString(),
+                new ByteArrayInputStream("123456789".getBytes()));
+
+        // Assert
+        assertEquals(HashAlgorithm.SHA256, result.getHashAlgorithm());
+        assertEquals("15E2B0D3C33891EBB0F1EF609EC419420C20E320CE94C65FBC8C3312448EB225", result.getHash());
+        assertEquals("E3069283", result.getChecksum());
+        assertEquals(result.getHash(), fileHelper.getFileHash(tempFile.toString()));
+    }
+
     @Test
     @DisplayName("storeFile should throw BaseException for invalid input")
     void testStoreFile_invalidInput() {
@@ -88,6 +115,43 @@ class FileHelperTest {
         assertTrue(hash.matches("[A-F0-9]+"));
     }
 
+    @Test
+    @DisplayName("getVerifiedFile should stream the whole file if its hash matches")
+    void testGetVerifiedFile_success() throws Exception {
+        // Arrange
+        Path tempFile = Files.createTempFile("testverified", ".txt");
+        Files.write(tempFile, new byte[3000]);
+        tempFile.toFile().deleteOnExit();
+        String hash = fileHelper.getFileHash(tempFile.toString(), CompressionCodec.NONE, HashAlgorithm.CRC32C);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // Act
+        fileHelper.getVerifiedFile(tempFile.toString(), CompressionCodec.NONE, HashAlgorithm.CRC32C, hash,
+                outputStream);
+
+        // Assert
+        assertEquals(3000, outputStream.size());
+    }
+
+    @Test
+    @DisplayName("getVerifiedFile should hold back the last buffer if the hash does not match")
+    void testGetVerifiedFile_mismatch() throws Exception {
+        // Arrange
+        Path tempFile = Files.createTempFile("testverified", ".txt");
+        Files.write(tempFile, new byte[3000]);
+        tempFile.toFile().deleteOnExit();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // Act
+        BaseException ex = assertThrows(BaseException.class, () -> fileHelper.getVerifiedFile(tempFile.toString(),
+                CompressionCodec.NONE, HashAlgorithm.CRC32C, "00000000", outputStream));
+
+        // Assert
+        assertEquals(HttpStatus.CONFLICT, ex.getHttpStatus());
+        assertEquals(ExceptionType.CORRUPTED_FILE, ex.getExceptionType());
+        assertTrue(outputStream.size() < 3000);
+    }
+
     @Test
     @DisplayName("getFileHash should throw BaseException on IOException")
     void testGetFileHash_ioException() {
@@ -122,6 +186,49 @@ class FileHelperTest {
         assertEquals(ExceptionType.CANNOT_READ_FILE, ex.getExceptionType());
     }
 
+    @Test
+    @DisplayName("getFile should write the requested region to outputStream")
+    void testGetFile_region() throws Exception {
+        Path tempFile = Files.createTempFile("testregion", ".txt");
+        Files.write(tempFile, "Stream Content".getBytes());
+        tempFile.toFile().deleteOnExit();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        fileHelper.getFile(tempFile.toString(), 2, 4, outputStream);
+
+        assertEquals("ream", outputStream.toString());
+    }
+
+    @Test
+    @DisplayName("sendFile should hand the file over to the container when sendfile is supported")
+    void testSendFile_supported() throws IOException {
+        Path tempFile = Files.createTempFile("testsendfile", ".txt");
+        tempFile.toFile().deleteOnExit();
+        when(fileStoreProperties.isZeroCopyEnabled()).thenReturn(true);
+        when(fileStoreProperties.getZeroCopyMinSize()).thenReturn(0L);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+
+        assertTrue(fileHelper.sendFile(request, tempFile.toString(), 10, 100));
+        assertEquals(tempFile.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(10L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(110L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    @Test
+    @DisplayName("sendFile should fall back when the container cannot expose a channel")
+    void testSendFile_notSupported() {
+        when(fileStoreProperties.isZeroCopyEnabled()).thenReturn(true);
+        when(fileStoreProperties.getZeroCopyMinSize()).thenReturn(0L);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+
+        assertFalse(fileHelper.sendFile(request, "file.txt", 0, 100));
+        assertNull(request.getAttribute("org.apache.tomcat.sendfile.filename"));
+    }
+
     @Test
     @DisplayName("deleteFile should delete existing file")
     void testDeleteFile_success() throws IOException {
@@ -161,6 +268,88 @@ class FileHelperTest {
         assertEquals("/tmp/filename.txt", fullPath);
     }
 
+    @Test
+    @DisplayName("getFullPath should resolve a deduplicated file by its content digest")
+    void testGetFullPath_deduplicated() {
+        FileEntity fileEntity = new FileEntity();
+        fileEntity.setId("file-id");
+        fileEntity.setExtension("txt");
+        fileEntity.setContentDigest("ABCDEF0123");
+
+        String fullPath = fileHelper.getFullPath(fileEntity);
+
+        String blobDirectory = fileHelper.getDirectoryPath(null) + "blobs" + File.separator;
+        assertEquals(blobDirectory + "AB" + File.separator + "CD" + File.separator + "ABCDEF0123", fullPath);
+    }
+
+    @Test
+    @DisplayName("getFullPath should resolve a regular file by its id")
+    void testGetFullPath_fileEntity() {
+        FileEntity fileEntity = new FileEntity();
+        fileEntity.setId("file-id");
+        fileEntity.setSystemId("system");
+        fileEntity.setExtension("txt");
+
+        String fullPath = fileHelper.getFullPath(fileEntity);
+
+        assertEquals(fileHelper.getDirectoryPath("system") + "file-id.txt", fullPath);
+    }
+
+    @Test
+    @DisplayName("storeFile should compute the content digest in the same pass when requested")
+    void testStoreFile_contentDigest() throws Exception {
+        Path tempFile = Files.createTempFile("test", ".txt");
+        tempFile.toFile().deleteOnExit();
+
+        FileStoreResult result = fileHelper.storeFile(tempFile.toString(),
+                new ByteArrayInputStream("Hello World!".getBytes()), true);
+
+        assertEquals("7F83B1657FF1FC53B92DC18148A1D65DFC2D4B1FA3D677284ADDD200126D9069", result.getContentDigest());
+        assertEquals(12, result.getSize());
+    }
+
+    @Test
+    @DisplayName("getFullPath should place the file into prefix directories when sharding is enabled")
+    void testGetFullPath_sharded() {
+        when(fileStoreProperties.getShardDepth()).thenReturn(2);
+
+        String fullPath = fileHelper.getFullPath("/tmp/", "3fa2b1c0-id", "txt");
+
+        assertEquals("/tmp/3f" + File.separator + "a2" + File.separator + "3fa2b1c0-id.txt", fullPath);
+    }
+
+    @Test
+    @DisplayName("getFullPath should resolve a file that has not been migrated in the flat layout")
+    void testGetFullPath_notMigrated() throws IOException {
+        when(fileStoreProperties.getShardDepth()).thenReturn(2);
+        Path directory = Files.createTempDirectory("flat");
+        when(fileStoreProperties.getStorePath()).thenReturn(directory.toString());
+        Path flatFile = Files.createFile(directory.resolve("3fa2b1c0-id.txt"));
+        flatFile.toFile().deleteOnExit();
+        directory.toFile().deleteOnExit();
+
+        FileEntity fileEntity = new FileEntity();
+        fileEntity.setId("3fa2b1c0-id");
+        fileEntity.setExtension("txt");
+
+        assertEquals(flatFile.toString(), fileHelper.getFullPath(fileEntity));
+    }
+
+    @Test
+    @DisplayName("linkLocalFile should keep the source file when the link is moved")
+    void testLinkLocalFile() throws Exception {
+        Path directory = Files.createTempDirectory("link");
+        Path source = Files.writeString(directory.resolve("source.part"), "Test content");
+        Path link = directory.resolve("link.tmp");
+
+        fileHelper.linkLocalFile(source.toString(), link.toString());
+        fileHelper.moveFile(link.toString(), directory.resolve("target.txt").toString());
+
+        assertEquals("Test content", Files.readString(source));
+        assertEquals("Test content", Files.readString(directory.resolve("target.txt")));
+        assertFalse(Files.exists(link));
+    }
+
     @Test
     @DisplayName("createDirectoryIfNotExists should create non-existing directory")
     void testCreateDirectoryIfNotExists_success() throws IOException {
@@ -0,0 +1,141 @@
+package hu.evocelot.filestore.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import hu.evocelot.filestore.storage.LocalStorageBackend;
+
+/**
+ * Throughput comparison between the buffered download loop and the zero-copy
+ * transfer over a loopback socket.
+ * <p>
+ * The zero-copy side goes through {@link FileHelper#sendFile} and then sends
+ * the region described by the sendfile request attributes with
+ * {@link FileChannel#transferTo}, as the Tomcat connector does.
+ * </p>
+ * <p>
+ * The test is skipped by default. Run it with
+ * {@code ./gradlew test --tests '*FileHelperThroughputTest' -Dfilestore.benchmark=true}.
+ * </p>
+ */
+@EnabledIfSystemProperty(named = "filestore.benchmark", matches = "true")
+class FileHelperThroughputTest {
+
+    private static final int FILE_SIZE_MB = 512;
+    private static final int ROUNDS = 4;
+
+    private FileHelper fileHelper;
+    private Path tempFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FileStoreProperties fileStoreProperties = new FileStoreProperties();
+        fileStoreProperties.setBufferSize(8192);
+        fileStoreProperties.setZeroCopyEnabled(true);
+        fileHelper = new FileHelper(fileStoreProperties, new LocalStorageBackend(fileStoreProperties));
+
+        byte[] chunk = new byte[1024 * 1024];
+        new Random(1).nextBytes(chunk);
+        tempFile = Files.createTempFile("throughput", ".bin");
+        try (OutputStream outputStream = Files.newOutputStream(tempFile)) {
+            for (int i = 0; i < FILE_SIZE_MB; i++) {
+                outputStream.write(chunk);
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(tempFile);
+    }
+
+    @Test
+    @DisplayName("Compare buffered getFile with zero-copy sendFile")
+    void compareThroughput() throws Exception {
+        long size = Files.size(tempFile);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            double buffered = measure(size, client -> fileHelper.getFile(tempFile.toString(),
+                    Channels.newOutputStream(client)));
+            double zeroCopy = measure(size, client -> sendFile(size, client));
+
+            System.out.printf("round %d: buffered=%.0f MB/s zero-copy=%.0f MB/s%n", round, buffered, zeroCopy);
+        }
+    }
+
+    /**
+     * Hands the file over with {@link FileHelper#sendFile} and sends it like the
+     * container would after the handler has returned.
+     */
+    private void sendFile(long size, SocketChannel client) throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        assertTrue(fileHelper.sendFile(request, tempFile.toString(), 0, size));
+
+        String filename = (String) request.getAttribute("org.apache.tomcat.sendfile.filename");
+        long position = (Long) request.getAttribute("org.apache.tomcat.sendfile.start");
+        long end = (Long) request.getAttribute("org.apache.tomcat.sendfile.end");
+        try (FileChannel fileChannel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            while (position < end) {
+                position += fileChannel.transferTo(position, end - position, client);
+            }
+        }
+    }
+
+    private double measure(long size, Transfer transfer) throws Exception {
+        try (ServerSocketChannel server = ServerSocketChannel.open()
+                .bind(new InetSocketAddress("127.0.0.1", 0))) {
+            AtomicLong received = new AtomicLong();
+            Thread sink = new Thread(() -> {
+                try (SocketChannel channel = server.accept()) {
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+                    int read;
+                    while ((read = channel.read(buffer)) != -1) {
+                        received.addAndGet(read);
+                        buffer.clear();
+                    }
+                } catch (IOException e) {
+                    // The comparison fails on the size assertion.
+                }
+            });
+            sink.start();
+
+            long start = System.nanoTime();
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress())) {
+                transfer.run(client);
+            }
+            sink.join();
+            long elapsed = System.nanoTime() - start;
+
+            assertEquals(size, received.get());
+            return size / (1024.0 * 1024.0) / (elapsed / 1_000_000_000.0);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Transfer {
+        void run(SocketChannel client) throws Exception;
+    }
+}
@@ -0,0 +1,199 @@
+package hu.evocelot.filestore.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import hu.evocelot.filestore.kafka.KafkaMessageProducer;
+import hu.evocelot.filestore.kafka.KafkaTopics;
+import hu.evocelot.filestore.model.FileEntity;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import hu.evocelot.filestore.properties.KafkaProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class FileMetadataCacheTest {
+
+    @Mock
+    private FileStoreProperties fileStoreProperties;
+
+    @Mock
+    private KafkaProperties kafkaProperties;
+
+    @Mock
+    private KafkaMessageProducer kafkaMessageProducer;
+
+    private AtomicInteger loads;
+    private AutoCloseable closeable;
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        when(fileStoreProperties.getMetadataCacheSize()).thenReturn(100L);
+        when(fileStoreProperties.getMetadataCacheTtl()).thenReturn(Duration.ofMinutes(1));
+        when(kafkaProperties.getEnabled()).thenReturn("false");
+        loads = new AtomicInteger();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("get should load the file once and return a new copy on every hit")
+    void testGet() {
+        // Arrange
+        FileMetadataCache fileMetadataCache = createCache();
+
+        // Act
+        FileEntity first = fileMetadataCache.get("file1", this::load).get();
+        first.setDownloadCount(5L);
+        FileEntity second = fileMetadataCache.get("file1", this::load).get();
+
+        // Assert
+        assertEquals(1, loads.get());
+        assertNotSame(first, second);
+        assertEquals("file1", second.getId());
+        assertEquals(0L, second.getDownloadCount());
+    }
+
+    @Test
+    @DisplayName("get should load the file again after it has been invalidated")
+    void testGet_invalidated() {
+        // Arrange
+        when(kafkaProperties.getEnabled()).thenReturn("true");
+        FileMetadataCache fileMetadataCache = createCache();
+        fileMetadataCache.get("file1", this::load);
+
+        // Act
+        fileMetadataCache.invalidate(List.of("file1"));
+        fileMetadataCache.get("file1", this::load);
+
+        // Assert
+        assertEquals(2, loads.get());
+        verify(kafkaMessageProducer).sendMessage(KafkaTopics.FILE_METADATA_CHANGED, "file1");
+    }
+
+    @Test
+    @DisplayName("invalidate should publish the changed files in a single message")
+    void testInvalidate_batch() {
+        // Arrange
+        when(kafkaProperties.getEnabled()).thenReturn("true");
+        FileMetadataCache fileMetadataCache = createCache();
+
+        // Act
+        fileMetadataCache.invalidate(List.of("file1", "file2", "file3"));
+
+        // Assert
+        verify(kafkaMessageProducer).sendMessage(KafkaTopics.FILE_METADATA_CHANGED, "file1,file2,file3");
+        verifyNoMoreInteractions(kafkaMessageProducer);
+    }
+
+    @Test
+    @DisplayName("invalidate should evict the files only after the transaction has committed")
+    void testInvalidate_afterCommit() {
+        // Arrange
+        FileMetadataCache fileMetadataCache = createCache();
+        fileMetadataCache.get("file1", this::load);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // Act
+            fileMetadataCache.invalidate(List.of("file1"));
+            fileMetadataCache.get("file1", this::load);
+            int loadsBeforeCommit = loads.get();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            fileMetadataCache.get("file1", this::load);
+
+            // Assert
+            assertEquals(1, loadsBeforeCommit);
+            assertEquals(2, loads.get());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("get should not cache a file loaded while the cache was evicted")
+    void testGet_evictedWhileLoading() {
+        // Arrange
+        FileMetadataCache fileMetadataCache = createCache();
+
+        // Act
+        fileMetadataCache.get("file1", id -> {
+            fileMetadataCache.evict(id);
+            return load(id);
+        });
+        fileMetadataCache.get("file1", this::load);
+
+        // Assert
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("get should always load the file if the cache size is zero")
+    void testGet_disabled() {
+        // Arrange
+        when(fileStoreProperties.getMetadataCacheSize()).thenReturn(0L);
+        FileMetadataCache fileMetadataCache = createCache();
+
+        // Act
+        fileMetadataCache.get("file1", this::load);
+        fileMetadataCache.get("file1", this::load);
+
+        // Assert
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("getAll should load only the files missing from the cache with a single call")
+    void testGetAll() {
+        // Arrange
+        FileMetadataCache fileMetadataCache = createCache();
+        fileMetadataCache.get("file1", this::load);
+        List<Collection<String>> batches = new ArrayList<>();
+
+        // Act
+        List<FileEntity> files = fileMetadataCache.getAll(List.of("file1", "file2", "missing"), ids -> {
+            batches.add(List.copyOf(ids));
+            return List.of(load("file2").get());
+        });
+        fileMetadataCache.getAll(List.of("file1", "file2"), ids -> {
+            batches.add(List.copyOf(ids));
+            return List.of();
+        });
+
+        // Assert
+        assertEquals(List.of("file1", "file2"), files.stream().map(FileEntity::getId).toList());
+        assertEquals(List.of(List.of("file2", "missing")), batches);
+    }
+
+    private FileMetadataCache createCache() {
+        return new FileMetadataCache(fileStoreProperties, kafkaProperties, kafkaMessageProducer,
+                new SimpleMeterRegistry());
+    }
+
+    private Optional<FileEntity> load(String id) {
+        loads.incrementAndGet();
+        FileEntity fileEntity = new FileEntity();
+        fileEntity.setId(id);
+        return Optional.of(fileEntity);
+    }
+}
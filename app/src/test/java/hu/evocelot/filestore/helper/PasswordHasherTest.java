@@ -0,0 +1,96 @@
+package hu.evocelot.filestore.helper;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import hu.evocelot.filestore.properties.FileStoreProperties;
+
+class PasswordHasherTest {
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    @Mock
+    private FileStoreProperties fileStoreProperties;
+
+    private AutoCloseable closeable;
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        when(fileStoreProperties.getPasswordHashingParallelism()).thenReturn(1);
+        when(fileStoreProperties.getPasswordHashingQueueSize()).thenReturn(1);
+        when(fileStoreProperties.getPasswordCacheSize()).thenReturn(100L);
+        when(fileStoreProperties.getPasswordCacheTtl()).thenReturn(Duration.ofMinutes(5));
+        when(passwordEncoder.matches("secret", "hash")).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("matches should verify a password with BCrypt only once")
+    void testMatches() throws Exception {
+        // Arrange
+        PasswordHasher passwordHasher = new PasswordHasher(passwordEncoder, fileStoreProperties);
+
+        // Act
+        boolean first = passwordHasher.matches("file1", "secret", "hash");
+        boolean second = passwordHasher.matches("file1", "secret", "hash");
+
+        // Assert
+        assertTrue(first);
+        assertTrue(second);
+        verify(passwordEncoder, times(1)).matches("secret", "hash");
+        passwordHasher.shutdown();
+    }
+
+    @Test
+    @DisplayName("matches should verify a wrong password with BCrypt every time")
+    void testMatches_wrongPassword() throws Exception {
+        // Arrange
+        PasswordHasher passwordHasher = new PasswordHasher(passwordEncoder, fileStoreProperties);
+        passwordHasher.matches("file1", "secret", "hash");
+
+        // Act
+        boolean first = passwordHasher.matches("file1", "wrong", "hash");
+        boolean second = passwordHasher.matches("file1", "wrong", "hash");
+
+        // Assert
+        assertFalse(first);
+        assertFalse(second);
+        verify(passwordEncoder, times(2)).matches("wrong", "hash");
+        passwordHasher.shutdown();
+    }
+
+    @Test
+    @DisplayName("matches should verify the password again after the password of the file has changed")
+    void testMatches_passwordChanged() throws Exception {
+        // Arrange
+        PasswordHasher passwordHasher = new PasswordHasher(passwordEncoder, fileStoreProperties);
+        passwordHasher.matches("file1", "secret", "hash");
+
+        // Act
+        boolean matches = passwordHasher.matches("file1", "secret", "newHash");
+
+        // Assert
+        assertFalse(matches);
+        verify(passwordEncoder).matches("secret", "newHash");
+        passwordHasher.shutdown();
+    }
+}
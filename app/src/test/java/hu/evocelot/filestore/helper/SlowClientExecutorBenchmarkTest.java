@@ -0,0 +1,124 @@
+package hu.evocelot.filestore.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import hu.evocelot.filestore.storage.LocalStorageBackend;
+
+/**
+ * Executor micro-benchmark of the buffered download loop with slow consumers,
+ * comparing a platform thread pool of the default Tomcat size with virtual
+ * threads.
+ * <p>
+ * Every task copies the file with {@link FileHelper#getFile(String, OutputStream)}
+ * into an in-memory stream that sleeps {@value #CLIENT_DELAY_MS} ms per buffer.
+ * No server, socket or HTTP request is involved, so the result shows how the
+ * executors schedule blocked tasks, not the capacity of the web tier. The test
+ * is skipped by default. Run it with
+ * {@code ./gradlew test --tests '*SlowClientExecutorBenchmarkTest' -Dfilestore.benchmark=true}.
+ * </p>
+ */
+@EnabledIfSystemProperty(named = "filestore.benchmark", matches = "true")
+class SlowClientExecutorBenchmarkTest {
+
+    private static final int TASKS = 2000;
+    private static final int PLATFORM_THREADS = 200;
+    private static final int FILE_SIZE = 256 * 1024;
+    private static final int BUFFER_SIZE = 8192;
+    private static final long CLIENT_DELAY_MS = 10;
+
+    private FileHelper fileHelper;
+    private Path tempFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FileStoreProperties fileStoreProperties = new FileStoreProperties();
+        fileStoreProperties.setBufferSize(BUFFER_SIZE);
+        fileHelper = new FileHelper(fileStoreProperties, new LocalStorageBackend(fileStoreProperties));
+
+        tempFile = Files.createTempFile("capacity", ".bin");
+        Files.write(tempFile, new byte[FILE_SIZE]);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(tempFile);
+    }
+
+    @Test
+    @DisplayName("Compare the slow-consumer download loop on platform threads and virtual threads")
+    void compareExecutors() throws Exception {
+        try (ExecutorService platform = Executors.newFixedThreadPool(PLATFORM_THREADS)) {
+            measure("platform threads (" + PLATFORM_THREADS + ")", platform);
+        }
+        try (ExecutorService virtual = Executors.newVirtualThreadPerTaskExecutor()) {
+            measure("virtual threads", virtual);
+        }
+    }
+
+    private void measure(String name, ExecutorService executor) throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<Future<?>> copies = new ArrayList<>(TASKS);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < TASKS; i++) {
+            copies.add(executor.submit(() -> {
+                peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try (OutputStream client = new SlowConsumerOutputStream()) {
+                    fileHelper.getFile(tempFile.toString(), client);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> copy : copies) {
+            copy.get();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(0, inFlight.get());
+        System.out.printf("%s: %d copies in %.1f s, peak concurrency %d%n", name, TASKS,
+                elapsed / 1_000_000_000.0, peak.get());
+    }
+
+    /**
+     * Output stream consuming one buffer per {@link #CLIENT_DELAY_MS}.
+     */
+    private static final class SlowConsumerOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            try {
+                Thread.sleep(CLIENT_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package hu.evocelot.filestore.helper;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import hu.evocelot.filestore.properties.FileStoreProperties;
+
+class VerificationCacheTest {
+
+    @Mock
+    private FileStoreProperties fileStoreProperties;
+
+    private AutoCloseable closeable;
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        when(fileStoreProperties.getVerificationCacheSize()).thenReturn(100L);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("isVerified should only accept the same modification time and size")
+    void testIsVerified() {
+        // Arrange
+        when(fileStoreProperties.getVerificationCacheWindow()).thenReturn(Duration.ofHours(1));
+        VerificationCache verificationCache = new VerificationCache(fileStoreProperties);
+
+        // Act
+        verificationCache.markVerified("file1", 1000L, 10L);
+
+        // Assert
+        assertTrue(verificationCache.isVerified("file1", 1000L, 10L));
+        assertFalse(verificationCache.isVerified("file1", 2000L, 10L));
+        assertFalse(verificationCache.isVerified("file1", 1000L, 11L));
+        assertFalse(verificationCache.isVerified("file2", 1000L, 10L));
+    }
+
+    @Test
+    @DisplayName("isVerified should always return false if the window is zero")
+    void testIsVerified_disabled() {
+        // Arrange
+        when(fileStoreProperties.getVerificationCacheWindow()).thenReturn(Duration.ZERO);
+        VerificationCache verificationCache = new VerificationCache(fileStoreProperties);
+
+        // Act
+        verificationCache.markVerified("file1", 1000L, 10L);
+
+        // Assert
+        assertFalse(verificationCache.isVerified("file1", 1000L, 10L));
+    }
+}
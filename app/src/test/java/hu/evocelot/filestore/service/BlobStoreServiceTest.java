@@ -0,0 +1,133 @@
+package hu.evocelot.filestore.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import hu.evocelot.filestore.accessor.FileBlobAccessor;
+import hu.evocelot.filestore.helper.FileHelper;
+import hu.evocelot.filestore.model.FileBlob;
+
+class BlobStoreServiceTest {
+
+    private static final String CONTENT_DIGEST = "0123456789ABCDEF";
+    private static final String STAGING_PATH = "/store/blobs/staging/file-id.tmp";
+    private static final String BLOB_PATH = "/store/blobs/01/23/0123456789ABCDEF";
+
+    @Mock
+    private FileBlobAccessor fileBlobAccessor;
+
+    @Mock
+    private FileHelper fileHelper;
+
+    @InjectMocks
+    private BlobStoreService blobStoreService;
+
+    private AutoCloseable closeable;
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        when(fileHelper.getBlobDirectoryPath(CONTENT_DIGEST)).thenReturn("/store/blobs/01/23/");
+        when(fileHelper.getBlobPath(CONTENT_DIGEST)).thenReturn(BLOB_PATH);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("addBlob should discard the staged file when the content is already stored")
+    void testAddBlob_duplicate() throws Exception {
+        // Arrange
+        when(fileBlobAccessor.addReference(CONTENT_DIGEST)).thenReturn(true);
+
+        // Act
+        blobStoreService.addBlob(STAGING_PATH, CONTENT_DIGEST, 12);
+
+        // Assert
+        verify(fileHelper).deleteLocalFile(STAGING_PATH);
+        verify(fileHelper, never()).moveFile(STAGING_PATH, BLOB_PATH);
+        verify(fileBlobAccessor, never()).save(any(FileBlob.class));
+    }
+
+    @Test
+    @DisplayName("addBlob should move the staged file into the blob store when the content is new")
+    void testAddBlob_new() throws Exception {
+        // Arrange
+        when(fileBlobAccessor.addReference(CONTENT_DIGEST)).thenReturn(false);
+        ArgumentCaptor<FileBlob> blobCaptor = ArgumentCaptor.forClass(FileBlob.class);
+
+        // Act
+        blobStoreService.addBlob(STAGING_PATH, CONTENT_DIGEST, 12);
+
+        // Assert
+        verify(fileHelper).moveFile(STAGING_PATH, BLOB_PATH);
+        verify(fileBlobAccessor).save(blobCaptor.capture());
+        assertEquals(CONTENT_DIGEST, blobCaptor.getValue().getContentDigest());
+        assertEquals(1L, blobCaptor.getValue().getReferenceCount());
+    }
+
+    @Test
+    @DisplayName("addBlob should add a reference when a concurrent upload created the blob first")
+    void testAddBlob_concurrentCreate() throws Exception {
+        // Arrange
+        when(fileBlobAccessor.addReference(CONTENT_DIGEST)).thenReturn(false).thenReturn(true);
+        when(fileBlobAccessor.save(any(FileBlob.class))).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        // Act
+        blobStoreService.addBlob(STAGING_PATH, CONTENT_DIGEST, 12);
+
+        // Assert
+        verify(fileHelper).moveFile(STAGING_PATH, BLOB_PATH);
+        verify(fileBlobAccessor, times(2)).addReference(CONTENT_DIGEST);
+    }
+
+    @Test
+    @DisplayName("releaseBlob should only decrement the reference count while the blob is shared")
+    void testReleaseBlob_shared() {
+        // Arrange
+        FileBlob blob = new FileBlob(CONTENT_DIGEST, 12L);
+        blob.setReferenceCount(3L);
+        when(fileBlobAccessor.findByContentDigestForUpdate(CONTENT_DIGEST)).thenReturn(Optional.of(blob));
+
+        // Act
+        blobStoreService.releaseBlob(CONTENT_DIGEST);
+
+        // Assert
+        assertEquals(2L, blob.getReferenceCount());
+        verify(fileBlobAccessor).save(blob);
+        verify(fileHelper, never()).deleteFile(BLOB_PATH);
+    }
+
+    @Test
+    @DisplayName("releaseBlob should delete the blob when its last reference is released")
+    void testReleaseBlob_lastReference() {
+        // Arrange
+        FileBlob blob = new FileBlob(CONTENT_DIGEST, 12L);
+        when(fileBlobAccessor.findByContentDigestForUpdate(CONTENT_DIGEST)).thenReturn(Optional.of(blob));
+
+        // Act
+        blobStoreService.releaseBlob(CONTENT_DIGEST);
+
+        // Assert
+        verify(fileBlobAccessor).delete(blob);
+        verify(fileHelper).deleteFile(BLOB_PATH);
+    }
+}
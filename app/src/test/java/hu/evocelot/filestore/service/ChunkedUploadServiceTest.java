@@ -0,0 +1,479 @@
+package hu.evocelot.filestore.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import hu.evocelot.filestore.accessor.FileEntityAccessor;
+import hu.evocelot.filestore.accessor.UploadSessionAccessor;
+import hu.evocelot.filestore.converter.FileEntityWithIdConverter;
+import hu.evocelot.filestore.dto.ChunkedUploadRequestDto;
+import hu.evocelot.filestore.dto.ChunkedUploadStatusDto;
+import hu.evocelot.filestore.dto.FileEntityWithIdDto;
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.hashing.ContentHasher;
+import hu.evocelot.filestore.hashing.HashAlgorithm;
+import hu.evocelot.filestore.helper.FileHelper;
+import hu.evocelot.filestore.helper.PasswordHasher;
+import hu.evocelot.filestore.model.FileEntity;
+import hu.evocelot.filestore.model.UploadSession;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import hu.evocelot.filestore.storage.LocalStorageBackend;
+
+class ChunkedUploadServiceTest {
+
+    private static final String UPLOAD_ID = "upload123";
+    private static final byte[] CONTENT = "Test content".getBytes(StandardCharsets.UTF_8);
+    private static final long CHUNK_SIZE = 5;
+
+    @TempDir
+    Path storePath;
+
+    @Mock
+    private UploadSessionAccessor uploadSessionAccessor;
+
+    @Mock
+    private FileEntityAccessor fileEntityAccessor;
+
+    @Mock
+    private FileEntityWithIdConverter fileEntityWithIdConverter;
+
+    @Mock
+    private FileStoreProperties fileStoreProperties;
+
+    @Mock
+    private PasswordHasher passwordHasher;
+
+    @Mock
+    private StorageQuotaService storageQuotaService;
+
+    @Mock
+    private UploadFileService uploadFileService;
+
+    @Mock
+    private BlobStoreService blobStoreService;
+
+    private FileHelper fileHelper;
+    private ChunkedUploadService chunkedUploadService;
+    private UploadSession session;
+    private AutoCloseable closeable;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        closeable = MockitoAnnotations.openMocks(this);
+        when(fileStoreProperties.getBufferSize()).thenReturn(1024);
+        when(fileStoreProperties.getStorePath()).thenReturn(storePath.toString());
+        when(fileStoreProperties.getUploadSessionTtl()).thenReturn(Duration.ofDays(1));
+
+        fileHelper = new FileHelper(fileStoreProperties, new LocalStorageBackend(fileStoreProperties));
+        chunkedUploadService = new ChunkedUploadService(uploadSessionAccessor, fileEntityAccessor,
+                fileEntityWithIdConverter, fileHelper, passwordHasher, storageQuotaService, uploadFileService,
+                fileStoreProperties, blobStoreService);
+
+        when(uploadSessionAccessor.save(any(UploadSession.class))).thenAnswer(invocation -> {
+            session = invocation.getArgument(0);
+            session.setId(UPLOAD_ID);
+            return session;
+        });
+        when(uploadSessionAccessor.findById(UPLOAD_ID)).thenAnswer(invocation -> Optional.ofNullable(session));
+        when(uploadSessionAccessor.getReceivedChunks(any(UploadSession.class))).thenAnswer(invocation -> {
+            byte[] receivedChunks = ((UploadSession) invocation.getArgument(0)).getReceivedChunks();
+            return receivedChunks != null ? BitSet.valueOf(receivedChunks) : new BitSet();
+        });
+        when(uploadSessionAccessor.markChunkReceived(eq(UPLOAD_ID), anyInt())).thenAnswer(invocation -> {
+            BitSet receivedChunks = uploadSessionAccessor.getReceivedChunks(session);
+            receivedChunks.set(invocation.<Integer>getArgument(1));
+            session.setReceivedChunks(receivedChunks.toByteArray());
+            return Optional.of(receivedChunks);
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("initiateUpload should reserve the storage once and report every chunk as missing")
+    void testInitiateUpload_success() throws Exception {
+        // Act
+        ResponseEntity<ChunkedUploadStatusDto> response = chunkedUploadService.initiateUpload(createRequest());
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(UPLOAD_ID, response.getBody().getUploadId());
+        assertEquals(3, response.getBody().getTotalChunks());
+        assertEquals(List.of(0, 1, 2), response.getBody().getMissingChunks());
+        assertEquals(CONTENT.length, Files.size(getPartPath()));
+        verify(storageQuotaService).reserveStorage("object123", CONTENT.length);
+    }
+
+    @Test
+    @DisplayName("initiateUpload should release the reserved storage if the session cannot be saved")
+    void testInitiateUpload_saveFailure() {
+        // Arrange
+        doThrow(new DataIntegrityViolationException("failure")).when(uploadSessionAccessor)
+                .save(any(UploadSession.class));
+
+        // Act & Assert
+        assertThrows(DataIntegrityViolationException.class,
+                () -> chunkedUploadService.initiateUpload(createRequest()));
+        verify(storageQuotaService).releaseStorage("object123", CONTENT.length);
+    }
+
+    @Test
+    @DisplayName("initiateUpload should reject a non-positive chunk size")
+    void testInitiateUpload_invalidChunkSize() {
+        // Arrange
+        ChunkedUploadRequestDto request = createRequest();
+        request.setChunkSize(0L);
+
+        // Act & Assert
+        BaseException exception = assertThrows(BaseException.class,
+                () -> chunkedUploadService.initiateUpload(request));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+        assertEquals(ExceptionType.INVALID_INPUT, exception.getExceptionType());
+    }
+
+    @Test
+    @DisplayName("uploadChunk should report the received chunks as merged byte ranges")
+    void testUploadChunk_status() throws Exception {
+        // Arrange
+        chunkedUploadService.initiateUpload(createRequest());
+
+        // Act
+        uploadChunk(0);
+        ResponseEntity<ChunkedUploadStatusDto> response = uploadChunk(1);
+
+        // Assert
+        assertEquals(List.of("0-9"), response.getBody().getReceivedRanges());
+        assertEquals(List.of(2), response.getBody().getMissingChunks());
+    }
+
+    @Test
+    @DisplayName("uploadChunk should reject a chunk with a wrong length")
+    void testUploadChunk_wrongLength() throws Exception {
+        // Arrange
+        chunkedUploadService.initiateUpload(createRequest());
+
+        // Act & Assert
+        BaseException exception = assertThrows(BaseException.class,
+                () -> chunkedUploadService.uploadChunk(UPLOAD_ID, 0, new ByteArrayInputStream(new byte[2])));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+        assertEquals(ExceptionType.INVALID_INPUT, exception.getExceptionType());
+    }
+
+    @Test
+    @DisplayName("completeUpload should create the file from chunks received out of order")
+    void testCompleteUpload_outOfOrder() throws Exception {
+        // Arrange
+        chunkedUploadService.initiateUpload(createRequest());
+        uploadChunk(2);
+        uploadChunk(0);
+        uploadChunk(1);
+
+        when(uploadSessionAccessor.claimCompletion(eq(UPLOAD_ID), anyString())).thenReturn(true);
+        when(uploadSessionAccessor.deleteIfExists(UPLOAD_ID)).thenReturn(true);
+        ArgumentCaptor<FileEntity> entityCaptor = ArgumentCaptor.forClass(FileEntity.class);
+        when(fileEntityAccessor.insert(entityCaptor.capture())).thenAnswer(invocation -> invocation.getArgument(0));
+        FileEntityWithIdDto dto = new FileEntityWithIdDto();
+        when(fileEntityWithIdConverter.convert(any(FileEntity.class))).thenReturn(dto);
+
+        // Act
+        ResponseEntity<FileEntityWithIdDto> response = chunkedUploadService.completeUpload(UPLOAD_ID);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(dto, response.getBody());
+
+        FileEntity fileEntity = entityCaptor.getValue();
+        assertEquals(getExpectedHash(), fileEntity.getHash());
+        assertEquals(Long.valueOf(CONTENT.length), fileEntity.getSize());
+        assertArrayEquals(CONTENT, Files.readAllBytes(storePath.resolve(fileEntity.getId() + ".txt")));
+        assertFalse(Files.exists(getPartPath()));
+        verify(uploadSessionAccessor).deleteIfExists(UPLOAD_ID);
+        verify(fileEntityAccessor, never()).save(any(FileEntity.class));
+        verify(storageQuotaService, never()).releaseStorage(anyString(), anyLong());
+        verify(uploadFileService).sendFileSavedMessage(fileEntity);
+    }
+
+    @Test
+    @DisplayName("completeUpload should fail if the session has been completed or aborted concurrently")
+    void testCompleteUpload_concurrent() throws Exception {
+        // Arrange
+        chunkedUploadService.initiateUpload(createRequest());
+        uploadChunk(0);
+        uploadChunk(1);
+        uploadChunk(2);
+        when(uploadSessionAccessor.claimCompletion(eq(UPLOAD_ID), anyString())).thenAnswer(invocation -> {
+            session = null;
+            return false;
+        });
+
+        // Act & Assert
+        BaseException exception = assertThrows(BaseException.class,
+                () -> chunkedUploadService.completeUpload(UPLOAD_ID));
+        assertEquals(HttpStatus.NOT_FOUND, exception.getHttpStatus());
+        assertEquals(ExceptionType.UPLOAD_SESSION_NOT_FOUND, exception.getExceptionType());
+        assertTrue(Files.exists(getPartPath()));
+        verify(fileEntityAccessor, never()).insert(any(FileEntity.class));
+        verify(storageQuotaService, never()).releaseStorage(anyString(), anyLong());
+    }
+
+    @Test
+    @DisplayName("completeUpload should fail if the session is being completed by another request")
+    void testCompleteUpload_inProgress() throws Exception {
+        // Arrange
+        chunkedUploadService.initiateUpload(createRequest());
+        uploadChunk(0);
+        uploadChunk(1);
+        uploadChunk(2);
+        when(uploadSessionAccessor.claimCompletion(eq(UPLOAD_ID), anyString())).thenReturn(false);
+
+        // Act & Assert
+        BaseException exception = assertThrows(BaseException.class,
+                () -> chunkedUploadService.completeUpload(UPLOAD_ID));
+        assertEquals(HttpStatus.CONFLICT, exception.getHttpStatus());
+        assertEquals(ExceptionType.UPLOAD_COMPLETION_IN_PROGRESS, exception.getExceptionType());
+        assertTrue(Files.exists(getPartPath()));
+        verify(fileEntityAccessor, never()).insert(any(FileEntity.class));
+    }
+
+    @Test
+    @DisplayName("completeUpload should keep the part file and the storage if the entity cannot be inserted")
+    void testCompleteUpload_insertFailure() throws Exception {
+        // Arrange
+        chunkedUploadService.initiateUpload(createRequest());
+        uploadChunk(0);
+        uploadChunk(1);
+        uploadChunk(2);
+        when(uploadSessionAccessor.claimCompletion(eq(UPLOAD_ID), anyString())).thenReturn(true);
+        ArgumentCaptor<FileEntity> entityCaptor = ArgumentCaptor.forClass(FileEntity.class);
+        when(fileEntityAccessor.insert(entityCaptor.capture()))
+                .thenThrow(new DataIntegrityViolationException("failure"));
+
+        // Act & Assert
+        assertThrows(DataIntegrityViolationException.class, () -> chunkedUploadService.completeUpload(UPLOAD_ID));
+        String fileId = entityCaptor.getValue().getId();
+        assertFalse(Files.exists(storePath.resolve(fileId + ".txt")));
+        assertArrayEquals(CONTENT, Files.readAllBytes(getPartPath()));
+        verify(uploadSessionAccessor).releaseCompletion(UPLOAD_ID, fileId);
+        verify(uploadSessionAccessor, never()).deleteIfExists(anyString());
+        verify(storageQuotaService, never()).releaseStorage(anyString(), anyLong());
+        verify(uploadFileService, never()).sendFileSavedMessage(any(FileEntity.class));
+    }
+
+    @Test
+    @DisplayName("completeUpload should succeed when it is retried after a failed insert")
+    void testCompleteUpload_retry() throws Exception {
+        // Arrange
+        chunkedUploadService.initiateUpload(createRequest());
+        uploadChunk(0);
+        uploadChunk(1);
+        uploadChunk(2);
+        when(uploadSessionAccessor.claimCompletion(eq(UPLOAD_ID), anyString())).thenReturn(true);
+        when(uploadSessionAccessor.deleteIfExists(UPLOAD_ID)).thenReturn(true);
+        ArgumentCaptor<FileEntity> entityCaptor = ArgumentCaptor.forClass(FileEntity.class);
+        when(fileEntityAccessor.insert(entityCaptor.capture()))
+                .thenThrow(new DataIntegrityViolationException("failure"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        assertThrows(DataIntegrityViolationException.class, () -> chunkedUploadService.completeUpload(UPLOAD_ID));
+
+        // Act
+        ResponseEntity<FileEntityWithIdDto> response = chunkedUploadService.completeUpload(UPLOAD_ID);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        FileEntity fileEntity = entityCaptor.getValue();
+        assertEquals(getExpectedHash(), fileEntity.getHash());
+        assertArrayEquals(CONTENT, Files.readAllBytes(storePath.resolve(fileEntity.getId() + ".txt")));
+        assertFalse(Files.exists(getPartPath()));
+        verify(storageQuotaService, never()).releaseStorage(anyString(), anyLong());
+        verify(uploadFileService).sendFileSavedMessage(fileEntity);
+    }
+
+    @Test
+    @DisplayName("completeUpload should return the file inserted by an interrupted completion")
+    void testCompleteUpload_alreadyInserted() throws Exception {
+        // Arrange
+        chunkedUploadService.initiateUpload(createRequest());
+        session.setFileId("file123");
+        FileEntity fileEntity = new FileEntity();
+        fileEntity.setId("file123");
+        when(fileEntityAccessor.findById("file123")).thenReturn(Optional.of(fileEntity));
+        when(uploadSessionAccessor.deleteIfExists(UPLOAD_ID)).thenReturn(true);
+
+        // Act
+        ResponseEntity<FileEntityWithIdDto> response = chunkedUploadService.completeUpload(UPLOAD_ID);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertFalse(Files.exists(getPartPath()));
+        verify(uploadSessionAccessor, never()).claimCompletion(anyString(), anyString());
+        verify(storageQuotaService, never()).releaseStorage(anyString(), anyLong());
+        verify(uploadFileService).sendFileSavedMessage(fileEntity);
+    }
+
+    @Test
+    @DisplayName("completeUpload should hand the part file over to the blob store when deduplication is enabled")
+    void testCompleteUpload_deduplicationEnabled() throws Exception {
+        // Arrange
+        when(fileStoreProperties.isDeduplicationEnabled()).thenReturn(true);
+        chunkedUploadService.initiateUpload(createRequest());
+        uploadChunk(1);
+        uploadChunk(0);
+        uploadChunk(2);
+
+        when(uploadSessionAccessor.claimCompletion(eq(UPLOAD_ID), anyString())).thenReturn(true);
+        when(uploadSessionAccessor.deleteIfExists(UPLOAD_ID)).thenReturn(true);
+        ArgumentCaptor<FileEntity> entityCaptor = ArgumentCaptor.forClass(FileEntity.class);
+        when(fileEntityAccessor.insert(entityCaptor.capture())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ContentHasher contentHasher = HashAlgorithm.SHA256.newHasher();
+        contentHasher.update(CONTENT, 0, CONTENT.length);
+        String expectedContentDigest = contentHasher.toHash();
+
+        // Act
+        chunkedUploadService.completeUpload(UPLOAD_ID);
+
+        // Assert
+        String stagingPath = fileHelper.getStagingPath(entityCaptor.getValue().getId());
+        verify(blobStoreService).addBlob(stagingPath, expectedContentDigest, CONTENT.length);
+    }
+
+    @Test
+    @DisplayName("completeUpload should fail while chunks are missing")
+    void testCompleteUpload_incomplete() throws Exception {
+        // Arrange
+        chunkedUploadService.initiateUpload(createRequest());
+        uploadChunk(0);
+
+        // Act & Assert
+        BaseException exception = assertThrows(BaseException.class,
+                () -> chunkedUploadService.completeUpload(UPLOAD_ID));
+        assertEquals(HttpStatus.CONFLICT, exception.getHttpStatus());
+        assertEquals(ExceptionType.UPLOAD_INCOMPLETE, exception.getExceptionType());
+    }
+
+    @Test
+    @DisplayName("abortUpload should delete the part file and release the reserved storage")
+    void testAbortUpload() throws Exception {
+        // Arrange
+        chunkedUploadService.initiateUpload(createRequest());
+        uploadChunk(0);
+        when(uploadSessionAccessor.deleteIfUnchanged(session)).thenReturn(true);
+
+        // Act
+        ResponseEntity<Void> response = chunkedUploadService.abortUpload(UPLOAD_ID);
+
+        // Assert
+        assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
+        assertFalse(Files.exists(getPartPath()));
+        verify(storageQuotaService).releaseStorage("object123", CONTENT.length);
+    }
+
+    @Test
+    @DisplayName("abortUpload should not release the storage twice if the session was removed concurrently")
+    void testAbortUpload_concurrent() throws Exception {
+        // Arrange
+        chunkedUploadService.initiateUpload(createRequest());
+        when(uploadSessionAccessor.deleteIfUnchanged(session)).thenReturn(false);
+
+        // Act
+        chunkedUploadService.abortUpload(UPLOAD_ID);
+
+        // Assert
+        assertTrue(Files.exists(getPartPath()));
+        verify(storageQuotaService, never()).releaseStorage(anyString(), anyLong());
+    }
+
+    @Test
+    @DisplayName("abortUpload should fail while the upload is being completed")
+    void testAbortUpload_completing() throws Exception {
+        // Arrange
+        chunkedUploadService.initiateUpload(createRequest());
+        session.setFileId("file123");
+
+        // Act & Assert
+        BaseException exception = assertThrows(BaseException.class,
+                () -> chunkedUploadService.abortUpload(UPLOAD_ID));
+        assertEquals(HttpStatus.CONFLICT, exception.getHttpStatus());
+        assertEquals(ExceptionType.UPLOAD_COMPLETION_IN_PROGRESS, exception.getExceptionType());
+        assertTrue(Files.exists(getPartPath()));
+        verify(storageQuotaService, never()).releaseStorage(anyString(), anyLong());
+    }
+
+    @Test
+    @DisplayName("getStatus should fail for an unknown upload session")
+    void testGetStatus_notFound() {
+        // Arrange
+        when(uploadSessionAccessor.findById(anyString())).thenReturn(Optional.empty());
+
+        // Act & Assert
+        BaseException exception = assertThrows(BaseException.class,
+                () -> chunkedUploadService.getStatus("unknown"));
+        assertEquals(HttpStatus.NOT_FOUND, exception.getHttpStatus());
+        assertEquals(ExceptionType.UPLOAD_SESSION_NOT_FOUND, exception.getExceptionType());
+    }
+
+    private ResponseEntity<ChunkedUploadStatusDto> uploadChunk(int chunkNumber) throws Exception {
+        int from = (int) (chunkNumber * CHUNK_SIZE);
+        int to = (int) Math.min(from + CHUNK_SIZE, CONTENT.length);
+
+        return chunkedUploadService.uploadChunk(UPLOAD_ID, chunkNumber,
+                new ByteArrayInputStream(CONTENT, from, to - from));
+    }
+
+    private ChunkedUploadRequestDto createRequest() {
+        ChunkedUploadRequestDto request = new ChunkedUploadRequestDto();
+        request.setName("testfile");
+        request.setExtension("txt");
+        request.setObjectId("object123");
+        request.setTotalSize((long) CONTENT.length);
+        request.setChunkSize(CHUNK_SIZE);
+        return request;
+    }
+
+    private Path getPartPath() {
+        return storePath.resolve(UPLOAD_ID + ".part");
+    }
+
+    private String getExpectedHash() {
+        ContentHasher hasher = HashAlgorithm.MD5.newHasher();
+        hasher.update(CONTENT, 0, CONTENT.length);
+        return hasher.toHash();
+    }
+}
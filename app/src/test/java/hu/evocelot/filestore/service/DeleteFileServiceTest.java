@@ -4,11 +4,17 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.junit.jupiter.api.AfterEach;
@@ -22,10 +28,14 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 import hu.evocelot.filestore.accessor.FileEntityAccessor;
+import hu.evocelot.filestore.dto.FileDeleteResultDto;
+import hu.evocelot.filestore.dto.FileIdsRequestDto;
 import hu.evocelot.filestore.exception.BaseException;
 import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.helper.BatchHelper;
 import hu.evocelot.filestore.helper.FileHelper;
 import hu.evocelot.filestore.model.FileEntity;
+import hu.evocelot.filestore.properties.FileStoreProperties;
 
 class DeleteFileServiceTest {
 
@@ -35,6 +45,18 @@ class DeleteFileServiceTest {
     @Mock
     private FileHelper fileHelper;
 
+    @Mock
+    private BlobStoreService blobStoreService;
+
+    @Mock
+    private StorageQuotaService storageQuotaService;
+
+    @Mock
+    private BatchHelper batchHelper;
+
+    @Mock
+    private FileStoreProperties fileStoreProperties;
+
     @InjectMocks
     private DeleteFileService deleteFileService;
 
@@ -59,8 +81,11 @@ class DeleteFileServiceTest {
         fileEntity.setId(fileId);
         fileEntity.setSystemId("system1");
         fileEntity.setExtension("txt");
+        fileEntity.setObjectId("object1");
+        fileEntity.setSize(12L);
 
         when(fileEntityAccessor.findById(fileId)).thenReturn(Optional.of(fileEntity));
+        when(fileEntityAccessor.deleteIfExists(fileId)).thenReturn(true);
 
         // Act
         ResponseEntity<Void> response = deleteFileService.deleteFile(fileId);
@@ -69,7 +94,75 @@ class DeleteFileServiceTest {
         assertNotNull(response);
         assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
         verify(fileHelper).deleteFile(fileEntity.getSystemId(), fileEntity.getId(), fileEntity.getExtension());
-        verify(fileEntityAccessor).delete(fileEntity);
+        verify(fileEntityAccessor).deleteIfExists(fileId);
+        verify(storageQuotaService).releaseStorage("object1", 12L);
+        verifyNoInteractions(blobStoreService);
+    }
+
+    @Test
+    @DisplayName("deleteFile should release the shared blob of a deduplicated file")
+    void testDeleteFile_deduplicated() throws BaseException {
+        // Arrange
+        String fileId = "test-file-id";
+        FileEntity fileEntity = new FileEntity();
+        fileEntity.setId(fileId);
+        fileEntity.setExtension("txt");
+        fileEntity.setContentDigest("0123456789ABCDEF");
+
+        when(fileEntityAccessor.findById(fileId)).thenReturn(Optional.of(fileEntity));
+        when(fileEntityAccessor.deleteIfExists(fileId)).thenReturn(true);
+
+        // Act
+        ResponseEntity<Void> response = deleteFileService.deleteFile(fileId);
+
+        // Assert
+        assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
+        verify(fileEntityAccessor).deleteIfExists(fileId);
+        verify(blobStoreService).releaseBlob("0123456789ABCDEF");
+        verifyNoInteractions(fileHelper);
+    }
+
+    @Test
+    @DisplayName("deleteFile should not release a shared blob twice when the file is deleted concurrently")
+    void testDeleteFile_deduplicatedDeletedConcurrently() throws BaseException {
+        // Arrange
+        String fileId = "test-file-id";
+        FileEntity fileEntity = new FileEntity();
+        fileEntity.setId(fileId);
+        fileEntity.setExtension("txt");
+        fileEntity.setContentDigest("0123456789ABCDEF");
+
+        when(fileEntityAccessor.findById(fileId)).thenReturn(Optional.of(fileEntity));
+        when(fileEntityAccessor.deleteIfExists(fileId)).thenReturn(true, false);
+
+        // Act
+        deleteFileService.deleteFile(fileId);
+        BaseException ex = assertThrows(BaseException.class, () -> deleteFileService.deleteFile(fileId));
+
+        // Assert
+        assertEquals(HttpStatus.NOT_FOUND, ex.getHttpStatus());
+        verify(blobStoreService).releaseBlob("0123456789ABCDEF");
+        verifyNoInteractions(fileHelper);
+    }
+
+    @Test
+    @DisplayName("deleteFile should not release the size twice when the file is deleted concurrently")
+    void testDeleteFile_deletedConcurrently() throws BaseException {
+        // Arrange
+        String fileId = "test-file-id";
+        FileEntity fileEntity = createFileEntity(fileId, "object1", 12L);
+
+        when(fileEntityAccessor.findById(fileId)).thenReturn(Optional.of(fileEntity));
+        when(fileEntityAccessor.deleteIfExists(fileId)).thenReturn(true, false);
+
+        // Act
+        deleteFileService.deleteFile(fileId);
+        BaseException ex = assertThrows(BaseException.class, () -> deleteFileService.deleteFile(fileId));
+
+        // Assert
+        assertEquals(ExceptionType.FILE_ENTITY_NOT_FOUND, ex.getExceptionType());
+        verify(storageQuotaService).releaseStorage("object1", 12L);
+        verify(fileHelper).deleteFile(fileEntity.getSystemId(), fileId, fileEntity.getExtension());
     }
 
     @Test
@@ -87,6 +180,68 @@ class DeleteFileServiceTest {
 
         verify(fileEntityAccessor).findById(fileId);
         verifyNoMoreInteractions(fileEntityAccessor);
-        verifyNoInteractions(fileHelper);
+        verifyNoInteractions(fileHelper, storageQuotaService);
+    }
+
+    @Test
+    @DisplayName("deleteFiles should delete the existing files in one batch and report every id")
+    void testDeleteFiles() throws BaseException {
+        // Arrange
+        FileIdsRequestDto request = new FileIdsRequestDto();
+        FileEntity file1 = createFileEntity("file1", "object1", 10L);
+        FileEntity file2 = createFileEntity("file2", "object1", 20L);
+        file2.setContentDigest("0123456789ABCDEF");
+        FileEntity file3 = createFileEntity("file3", "object2", 30L);
+        List<String> fileIds = List.of("file1", "file2", "file3", "missing");
+
+        when(batchHelper.getFileIds(request)).thenReturn(fileIds);
+        when(fileEntityAccessor.findAllById(fileIds)).thenReturn(List.of(file1, file2, file3));
+        // The third file is deleted concurrently by another request.
+        when(fileEntityAccessor.deleteAllById(anyList()))
+                .thenReturn(List.of("file1", "file2"));
+
+        // Act
+        ResponseEntity<List<FileDeleteResultDto>> response = deleteFileService.deleteFiles(request);
+
+        // Assert
+        List<FileDeleteResultDto> results = response.getBody();
+        assertEquals(List.of("file1", "file2", "file3", "missing"),
+                results.stream().map(FileDeleteResultDto::getFileId).toList());
+        assertEquals(List.of(HttpStatus.NO_CONTENT, HttpStatus.NO_CONTENT, HttpStatus.NOT_FOUND, HttpStatus.NOT_FOUND),
+                results.stream().map(FileDeleteResultDto::getHttpStatus).toList());
+        verify(fileHelper).deleteFile("system1", "file1", "txt");
+        verify(fileHelper, never()).deleteFile("system1", "file3", "txt");
+        verify(blobStoreService).releaseBlob("0123456789ABCDEF");
+        verify(storageQuotaService).releaseStorage("object1", 30L);
+        verify(storageQuotaService, never()).releaseStorage(eq("object2"),
+                anyLong());
+    }
+
+    @Test
+    @DisplayName("deleteFiles should not delete anything if none of the files exist")
+    void testDeleteFiles_noneFound() throws BaseException {
+        // Arrange
+        FileIdsRequestDto request = new FileIdsRequestDto();
+        when(batchHelper.getFileIds(request)).thenReturn(List.of("missing"));
+        when(fileEntityAccessor.findAllById(List.of("missing"))).thenReturn(List.of());
+
+        // Act
+        ResponseEntity<List<FileDeleteResultDto>> response = deleteFileService.deleteFiles(request);
+
+        // Assert
+        assertEquals(ExceptionType.FILE_ENTITY_NOT_FOUND, response.getBody().get(0).getExceptionType());
+        verify(fileEntityAccessor, never()).deleteAllById(anyList());
+        verify(fileHelper, never()).deleteFile(anyString(), anyString(), anyString());
+        verifyNoInteractions(storageQuotaService);
+    }
+
+    private FileEntity createFileEntity(String fileId, String objectId, long size) {
+        FileEntity fileEntity = new FileEntity();
+        fileEntity.setId(fileId);
+        fileEntity.setSystemId("system1");
+        fileEntity.setExtension("txt");
+        fileEntity.setObjectId(objectId);
+        fileEntity.setSize(size);
+        return fileEntity;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,90 @@
+package hu.evocelot.filestore.service;
+
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.QueryTimeoutException;
+
+import hu.evocelot.filestore.accessor.FileEntityAccessor;
+
+class DownloadCountServiceTest {
+
+    @Mock
+    private FileEntityAccessor fileEntityAccessor;
+
+    private DownloadCountService downloadCountService;
+    private AutoCloseable closeable;
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        downloadCountService = new DownloadCountService(fileEntityAccessor);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("flush should write the downloads of every file in one batch")
+    void testFlush() {
+        // Arrange
+        downloadCountService.countDownload("file1");
+        downloadCountService.countDownload("file1");
+        downloadCountService.countDownload("file2");
+
+        // Act
+        downloadCountService.flush();
+        downloadCountService.flush();
+
+        // Assert
+        verify(fileEntityAccessor).incrementDownloadCounts(Map.of("file1", 2L, "file2", 1L));
+        verify(fileEntityAccessor, times(1)).incrementDownloadCounts(anyMap());
+    }
+
+    @Test
+    @DisplayName("flush should keep the downloads if they cannot be written")
+    void testFlush_failure() {
+        // Arrange
+        downloadCountService.countDownload("file1");
+        doThrow(new QueryTimeoutException("timeout")).when(fileEntityAccessor)
+                .incrementDownloadCounts(Map.of("file1", 1L));
+        downloadCountService.flush();
+        downloadCountService.countDownload("file1");
+
+        // Act
+        downloadCountService.flush();
+
+        // Assert
+        verify(fileEntityAccessor).incrementDownloadCounts(Map.of("file1", 2L));
+    }
+
+    @Test
+    @DisplayName("shutdown should write the downloads counted since the last flush")
+    void testShutdown() {
+        // Arrange
+        downloadCountService.countDownload("file1");
+        downloadCountService.flush();
+        downloadCountService.flush();
+        downloadCountService.countDownload("file1");
+
+        // Act
+        downloadCountService.shutdown();
+
+        // Assert
+        verify(fileEntityAccessor, times(2)).incrementDownloadCounts(Map.of("file1", 1L));
+        verify(fileEntityAccessor, never()).incrementDownloadCounts(Map.of("file1", 2L));
+    }
+}
@@ -2,17 +2,27 @@ package hu.evocelot.filestore.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.util.Optional;
 
 import org.junit.jupiter.api.AfterEach;
@@ -25,13 +35,24 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import hu.evocelot.filestore.accessor.FileEntityAccessor;
+import hu.evocelot.filestore.compression.CompressionCodec;
+import hu.evocelot.filestore.dto.DownloadUrlDto;
+import hu.evocelot.filestore.dto.PasswordDto;
 import hu.evocelot.filestore.exception.BaseException;
 import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.hashing.HashAlgorithm;
+import hu.evocelot.filestore.helper.DownloadUrlSigner;
 import hu.evocelot.filestore.helper.FileHelper;
+import hu.evocelot.filestore.helper.PasswordHasher;
+import hu.evocelot.filestore.helper.VerificationCache;
 import hu.evocelot.filestore.model.FileEntity;
+import hu.evocelot.filestore.pojo.DownloadableFile;
 
 class DownloadFileServiceTest {
 
@@ -41,6 +62,18 @@ class DownloadFileServiceTest {
     @Mock
     private FileHelper fileHelper;
 
+    @Mock
+    private VerificationCache verificationCache;
+
+    @Mock
+    private DownloadCountService downloadCountService;
+
+    @Mock
+    private DownloadUrlSigner downloadUrlSigner;
+
+    @Mock
+    private PasswordHasher passwordHasher;
+
     @InjectMocks
     private DownloadFileService downloadFileService;
 
@@ -48,14 +81,23 @@ class DownloadFileServiceTest {
 
     private File tempFile;
 
+    private MockHttpServletRequest request;
+
     @BeforeEach
     void setUp() throws Exception {
         closeable = MockitoAnnotations.openMocks(this);
+        request = new MockHttpServletRequest();
 
         // Create a temporary file for testing
         tempFile = File.createTempFile("testfile", ".txt");
         Files.write(tempFile.toPath(), "Test content".getBytes());
         tempFile.deleteOnExit();
+
+        // The storage is the local disk.
+        when(fileHelper.getFileSize(anyString())).thenAnswer(invocation -> {
+            File file = new File(invocation.<String>getArgument(0));
+            return file.exists() ? file.length() : -1L;
+        });
     }
 
     @AfterEach
@@ -78,19 +120,17 @@ class DownloadFileServiceTest {
         fileEntity.setName("testfile");
 
         when(fileEntityAccessor.findById(fileId)).thenReturn(Optional.of(fileEntity));
-        when(fileHelper.getDirectoryPath(fileEntity.getSystemId())).thenReturn(tempFile.getParent());
-        when(fileHelper.getFullPath(tempFile.getParent(), fileId, fileEntity.getExtension()))
-                .thenReturn(tempFile.getAbsolutePath());
+        when(fileHelper.getFullPath(fileEntity)).thenReturn(tempFile.getAbsolutePath());
 
         doAnswer(invocation -> {
             String path = invocation.getArgument(0);
-            OutputStream out = invocation.getArgument(1);
+            OutputStream out = invocation.getArgument(2);
             out.write(Files.readAllBytes(Path.of(path)));
             return null;
-        }).when(fileHelper).getFile(anyString(), any(OutputStream.class));
+        }).when(fileHelper).getFile(anyString(), any(CompressionCodec.class), any(OutputStream.class));
 
         // Act
-        ResponseEntity<StreamingResponseBody> response = downloadFileService.downloadFile(fileId, false);
+        ResponseEntity<StreamingResponseBody> response = downloadFileService.downloadFile(fileId, false, null, false, request);
 
         // Assert
         assertNotNull(response);
@@ -103,6 +143,8 @@ class DownloadFileServiceTest {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         response.getBody().writeTo(outputStream);
         assertEquals("Test content", outputStream.toString());
+        verify(downloadCountService).countDownload(fileId);
+        verify(fileEntityAccessor, never()).save(any(FileEntity.class));
     }
 
     @Test
@@ -118,21 +160,205 @@ class DownloadFileServiceTest {
         fileEntity.setHash("D41D8CD98F00B204E9800998ECF8427E"); // fake hash for test
 
         when(fileEntityAccessor.findById(fileId)).thenReturn(Optional.of(fileEntity));
-        when(fileHelper.getDirectoryPath(fileEntity.getSystemId())).thenReturn(tempFile.getParent());
-        when(fileHelper.getFullPath(tempFile.getParent(), fileId, fileEntity.getExtension()))
-                .thenReturn(tempFile.getAbsolutePath());
-        when(fileHelper.getFileHash(tempFile.getAbsolutePath())).thenReturn(fileEntity.getHash());
+        when(fileHelper.getFullPath(fileEntity)).thenReturn(tempFile.getAbsolutePath());
+        when(fileHelper.getLastModified(tempFile.getAbsolutePath())).thenReturn(1000L);
+        when(fileHelper.sendFile(eq(request), anyString(), anyLong(), anyLong())).thenReturn(true);
+
+        doAnswer(invocation -> {
+            String path = invocation.getArgument(0);
+            OutputStream out = invocation.getArgument(4);
+            out.write(Files.readAllBytes(Path.of(path)));
+            return null;
+        }).when(fileHelper).getVerifiedFile(anyString(), any(CompressionCodec.class), any(HashAlgorithm.class),
+                anyString(), any(OutputStream.class));
 
         // Act
-        ResponseEntity<StreamingResponseBody> response = downloadFileService.downloadFile(fileId, true);
+        ResponseEntity<StreamingResponseBody> response = downloadFileService.downloadFile(fileId, true, null, false, request);
 
         // Assert
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
 
-        // Streaming check
+        // Streaming check: the file is hashed while it is streamed instead of being
+        // read twice or sent with zero-copy.
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+        assertEquals("Test content", outputStream.toString());
+        verify(fileHelper).getVerifiedFile(eq(tempFile.getAbsolutePath()), eq(CompressionCodec.NONE),
+                eq(HashAlgorithm.MD5), eq(fileEntity.getHash()), any(OutputStream.class));
+        verify(fileHelper, never()).getFileHash(anyString(), any(CompressionCodec.class),
+                any(HashAlgorithm.class));
+        verify(verificationCache).markVerified(fileId, 1000L, tempFile.length());
+    }
+
+    @Test
+    @DisplayName("downloadFile should not hash a file verified within the window again")
+    void testDownloadFile_verifiedRecently() throws Exception {
+        // Arrange
+        String fileId = "fileId123";
+        FileEntity fileEntity = createFileEntity(fileId);
+        fileEntity.setHash("D41D8CD98F00B204E9800998ECF8427E");
+        when(fileHelper.getLastModified(tempFile.getAbsolutePath())).thenReturn(1000L);
+        when(verificationCache.isVerified(fileId, 1000L, tempFile.length())).thenReturn(true);
+        when(fileHelper.sendFile(eq(request), eq(tempFile.getAbsolutePath()), eq(0L), anyLong())).thenReturn(true);
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = downloadFileService.downloadFile(fileId, true, null, false,
+                request);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNull(response.getBody());
+        verify(fileHelper, never()).getFileHash(anyString(), any(CompressionCodec.class),
+                any(HashAlgorithm.class));
+        verify(fileHelper, never()).getVerifiedFile(anyString(), any(CompressionCodec.class),
+                any(HashAlgorithm.class), anyString(), any(OutputStream.class));
+    }
+
+    @Test
+    @DisplayName("downloadFile should leave the body to the container when zero-copy is available")
+    void testDownloadFile_success_zeroCopy() throws Exception {
+        // Arrange
+        String fileId = "fileId123";
+        FileEntity fileEntity = new FileEntity();
+        fileEntity.setId(fileId);
+        fileEntity.setSystemId("systemId");
+        fileEntity.setExtension("txt");
+        fileEntity.setName("testfile");
+
+        when(fileEntityAccessor.findById(fileId)).thenReturn(Optional.of(fileEntity));
+        when(fileHelper.getFullPath(fileEntity)).thenReturn(tempFile.getAbsolutePath());
+        when(fileHelper.sendFile(eq(request), eq(tempFile.getAbsolutePath()), eq(0L), anyLong())).thenReturn(true);
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = downloadFileService.downloadFile(fileId, false, null, false,
+                request);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(tempFile.length(), response.getHeaders().getContentLength());
+        assertNull(response.getBody());
+        verify(fileHelper, never()).getFile(anyString(), any(CompressionCodec.class), any(OutputStream.class));
+    }
+
+    @Test
+    @DisplayName("downloadFile should answer 304 when the ETag matches")
+    void testDownloadFile_notModified() throws Exception {
+        // Arrange
+        String fileId = "fileId123";
+        FileEntity fileEntity = createFileEntity(fileId);
+        fileEntity.setHash("D41D8CD98F00B204E9800998ECF8427E");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"D41D8CD98F00B204E9800998ECF8427E\"");
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = downloadFileService.downloadFile(fileId, true, null, false,
+                request);
+
+        // Assert
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("\"D41D8CD98F00B204E9800998ECF8427E\"", response.getHeaders().getETag());
+        assertNull(response.getBody());
+        verify(fileHelper, never()).getFileHash(anyString(), any(CompressionCodec.class),
+                any(HashAlgorithm.class));
+        verify(downloadCountService, never()).countDownload(anyString());
+    }
+
+    @Test
+    @DisplayName("downloadFile should serve a single byte range with 206")
+    void testDownloadFile_singleRange() throws Exception {
+        // Arrange
+        String fileId = "fileId123";
+        createFileEntity(fileId);
+        request.addHeader(HttpHeaders.RANGE, "bytes=5-11");
+
+        doAnswer(invocation -> {
+            String path = invocation.getArgument(0);
+            long position = invocation.getArgument(2);
+            long count = invocation.getArgument(3);
+            OutputStream out = invocation.getArgument(4);
+            out.write(Files.readAllBytes(Path.of(path)), (int) position, (int) count);
+            return null;
+        }).when(fileHelper).getFile(anyString(), any(CompressionCodec.class), anyLong(), anyLong(), any(OutputStream.class));
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = downloadFileService.downloadFile(fileId, false, null, false,
+                request);
+
+        // Assert
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 5-11/12", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(7, response.getHeaders().getContentLength());
+
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         response.getBody().writeTo(outputStream);
+        assertEquals("content", outputStream.toString());
+    }
+
+    @Test
+    @DisplayName("downloadFile should serve multiple byte ranges as multipart/byteranges")
+    void testDownloadFile_multiRange() throws Exception {
+        // Arrange
+        String fileId = "fileId123";
+        createFileEntity(fileId);
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-3,5-11");
+
+        doAnswer(invocation -> {
+            String path = invocation.getArgument(0);
+            long position = invocation.getArgument(2);
+            long count = invocation.getArgument(3);
+            OutputStream out = invocation.getArgument(4);
+            out.write(Files.readAllBytes(Path.of(path)), (int) position, (int) count);
+            return null;
+        }).when(fileHelper).getFile(anyString(), any(CompressionCodec.class), anyLong(), anyLong(), any(OutputStream.class));
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = downloadFileService.downloadFile(fileId, false, null, false,
+                request);
+
+        // Assert
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("multipart", response.getHeaders().getContentType().getType());
+        assertEquals("byteranges", response.getHeaders().getContentType().getSubtype());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+        String body = outputStream.toString();
+        assertEquals(response.getHeaders().getContentLength(), outputStream.size());
+        assertTrue(body.contains("Content-Range: bytes 0-3/12\r\n\r\nTest"));
+        assertTrue(body.contains("Content-Range: bytes 5-11/12\r\n\r\ncontent"));
+    }
+
+    @Test
+    @DisplayName("downloadFile should answer 416 for an unsatisfiable range")
+    void testDownloadFile_rangeNotSatisfiable() throws Exception {
+        // Arrange
+        String fileId = "fileId123";
+        createFileEntity(fileId);
+        request.addHeader(HttpHeaders.RANGE, "bytes=100-200");
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = downloadFileService.downloadFile(fileId, false, null, false,
+                request);
+
+        // Assert
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        assertEquals("bytes */12", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    @DisplayName("downloadFile should answer 416 if multiple ranges request at least the whole file")
+    void testDownloadFile_rangesExceedFile() throws Exception {
+        // Arrange
+        String fileId = "fileId123";
+        createFileEntity(fileId);
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-7,4-11");
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = downloadFileService.downloadFile(fileId, false, null, false,
+                request);
+
+        // Assert
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
     }
 
     @Test
@@ -143,7 +369,7 @@ class DownloadFileServiceTest {
         when(fileEntityAccessor.findById(fileId)).thenReturn(Optional.empty());
 
         // Act + Assert
-        BaseException ex = assertThrows(BaseException.class, () -> downloadFileService.downloadFile(fileId, false));
+        BaseException ex = assertThrows(BaseException.class, () -> downloadFileService.downloadFile(fileId, false, null, false, request));
         assertEquals(HttpStatus.NOT_FOUND, ex.getHttpStatus());
         assertEquals(ExceptionType.FILE_ENTITY_NOT_FOUND, ex.getExceptionType());
     }
@@ -162,18 +388,16 @@ class DownloadFileServiceTest {
         File nonExistentFile = new File("nonexistentfile.txt");
 
         when(fileEntityAccessor.findById(fileId)).thenReturn(Optional.of(fileEntity));
-        when(fileHelper.getDirectoryPath(fileEntity.getSystemId())).thenReturn(nonExistentFile.getParent());
-        when(fileHelper.getFullPath(nonExistentFile.getParent(), fileId, fileEntity.getExtension()))
-                .thenReturn(nonExistentFile.getAbsolutePath());
+        when(fileHelper.getFullPath(fileEntity)).thenReturn(nonExistentFile.getAbsolutePath());
 
         // Act + Assert
-        BaseException ex = assertThrows(BaseException.class, () -> downloadFileService.downloadFile(fileId, false));
+        BaseException ex = assertThrows(BaseException.class, () -> downloadFileService.downloadFile(fileId, false, null, false, request));
         assertEquals(HttpStatus.NOT_FOUND, ex.getHttpStatus());
         assertEquals(ExceptionType.FILE_ENTITY_NOT_FOUND, ex.getExceptionType());
     }
 
     @Test
-    @DisplayName("downloadFile should throw BaseException if hash mismatch detected")
+    @DisplayName("downloadFile should abort the streamed response if a hash mismatch is detected")
     void testDownloadFile_hashMismatch() throws Exception {
         // Arrange
         String fileId = "fileId123";
@@ -185,14 +409,189 @@ class DownloadFileServiceTest {
         fileEntity.setHash("EXPECTED_HASH");
 
         when(fileEntityAccessor.findById(fileId)).thenReturn(Optional.of(fileEntity));
-        when(fileHelper.getDirectoryPath(fileEntity.getSystemId())).thenReturn(tempFile.getParent());
-        when(fileHelper.getFullPath(tempFile.getParent(), fileId, fileEntity.getExtension()))
-                .thenReturn(tempFile.getAbsolutePath());
-        when(fileHelper.getFileHash(tempFile.getAbsolutePath())).thenReturn("ACTUAL_WRONG_HASH");
+        when(fileHelper.getFullPath(fileEntity)).thenReturn(tempFile.getAbsolutePath());
+        doThrow(new BaseException(HttpStatus.CONFLICT, ExceptionType.CORRUPTED_FILE, "Corrupted file!"))
+                .when(fileHelper).getVerifiedFile(anyString(), any(CompressionCodec.class), any(HashAlgorithm.class),
+                        anyString(), any(OutputStream.class));
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = downloadFileService.downloadFile(fileId, true, null, false,
+                request);
+
+        // Assert
+        IOException ex = assertThrows(IOException.class,
+                () -> response.getBody().writeTo(new ByteArrayOutputStream()));
+        BaseException cause = (BaseException) ex.getCause();
+        assertEquals(HttpStatus.CONFLICT, cause.getHttpStatus());
+        assertEquals(ExceptionType.CORRUPTED_FILE, cause.getExceptionType());
+        verify(verificationCache, never()).markVerified(anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("downloadFile should verify the CRC32C checksum of a range request before sending it")
+    void testDownloadFile_checksumMismatch() throws Exception {
+        // Arrange
+        String fileId = "fileId123";
+        FileEntity fileEntity = new FileEntity();
+        fileEntity.setId(fileId);
+        fileEntity.setSystemId("systemId");
+        fileEntity.setExtension("txt");
+        fileEntity.setName("testfile");
+        fileEntity.setHash("EXPECTED_HASH");
+        fileEntity.setHashAlgorithm(HashAlgorithm.SHA256);
+        fileEntity.setChecksum("E3069283");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-3");
+
+        when(fileEntityAccessor.findById(fileId)).thenReturn(Optional.of(fileEntity));
+        when(fileHelper.getFullPath(fileEntity)).thenReturn(tempFile.getAbsolutePath());
+        when(fileHelper.getFileHash(tempFile.getAbsolutePath(), CompressionCodec.NONE, HashAlgorithm.CRC32C))
+                .thenReturn("00000000");
 
         // Act + Assert
-        BaseException ex = assertThrows(BaseException.class, () -> downloadFileService.downloadFile(fileId, true));
-        assertEquals(HttpStatus.CONFLICT, ex.getHttpStatus());
+        BaseException ex = assertThrows(BaseException.class, () -> downloadFileService.downloadFile(fileId, true, null, false, request));
         assertEquals(ExceptionType.CORRUPTED_FILE, ex.getExceptionType());
+        verify(fileHelper, never()).getFileHash(anyString(), any(CompressionCodec.class),
+                eq(HashAlgorithm.SHA256));
+    }
+
+    @Test
+    @DisplayName("downloadFile should send a zstd compressed file as it is stored if the client accepts zstd")
+    void testDownloadFile_compressedEncoded() throws Exception {
+        // Arrange
+        String fileId = "fileId123";
+        FileEntity fileEntity = createFileEntity(fileId);
+        fileEntity.setHash("HASH");
+        fileEntity.setSize(100L);
+        fileEntity.setCompression(CompressionCodec.ZSTD);
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, zstd");
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = downloadFileService.downloadFile(fileId, false, null, false, request);
+        response.getBody().writeTo(new ByteArrayOutputStream());
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("zstd", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("\"HASH-zstd\"", response.getHeaders().getETag());
+        assertEquals(tempFile.length(), response.getHeaders().getContentLength());
+        verify(fileHelper).getFile(anyString(), eq(CompressionCodec.NONE), any(OutputStream.class));
+    }
+
+    @Test
+    @DisplayName("downloadFile should decompress a compressed file if the client does not accept its encoding")
+    void testDownloadFile_compressedDecoded() throws Exception {
+        // Arrange
+        String fileId = "fileId123";
+        FileEntity fileEntity = createFileEntity(fileId);
+        fileEntity.setSize(100L);
+        fileEntity.setCompression(CompressionCodec.ZSTD);
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, zstd;q=0");
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = downloadFileService.downloadFile(fileId, false, null, false, request);
+        response.getBody().writeTo(new ByteArrayOutputStream());
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeaders().getFirst(HttpHeaders.VARY));
+        assertEquals(100L, response.getHeaders().getContentLength());
+        verify(fileHelper).getFile(anyString(), eq(CompressionCodec.ZSTD), any(OutputStream.class));
+    }
+
+    @Test
+    @DisplayName("createDownloadUrl should sign the stored file after checking its password")
+    void testCreateDownloadUrl() throws Exception {
+        // Arrange
+        String fileId = "fileId123";
+        FileEntity fileEntity = createFileEntity(fileId);
+        fileEntity.setPasswordHash("hash");
+        PasswordDto passwordDto = new PasswordDto();
+        passwordDto.setPassword("secret");
+        when(passwordHasher.matches(fileId, "secret", "hash")).thenReturn(true);
+        Instant expiresAt = Instant.ofEpochSecond(2000000000L);
+        when(downloadUrlSigner.getExpiry()).thenReturn(expiresAt);
+        when(downloadUrlSigner.sign(any(DownloadableFile.class), eq(expiresAt))).thenReturn("signed");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        // Act
+        ResponseEntity<DownloadUrlDto> response;
+        try {
+            response = downloadFileService.createDownloadUrl(fileId, passwordDto);
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+
+        // Assert
+        assertEquals("http://localhost/file/download/signed?token=signed", response.getBody().getUrl());
+        assertEquals(expiresAt, response.getBody().getExpiresAt().toInstant());
+        verify(downloadUrlSigner).sign(new DownloadableFile(fileId, tempFile.getAbsolutePath(),
+                CompressionCodec.NONE, null, null, 0L, "testfile.txt"), expiresAt);
+    }
+
+    @Test
+    @DisplayName("createDownloadUrl should not sign a protected file without its password")
+    void testCreateDownloadUrl_passwordMissing() {
+        // Arrange
+        String fileId = "fileId123";
+        FileEntity fileEntity = createFileEntity(fileId);
+        fileEntity.setPasswordHash("hash");
+
+        // Act + Assert
+        assertThrows(RuntimeException.class, () -> downloadFileService.createDownloadUrl(fileId, null));
+        verifyNoInteractions(downloadUrlSigner);
+    }
+
+    @Test
+    @DisplayName("downloadSignedFile should serve the signed file without reading the database")
+    void testDownloadSignedFile() throws Exception {
+        // Arrange
+        DownloadableFile downloadableFile = new DownloadableFile("fileId123", tempFile.getAbsolutePath(),
+                CompressionCodec.NONE, tempFile.length(), "D41D8CD98F00B204E9800998ECF8427E", 1000000L,
+                "testfile.txt");
+        when(downloadUrlSigner.verify("token")).thenReturn(downloadableFile);
+        when(fileHelper.sendFile(eq(request), eq(tempFile.getAbsolutePath()), eq(0L), anyLong())).thenReturn(true);
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = downloadFileService.downloadSignedFile("token", request);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"D41D8CD98F00B204E9800998ECF8427E\"", response.getHeaders().getETag());
+        assertEquals(1000000L, response.getHeaders().getLastModified());
+        assertEquals("attachment; filename=\"testfile.txt\"",
+                response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION));
+        assertEquals(tempFile.length(), response.getHeaders().getContentLength());
+        verify(downloadCountService).countDownload("fileId123");
+        verifyNoInteractions(fileEntityAccessor);
+    }
+
+    @Test
+    @DisplayName("downloadSignedFile should reject an invalid token")
+    void testDownloadSignedFile_invalidToken() throws Exception {
+        // Arrange
+        when(downloadUrlSigner.verify("token")).thenThrow(new BaseException(HttpStatus.FORBIDDEN,
+                ExceptionType.INVALID_DOWNLOAD_URL, "Invalid download URL."));
+
+        // Act
+        BaseException exception = assertThrows(BaseException.class,
+                () -> downloadFileService.downloadSignedFile("token", request));
+
+        // Assert
+        assertEquals(HttpStatus.FORBIDDEN, exception.getHttpStatus());
+        verifyNoInteractions(fileEntityAccessor, fileHelper);
+    }
+
+    private FileEntity createFileEntity(String fileId) {
+        FileEntity fileEntity = new FileEntity();
+        fileEntity.setId(fileId);
+        fileEntity.setSystemId("systemId");
+        fileEntity.setExtension("txt");
+        fileEntity.setName("testfile");
+
+        when(fileEntityAccessor.findById(fileId)).thenReturn(Optional.of(fileEntity));
+        when(fileHelper.getFullPath(fileEntity)).thenReturn(tempFile.getAbsolutePath());
+
+        return fileEntity;
     }
-}
\ No newline at end of file
+}
@@ -8,6 +8,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.junit.jupiter.api.AfterEach;
@@ -22,9 +23,12 @@ import org.springframework.http.ResponseEntity;
 
 import hu.evocelot.filestore.accessor.FileEntityAccessor;
 import hu.evocelot.filestore.converter.FileEntityWithIdConverter;
+import hu.evocelot.filestore.dto.FileDetailsBatchDto;
 import hu.evocelot.filestore.dto.FileEntityWithIdDto;
+import hu.evocelot.filestore.dto.FileIdsRequestDto;
 import hu.evocelot.filestore.exception.BaseException;
 import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.helper.BatchHelper;
 import hu.evocelot.filestore.model.FileEntity;
 
 class GetFileDetailsServiceTest {
@@ -35,6 +39,9 @@ class GetFileDetailsServiceTest {
     @Mock
     private FileEntityWithIdConverter fileEntityWithIdConverter;
 
+    @Mock
+    private BatchHelper batchHelper;
+
     @InjectMocks
     private GetFileDetailsService getFileDetailsService;
 
@@ -89,4 +96,32 @@ class GetFileDetailsServiceTest {
         verify(fileEntityAccessor).findById(fileId);
         verifyNoInteractions(fileEntityWithIdConverter);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("getFileDetails should return the files of a batch in the order of the request")
+    void testGetFileDetails_batch() throws BaseException {
+        // Arrange
+        FileIdsRequestDto request = new FileIdsRequestDto();
+        FileEntity file1 = new FileEntity();
+        file1.setId("file1");
+        FileEntity file2 = new FileEntity();
+        file2.setId("file2");
+        FileEntityWithIdDto dto1 = new FileEntityWithIdDto();
+        FileEntityWithIdDto dto2 = new FileEntityWithIdDto();
+        List<String> fileIds = List.of("file2", "missing", "file1");
+
+        when(batchHelper.getFileIds(request)).thenReturn(fileIds);
+        when(fileEntityAccessor.findAllById(fileIds)).thenReturn(List.of(file1, file2));
+        when(fileEntityWithIdConverter.convert(file1)).thenReturn(dto1);
+        when(fileEntityWithIdConverter.convert(file2)).thenReturn(dto2);
+
+        // Act
+        ResponseEntity<FileDetailsBatchDto> response = getFileDetailsService.getFileDetails(request);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(List.of(dto2, dto1), response.getBody().getFiles());
+        assertEquals(List.of("missing"), response.getBody().getMissingFileIds());
+        verify(fileEntityAccessor).findAllById(fileIds);
+    }
+}
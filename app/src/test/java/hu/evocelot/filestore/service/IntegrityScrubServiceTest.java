@@ -0,0 +1,213 @@
+package hu.evocelot.filestore.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import hu.evocelot.filestore.accessor.BackgroundJobAccessor;
+import hu.evocelot.filestore.helper.FileHelper;
+import hu.evocelot.filestore.helper.VerificationCache;
+import hu.evocelot.filestore.job.JobContext;
+import hu.evocelot.filestore.job.JobType;
+import hu.evocelot.filestore.kafka.KafkaMessageProducer;
+import hu.evocelot.filestore.kafka.KafkaTopics;
+import hu.evocelot.filestore.model.BackgroundJob;
+import hu.evocelot.filestore.model.FileEntity;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import hu.evocelot.filestore.properties.KafkaProperties;
+import hu.evocelot.filestore.repository.FileRepository;
+import hu.evocelot.filestore.storage.LocalStorageBackend;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class IntegrityScrubServiceTest {
+
+    private static final String SYSTEM_ID = "system1";
+    private static final byte[] CONTENT = "123456789".getBytes(StandardCharsets.US_ASCII);
+    private static final String CHECKSUM = "E3069283";
+
+    @TempDir
+    Path storePath;
+
+    @Mock
+    private FileRepository fileRepository;
+
+    @Mock
+    private FileStoreProperties fileStoreProperties;
+
+    @Mock
+    private VerificationCache verificationCache;
+
+    @Mock
+    private KafkaMessageProducer kafkaMessageProducer;
+
+    @Mock
+    private BackgroundJobAccessor backgroundJobAccessor;
+
+    private MeterRegistry meterRegistry;
+    private FileHelper fileHelper;
+    private IntegrityScrubService integrityScrubService;
+    private AutoCloseable closeable;
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        when(fileStoreProperties.getStorePath()).thenReturn(storePath.toString());
+        when(fileStoreProperties.getBufferSize()).thenReturn(4);
+        when(fileStoreProperties.getStagingMaxAge()).thenReturn(Duration.ofHours(1));
+        when(fileStoreProperties.getJobHeartbeatTimeout()).thenReturn(Duration.ofMinutes(5));
+        when(backgroundJobAccessor.updateProgress(anyString(), any(BigInteger.class), anyString(), anyLong(),
+                anyLong(), anyLong(), anyLong())).thenReturn(true);
+
+        KafkaProperties kafkaProperties = new KafkaProperties();
+        kafkaProperties.setEnabled("true");
+        meterRegistry = new SimpleMeterRegistry();
+        fileHelper = new FileHelper(fileStoreProperties, new LocalStorageBackend(fileStoreProperties));
+        integrityScrubService = new IntegrityScrubService(fileRepository, fileHelper, fileStoreProperties,
+                verificationCache, kafkaProperties, kafkaMessageProducer, new ObjectMapper(), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("run should remember the intact files and report the corrupted and missing ones")
+    void testRun() throws Exception {
+        // Arrange
+        FileEntity intact = createFile("a", CONTENT);
+        FileEntity corrupted = createFile("b", "123456780".getBytes(StandardCharsets.US_ASCII));
+        FileEntity missing = createFile("c", null);
+        when(fileRepository.findByIdGreaterThanOrderByIdAsc(eq(""), any(Pageable.class)))
+                .thenReturn(List.of(intact, corrupted, missing));
+        ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+        JobContext context = createContext(null);
+
+        // Act
+        integrityScrubService.run(context);
+
+        // Assert
+        verify(verificationCache).markVerified(eq("a"), anyLong(), eq((long) CONTENT.length));
+        verify(verificationCache).invalidate("b");
+        verify(kafkaMessageProducer, times(2)).sendMessage(eq(KafkaTopics.FILE_CORRUPTED),
+                messageCaptor.capture());
+        assertTrue(messageCaptor.getAllValues().get(0).contains("\"fileId\":\"b\""));
+        assertTrue(messageCaptor.getAllValues().get(0).contains("\"status\":\"CORRUPTED\""));
+        assertTrue(messageCaptor.getAllValues().get(1).contains("\"status\":\"MISSING\""));
+        assertEquals(1, meterRegistry.counter("filestore.scrub.files", "result", "verified").count());
+        assertEquals(1, meterRegistry.counter("filestore.scrub.files", "result", "corrupted").count());
+        assertEquals(1, meterRegistry.counter("filestore.scrub.files", "result", "missing").count());
+        assertEquals(3, context.getProcessedItems());
+        assertEquals(2, context.getFailedItems());
+        assertEquals("c", context.getCheckpoint());
+    }
+
+    @Test
+    @DisplayName("run should resume after the checkpoint of the job")
+    void testRun_resume() throws Exception {
+        // Arrange
+        JobContext context = createContext("b");
+
+        // Act
+        integrityScrubService.run(context);
+
+        // Assert
+        verify(fileRepository).findByIdGreaterThanOrderByIdAsc(eq("b"), any(Pageable.class));
+        verify(fileRepository, never()).findByIdGreaterThanOrderByIdAsc(eq(""), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("run should skip the files inserted within the staging age")
+    void testRun_recentFile() throws Exception {
+        // Arrange
+        FileEntity recent = createFile("a", null);
+        recent.setInsDate(OffsetDateTime.now());
+        when(fileRepository.findByIdGreaterThanOrderByIdAsc(eq(""), any(Pageable.class))).thenReturn(List.of(recent));
+        JobContext context = createContext(null);
+
+        // Act
+        integrityScrubService.run(context);
+
+        // Assert
+        verify(kafkaMessageProducer, never()).sendMessage(anyString(), anyString());
+        assertEquals(0, meterRegistry.counter("filestore.scrub.files", "result", "missing").count());
+        assertEquals(1, context.getSkippedItems());
+    }
+
+    @Test
+    @DisplayName("run should stop when the job has been cancelled or taken over by another instance")
+    void testRun_cancelled() throws Exception {
+        // Arrange
+        List<FileEntity> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            FileEntity recent = createFile(String.format("%03d", i), null);
+            recent.setInsDate(OffsetDateTime.now());
+            batch.add(recent);
+        }
+        when(fileRepository.findByIdGreaterThanOrderByIdAsc(anyString(), any(Pageable.class))).thenReturn(batch);
+        JobContext context = createContext(null);
+        context.cancel();
+
+        // Act
+        integrityScrubService.run(context);
+
+        // Assert
+        verify(fileRepository, times(1)).findByIdGreaterThanOrderByIdAsc(anyString(), any(Pageable.class));
+        verify(backgroundJobAccessor, never()).updateProgress(anyString(), any(BigInteger.class), anyString(),
+                anyLong(), anyLong(), anyLong(), anyLong());
+    }
+
+    private JobContext createContext(String checkpoint) {
+        BackgroundJob job = new BackgroundJob();
+        job.setId("job1");
+        job.setType(JobType.INTEGRITY_SCRUB);
+        job.setCheckpoint(checkpoint);
+
+        return new JobContext(job, BigInteger.ONE, backgroundJobAccessor);
+    }
+
+    private FileEntity createFile(String fileId, byte[] content) throws Exception {
+        FileEntity fileEntity = new FileEntity();
+        fileEntity.setId(fileId);
+        fileEntity.setSystemId(SYSTEM_ID);
+        fileEntity.setExtension("txt");
+        fileEntity.setChecksum(CHECKSUM);
+        fileEntity.setInsDate(OffsetDateTime.now().minusDays(1));
+
+        if (content != null) {
+            Files.createDirectories(storePath.resolve(SYSTEM_ID));
+            Files.write(storePath.resolve(SYSTEM_ID).resolve(fileId + ".txt"), content);
+        }
+
+        return fileEntity;
+    }
+}
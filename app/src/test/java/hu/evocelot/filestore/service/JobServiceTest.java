@@ -0,0 +1,196 @@
+package hu.evocelot.filestore.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import hu.evocelot.filestore.accessor.BackgroundJobAccessor;
+import hu.evocelot.filestore.dto.JobDto;
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.job.JobContext;
+import hu.evocelot.filestore.job.JobHandler;
+import hu.evocelot.filestore.job.JobStatus;
+import hu.evocelot.filestore.job.JobType;
+import hu.evocelot.filestore.model.BackgroundJob;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+
+class JobServiceTest {
+
+    private static final String JOB_ID = "job1";
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Mock
+    private JobHandler jobHandler;
+
+    @Mock
+    private BackgroundJobAccessor backgroundJobAccessor;
+
+    @Mock
+    private FileStoreProperties fileStoreProperties;
+
+    private JobService jobService;
+    private AutoCloseable closeable;
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        when(jobHandler.getType()).thenReturn(JobType.FILE_SIZE_RECALCULATION);
+        when(fileStoreProperties.getJobParallelism()).thenReturn(1);
+        when(fileStoreProperties.getJobHeartbeatTimeout()).thenReturn(Duration.ofMinutes(5));
+        when(backgroundJobAccessor.insert(any(BackgroundJob.class))).thenAnswer(invocation -> {
+            BackgroundJob job = invocation.getArgument(0);
+            job.setId(JOB_ID);
+            job.setVersion(BigInteger.ONE);
+            return job;
+        });
+        when(backgroundJobAccessor.claim(any(), any())).thenReturn(true);
+
+        jobService = new JobService(List.of(jobHandler), backgroundJobAccessor, fileStoreProperties);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        jobService.shutdown();
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("submit should persist the job and run it in the background")
+    void testSubmit() throws Exception {
+        // Act
+        JobDto jobDto = jobService.submit(JobType.FILE_SIZE_RECALCULATION);
+
+        // Assert
+        assertEquals(JOB_ID, jobDto.getId());
+        assertEquals(JobStatus.QUEUED, jobDto.getStatus());
+        verify(backgroundJobAccessor, timeout(TIMEOUT_MILLIS)).finish(eq(JOB_ID), eq(BigInteger.TWO),
+                eq(JobStatus.SUCCEEDED), isNull(), anyLong(), anyLong(), anyLong(), anyLong());
+        verify(backgroundJobAccessor).claim(JOB_ID, BigInteger.ONE);
+    }
+
+    @Test
+    @DisplayName("submit should reject a job whose type is already running")
+    void testSubmit_alreadyRunning() {
+        // Arrange
+        when(backgroundJobAccessor.isActive(JobType.FILE_SIZE_RECALCULATION)).thenReturn(true);
+
+        // Act
+        BaseException exception = assertThrows(BaseException.class,
+                () -> jobService.submit(JobType.FILE_SIZE_RECALCULATION));
+
+        // Assert
+        assertEquals(ExceptionType.JOB_ALREADY_RUNNING, exception.getExceptionType());
+        verify(backgroundJobAccessor, never()).insert(any(BackgroundJob.class));
+    }
+
+    @Test
+    @DisplayName("A failing job should be finished with its error message")
+    void testSubmit_failed() throws Exception {
+        // Arrange
+        doThrow(new IllegalStateException("broken")).when(jobHandler).run(any(JobContext.class));
+
+        // Act
+        jobService.submit(JobType.FILE_SIZE_RECALCULATION);
+
+        // Assert
+        verify(backgroundJobAccessor, timeout(TIMEOUT_MILLIS)).finish(eq(JOB_ID), eq(BigInteger.TWO),
+                eq(JobStatus.FAILED), eq("broken"), anyLong(), anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("resumeStaleJobs should continue the stale jobs from their checkpoint")
+    void testResumeStaleJobs() throws Exception {
+        // Arrange
+        BackgroundJob job = new BackgroundJob();
+        job.setId(JOB_ID);
+        job.setType(JobType.FILE_SIZE_RECALCULATION);
+        job.setStatus(JobStatus.RUNNING);
+        job.setCheckpoint("b");
+        job.setProcessedItems(1000);
+        job.setVersion(BigInteger.valueOf(5));
+        job.setHeartbeatDate(OffsetDateTime.now().minusHours(1));
+        when(backgroundJobAccessor.findStaleJobs(any(OffsetDateTime.class))).thenReturn(List.of(job));
+        ArgumentCaptor<JobContext> contextCaptor = ArgumentCaptor.forClass(JobContext.class);
+
+        // Act
+        jobService.resumeStaleJobs();
+
+        // Assert
+        verify(jobHandler, timeout(TIMEOUT_MILLIS)).run(contextCaptor.capture());
+        verify(backgroundJobAccessor).claim(JOB_ID, BigInteger.valueOf(5));
+        assertEquals("b", contextCaptor.getValue().getCheckpoint());
+        assertEquals(1000, contextCaptor.getValue().getProcessedItems());
+        assertEquals(BigInteger.valueOf(6), contextCaptor.getValue().getVersion());
+    }
+
+    @Test
+    @DisplayName("A job claimed by another instance should not be run")
+    void testResumeStaleJobs_claimedElsewhere() throws Exception {
+        // Arrange
+        BackgroundJob job = new BackgroundJob();
+        job.setId(JOB_ID);
+        job.setType(JobType.FILE_SIZE_RECALCULATION);
+        job.setStatus(JobStatus.QUEUED);
+        when(backgroundJobAccessor.findStaleJobs(any(OffsetDateTime.class))).thenReturn(List.of(job));
+        when(backgroundJobAccessor.claim(any(), any())).thenReturn(false);
+
+        // Act
+        jobService.resumeStaleJobs();
+
+        // Assert
+        verify(backgroundJobAccessor, timeout(TIMEOUT_MILLIS)).claim(JOB_ID, BigInteger.ZERO);
+        verify(jobHandler, never()).run(any(JobContext.class));
+    }
+
+    @Test
+    @DisplayName("cancel should reject a finished job")
+    void testCancel_finished() {
+        // Arrange
+        BackgroundJob job = new BackgroundJob();
+        job.setId(JOB_ID);
+        job.setStatus(JobStatus.SUCCEEDED);
+        when(backgroundJobAccessor.findById(JOB_ID)).thenReturn(Optional.of(job));
+
+        // Act
+        BaseException exception = assertThrows(BaseException.class, () -> jobService.cancel(JOB_ID));
+
+        // Assert
+        assertEquals(ExceptionType.JOB_ALREADY_FINISHED, exception.getExceptionType());
+    }
+
+    @Test
+    @DisplayName("getJob should reject an unknown job id")
+    void testGetJob_notFound() {
+        // Arrange
+        when(backgroundJobAccessor.findById(JOB_ID)).thenReturn(Optional.empty());
+
+        // Act
+        BaseException exception = assertThrows(BaseException.class, () -> jobService.getJob(JOB_ID));
+
+        // Assert
+        assertEquals(ExceptionType.JOB_NOT_FOUND, exception.getExceptionType());
+    }
+}
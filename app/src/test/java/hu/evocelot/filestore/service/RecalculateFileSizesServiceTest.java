@@ -0,0 +1,179 @@
+package hu.evocelot.filestore.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+
+import hu.evocelot.filestore.accessor.BackgroundJobAccessor;
+import hu.evocelot.filestore.accessor.FileEntityAccessor;
+import hu.evocelot.filestore.helper.FileHelper;
+import hu.evocelot.filestore.job.JobContext;
+import hu.evocelot.filestore.job.JobType;
+import hu.evocelot.filestore.model.BackgroundJob;
+import hu.evocelot.filestore.model.FileEntity;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import hu.evocelot.filestore.repository.FileRepository;
+import hu.evocelot.filestore.storage.LocalStorageBackend;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RecalculateFileSizesServiceTest {
+
+    private static final String JOB_ID = "job1";
+
+    @TempDir
+    Path storePath;
+
+    @Mock
+    private FileEntityAccessor fileEntityAccessor;
+
+    @Mock
+    private FileRepository fileRepository;
+
+    @Mock
+    private FileStoreProperties fileStoreProperties;
+
+    @Mock
+    private BackgroundJobAccessor backgroundJobAccessor;
+
+    @Mock
+    private FileStorageLimitService fileStorageLimitService;
+
+    private MeterRegistry meterRegistry;
+    private RecalculateFileSizesService recalculateFileSizesService;
+    private AutoCloseable closeable;
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        when(fileStoreProperties.getStorePath()).thenReturn(storePath.toString());
+        when(fileStoreProperties.getRecalculationParallelism()).thenReturn(4);
+        when(backgroundJobAccessor.updateProgress(anyString(), any(BigInteger.class), anyString(), anyLong(),
+                anyLong(), anyLong(), anyLong())).thenReturn(true);
+
+        meterRegistry = new SimpleMeterRegistry();
+        recalculateFileSizesService = new RecalculateFileSizesService(fileEntityAccessor,
+                new FileHelper(fileStoreProperties, new LocalStorageBackend(fileStoreProperties)), fileRepository,
+                fileStorageLimitService, fileStoreProperties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        recalculateFileSizesService.shutdown();
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("run should write back only the files whose size has changed in one batch")
+    void testRun_updatesChangedFiles() throws Exception {
+        // Arrange
+        FileEntity unchanged = createFile("a", 10, 10L);
+        FileEntity changed = createFile("b", 20, 5L);
+        changed.setObjectId("object1");
+        FileEntity missing = createFile("c", -1, 5L);
+        when(fileRepository.findByIdGreaterThanOrderByIdAsc(eq(""), any(Pageable.class)))
+                .thenReturn(List.of(unchanged, changed, missing));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<FileEntity>> updateCaptor = ArgumentCaptor.forClass(List.class);
+        JobContext context = createContext(null);
+
+        // Act
+        recalculateFileSizesService.run(context);
+
+        // Assert
+        verify(fileEntityAccessor).updateSizes(updateCaptor.capture());
+        assertEquals(List.of(changed), updateCaptor.getValue());
+        assertEquals(20L, changed.getSize());
+        assertEquals(20L, changed.getStoredSize());
+        verify(fileEntityAccessor, never()).save(any(FileEntity.class));
+        verify(fileStorageLimitService).adjustUsedDiskSpaces(Map.of("object1", 15L));
+
+        verify(backgroundJobAccessor).updateProgress(JOB_ID, BigInteger.ONE, "c", 3, 1, 1, 0);
+        assertEquals(1, meterRegistry.counter("filestore.file-size-recalculation.files", "result", "updated").count());
+        assertEquals(1, meterRegistry.counter("filestore.file-size-recalculation.files", "result", "missing").count());
+    }
+
+    @Test
+    @DisplayName("run should continue after the checkpoint of a resumed job")
+    void testRun_resume() throws Exception {
+        // Arrange
+        FileEntity unchanged = createFile("c", 10, 10L);
+        when(fileRepository.findByIdGreaterThanOrderByIdAsc(eq("b"), any(Pageable.class)))
+                .thenReturn(List.of(unchanged));
+        JobContext context = createContext("b");
+
+        // Act
+        recalculateFileSizesService.run(context);
+
+        // Assert
+        verify(fileRepository, never()).findByIdGreaterThanOrderByIdAsc(eq(""), any(Pageable.class));
+        verify(fileEntityAccessor, never()).updateSizes(anyList());
+        assertEquals(1, context.getProcessedItems());
+    }
+
+    @Test
+    @DisplayName("run should stop when the job has been cancelled")
+    void testRun_cancelled() throws Exception {
+        // Arrange
+        FileEntity unchanged = createFile("a", 10, 10L);
+        when(fileRepository.findByIdGreaterThanOrderByIdAsc(eq(""), any(Pageable.class)))
+                .thenReturn(List.of(unchanged));
+        when(backgroundJobAccessor.updateProgress(anyString(), any(BigInteger.class), anyString(), anyLong(),
+                anyLong(), anyLong(), anyLong())).thenReturn(false);
+        JobContext context = createContext(null);
+
+        // Act
+        recalculateFileSizesService.run(context);
+
+        // Assert
+        assertTrue(context.isCancelled());
+        assertNull(context.getCheckpoint());
+    }
+
+    private JobContext createContext(String checkpoint) {
+        BackgroundJob job = new BackgroundJob();
+        job.setId(JOB_ID);
+        job.setType(JobType.FILE_SIZE_RECALCULATION);
+        job.setCheckpoint(checkpoint);
+
+        return new JobContext(job, BigInteger.ONE, backgroundJobAccessor);
+    }
+
+    private FileEntity createFile(String fileId, int storedSize, Long size) throws Exception {
+        FileEntity fileEntity = new FileEntity();
+        fileEntity.setId(fileId);
+        fileEntity.setExtension("txt");
+        fileEntity.setSize(size);
+        fileEntity.setStoredSize(size);
+
+        if (storedSize >= 0) {
+            Files.write(storePath.resolve(fileId + ".txt"), new byte[storedSize]);
+        }
+
+        return fileEntity;
+    }
+}
@@ -0,0 +1,157 @@
+package hu.evocelot.filestore.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+
+import hu.evocelot.filestore.accessor.BackgroundJobAccessor;
+import hu.evocelot.filestore.job.JobContext;
+import hu.evocelot.filestore.job.JobType;
+import hu.evocelot.filestore.model.BackgroundJob;
+import hu.evocelot.filestore.model.FileStorageLimit;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import hu.evocelot.filestore.repository.FileStorageLimitRepository;
+
+class RecalculateUsedStorageServiceTest {
+
+    private static final OffsetDateTime SUBMITTED = OffsetDateTime.parse("2026-01-02T12:00:00Z");
+    private static final Duration GRACE = Duration.ofHours(1);
+
+    @Mock
+    private FileStorageLimitRepository fileStorageLimitRepository;
+
+    @Mock
+    private FileStorageLimitService fileStorageLimitService;
+
+    @Mock
+    private BackgroundJobAccessor backgroundJobAccessor;
+
+    @Mock
+    private FileStoreProperties fileStoreProperties;
+
+    private RecalculateUsedStorageService recalculateUsedStorageService;
+    private AutoCloseable closeable;
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        when(fileStoreProperties.getUsedStorageReconciliationGrace()).thenReturn(GRACE);
+        when(backgroundJobAccessor.updateProgress(anyString(), any(BigInteger.class), anyString(), anyLong(),
+                anyLong(), anyLong(), anyLong())).thenReturn(true);
+
+        recalculateUsedStorageService = new RecalculateUsedStorageService(fileStorageLimitRepository,
+                fileStorageLimitService, fileStoreProperties);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("run should overwrite the changed limits modified before the cutoff")
+    void testRun() throws Exception {
+        // Arrange
+        OffsetDateTime until = SUBMITTED.minus(GRACE);
+        FileStorageLimit drifted = createLimit("a", 100L, until.minusMinutes(10));
+        FileStorageLimit correct = createLimit("b", 50L, until.minusMinutes(10));
+        FileStorageLimit empty = createLimit("c", 20L, until.minusMinutes(10));
+        when(fileStorageLimitRepository.findByObjectIdGreaterThanOrderByObjectIdAsc(eq(""), any(Pageable.class)))
+                .thenReturn(List.of(drifted, correct, empty));
+        when(fileStorageLimitService.calculateUsedDiskSpaces(List.of("a", "b", "c")))
+                .thenReturn(Map.of("a", 70L, "b", 50L));
+        when(fileStorageLimitService.reconcileUsedDiskSpaces(Map.of("a", 70L, "c", 0L), until)).thenReturn(2);
+
+        JobContext context = createContext();
+
+        // Act
+        recalculateUsedStorageService.run(context);
+
+        // Assert
+        verify(fileStorageLimitService).reconcileUsedDiskSpaces(Map.of("a", 70L, "c", 0L), until);
+        assertEquals(3, context.getProcessedItems());
+        assertEquals(2, context.getUpdatedItems());
+        assertEquals(0, context.getSkippedItems());
+        verify(backgroundJobAccessor).updateProgress("job1", BigInteger.ONE, "c", 3, 2, 0, 0);
+    }
+
+    @Test
+    @DisplayName("run should not erase the reservation of an upload in progress")
+    void testRun_reservationInProgress() throws Exception {
+        // Arrange
+        // The upload has reserved 30 bytes within the grace period, but its file is not inserted yet.
+        OffsetDateTime until = SUBMITTED.minus(GRACE);
+        FileStorageLimit reserved = createLimit("a", 130L, SUBMITTED.minusMinutes(5));
+        when(fileStorageLimitRepository.findByObjectIdGreaterThanOrderByObjectIdAsc(eq(""), any(Pageable.class)))
+                .thenReturn(List.of(reserved));
+        when(fileStorageLimitService.calculateUsedDiskSpaces(List.of("a"))).thenReturn(Map.of("a", 100L));
+
+        JobContext context = createContext();
+
+        // Act
+        recalculateUsedStorageService.run(context);
+
+        // Assert
+        verify(fileStorageLimitService, never()).reconcileUsedDiskSpaces(any(), eq(until));
+        assertEquals(1, context.getProcessedItems());
+        assertEquals(0, context.getUpdatedItems());
+        assertEquals(1, context.getSkippedItems());
+    }
+
+    @Test
+    @DisplayName("run should count the limits changed while the batch was written as skipped")
+    void testRun_changedConcurrently() throws Exception {
+        // Arrange
+        OffsetDateTime until = SUBMITTED.minus(GRACE);
+        FileStorageLimit drifted = createLimit("a", 100L, until.minusMinutes(10));
+        when(fileStorageLimitRepository.findByObjectIdGreaterThanOrderByObjectIdAsc(eq(""), any(Pageable.class)))
+                .thenReturn(List.of(drifted));
+        when(fileStorageLimitService.calculateUsedDiskSpaces(List.of("a"))).thenReturn(Map.of("a", 70L));
+        when(fileStorageLimitService.reconcileUsedDiskSpaces(Map.of("a", 70L), until)).thenReturn(0);
+
+        JobContext context = createContext();
+
+        // Act
+        recalculateUsedStorageService.run(context);
+
+        // Assert
+        assertEquals(0, context.getUpdatedItems());
+        assertEquals(1, context.getSkippedItems());
+    }
+
+    private JobContext createContext() {
+        BackgroundJob job = new BackgroundJob();
+        job.setId("job1");
+        job.setType(JobType.USED_STORAGE_RECALCULATION);
+        job.setInsDate(SUBMITTED);
+
+        return new JobContext(job, BigInteger.ONE, backgroundJobAccessor);
+    }
+
+    private FileStorageLimit createLimit(String objectId, Long usedDiskSpace, OffsetDateTime modDate) {
+        FileStorageLimit limit = new FileStorageLimit(objectId);
+        limit.setUsedDiskSpace(usedDiskSpace);
+        limit.setMaxDiskSpace(1000L);
+        limit.setModDate(modDate);
+        return limit;
+    }
+}
@@ -0,0 +1,199 @@
+package hu.evocelot.filestore.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import hu.evocelot.filestore.accessor.FileEntityAccessor;
+import hu.evocelot.filestore.accessor.UploadSessionAccessor;
+import hu.evocelot.filestore.helper.FileHelper;
+import hu.evocelot.filestore.model.FileEntity;
+import hu.evocelot.filestore.model.UploadSession;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import hu.evocelot.filestore.storage.LocalStorageBackend;
+
+class StagingSweepServiceTest {
+
+    private static final String FILE_ID = "3fa2b1c0-0000-0000-0000-000000000000";
+
+    @TempDir
+    Path storePath;
+
+    @Mock
+    private FileEntityAccessor fileEntityAccessor;
+
+    @Mock
+    private UploadSessionAccessor uploadSessionAccessor;
+
+    @Mock
+    private ChunkedUploadService chunkedUploadService;
+
+    @Mock
+    private FileStoreProperties fileStoreProperties;
+
+    private FileHelper fileHelper;
+    private StagingSweepService stagingSweepService;
+    private AutoCloseable closeable;
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        when(fileStoreProperties.getStorePath()).thenReturn(storePath.toString());
+        when(fileStoreProperties.getStagingMaxAge()).thenReturn(Duration.ofHours(1));
+        when(fileEntityAccessor.findById(anyString())).thenReturn(Optional.empty());
+
+        fileHelper = new FileHelper(fileStoreProperties, new LocalStorageBackend(fileStoreProperties));
+        stagingSweepService = new StagingSweepService(fileEntityAccessor, uploadSessionAccessor,
+                chunkedUploadService, fileHelper, fileStoreProperties);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("sweep should delete an old staging file without a file row")
+    void testSweep_orphan() throws Exception {
+        // Arrange
+        Path stagingFile = createStagingFile(Duration.ofHours(2));
+
+        // Act
+        stagingSweepService.sweep();
+
+        // Assert
+        assertFalse(Files.exists(stagingFile));
+    }
+
+    @Test
+    @DisplayName("sweep should keep a recent staging file of an upload in progress")
+    void testSweep_recent() throws Exception {
+        // Arrange
+        Path stagingFile = createStagingFile(Duration.ofMinutes(1));
+
+        // Act
+        stagingSweepService.sweep();
+
+        // Assert
+        assertTrue(Files.exists(stagingFile));
+        verify(fileEntityAccessor, never()).findById(anyString());
+    }
+
+    @Test
+    @DisplayName("sweep should delete the stored content of an upload whose row was never inserted")
+    void testSweep_pendingOrphan() throws Exception {
+        // Arrange
+        Path finalFile = createFinalFile(Duration.ofHours(2));
+        Path marker = createPendingMarker(finalFile, Duration.ofHours(2));
+
+        // Act
+        stagingSweepService.sweep();
+
+        // Assert
+        assertFalse(Files.exists(finalFile));
+        assertFalse(Files.exists(marker));
+    }
+
+    @Test
+    @DisplayName("sweep should only delete the pending marker of an inserted file")
+    void testSweep_pendingInserted() throws Exception {
+        // Arrange
+        Path finalFile = createFinalFile(Duration.ofHours(2));
+        Path marker = createPendingMarker(finalFile, Duration.ofHours(2));
+
+        FileEntity fileEntity = new FileEntity();
+        fileEntity.setId(FILE_ID);
+        when(fileEntityAccessor.findById(FILE_ID)).thenReturn(Optional.of(fileEntity));
+
+        // Act
+        stagingSweepService.sweep();
+
+        // Assert
+        assertEquals("Test content", Files.readString(finalFile));
+        assertFalse(Files.exists(marker));
+    }
+
+    @Test
+    @DisplayName("sweep should keep the recently stored content of an upload that may still insert its row")
+    void testSweep_pendingRecentContent() throws Exception {
+        // Arrange
+        Path finalFile = createFinalFile(Duration.ofMinutes(1));
+        Path marker = createPendingMarker(finalFile, Duration.ofHours(2));
+
+        // Act
+        stagingSweepService.sweep();
+
+        // Assert
+        assertTrue(Files.exists(finalFile));
+        assertTrue(Files.exists(marker));
+    }
+
+    @Test
+    @DisplayName("sweepUploadSessions should discard the upload sessions that expired")
+    void testSweepUploadSessions() {
+        // Arrange
+        UploadSession session = new UploadSession();
+        session.setId("upload123");
+        when(fileStoreProperties.getUploadSessionTtl()).thenReturn(Duration.ofDays(1));
+        when(uploadSessionAccessor.findExpired(any(OffsetDateTime.class), anyInt())).thenReturn(List.of(session));
+        when(chunkedUploadService.discardUpload(session)).thenReturn(true);
+
+        // Act
+        stagingSweepService.sweepUploadSessions();
+
+        // Assert
+        ArgumentCaptor<OffsetDateTime> thresholdCaptor = ArgumentCaptor.forClass(OffsetDateTime.class);
+        verify(uploadSessionAccessor).findExpired(thresholdCaptor.capture(), anyInt());
+        assertTrue(thresholdCaptor.getValue().isBefore(OffsetDateTime.now().minusHours(23)));
+        verify(chunkedUploadService).discardUpload(session);
+    }
+
+    private Path createStagingFile(Duration age) throws Exception {
+        fileHelper.createDirectoryIfNotExists(fileHelper.getStagingDirectoryPath());
+        Path stagingFile = Files.writeString(Path.of(fileHelper.getStagingPath(FILE_ID)), "Test content");
+        Files.setLastModifiedTime(stagingFile, FileTime.from(Instant.now().minus(age)));
+
+        return stagingFile;
+    }
+
+    private Path createFinalFile(Duration age) throws Exception {
+        Path finalFile = storePath.resolve("system1").resolve(FILE_ID + ".txt");
+        Files.createDirectories(finalFile.getParent());
+        Files.writeString(finalFile, "Test content");
+        Files.setLastModifiedTime(finalFile, FileTime.from(Instant.now().minus(age)));
+
+        return finalFile;
+    }
+
+    private Path createPendingMarker(Path finalFile, Duration age) throws Exception {
+        fileHelper.markPending(FILE_ID, finalFile.toString());
+        Path marker = Path.of(fileHelper.getPendingMarkerPath(FILE_ID));
+        Files.setLastModifiedTime(marker, FileTime.from(Instant.now().minus(age)));
+
+        return marker;
+    }
+}
@@ -0,0 +1,109 @@
+package hu.evocelot.filestore.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+
+import hu.evocelot.filestore.dto.StorageLayoutMigrationStatusDto;
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.helper.FileHelper;
+import hu.evocelot.filestore.model.FileEntity;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import hu.evocelot.filestore.storage.LocalStorageBackend;
+import hu.evocelot.filestore.repository.FileRepository;
+
+class StorageLayoutMigrationServiceTest {
+
+    private static final String FILE_ID = "3fa2b1c0-0000-0000-0000-000000000000";
+
+    @TempDir
+    Path storePath;
+
+    @Mock
+    private FileRepository fileRepository;
+
+    @Mock
+    private FileStoreProperties fileStoreProperties;
+
+    private StorageLayoutMigrationService storageLayoutMigrationService;
+    private AutoCloseable closeable;
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        when(fileStoreProperties.getStorePath()).thenReturn(storePath.toString());
+
+        storageLayoutMigrationService = new StorageLayoutMigrationService(fileRepository,
+                new FileHelper(fileStoreProperties, new LocalStorageBackend(fileStoreProperties)));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        storageLayoutMigrationService.shutdown();
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("start should move the files of the flat layout into the sharded layout")
+    void testStart_movesFiles() throws Exception {
+        // Arrange
+        when(fileStoreProperties.getShardDepth()).thenReturn(2);
+        Path flatFile = Files.writeString(storePath.resolve(FILE_ID + ".txt"), "Test content");
+
+        FileEntity fileEntity = new FileEntity();
+        fileEntity.setId(FILE_ID);
+        fileEntity.setExtension("txt");
+        when(fileRepository.findByIdGreaterThanOrderByIdAsc(eq(""), any(Pageable.class)))
+                .thenReturn(List.of(fileEntity));
+
+        // Act
+        storageLayoutMigrationService.start();
+        StorageLayoutMigrationStatusDto status = awaitCompletion();
+
+        // Assert
+        assertEquals(1, status.getProcessedFiles());
+        assertEquals(1, status.getMovedFiles());
+        assertFalse(Files.exists(flatFile));
+        assertTrue(Files.exists(storePath.resolve("3f").resolve("a2").resolve(FILE_ID + ".txt")));
+    }
+
+    @Test
+    @DisplayName("start should fail when the sharded layout is disabled")
+    void testStart_shardingDisabled() {
+        // Arrange
+        when(fileStoreProperties.getShardDepth()).thenReturn(0);
+
+        // Act & Assert
+        BaseException exception = assertThrows(BaseException.class, () -> storageLayoutMigrationService.start());
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+        assertEquals(ExceptionType.INVALID_INPUT, exception.getExceptionType());
+    }
+
+    private StorageLayoutMigrationStatusDto awaitCompletion() throws InterruptedException {
+        StorageLayoutMigrationStatusDto status = storageLayoutMigrationService.getStatus();
+        for (int attempt = 0; attempt < 100 && status.isRunning(); attempt++) {
+            Thread.sleep(50);
+            status = storageLayoutMigrationService.getStatus();
+        }
+        return status;
+    }
+}
@@ -0,0 +1,128 @@
+package hu.evocelot.filestore.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import hu.evocelot.filestore.properties.FileStoreProperties;
+
+class StorageQuotaServiceTest {
+
+    private static final long LEASE_SIZE = 100L;
+
+    @Mock
+    private FileStorageLimitService fileStorageLimitService;
+
+    @Mock
+    private FileStoreProperties fileStoreProperties;
+
+    private AutoCloseable closeable;
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        when(fileStoreProperties.isQuotaLeaseEnabled()).thenReturn(true);
+        when(fileStoreProperties.getQuotaLeaseSize()).thenReturn(LEASE_SIZE);
+        when(fileStoreProperties.getQuotaLeaseDuration()).thenReturn(Duration.ofSeconds(30));
+        when(fileStoreProperties.getUsedStorageReconciliationGrace()).thenReturn(Duration.ofHours(1));
+        when(fileStorageLimitService.leaseStorage("object1", LEASE_SIZE, 0L)).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("reserveStorage should update the limit on every upload when the leases are disabled")
+    void testReserveStorage_disabled() throws Exception {
+        // Arrange
+        when(fileStoreProperties.isQuotaLeaseEnabled()).thenReturn(false);
+        StorageQuotaService storageQuotaService = new StorageQuotaService(fileStorageLimitService,
+                fileStoreProperties);
+
+        // Act
+        storageQuotaService.reserveStorage("object1", 10L);
+        storageQuotaService.reserveStorage("object1", 20L);
+
+        // Assert
+        verify(fileStorageLimitService).reserveStorage("object1", 10L);
+        verify(fileStorageLimitService).reserveStorage("object1", 20L);
+        verify(fileStorageLimitService, never()).leaseStorage(anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("reserveStorage should serve the reservations from one leased block")
+    void testReserveStorage_lease() throws Exception {
+        // Arrange
+        StorageQuotaService storageQuotaService = new StorageQuotaService(fileStorageLimitService,
+                fileStoreProperties);
+
+        // Act
+        storageQuotaService.reserveStorage("object1", 30L);
+        storageQuotaService.reserveStorage("object1", 50L);
+
+        // Assert
+        verify(fileStorageLimitService).leaseStorage("object1", LEASE_SIZE, 0L);
+        verify(fileStorageLimitService, never()).reserveStorage(anyString(), anyLong());
+    }
+
+    @Test
+    @DisplayName("reserveStorage should reserve the exact size if no block fits into the limit")
+    void testReserveStorage_nearLimit() throws Exception {
+        // Arrange
+        when(fileStorageLimitService.leaseStorage("object1", LEASE_SIZE, 0L)).thenReturn(false);
+        StorageQuotaService storageQuotaService = new StorageQuotaService(fileStorageLimitService,
+                fileStoreProperties);
+
+        // Act
+        storageQuotaService.reserveStorage("object1", 30L);
+
+        // Assert
+        verify(fileStorageLimitService).reserveStorage("object1", 30L);
+    }
+
+    @Test
+    @DisplayName("releaseStorage should keep the released storage in the lease up to the block size")
+    void testReleaseStorage_lease() throws Exception {
+        // Arrange
+        StorageQuotaService storageQuotaService = new StorageQuotaService(fileStorageLimitService,
+                fileStoreProperties);
+        storageQuotaService.reserveStorage("object1", 30L);
+
+        // Act
+        storageQuotaService.releaseStorage("object1", 50L);
+
+        // Assert
+        verify(fileStorageLimitService).releaseStorage("object1", 20L);
+    }
+
+    @Test
+    @DisplayName("returnExpiredLeases should return the unused storage of the expired leases")
+    void testReturnExpiredLeases() throws Exception {
+        // Arrange
+        when(fileStoreProperties.getQuotaLeaseDuration()).thenReturn(Duration.ZERO);
+        StorageQuotaService storageQuotaService = new StorageQuotaService(fileStorageLimitService,
+                fileStoreProperties);
+        storageQuotaService.reserveStorage("object1", 30L);
+
+        // Act
+        storageQuotaService.returnExpiredLeases();
+
+        // Assert
+        verify(fileStorageLimitService).adjustUsedDiskSpaces(Map.of("object1", -70L));
+    }
+}
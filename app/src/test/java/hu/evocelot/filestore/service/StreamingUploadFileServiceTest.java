@@ -0,0 +1,202 @@
+package hu.evocelot.filestore.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import hu.evocelot.filestore.dto.FileEntityWithIdDto;
+import hu.evocelot.filestore.dto.FileUploadRequestDto;
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.exception.ExceptionType;
+
+class StreamingUploadFileServiceTest {
+
+    private static final String BOUNDARY = "test-boundary";
+
+    @Mock
+    private UploadFileService uploadFileService;
+
+    @InjectMocks
+    private StreamingUploadFileService streamingUploadFileService;
+
+    private AutoCloseable closeable;
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("uploadFile should pass the metadata and the file stream to the upload service")
+    void testUploadFile_success() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = createRequest(
+                field("name", "testfile")
+                        + field("extension", "txt")
+                        + field("objectId", "object123")
+                        + field("size", "12")
+                        + "--" + BOUNDARY + "\r\n"
+                        + "Content-Disposition: form-data; name=\"file\"; filename=\"testfile.txt\"\r\n"
+                        + "Content-Type: text/plain\r\n\r\n"
+                        + "Test content\r\n"
+                        + "--" + BOUNDARY + "--\r\n");
+
+        ArgumentCaptor<FileUploadRequestDto> dtoCaptor = ArgumentCaptor.forClass(FileUploadRequestDto.class);
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        FileEntityWithIdDto dto = new FileEntityWithIdDto();
+        when(uploadFileService.uploadFile(dtoCaptor.capture(), any(InputStream.class), eq(12L)))
+                .thenAnswer(invocation -> {
+                    ((InputStream) invocation.getArgument(1)).transferTo(content);
+                    return new ResponseEntity<>(dto, HttpStatus.OK);
+                });
+
+        // Act
+        ResponseEntity<FileEntityWithIdDto> response = streamingUploadFileService.uploadFile(request);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(dto, response.getBody());
+        assertEquals("testfile", dtoCaptor.getValue().getName());
+        assertEquals("txt", dtoCaptor.getValue().getExtension());
+        assertEquals("object123", dtoCaptor.getValue().getObjectId());
+        assertEquals("Test content", content.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("uploadFile should throw BaseException if the request has no file part")
+    void testUploadFile_missingFile() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = createRequest(field("name", "testfile") + "--" + BOUNDARY + "--\r\n");
+
+        // Act + Assert
+        BaseException ex = assertThrows(BaseException.class, () -> streamingUploadFileService.uploadFile(request));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+        assertEquals(ExceptionType.INVALID_INPUT, ex.getExceptionType());
+    }
+
+    @Test
+    @DisplayName("uploadFile should throw BaseException for non-multipart requests")
+    void testUploadFile_notMultipart() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/file/upload/stream");
+        request.setContentType("application/octet-stream");
+
+        // Act + Assert
+        BaseException ex = assertThrows(BaseException.class, () -> streamingUploadFileService.uploadFile(request));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+    }
+
+    @Test
+    @DisplayName("uploadFile should reject a negative declared size")
+    void testUploadFile_negativeSize() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = createRequest(
+                field("name", "testfile") + field("extension", "txt") + field("size", "-1") + filePart());
+
+        // Act + Assert
+        BaseException ex = assertThrows(BaseException.class, () -> streamingUploadFileService.uploadFile(request));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+        assertEquals(ExceptionType.INVALID_INPUT, ex.getExceptionType());
+        verify(uploadFileService, never()).uploadFile(any(FileUploadRequestDto.class), any(InputStream.class),
+                anyLong());
+    }
+
+    @Test
+    @DisplayName("uploadFile should reject a file part without a name and an extension")
+    void testUploadFile_missingName() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = createRequest(field("extension", "txt") + filePart());
+
+        // Act + Assert
+        BaseException ex = assertThrows(BaseException.class, () -> streamingUploadFileService.uploadFile(request));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+        assertEquals(ExceptionType.INVALID_INPUT, ex.getExceptionType());
+        verify(uploadFileService, never()).uploadFile(any(FileUploadRequestDto.class), any(InputStream.class),
+                anyLong());
+    }
+
+    @Test
+    @DisplayName("uploadFile should reject an extension longer than the column")
+    void testUploadFile_extensionTooLong() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = createRequest(
+                field("name", "testfile") + field("extension", "a".repeat(11)) + filePart());
+
+        // Act + Assert
+        BaseException ex = assertThrows(BaseException.class, () -> streamingUploadFileService.uploadFile(request));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getHttpStatus());
+        assertEquals(ExceptionType.INVALID_INPUT, ex.getExceptionType());
+    }
+
+    @Test
+    @DisplayName("uploadFile should reject a file part longer than the declared size with 413")
+    void testUploadFile_exceedsDeclaredSize() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = createRequest(
+                field("name", "testfile") + field("extension", "txt") + field("size", "4") + filePart());
+
+        when(uploadFileService.uploadFile(any(FileUploadRequestDto.class), any(InputStream.class), eq(4L)))
+                .thenAnswer(invocation -> {
+                    try {
+                        ((InputStream) invocation.getArgument(1)).transferTo(new ByteArrayOutputStream());
+                    } catch (IOException e) {
+                        throw new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_SAVE_FILE,
+                                e.getMessage());
+                    }
+                    return new ResponseEntity<>(new FileEntityWithIdDto(), HttpStatus.OK);
+                });
+
+        // Act + Assert
+        BaseException ex = assertThrows(BaseException.class, () -> streamingUploadFileService.uploadFile(request));
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, ex.getHttpStatus());
+        assertEquals(ExceptionType.UPLOAD_SIZE_EXCEEDED, ex.getExceptionType());
+    }
+
+    private String filePart() {
+        return "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"testfile.txt\"\r\n"
+                + "Content-Type: text/plain\r\n\r\n"
+                + "Test content\r\n"
+                + "--" + BOUNDARY + "--\r\n";
+    }
+
+    private MockHttpServletRequest createRequest(String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/file/upload/stream");
+        request.setContentType("multipart/form-data; boundary=" + BOUNDARY);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private String field(String name, String value) {
+        return "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n"
+                + value + "\r\n";
+    }
+}
@@ -2,24 +2,32 @@ package hu.evocelot.filestore.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
-import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.multipart.MultipartFile;
@@ -27,13 +35,20 @@ import org.springframework.web.multipart.MultipartFile;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import hu.evocelot.filestore.accessor.FileEntityAccessor;
+import hu.evocelot.filestore.compression.CompressionCodec;
 import hu.evocelot.filestore.converter.FileEntityWithIdConverter;
 import hu.evocelot.filestore.dto.FileEntityWithIdDto;
 import hu.evocelot.filestore.dto.FileUploadRequestDto;
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.helper.CompressionHelper;
 import hu.evocelot.filestore.helper.FileHelper;
+import hu.evocelot.filestore.helper.PasswordHasher;
 import hu.evocelot.filestore.kafka.KafkaMessageProducer;
 import hu.evocelot.filestore.kafka.KafkaTopics;
 import hu.evocelot.filestore.model.FileEntity;
+import hu.evocelot.filestore.pojo.FileStoreResult;
+import hu.evocelot.filestore.properties.FileStoreProperties;
 import hu.evocelot.filestore.properties.KafkaProperties;
 
 class UploadFileServiceTest {
@@ -56,6 +71,21 @@ class UploadFileServiceTest {
     @Mock
     private KafkaMessageProducer kafkaMessageProducer;
 
+    @Mock
+    private PasswordHasher passwordHasher;
+
+    @Mock
+    private StorageQuotaService storageQuotaService;
+
+    @Mock
+    private FileStoreProperties fileStoreProperties;
+
+    @Mock
+    private BlobStoreService blobStoreService;
+
+    @Mock
+    private CompressionHelper compressionHelper;
+
     @InjectMocks
     private UploadFileService uploadFileService;
 
@@ -64,6 +94,8 @@ class UploadFileServiceTest {
     @BeforeEach
     void setUp() {
         closeable = MockitoAnnotations.openMocks(this);
+        when(fileStoreProperties.getBufferSize()).thenReturn(8192);
+        when(compressionHelper.selectCodec(any(), any())).thenReturn(CompressionCodec.NONE);
     }
 
     @AfterEach
@@ -85,23 +117,18 @@ class UploadFileServiceTest {
         when(fileUploadRequestDto.getSystemId()).thenReturn("system1");
         when(fileUploadRequestDto.getFile()).thenReturn(multipartFile);
         when(multipartFile.getInputStream()).thenReturn(inputStream);
+        when(multipartFile.getSize()).thenReturn(12L);
 
-        FileEntity initialEntity = new FileEntity();
-        initialEntity.setId("file-id-123");
-
-        FileEntity savedEntity = new FileEntity();
-        savedEntity.setId("file-id-123");
-        savedEntity.setHash("ABCD1234");
-
-        when(fileEntityAccessor.save(any(FileEntity.class))).thenReturn(initialEntity).thenReturn(savedEntity);
+        when(fileEntityAccessor.insert(any(FileEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
         when(fileHelper.getDirectoryPath(anyString())).thenReturn("/tmp/system1/");
         when(fileHelper.getFullPath(anyString(), anyString(), anyString())).thenReturn("/tmp/system1/file-id-123.txt");
-        when(fileHelper.storeFile(anyString(), any(InputStream.class))).thenReturn("ABCD1234");
+        when(fileHelper.getShardedDirectoryPath(eq("/tmp/system1/"), anyString())).thenReturn("/tmp/system1/");
+        when(fileHelper.storeFile(anyString(), any(InputStream.class), any(CompressionCodec.class))).thenReturn(new FileStoreResult("ABCD1234", 12));
         when(kafkaProperties.getEnabled()).thenReturn("true");
         when(objectMapper.writeValueAsString(any(FileEntity.class))).thenReturn("{\"mocked\":\"json\"}");
 
         FileEntityWithIdDto dto = new FileEntityWithIdDto();
-        when(fileEntityWithIdConverter.convert(savedEntity)).thenReturn(dto);
+        when(fileEntityWithIdConverter.convert(any(FileEntity.class))).thenReturn(dto);
 
         // Act
         ResponseEntity<FileEntityWithIdDto> response = uploadFileService.uploadFile(fileUploadRequestDto);
@@ -111,9 +138,13 @@ class UploadFileServiceTest {
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(dto, response.getBody());
 
-        verify(fileEntityAccessor, times(2)).save(any(FileEntity.class));
-        verify(fileHelper).createDirectoryIfNotExists("/tmp/system1/");
-        verify(fileHelper).storeFile(anyString(), any(InputStream.class));
+        verify(fileEntityAccessor).insert(any(FileEntity.class));
+        verify(fileEntityAccessor, never()).save(any(FileEntity.class));
+        verify(fileHelper).createStorageDirectoryIfNotExists("/tmp/system1/");
+        verify(fileHelper).storeFile(eq("/tmp/system1/file-id-123.txt"), any(InputStream.class),
+                any(CompressionCodec.class));
+        verify(storageQuotaService).reserveStorage("object123", 12L);
+        verify(storageQuotaService).commitStorage("object123", 12L, 12L);
         verify(kafkaMessageProducer).sendMessage(KafkaTopics.FILE_SAVED, "{\"mocked\":\"json\"}");
     }
 
@@ -131,22 +162,17 @@ class UploadFileServiceTest {
         when(fileUploadRequestDto.getSystemId()).thenReturn("system1");
         when(fileUploadRequestDto.getFile()).thenReturn(multipartFile);
         when(multipartFile.getInputStream()).thenReturn(inputStream);
+        when(multipartFile.getSize()).thenReturn(12L);
 
-        FileEntity initialEntity = new FileEntity();
-        initialEntity.setId("file-id-123");
-
-        FileEntity savedEntity = new FileEntity();
-        savedEntity.setId("file-id-123");
-        savedEntity.setHash("ABCD1234");
-
-        when(fileEntityAccessor.save(any(FileEntity.class))).thenReturn(initialEntity).thenReturn(savedEntity);
+        when(fileEntityAccessor.insert(any(FileEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
         when(fileHelper.getDirectoryPath(anyString())).thenReturn("/tmp/system1/");
         when(fileHelper.getFullPath(anyString(), anyString(), anyString())).thenReturn("/tmp/system1/file-id-123.txt");
-        when(fileHelper.storeFile(anyString(), any(InputStream.class))).thenReturn("ABCD1234");
+        when(fileHelper.getShardedDirectoryPath(eq("/tmp/system1/"), anyString())).thenReturn("/tmp/system1/");
+        when(fileHelper.storeFile(anyString(), any(InputStream.class), any(CompressionCodec.class))).thenReturn(new FileStoreResult("ABCD1234", 12));
         when(kafkaProperties.getEnabled()).thenReturn("false");
 
         FileEntityWithIdDto dto = new FileEntityWithIdDto();
-        when(fileEntityWithIdConverter.convert(savedEntity)).thenReturn(dto);
+        when(fileEntityWithIdConverter.convert(any(FileEntity.class))).thenReturn(dto);
 
         // Act
         ResponseEntity<FileEntityWithIdDto> response = uploadFileService.uploadFile(fileUploadRequestDto);
@@ -156,9 +182,195 @@ class UploadFileServiceTest {
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(dto, response.getBody());
 
-        verify(fileEntityAccessor, times(2)).save(any(FileEntity.class));
-        verify(fileHelper).createDirectoryIfNotExists("/tmp/system1/");
-        verify(fileHelper).storeFile(anyString(), any(InputStream.class));
+        verify(fileEntityAccessor).insert(any(FileEntity.class));
+        verify(fileEntityAccessor, never()).save(any(FileEntity.class));
+        verify(fileHelper).createStorageDirectoryIfNotExists("/tmp/system1/");
+        verify(fileHelper).storeFile(eq("/tmp/system1/file-id-123.txt"), any(InputStream.class),
+                any(CompressionCodec.class));
+        verify(storageQuotaService).reserveStorage("object123", 12L);
         verify(kafkaMessageProducer, never()).sendMessage(anyString(), anyString());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("uploadFile should store the content in the blob store when deduplication is enabled")
+    void testUploadFile_deduplicationEnabled() throws Exception {
+        // Arrange
+        FileUploadRequestDto fileUploadRequestDto = mock(FileUploadRequestDto.class);
+        MultipartFile multipartFile = mock(MultipartFile.class);
+        InputStream inputStream = new ByteArrayInputStream("Test content".getBytes());
+
+        when(fileUploadRequestDto.getName()).thenReturn("testfile");
+        when(fileUploadRequestDto.getExtension()).thenReturn("txt");
+        when(fileUploadRequestDto.getObjectId()).thenReturn("object123");
+        when(fileUploadRequestDto.getFile()).thenReturn(multipartFile);
+        when(multipartFile.getInputStream()).thenReturn(inputStream);
+        when(multipartFile.getSize()).thenReturn(12L);
+
+        ArgumentCaptor<FileEntity> entityCaptor = ArgumentCaptor.forClass(FileEntity.class);
+        when(fileEntityAccessor.insert(entityCaptor.capture())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(fileStoreProperties.isDeduplicationEnabled()).thenReturn(true);
+        when(blobStoreService.storeBlob(anyString(), eq(inputStream)))
+                .thenReturn(new FileStoreResult("ABCD1234", 12, "0123456789ABCDEF"));
+        when(kafkaProperties.getEnabled()).thenReturn("false");
+
+        // Act
+        uploadFileService.uploadFile(fileUploadRequestDto);
+
+        // Assert
+        FileEntity insertedEntity = entityCaptor.getValue();
+        assertEquals("ABCD1234", insertedEntity.getHash());
+        assertEquals("0123456789ABCDEF", insertedEntity.getContentDigest());
+        verify(blobStoreService).storeBlob(insertedEntity.getId(), inputStream);
+        verify(fileHelper, never()).storeFile(anyString(), any(InputStream.class), any(CompressionCodec.class));
+    }
+
+    @Test
+    @DisplayName("uploadFile should stage the content on the local disk and rename it before the insert")
+    void testUploadFile_localStaging() throws Exception {
+        // Arrange
+        FileUploadRequestDto fileUploadRequestDto = mock(FileUploadRequestDto.class);
+        MultipartFile multipartFile = mock(MultipartFile.class);
+        InputStream inputStream = new ByteArrayInputStream("Test content".getBytes());
+
+        when(fileUploadRequestDto.getExtension()).thenReturn("txt");
+        when(fileUploadRequestDto.getSystemId()).thenReturn("system1");
+        when(fileUploadRequestDto.getFile()).thenReturn(multipartFile);
+        when(multipartFile.getInputStream()).thenReturn(inputStream);
+        when(multipartFile.getSize()).thenReturn(12L);
+
+        when(fileEntityAccessor.insert(any(FileEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(fileHelper.isLocalStorage()).thenReturn(true);
+        when(fileHelper.getStagingDirectoryPath()).thenReturn("/tmp/staging/");
+        when(fileHelper.getStagingPath(anyString())).thenReturn("/tmp/staging/file-id-123.tmp");
+        when(fileHelper.getDirectoryPath(anyString())).thenReturn("/tmp/system1/");
+        when(fileHelper.getFullPath(anyString(), anyString(), anyString())).thenReturn("/tmp/system1/file-id-123.txt");
+        when(fileHelper.getShardedDirectoryPath(eq("/tmp/system1/"), anyString())).thenReturn("/tmp/system1/");
+        when(fileHelper.storeFile(anyString(), any(InputStream.class), any(CompressionCodec.class)))
+                .thenReturn(new FileStoreResult("ABCD1234", 12));
+        when(kafkaProperties.getEnabled()).thenReturn("false");
+
+        // Act
+        uploadFileService.uploadFile(fileUploadRequestDto);
+
+        // Assert
+        InOrder inOrder = inOrder(fileHelper, fileEntityAccessor);
+        inOrder.verify(fileHelper).markPending(anyString(), eq("/tmp/system1/file-id-123.txt"));
+        inOrder.verify(fileHelper).storeFile(eq("/tmp/staging/file-id-123.tmp"), any(InputStream.class),
+                any(CompressionCodec.class));
+        inOrder.verify(fileHelper).moveFile("/tmp/staging/file-id-123.tmp", "/tmp/system1/file-id-123.txt");
+        inOrder.verify(fileEntityAccessor).insert(any(FileEntity.class));
+        inOrder.verify(fileHelper).clearPending(anyString());
+    }
+
+    @Test
+    @DisplayName("uploadFile should not insert the entity if the staged content cannot be renamed")
+    void testUploadFile_renameFailure() throws Exception {
+        // Arrange
+        FileUploadRequestDto fileUploadRequestDto = mock(FileUploadRequestDto.class);
+        MultipartFile multipartFile = mock(MultipartFile.class);
+        InputStream inputStream = new ByteArrayInputStream("Test content".getBytes());
+
+        when(fileUploadRequestDto.getExtension()).thenReturn("txt");
+        when(fileUploadRequestDto.getObjectId()).thenReturn("object123");
+        when(fileUploadRequestDto.getSystemId()).thenReturn("system1");
+        when(fileUploadRequestDto.getFile()).thenReturn(multipartFile);
+        when(multipartFile.getInputStream()).thenReturn(inputStream);
+        when(multipartFile.getSize()).thenReturn(12L);
+
+        when(fileHelper.isLocalStorage()).thenReturn(true);
+        when(fileHelper.getStagingDirectoryPath()).thenReturn("/tmp/staging/");
+        when(fileHelper.getStagingPath(anyString())).thenReturn("/tmp/staging/file-id-123.tmp");
+        when(fileHelper.getDirectoryPath(anyString())).thenReturn("/tmp/system1/");
+        when(fileHelper.getFullPath(anyString(), anyString(), anyString())).thenReturn("/tmp/system1/file-id-123.txt");
+        when(fileHelper.getShardedDirectoryPath(eq("/tmp/system1/"), anyString())).thenReturn("/tmp/system1/");
+        when(fileHelper.storeFile(anyString(), any(InputStream.class), any(CompressionCodec.class)))
+                .thenReturn(new FileStoreResult("ABCD1234", 12));
+        doThrow(new BaseException(HttpStatus.INTERNAL_SERVER_ERROR, ExceptionType.CANNOT_SAVE_FILE, "failure"))
+                .when(fileHelper).moveFile("/tmp/staging/file-id-123.tmp", "/tmp/system1/file-id-123.txt");
+
+        // Act & Assert
+        assertThrows(BaseException.class, () -> uploadFileService.uploadFile(fileUploadRequestDto));
+        verify(fileHelper).deleteFile("/tmp/staging/file-id-123.tmp");
+        verify(fileEntityAccessor, never()).insert(any(FileEntity.class));
+        verify(storageQuotaService).releaseStorage("object123", 12L);
+        verify(storageQuotaService, never()).commitStorage(any(), anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("uploadFile should delete the stored content if the entity cannot be inserted")
+    void testUploadFile_insertFailure() throws Exception {
+        // Arrange
+        FileUploadRequestDto fileUploadRequestDto = mock(FileUploadRequestDto.class);
+        MultipartFile multipartFile = mock(MultipartFile.class);
+        InputStream inputStream = new ByteArrayInputStream("Test content".getBytes());
+
+        when(fileUploadRequestDto.getExtension()).thenReturn("txt");
+        when(fileUploadRequestDto.getObjectId()).thenReturn("object123");
+        when(fileUploadRequestDto.getSystemId()).thenReturn("system1");
+        when(fileUploadRequestDto.getFile()).thenReturn(multipartFile);
+        when(multipartFile.getInputStream()).thenReturn(inputStream);
+        when(multipartFile.getSize()).thenReturn(12L);
+
+        when(fileEntityAccessor.insert(any(FileEntity.class))).thenThrow(new DataIntegrityViolationException("failure"));
+        when(fileHelper.getDirectoryPath(anyString())).thenReturn("/tmp/system1/");
+        when(fileHelper.getFullPath(anyString(), anyString(), anyString())).thenReturn("/tmp/system1/file-id-123.txt");
+        when(fileHelper.storeFile(anyString(), any(InputStream.class), any(CompressionCodec.class)))
+                .thenReturn(new FileStoreResult("ABCD1234", 12));
+
+        // Act & Assert
+        assertThrows(DataIntegrityViolationException.class,
+                () -> uploadFileService.uploadFile(fileUploadRequestDto));
+        verify(fileHelper).deleteFile("/tmp/system1/file-id-123.txt");
+        verify(fileHelper, never()).clearPending(anyString());
+        verify(storageQuotaService).releaseStorage("object123", 12L);
+        verify(storageQuotaService, never()).commitStorage(any(), anyLong(), anyLong());
+        verify(kafkaMessageProducer, never()).sendMessage(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("uploadFile should release the reserved storage if the content cannot be stored")
+    void testUploadFile_storeFailure() throws Exception {
+        // Arrange
+        FileUploadRequestDto fileUploadRequestDto = mock(FileUploadRequestDto.class);
+        InputStream inputStream = new ByteArrayInputStream("Test content".getBytes());
+
+        when(fileUploadRequestDto.getExtension()).thenReturn("txt");
+        when(fileUploadRequestDto.getObjectId()).thenReturn("object123");
+        when(fileHelper.getDirectoryPath(any())).thenReturn("/tmp/system1/");
+        when(fileHelper.getFullPath(anyString(), anyString(), anyString())).thenReturn("/tmp/system1/file-id-123.txt");
+        when(fileHelper.storeFile(anyString(), any(InputStream.class), any(CompressionCodec.class)))
+                .thenThrow(new IOException("disk full"));
+
+        // Act & Assert
+        assertThrows(IOException.class,
+                () -> uploadFileService.uploadFile(fileUploadRequestDto, inputStream, 100L));
+        verify(storageQuotaService).reserveStorage("object123", 100L);
+        verify(storageQuotaService).releaseStorage("object123", 100L);
+        verify(fileEntityAccessor, never()).insert(any(FileEntity.class));
+    }
+
+    @Test
+    @DisplayName("uploadFile should correct the reservation of the declared size to the stored size")
+    void testUploadFile_commitStoredSize() throws Exception {
+        // Arrange
+        FileUploadRequestDto fileUploadRequestDto = mock(FileUploadRequestDto.class);
+        InputStream inputStream = new ByteArrayInputStream("Test content".getBytes());
+
+        when(fileUploadRequestDto.getExtension()).thenReturn("txt");
+        when(fileUploadRequestDto.getObjectId()).thenReturn("object123");
+        when(fileEntityAccessor.insert(any(FileEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(fileHelper.getDirectoryPath(any())).thenReturn("/tmp/system1/");
+        when(fileHelper.getFullPath(anyString(), anyString(), anyString())).thenReturn("/tmp/system1/file-id-123.txt");
+        when(fileHelper.storeFile(anyString(), any(InputStream.class), any(CompressionCodec.class)))
+                .thenReturn(new FileStoreResult("ABCD1234", 12));
+        when(kafkaProperties.getEnabled()).thenReturn("false");
+
+        // Act
+        uploadFileService.uploadFile(fileUploadRequestDto, inputStream, 100L);
+
+        // Assert
+        verify(storageQuotaService).reserveStorage("object123", 100L);
+        verify(storageQuotaService).commitStorage("object123", 100L, 12L);
+        verify(storageQuotaService, never()).releaseStorage(anyString(), anyLong());
+    }
+}
@@ -0,0 +1,144 @@
+package hu.evocelot.filestore.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+
+import hu.evocelot.filestore.accessor.BackgroundJobAccessor;
+import hu.evocelot.filestore.job.JobContext;
+import hu.evocelot.filestore.job.JobType;
+import hu.evocelot.filestore.model.BackgroundJob;
+import hu.evocelot.filestore.model.FileStorageLimit;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import hu.evocelot.filestore.repository.FileRepository;
+import hu.evocelot.filestore.repository.FileStorageLimitRepository;
+
+class UsedStorageReconciliationServiceTest {
+
+    private static final OffsetDateTime SUBMITTED = OffsetDateTime.parse("2026-01-02T12:00:00Z");
+    private static final OffsetDateTime PREVIOUS_SUBMITTED = OffsetDateTime.parse("2026-01-02T11:00:00Z");
+    private static final Duration GRACE = Duration.ofHours(1);
+
+    @Mock
+    private FileRepository fileRepository;
+
+    @Mock
+    private FileStorageLimitRepository fileStorageLimitRepository;
+
+    @Mock
+    private FileStorageLimitService fileStorageLimitService;
+
+    @Mock
+    private BackgroundJobAccessor backgroundJobAccessor;
+
+    @Mock
+    private FileStoreProperties fileStoreProperties;
+
+    private UsedStorageReconciliationService usedStorageReconciliationService;
+    private AutoCloseable closeable;
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        when(fileStoreProperties.getUsedStorageReconciliationGrace()).thenReturn(GRACE);
+        when(backgroundJobAccessor.updateProgress(anyString(), any(BigInteger.class), anyString(), anyLong(),
+                anyLong(), anyLong(), anyLong())).thenReturn(true);
+
+        usedStorageReconciliationService = new UsedStorageReconciliationService(fileRepository,
+                fileStorageLimitRepository, fileStorageLimitService, backgroundJobAccessor, fileStoreProperties);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("run should only correct the modified objects of the window")
+    void testRun() throws Exception {
+        // Arrange
+        OffsetDateTime since = PREVIOUS_SUBMITTED.minus(GRACE);
+        OffsetDateTime until = SUBMITTED.minus(GRACE);
+
+        BackgroundJob previousJob = new BackgroundJob();
+        previousJob.setInsDate(PREVIOUS_SUBMITTED);
+        when(backgroundJobAccessor.findLastSucceeded(JobType.USED_STORAGE_RECONCILIATION))
+                .thenReturn(Optional.of(previousJob));
+        when(fileRepository.findObjectIdsModifiedBetween(eq(since), eq(until), eq(""), any(Pageable.class)))
+                .thenReturn(List.of("a", "c"));
+        when(fileStorageLimitRepository.findObjectIdsModifiedBetween(eq(since), eq(until), eq(""),
+                any(Pageable.class))).thenReturn(List.of("b", "c"));
+
+        FileStorageLimit drifted = createLimit("a", 100L, until.minusMinutes(10));
+        FileStorageLimit correct = createLimit("b", 50L, until.minusMinutes(10));
+        FileStorageLimit recent = createLimit("c", 10L, until.plusMinutes(10));
+        when(fileStorageLimitRepository.findByObjectIdIn(List.of("a", "b", "c")))
+                .thenReturn(List.of(drifted, correct, recent));
+        when(fileStorageLimitService.calculateUsedDiskSpaces(List.of("a", "b", "c")))
+                .thenReturn(Map.of("a", 70L, "b", 50L));
+        when(fileStorageLimitService.reconcileUsedDiskSpaces(Map.of("a", 70L), until)).thenReturn(1);
+
+        JobContext context = createContext();
+
+        // Act
+        usedStorageReconciliationService.run(context);
+
+        // Assert
+        verify(fileStorageLimitService).reconcileUsedDiskSpaces(Map.of("a", 70L), until);
+        assertEquals(3, context.getProcessedItems());
+        assertEquals(1, context.getUpdatedItems());
+        assertEquals(1, context.getSkippedItems());
+        verify(backgroundJobAccessor).updateProgress("job1", BigInteger.ONE, "c", 3, 1, 1, 0);
+    }
+
+    @Test
+    @DisplayName("The first reconciliation should check every modified object")
+    void testRun_first() throws Exception {
+        // Arrange
+        when(backgroundJobAccessor.findLastSucceeded(JobType.USED_STORAGE_RECONCILIATION))
+                .thenReturn(Optional.empty());
+
+        // Act
+        usedStorageReconciliationService.run(createContext());
+
+        // Assert
+        verify(fileRepository).findObjectIdsModifiedBetween(eq(OffsetDateTime.parse("1970-01-01T00:00:00Z")),
+                eq(SUBMITTED.minus(GRACE)), eq(""), any(Pageable.class));
+    }
+
+    private JobContext createContext() {
+        BackgroundJob job = new BackgroundJob();
+        job.setId("job1");
+        job.setType(JobType.USED_STORAGE_RECONCILIATION);
+        job.setInsDate(SUBMITTED);
+
+        return new JobContext(job, BigInteger.ONE, backgroundJobAccessor);
+    }
+
+    private FileStorageLimit createLimit(String objectId, Long usedDiskSpace, OffsetDateTime modDate) {
+        FileStorageLimit limit = new FileStorageLimit(objectId);
+        limit.setUsedDiskSpace(usedDiskSpace);
+        limit.setMaxDiskSpace(1000L);
+        limit.setModDate(modDate);
+        return limit;
+    }
+}
@@ -0,0 +1,149 @@
+package hu.evocelot.filestore.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+
+class LocalStorageBackendTest {
+
+    @TempDir
+    Path storePath;
+
+    @Mock
+    private FileStoreProperties fileStoreProperties;
+
+    private LocalStorageBackend localStorageBackend;
+    private AutoCloseable closeable;
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        when(fileStoreProperties.getBufferSize()).thenReturn(4);
+
+        localStorageBackend = new LocalStorageBackend(fileStoreProperties);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        closeable.close();
+    }
+
+    @ParameterizedTest
+    @EnumSource(FsyncPolicy.class)
+    @DisplayName("write should move the complete content into place with every fsync policy")
+    void testWrite(FsyncPolicy fsyncPolicy) throws Exception {
+        // Arrange
+        when(fileStoreProperties.getFsyncPolicy()).thenReturn(fsyncPolicy);
+        Path target = storePath.resolve("file.txt");
+
+        // Act
+        long size = localStorageBackend.write(target.toString(),
+                new ByteArrayInputStream("Test content".getBytes(StandardCharsets.UTF_8)));
+
+        // Assert
+        assertEquals(12, size);
+        assertEquals("Test content", Files.readString(target));
+        assertEquals(List.of(target), listFiles());
+    }
+
+    @Test
+    @DisplayName("write should leave neither the target nor a temporary file if the stream fails")
+    void testWrite_streamFailure() throws Exception {
+        // Arrange
+        Path target = storePath.resolve("file.txt");
+        InputStream failingStream = new SequenceInputStream(
+                new ByteArrayInputStream("Test content".getBytes(StandardCharsets.UTF_8)), new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("Client aborted");
+                    }
+                });
+
+        // Act & Assert
+        BaseException exception = assertThrows(BaseException.class,
+                () -> localStorageBackend.write(target.toString(), failingStream));
+        assertEquals(ExceptionType.CANNOT_SAVE_FILE, exception.getExceptionType());
+        assertFalse(Files.exists(target));
+        assertEquals(List.of(), listFiles());
+    }
+
+    @Test
+    @DisplayName("write should replace the previous content of the target")
+    void testWrite_replacesTarget() throws Exception {
+        // Arrange
+        Path target = Files.writeString(storePath.resolve("file.txt"), "Old content");
+
+        // Act
+        localStorageBackend.write(target.toString(),
+                new ByteArrayInputStream("New".getBytes(StandardCharsets.UTF_8)));
+
+        // Assert
+        assertEquals("New", Files.readString(target));
+    }
+
+    @Test
+    @DisplayName("writeStaged should write the content to the path without a temporary file")
+    void testWriteStaged() throws Exception {
+        // Arrange
+        Path target = storePath.resolve("file.tmp");
+
+        // Act
+        long size = localStorageBackend.writeStaged(target.toString(),
+                new ByteArrayInputStream("Test content".getBytes(StandardCharsets.UTF_8)));
+
+        // Assert
+        assertEquals(12, size);
+        assertEquals("Test content", Files.readString(target));
+        assertEquals(List.of(target), listFiles());
+    }
+
+    @ParameterizedTest
+    @EnumSource(FsyncPolicy.class)
+    @DisplayName("importFile should move a staged file into place with every fsync policy")
+    void testImportFile(FsyncPolicy fsyncPolicy) throws Exception {
+        // Arrange
+        when(fileStoreProperties.getFsyncPolicy()).thenReturn(fsyncPolicy);
+        Path stagingFile = storePath.resolve("file.tmp");
+        Path target = storePath.resolve("file.txt");
+        localStorageBackend.writeStaged(stagingFile.toString(),
+                new ByteArrayInputStream("Test content".getBytes(StandardCharsets.UTF_8)));
+
+        // Act
+        localStorageBackend.importFile(stagingFile, target.toString());
+
+        // Assert
+        assertEquals("Test content", Files.readString(target));
+        assertEquals(List.of(target), listFiles());
+    }
+
+    private List<Path> listFiles() throws IOException {
+        try (Stream<Path> files = Files.list(storePath)) {
+            return files.toList();
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package hu.evocelot.filestore.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+
+import hu.evocelot.filestore.exception.BaseException;
+import hu.evocelot.filestore.exception.ExceptionType;
+import hu.evocelot.filestore.properties.FileStoreProperties;
+import hu.evocelot.filestore.properties.S3Properties;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+class S3StorageBackendTest {
+
+    private static final String BUCKET = "files";
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+
+    @TempDir
+    Path storePath;
+
+    @Mock
+    private S3Client s3Client;
+
+    @Mock
+    private S3Properties s3Properties;
+
+    @Mock
+    private FileStoreProperties fileStoreProperties;
+
+    private S3StorageBackend s3StorageBackend;
+    private AutoCloseable closeable;
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        when(fileStoreProperties.getStorePath()).thenReturn(storePath.toString());
+        when(s3Properties.getBucket()).thenReturn(BUCKET);
+        when(s3Properties.getPartSize()).thenReturn(PART_SIZE);
+        when(s3Properties.getUploadParallelism()).thenReturn(2);
+        when(s3Properties.getUploadMemoryLimit()).thenReturn(4L * PART_SIZE);
+
+        s3StorageBackend = new S3StorageBackend(s3Client, s3Properties, fileStoreProperties);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        s3StorageBackend.shutdown();
+        closeable.close();
+    }
+
+    @Test
+    @DisplayName("toKey should map a path under the store path to a relative object key")
+    void testToKey() {
+        // Arrange
+        String path = storePath + File.separator + "system1" + File.separator + "ab" + File.separator + "file.txt";
+
+        // Act
+        String key = s3StorageBackend.toKey(path);
+
+        // Assert
+        assertEquals("system1/ab/file.txt", key);
+    }
+
+    @Test
+    @DisplayName("toKey should reject a path outside of the store path")
+    void testToKey_outsideStorePath() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> s3StorageBackend.toKey(storePath.resolve("..").resolve("other.txt").toString()));
+    }
+
+    @Test
+    @DisplayName("write should upload a file smaller than a part with a single request")
+    void testWrite_singleRequest() throws Exception {
+        // Arrange
+        ArgumentCaptor<PutObjectRequest> requestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+
+        // Act
+        long size = s3StorageBackend.write(storePath.resolve("file.txt").toString(),
+                new ByteArrayInputStream(new byte[100]));
+
+        // Assert
+        assertEquals(100, size);
+        verify(s3Client).putObject(requestCaptor.capture(), any(RequestBody.class));
+        assertEquals(BUCKET, requestCaptor.getValue().bucket());
+        assertEquals("file.txt", requestCaptor.getValue().key());
+        verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    @DisplayName("write should upload a file smaller than a part but larger than the initial buffer at once")
+    void testWrite_singleRequestPartBuffer() throws Exception {
+        // Arrange
+        byte[] content = new byte[PART_SIZE - 1];
+        content[content.length - 1] = 1;
+        ArgumentCaptor<RequestBody> bodyCaptor = ArgumentCaptor.forClass(RequestBody.class);
+
+        // Act
+        long size = s3StorageBackend.write(storePath.resolve("file.txt").toString(),
+                new ByteArrayInputStream(content));
+
+        // Assert
+        assertEquals(PART_SIZE - 1, size);
+        verify(s3Client).putObject(any(PutObjectRequest.class), bodyCaptor.capture());
+        assertArrayEquals(content, bodyCaptor.getValue().contentStreamProvider().newStream().readAllBytes());
+        verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    @DisplayName("write should upload a small file while all part buffers are in use")
+    void testWrite_smallFileWithoutPartBuffer() throws Exception {
+        // Arrange
+        when(s3Properties.getUploadMemoryLimit()).thenReturn((long) PART_SIZE);
+        S3StorageBackend backend = new S3StorageBackend(s3Client, s3Properties, fileStoreProperties);
+        CountDownLatch partStarted = new CountDownLatch(1);
+        CountDownLatch partReleased = new CountDownLatch(1);
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(invocation -> {
+            // The first part holds the only part buffer until the small file is uploaded.
+            partStarted.countDown();
+            assertTrue(partReleased.await(10, TimeUnit.SECONDS));
+            return UploadPartResponse.builder().eTag("etag").build();
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> largeWrite = executor.submit(() -> backend.write(storePath.resolve("large.bin").toString(),
+                    new ByteArrayInputStream(new byte[2 * PART_SIZE])));
+            assertTrue(partStarted.await(10, TimeUnit.SECONDS));
+
+            // Act
+            long size = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> backend.write(storePath.resolve("small.txt").toString(),
+                            new ByteArrayInputStream(new byte[100])));
+
+            // Assert
+            assertEquals(100, size);
+            verify(s3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+            partReleased.countDown();
+            assertEquals(2L * PART_SIZE, largeWrite.get(10, TimeUnit.SECONDS));
+        } finally {
+            partReleased.countDown();
+            executor.shutdownNow();
+            backend.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("write should upload a file larger than a part with a multipart upload")
+    void testWrite_multipart() throws Exception {
+        // Arrange
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenReturn(UploadPartResponse.builder().eTag("etag").build());
+        ArgumentCaptor<CompleteMultipartUploadRequest> completeCaptor = ArgumentCaptor
+                .forClass(CompleteMultipartUploadRequest.class);
+
+        // Act
+        long size = s3StorageBackend.write(storePath.resolve("file.txt").toString(),
+                new ByteArrayInputStream(new byte[2 * PART_SIZE + 10]));
+
+        // Assert
+        assertEquals(2 * PART_SIZE + 10, size);
+        verify(s3Client, times(3)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        verify(s3Client).completeMultipartUpload(completeCaptor.capture());
+        assertEquals(3, completeCaptor.getValue().multipartUpload().parts().size());
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    @DisplayName("write should upload the parts of a multipart upload concurrently")
+    void testWrite_multipartConcurrent() throws Exception {
+        // Arrange
+        CountDownLatch partsInFlight = new CountDownLatch(2);
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(invocation -> {
+            // Every part waits until two parts are uploaded at the same time.
+            partsInFlight.countDown();
+            assertTrue(partsInFlight.await(10, TimeUnit.SECONDS));
+            return UploadPartResponse.builder().eTag("etag" + invocation.<UploadPartRequest>getArgument(0).partNumber())
+                    .build();
+        });
+        ArgumentCaptor<CompleteMultipartUploadRequest> completeCaptor = ArgumentCaptor
+                .forClass(CompleteMultipartUploadRequest.class);
+
+        // Act
+        s3StorageBackend.write(storePath.resolve("file.txt").toString(),
+                new ByteArrayInputStream(new byte[2 * PART_SIZE]));
+
+        // Assert
+        verify(s3Client).completeMultipartUpload(completeCaptor.capture());
+        List<CompletedPart> parts = completeCaptor.getValue().multipartUpload().parts();
+        assertEquals(List.of(1, 2), parts.stream().map(CompletedPart::partNumber).toList());
+        assertEquals("etag2", parts.get(1).eTag());
+    }
+
+    @Test
+    @DisplayName("write should abort the multipart upload if a part cannot be uploaded")
+    void testWrite_multipartFailure() {
+        // Arrange
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().message("failure").statusCode(500).build());
+
+        // Act & Assert
+        BaseException exception = assertThrows(BaseException.class,
+                () -> s3StorageBackend.write(storePath.resolve("file.txt").toString(),
+                        new ByteArrayInputStream(new byte[PART_SIZE + 1])));
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, exception.getHttpStatus());
+        assertEquals(ExceptionType.CANNOT_SAVE_FILE, exception.getExceptionType());
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    @DisplayName("read should request only the given range of the object")
+    void testRead_range() throws Exception {
+        // Arrange
+        ArgumentCaptor<GetObjectRequest> requestCaptor = ArgumentCaptor.forClass(GetObjectRequest.class);
+
+        // Act
+        s3StorageBackend.read(storePath.resolve("file.txt").toString(), 10, 5);
+
+        // Assert
+        verify(s3Client).getObject(requestCaptor.capture());
+        assertEquals("bytes=10-14", requestCaptor.getValue().range());
+    }
+
+    @Test
+    @DisplayName("size should return -1 for a missing object")
+    void testSize_missing() throws Exception {
+        // Arrange
+        when(s3Client.headObject(any(HeadObjectRequest.class))).thenThrow(NoSuchKeyException.builder().build());
+
+        // Act & Assert
+        assertEquals(-1, s3StorageBackend.size(storePath.resolve("file.txt").toString()));
+        assertFalse(s3StorageBackend.exists(storePath.resolve("file.txt").toString()));
+    }
+
+    @Test
+    @DisplayName("importFile should upload the local file and delete it")
+    void testImportFile() throws Exception {
+        // Arrange
+        Path localFile = Files.write(storePath.resolve("upload.part"), new byte[10]);
+
+        // Act
+        s3StorageBackend.importFile(localFile, storePath.resolve("file.txt").toString());
+
+        // Assert
+        verify(s3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        assertFalse(Files.exists(localFile));
+    }
+}